@@ -0,0 +1,15 @@
+#!/bin/sh
+# Runs the JMH suites of the service, repository and serialization hot paths, one JMH JSON result file per suite in
+# target/jmh/<label> (default: the current time). Further arguments are passed to JMH, e.g. -f 3 or -p accountCount=100000.
+# Compare two runs, e.g. of the previous and the current build, with JmhResultComparison:
+#   ./run-suites.sh baseline && (rebuild) && ./run-suites.sh current
+#   java -cp target/benchmarks.jar com.revolut.transfer.benchmark.JmhResultComparison target/jmh/baseline target/jmh/current 10
+set -e
+cd "$(dirname "$0")"
+label="${1:-$(date +%Y%m%d-%H%M%S)}"
+[ $# -gt 0 ] && shift
+mkdir -p "target/jmh/$label"
+for suite in TransferContentionBenchmark TransferEngineBenchmark AccountCreationBenchmark AccountRepositoryBenchmark \
+        RequestSerializationBenchmark; do
+    java -jar target/benchmarks.jar "$suite" -rf json -rff "target/jmh/$label/$suite.json" "$@"
+done
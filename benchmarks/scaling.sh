@@ -0,0 +1,16 @@
+#!/bin/sh
+# Transfer throughput of all engines from 1 to 32 caller threads, one JMH JSON result file per thread count.
+# Pin the JVM to as many cores as threads, e.g. with taskset, to get a core scaling curve:
+#   PIN=1 ./scaling.sh
+set -e
+cd "$(dirname "$0")"
+mkdir -p target/scaling
+for threads in 1 2 4 8 16 32; do
+    if [ -n "$PIN" ]; then
+        prefix="taskset -c 0-$((threads - 1))"
+    else
+        prefix=""
+    fi
+    $prefix java -Dtransfer.shards="$threads" -jar target/benchmarks.jar TransferScalingBenchmark \
+        -t "$threads" -rf json -rff "target/scaling/transfer-scaling-$threads.json"
+done
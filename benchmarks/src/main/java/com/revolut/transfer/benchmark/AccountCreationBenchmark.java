@@ -0,0 +1,81 @@
+package com.revolut.transfer.benchmark;
+
+import com.revolut.transfer.config.RepositoryType;
+import com.revolut.transfer.converter.AccountResponseConverter;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.lock.AccountLockManager;
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.repository.AccountRepository;
+import com.revolut.transfer.repository.AccountRepositoryImpl;
+import com.revolut.transfer.repository.OffHeapAccountRepository;
+import com.revolut.transfer.request.CreateAccountRequest;
+import com.revolut.transfer.service.AccountServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * createAccount on a store already holding existingAccounts accounts. Every call creates a new user, so the store
+ * keeps growing during the run and the cost of growing the account and user tables is part of the result.
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountCreationBenchmark {
+
+    private static final int PREFILL_BATCH = 10_000;
+
+    @Param({"heap", "offheap"})
+    private String repository;
+
+    @Param({"0", "100000", "1000000"})
+    private int existingAccounts;
+
+    private final AtomicLong nextUser = new AtomicLong();
+    private AccountServiceImpl accountService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        AccountRepository accountRepository = RepositoryType.from(repository) == RepositoryType.OFFHEAP
+                ? new OffHeapAccountRepository()
+                : new AccountRepositoryImpl();
+        accountService = new AccountServiceImpl(accountRepository, new AccountResponseConverter(), new AccountLockManager(),
+                TransactionLedger.disabled());
+        List<Account> accounts = new ArrayList<>(PREFILL_BATCH);
+        for (int i = 0; i < existingAccounts; i++) {
+            accounts.add(Account.builder().id(UUID.randomUUID()).userId("existing-" + i).balance(0).build());
+            if (accounts.size() == PREFILL_BATCH) {
+                accountRepository.saveAll(accounts);
+                accounts.clear();
+            }
+        }
+        accountRepository.saveAll(accounts);
+    }
+
+    @Benchmark
+    public UUID createAccount() {
+        return accountService.createAccount(CreateAccountRequest.builder()
+                .userId("user-" + nextUser.incrementAndGet())
+                .balance(BigDecimal.TEN)
+                .build());
+    }
+}
@@ -0,0 +1,230 @@
+package com.revolut.transfer.benchmark;
+
+import com.google.gson.JsonParser;
+import com.revolut.transfer.metrics.LatencyRecorder;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Latency of well-behaved accounts while a single account is flooded, against the API started in another JVM once
+ * without and once with admission control. Not a JMH benchmark, as it measures the whole HTTP stack:
+ *   java -cp target/benchmarks.jar com.revolut.transfer.benchmark.AccountFloodLoad [seconds] [rate] [flooders] [engine] [admission]
+ * e.g. AccountFloodLoad 20 500 400 locking account-rate=100,account-burst=20,max-concurrency=150
+ *
+ * Per server: transfers between 1000 well-behaved accounts are sent open loop at the given rate, first alone and then
+ * while the flooders, each on its own virtual thread, send transfers from one account back to back as fast as they are
+ * answered, like a retry storm. Latency of the well-behaved transfers is measured from the time they were due, see
+ * LoadGenerator. The flooded phase should show the same p99 as the quiet phase with admission control, while the
+ * flood is mostly answered with 429.
+ * */
+public class AccountFloodLoad {
+
+    private static final String BASE_URL = "http://localhost:4567";
+    private static final int ACCOUNTS = 1000;
+    private static final int WARMUP_SECONDS = 5;
+    private static final String SERVER_HEAP = "-Xmx1g";
+    private static final String DEFAULT_ADMISSION = "account-rate=100,account-burst=20,max-concurrency=150";
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        double rate = args.length > 1 ? Double.parseDouble(args[1]) : 500;
+        int flooders = args.length > 2 ? Integer.parseInt(args[2]) : 400;
+        String engine = args.length > 3 ? args[3] : "locking";
+        String admission = args.length > 4 ? args[4] : DEFAULT_ADMISSION;
+
+        System.out.printf("duration=%ds per phase (after %ds warmup) rate=%.0f/s flooders=%d engine=%s admission=%s%n", seconds,
+                WARMUP_SECONDS, rate, flooders, engine, admission);
+        System.out.printf("%-10s %-8s %10s %10s %10s %10s %10s %12s %10s %10s %10s%n", "admission", "phase", "requests/s",
+                "p50 ms", "p99 ms", "p99.9 ms", "errors", "flood ok/s", "429/s", "503/s", "other/s");
+        new AccountFloodLoad().run("off", engine, List.of(), seconds, rate, flooders);
+        List<String> properties = new ArrayList<>();
+        for (String property : admission.split(",")) {
+            properties.add("-Dtransfer.admission." + property.trim());
+        }
+        new AccountFloodLoad().run("on", engine, properties, seconds, rate, flooders);
+    }
+
+    private void run(String name, String engine, List<String> admission, int seconds, double rate, int flooders) throws Exception {
+        List<String> command = new ArrayList<>(Arrays.asList(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                SERVER_HEAP, "-Dtransfer.engine=" + engine, "-Dtransfer.audit.interval-seconds=0"));
+        command.addAll(admission);
+        command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), "com.revolut.transfer.MoneyTransferAPI"));
+        Process server = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            awaitPort();
+            String[] accountIds = new String[ACCOUNTS];
+            for (int i = 0; i < ACCOUNTS; i++) {
+                accountIds[i] = createAccount("user-" + i);
+            }
+            String floodedAccountId = createAccount("flooded");
+
+            sendWellBehaved(accountIds, rate, WARMUP_SECONDS);
+            report(name, "quiet", sendWellBehaved(accountIds, rate, seconds), null, seconds);
+
+            Flood flood = new Flood();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < flooders; i++) {
+                    executor.execute(() -> flood.send(floodedAccountId, accountIds));
+                }
+                try {
+                    sendWellBehaved(accountIds, rate, WARMUP_SECONDS);
+                    flood.reset();
+                    report(name, "flooded", sendWellBehaved(accountIds, rate, seconds), flood, seconds);
+                } finally {
+                    flood.stop();
+                }
+            }
+        } finally {
+            server.destroy();
+            server.waitFor();
+        }
+    }
+
+    private Phase sendWellBehaved(String[] accountIds, double rate, int seconds) throws InterruptedException {
+        Phase phase = new Phase();
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long total = (long) (rate * seconds);
+        long started = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < total; i++) {
+                long due = started + (long) (i * intervalNanos);
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int from = random.nextInt(accountIds.length);
+                int to = (from + 1 + random.nextInt(accountIds.length - 1)) % accountIds.length;
+                executor.execute(() -> {
+                    int status = transfer(accountIds[from], accountIds[to]);
+                    phase.latencies.record(System.nanoTime() - due);
+                    if (status != 200) {
+                        phase.errors.increment();
+                    }
+                });
+            }
+        }
+        return phase;
+    }
+
+    private int transfer(String fromAccountId, String toAccountId) {
+        try {
+            return httpClient.send(HttpRequest.newBuilder(URI.create(BASE_URL + "/accounts/transfer"))
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofSeconds(30))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"fromAccount\":\"" + fromAccountId + "\",\"toAccount\":\""
+                            + toAccountId + "\",\"amount\":1}"))
+                    .build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException ex) {
+            return -1;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    private String createAccount(String userId) throws IOException, InterruptedException {
+        HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(URI.create(BASE_URL + "/accounts"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"userId\":\"" + userId + "\",\"balance\":1000000000}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 201) {
+            throw new IOException("Account could not be created: " + response.statusCode());
+        }
+        return new JsonParser().parse(response.body()).getAsString();
+    }
+
+    private static void report(String name, String phaseName, Phase phase, Flood flood, int seconds) {
+        LatencyRecorder.Snapshot latency = phase.latencies.snapshot();
+        System.out.printf("%-10s %-8s %10.0f %10.2f %10.2f %10.2f %10d %12s %10s %10s %10s%n", name, phaseName,
+                latency.getCount() / (double) seconds, millis(latency.valueAt(0.5)), millis(latency.valueAt(0.99)),
+                millis(latency.valueAt(0.999)), phase.errors.sum(),
+                flood == null ? "-" : perSecond(flood.succeeded, seconds), flood == null ? "-" : perSecond(flood.throttled, seconds),
+                flood == null ? "-" : perSecond(flood.overloaded, seconds), flood == null ? "-" : perSecond(flood.failed, seconds));
+    }
+
+    private static String perSecond(LongAdder count, int seconds) {
+        return String.format("%.0f", count.sum() / (double) seconds);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static void awaitPort() throws InterruptedException {
+        for (int i = 0; i < 300; i++) {
+            try (Socket ignored = new Socket("localhost", 4567)) {
+                return;
+            } catch (IOException ex) {
+                Thread.sleep(100);
+            }
+        }
+        throw new IllegalStateException("Server did not start.");
+    }
+
+    private static final class Phase {
+
+        private final LatencyRecorder latencies = new LatencyRecorder();
+        private final LongAdder errors = new LongAdder();
+    }
+
+    private final class Flood {
+
+        private final AtomicBoolean running = new AtomicBoolean(true);
+        private final LongAdder succeeded = new LongAdder();
+        private final LongAdder throttled = new LongAdder();
+        private final LongAdder overloaded = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+
+        private void send(String floodedAccountId, String[] accountIds) {
+            while (running.get()) {
+                int status = transfer(floodedAccountId, accountIds[ThreadLocalRandom.current().nextInt(accountIds.length)]);
+                if (status == 200) {
+                    succeeded.increment();
+                } else if (status == 429) {
+                    throttled.increment();
+                } else if (status == 503) {
+                    overloaded.increment();
+                } else {
+                    failed.increment();
+                }
+            }
+        }
+
+        private void reset() {
+            succeeded.reset();
+            throttled.reset();
+            overloaded.reset();
+            failed.reset();
+        }
+
+        private void stop() {
+            running.set(false);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.revolut.transfer.benchmark;
+
+import com.revolut.transfer.lock.AccountLockManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Compares the old String.intern() account locks with the striped AccountLockManager,
+ * taking the two locks of a transfer between random accounts and updating a balance cell.
+ * */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class AccountLockBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int accountCount;
+
+    @Param({"intern", "striped"})
+    private String strategy;
+
+    private UUID[] accountIds;
+    private long[] balances;
+    private AccountLockManager accountLockManager;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        accountIds = new UUID[accountCount];
+        balances = new long[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accountIds[i] = UUID.randomUUID();
+            balances[i] = 1_000_000L;
+        }
+        accountLockManager = new AccountLockManager();
+    }
+
+    @Benchmark
+    public long transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accountCount);
+        int to = random.nextInt(accountCount);
+        if ("intern".equals(strategy)) {
+            return transferWithInternedLocks(from, to);
+        }
+        return transferWithStripedLocks(from, to);
+    }
+
+    private long transferWithInternedLocks(int from, int to) {
+        UUID larger = accountIds[from].compareTo(accountIds[to]) >= 0 ? accountIds[from] : accountIds[to];
+        UUID smaller = larger == accountIds[from] ? accountIds[to] : accountIds[from];
+        synchronized (larger.toString().intern()) {
+            synchronized (smaller.toString().intern()) {
+                return move(from, to);
+            }
+        }
+    }
+
+    private long transferWithStripedLocks(int from, int to) {
+        ReentrantLock firstLock = accountLockManager.firstLockFor(accountIds[from], accountIds[to]);
+        ReentrantLock secondLock = accountLockManager.secondLockFor(accountIds[from], accountIds[to]);
+        firstLock.lock();
+        try {
+            if (firstLock == secondLock) {
+                return move(from, to);
+            }
+            secondLock.lock();
+            try {
+                return move(from, to);
+            } finally {
+                secondLock.unlock();
+            }
+        } finally {
+            firstLock.unlock();
+        }
+    }
+
+    private long move(int from, int to) {
+        balances[from]--;
+        balances[to]++;
+        return balances[from];
+    }
+}
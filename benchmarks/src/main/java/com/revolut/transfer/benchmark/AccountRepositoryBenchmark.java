@@ -0,0 +1,91 @@
+package com.revolut.transfer.benchmark;
+
+import com.revolut.transfer.config.RepositoryType;
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.repository.AccountRepository;
+import com.revolut.transfer.repository.AccountRepositoryImpl;
+import com.revolut.transfer.repository.OffHeapAccountRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Single account operations of the repositories on a store of accountCount accounts, without any service on top.
+ * Run with -prof gc to see the allocations per operation of the heap and off-heap stores.
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountRepositoryBenchmark {
+
+    @Param({"heap", "offheap"})
+    private String repository;
+
+    @Param({"10000", "1000000"})
+    private int accountCount;
+
+    private UUID[] accountIds;
+    private AccountRepository accountRepository;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        accountRepository = RepositoryType.from(repository) == RepositoryType.OFFHEAP
+                ? new OffHeapAccountRepository(accountCount)
+                : new AccountRepositoryImpl();
+        accountIds = new UUID[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accountIds[i] = UUID.randomUUID();
+            accountRepository.save(Account.builder()
+                    .id(accountIds[i])
+                    .userId("user-" + i)
+                    .balance(1_000_000_000L)
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public Account getAccountById() {
+        return accountRepository.getAccountById(accountIds[ThreadLocalRandom.current().nextInt(accountCount)]);
+    }
+
+    @Benchmark
+    public boolean isUserExists() {
+        return accountRepository.isUserExists("user-" + ThreadLocalRandom.current().nextInt(accountCount));
+    }
+
+    @Benchmark
+    public void save() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int index = random.nextInt(accountCount);
+        accountRepository.save(Account.builder()
+                .id(accountIds[index])
+                .userId("user-" + index)
+                .balance(random.nextLong(1_000_000_000L))
+                .build());
+    }
+
+    /*
+    * Read and compare-and-set, as the optimistic engine does for every account it changes.
+    * */
+    @Benchmark
+    public boolean replace() {
+        Account account = getAccountById();
+        return accountRepository.replace(account, account.toBuilder().balance(account.getBalance() + 1).build());
+    }
+}
@@ -0,0 +1,105 @@
+package com.revolut.transfer.benchmark;
+
+import com.revolut.transfer.config.RepositoryType;
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.repository.AccountRepository;
+import com.revolut.transfer.repository.AccountRepositoryImpl;
+import com.revolut.transfer.repository.OffHeapAccountRepository;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * Memory per account and GC pauses of the heap and off-heap account stores, and the memory per account again after
+ * every userId has been changed, which leaves the old userIds behind for the store to reclaim.
+ * Not a JMH benchmark, as it measures the process and not a method. Run one store per JVM, e.g.
+ *   java -Xmx16g -XX:MaxDirectMemorySize=8g -cp target/benchmarks.jar com.revolut.transfer.benchmark.AccountStoreFootprint offheap 10000000
+ * */
+public class AccountStoreFootprint {
+
+    private static final int UPDATES = 20_000_000;
+    private static final int RENAMES = 3;
+
+    public static void main(String[] args) {
+        RepositoryType repositoryType = RepositoryType.from(args.length > 0 ? args[0] : "heap");
+        int accountCount = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+        long heapBefore = usedHeapAfterGc();
+        long directBefore = usedDirectMemory();
+
+        AccountRepository accountRepository = repositoryType == RepositoryType.OFFHEAP
+                ? new OffHeapAccountRepository(accountCount) : new AccountRepositoryImpl();
+        UUID[] accountIds = new UUID[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            UUID accountId = UUID.randomUUID();
+            accountRepository.saveIfUserAbsent(Account.builder().id(accountId).userId("user-" + i).balance(100_000).build());
+            accountIds[i] = accountId;
+        }
+
+        long heapAfter = usedHeapAfterGc();
+        long directAfter = usedDirectMemory();
+        // the id array is needed by the update phase only, it is not part of the store
+        long idArrayBytes = (long) accountCount * (16 + 16 + 4);
+
+        System.out.printf("store=%s accounts=%d%n", repositoryType, accountCount);
+        System.out.printf("heap bytes/account: %.1f%n", (heapAfter - heapBefore - idArrayBytes) / (double) accountCount);
+        System.out.printf("direct bytes/account: %.1f%n", (directAfter - directBefore) / (double) accountCount);
+
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTimeMillis();
+        long started = System.nanoTime();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < UPDATES; i++) {
+            Account account = accountRepository.getAccountById(accountIds[random.nextInt(accountCount)]);
+            account.setBalance(account.getBalance() + 1);
+            accountRepository.save(account);
+        }
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        System.out.printf("updates: %d in %d ms, gc collections: %d, gc time: %d ms%n",
+                UPDATES, elapsedMillis, gcCount() - gcCountBefore, gcTimeMillis() - gcTimeBefore);
+
+        long fullGcStarted = System.nanoTime();
+        System.gc();
+        System.out.printf("full gc pause with store live: %d ms%n", (System.nanoTime() - fullGcStarted) / 1_000_000);
+        System.out.println(accountRepository.getAccountById(accountIds[0]).getBalance());
+
+        for (int round = 1; round <= RENAMES; round++) {
+            for (int i = 0; i < accountCount; i++) {
+                // a copy, the heap store would not see the userId change of its own instance
+                Account account = accountRepository.getAccountById(accountIds[i]).toBuilder()
+                        .userId("user-" + i + "-" + round).build();
+                accountRepository.save(account);
+            }
+        }
+        System.out.printf("after %d renames, heap bytes/account: %.1f, direct bytes/account: %.1f%n", RENAMES,
+                (usedHeapAfterGc() - heapBefore - idArrayBytes) / (double) accountCount,
+                (usedDirectMemory() - directBefore) / (double) accountCount);
+        System.out.println(accountRepository.getAccountById(accountIds[0]).getUserId());
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long usedDirectMemory() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> "direct".equals(pool.getName()))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcTimeMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+}
@@ -0,0 +1,313 @@
+package com.revolut.transfer.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Transfers over HTTP from many keep-alive connections, against the API started in another JVM once per HTTP mode.
+ * Every connection sends a transfer, waits for its response and sends the next one. Reports throughput, latency
+ * percentiles after the warmup, and the resident memory and thread count of the server JVM. The client is one selector
+ * thread, so it holds no thread per connection either. Not a JMH benchmark, as it measures another process:
+ *   java -cp target/benchmarks.jar com.revolut.transfer.benchmark.AsyncFrontEndLoad [connections] [seconds] [engine] [modes] [accounts]
+ * e.g. AsyncFrontEndLoad 10000 30 sharded spark,virtual,async (needs ulimit -n above twice the connections).
+ * A few accounts make every transfer wait for the locks of the same hot accounts, e.g. AsyncFrontEndLoad 10000 30 locking spark,virtual,async 4
+ * */
+public class AsyncFrontEndLoad {
+
+    private static final String HOST = "localhost";
+    private static final int PORT = 4567;
+    private static final int CONNECTS_PER_ROUND = 200;
+    private static final int WARMUP_SECONDS = 10;
+    private static final String SERVER_HEAP = "-Xmx1g";
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        String engine = args.length > 2 ? args[2] : "sharded";
+        List<String> modes = Arrays.asList((args.length > 3 ? args[3] : "spark,virtual,async").split(","));
+        int accounts = args.length > 4 ? Integer.parseInt(args[4]) : 1_000;
+
+        System.out.printf("connections=%d duration=%ds (after %ds warmup) engine=%s accounts=%d%n", connections, seconds,
+                WARMUP_SECONDS, engine, accounts);
+        System.out.printf("%-8s %12s %10s %10s %10s %10s %12s %12s %8s%n", "mode", "requests/s", "p50 ms", "p99 ms",
+                "p99.9 ms", "errors", "RSS MB", "peak RSS MB", "threads");
+        for (String mode : modes) {
+            run(mode, engine, connections, seconds, accounts);
+        }
+    }
+
+    private static void run(String mode, String engine, int connections, int seconds, int accounts) throws Exception {
+        Process server = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                SERVER_HEAP, "-Dtransfer.http.mode=" + mode, "-Dtransfer.engine=" + engine,
+                "-cp", System.getProperty("java.class.path"), "com.revolut.transfer.MoneyTransferAPI")
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            awaitPort();
+            String[] accountIds = new String[accounts];
+            for (int i = 0; i < accounts; i++) {
+                accountIds[i] = createAccount(i);
+            }
+            LoadClient client = new LoadClient(connections, accountIds);
+            client.run(WARMUP_SECONDS, seconds);
+            long[] latencies = client.getLatencies();
+            Arrays.sort(latencies);
+            String[] status = readStatus(server.pid());
+            System.out.printf("%-8s %12.0f %10.2f %10.2f %10.2f %10d %12s %12s %8s%n", mode, latencies.length / (double) seconds,
+                    percentileMillis(latencies, 0.5), percentileMillis(latencies, 0.99), percentileMillis(latencies, 0.999),
+                    client.getErrors(), status[0], status[1], status[2]);
+        } finally {
+            server.destroy();
+            server.waitFor();
+        }
+    }
+
+    private static void awaitPort() throws InterruptedException {
+        for (int i = 0; i < 300; i++) {
+            try (Socket ignored = new Socket(HOST, PORT)) {
+                return;
+            } catch (IOException ex) {
+                Thread.sleep(100);
+            }
+        }
+        throw new IllegalStateException("Server did not start.");
+    }
+
+    private static String createAccount(int number) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://" + HOST + ":" + PORT + "/accounts").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream outputStream = connection.getOutputStream()) {
+            outputStream.write(("{\"userId\":\"user-" + number + "\",\"balance\":1000000000}").getBytes(StandardCharsets.UTF_8));
+        }
+        if (connection.getResponseCode() != 201) {
+            throw new ConnectException("Account could not be created: " + connection.getResponseCode());
+        }
+        try (InputStream inputStream = connection.getInputStream()) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            inputStream.transferTo(body);
+            return body.toString(StandardCharsets.UTF_8).replace("\"", "");
+        }
+    }
+
+    /*
+    * VmRSS, VmHWM and Threads of the server process, in MB where it is memory.
+    * */
+    private static String[] readStatus(long pid) throws IOException {
+        String[] status = {"-", "-", "-"};
+        for (String line : Files.readAllLines(Paths.get("/proc", Long.toString(pid), "status"))) {
+            if (line.startsWith("VmRSS:")) {
+                status[0] = Long.toString(kilobytes(line) / 1024);
+            } else if (line.startsWith("VmHWM:")) {
+                status[1] = Long.toString(kilobytes(line) / 1024);
+            } else if (line.startsWith("Threads:")) {
+                status[2] = line.substring("Threads:".length()).trim();
+            }
+        }
+        return status;
+    }
+
+    private static long kilobytes(String statusLine) {
+        return Long.parseLong(statusLine.replaceAll("[^0-9]", ""));
+    }
+
+    private static double percentileMillis(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) {
+            return Double.NaN;
+        }
+        return sortedNanos[(int) Math.min(sortedNanos.length - 1, (long) (sortedNanos.length * percentile))] / 1_000_000.0;
+    }
+
+    /*
+    * One selector thread driving all connections. Connections are opened a few hundred at a time, so that the accept queue
+    * of the server does not overflow, and each sends its first transfer as soon as it is connected.
+    * */
+    private static final class LoadClient {
+
+        private final int connections;
+        private final String[] accountIds;
+        private final Random random = new Random(42);
+        private long[] latencies = new long[1 << 20];
+        private int recorded;
+        private long errors;
+        private boolean recording;
+
+        private LoadClient(int connections, String[] accountIds) {
+            this.connections = connections;
+            this.accountIds = accountIds;
+        }
+
+        private void run(int warmupSeconds, int seconds) throws IOException {
+            try (Selector selector = Selector.open()) {
+                int opened = 0;
+                long started = System.nanoTime();
+                long recordFrom = started + warmupSeconds * 1_000_000_000L;
+                long end = recordFrom + seconds * 1_000_000_000L;
+                long now;
+                while ((now = System.nanoTime()) < end) {
+                    if (!recording && now >= recordFrom) {
+                        recording = true;
+                    }
+                    for (int i = 0; i < CONNECTS_PER_ROUND && opened < connections; i++, opened++) {
+                        SocketChannel channel = SocketChannel.open();
+                        channel.configureBlocking(false);
+                        channel.connect(new InetSocketAddress(HOST, PORT));
+                        channel.register(selector, SelectionKey.OP_CONNECT, new Connection());
+                    }
+                    selector.select(10);
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        handle(key);
+                    }
+                }
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+            }
+        }
+
+        private void handle(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            Connection connection = (Connection) key.attachment();
+            try {
+                if (key.isConnectable()) {
+                    channel.finishConnect();
+                    send(key, connection);
+                } else if (key.isWritable()) {
+                    write(key, connection);
+                } else if (key.isReadable()) {
+                    if (channel.read(connection.in) < 0) {
+                        throw new IOException("Connection closed by the server.");
+                    }
+                    int status = connection.parseResponse();
+                    if (status > 0) {
+                        if (recording) {
+                            if (status == 200) {
+                                record(System.nanoTime() - connection.sentAt);
+                            } else {
+                                errors++;
+                            }
+                        }
+                        send(key, connection);
+                    }
+                }
+            } catch (IOException ex) {
+                if (recording) {
+                    errors++;
+                }
+                key.cancel();
+                channel.close();
+            }
+        }
+
+        private void send(SelectionKey key, Connection connection) throws IOException {
+            int from = random.nextInt(accountIds.length);
+            int to = (from + 1 + random.nextInt(accountIds.length - 1)) % accountIds.length;
+            byte[] body = ("{\"fromAccount\":\"" + accountIds[from] + "\",\"toAccount\":\"" + accountIds[to] + "\",\"amount\":1}")
+                    .getBytes(StandardCharsets.UTF_8);
+            byte[] head = ("POST /accounts/transfer HTTP/1.1\r\nHost: " + HOST + "\r\nContent-Type: application/json\r\n"
+                    + "Content-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            connection.out = ByteBuffer.allocate(head.length + body.length).put(head).put(body).flip();
+            connection.sentAt = System.nanoTime();
+            write(key, connection);
+        }
+
+        private void write(SelectionKey key, Connection connection) throws IOException {
+            ((SocketChannel) key.channel()).write(connection.out);
+            key.interestOps(connection.out.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+
+        private void record(long nanos) {
+            if (recorded == latencies.length) {
+                latencies = Arrays.copyOf(latencies, latencies.length * 2);
+            }
+            latencies[recorded++] = nanos;
+        }
+
+        private long[] getLatencies() {
+            return Arrays.copyOf(latencies, recorded);
+        }
+
+        private long getErrors() {
+            return errors;
+        }
+    }
+
+    private static final class Connection {
+
+        private static final byte[] LAST_CHUNK = "\r\n0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+        private final ByteBuffer in = ByteBuffer.allocate(4096);
+        private ByteBuffer out;
+        private long sentAt;
+
+        /*
+        * Responses have a Content-Length (async mode) or are chunked (Spark), the chunked ones end with the last chunk.
+        * @return status of the response once it has been read completely, 0 while it is incomplete
+        * */
+        private int parseResponse() throws IOException {
+            byte[] bytes = in.array();
+            int headerEnd = indexOf(bytes, in.position());
+            if (headerEnd < 0) {
+                return 0;
+            }
+            String head = new String(bytes, 0, headerEnd, StandardCharsets.US_ASCII);
+            int contentLength = -1;
+            for (String line : head.split("\r\n")) {
+                if (line.regionMatches(true, 0, "Content-Length:", 0, "Content-Length:".length())) {
+                    contentLength = Integer.parseInt(line.substring("Content-Length:".length()).trim());
+                }
+            }
+            if (contentLength < 0) {
+                if (!endsWith(bytes, in.position(), LAST_CHUNK)) {
+                    return 0;
+                }
+            } else {
+                int responseEnd = headerEnd + 4 + contentLength;
+                if (in.position() < responseEnd) {
+                    return 0;
+                }
+                if (in.position() > responseEnd) {
+                    throw new IOException("Unexpected bytes after the response.");
+                }
+            }
+            in.clear();
+            return Integer.parseInt(head.substring(9, 12));
+        }
+
+        private static boolean endsWith(byte[] bytes, int length, byte[] suffix) {
+            return length >= suffix.length
+                    && Arrays.equals(bytes, length - suffix.length, length, suffix, 0, suffix.length);
+        }
+
+        private static int indexOf(byte[] bytes, int length) {
+            for (int i = 0; i + 3 < length; i++) {
+                if (bytes[i] == '\r' && bytes[i + 1] == '\n' && bytes[i + 2] == '\r' && bytes[i + 3] == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.revolut.transfer.benchmark;
+
+import com.revolut.transfer.journal.AccountSnapshot;
+import com.revolut.transfer.journal.JournalVisitor;
+import com.revolut.transfer.journal.TransferJournal;
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.repository.AccountRepository;
+import com.revolut.transfer.repository.JournaledAccountRepository;
+import com.revolut.transfer.repository.OffHeapAccountRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Cold start time of the account store: loading a snapshot and replaying the journal tail after it, against replaying
+ * the whole journal. Not a JMH benchmark, as every measurement needs a fresh JVM:
+ *   java -Xmx1g -cp target/benchmarks.jar com.revolut.transfer.benchmark.ColdStart generate /data/cold-start 10000000 20000000 1000000
+ *   java -Xmx1g -XX:MaxDirectMemorySize=4g -cp target/benchmarks.jar com.revolut.transfer.benchmark.ColdStart snapshot /data/cold-start 10000000
+ *   java -Xmx1g -XX:MaxDirectMemorySize=4g -cp target/benchmarks.jar com.revolut.transfer.benchmark.ColdStart journal /data/cold-start 10000000
+ * generate writes a journal of <accounts> account creations followed by <history> transfers, a snapshot at that point
+ * and <tail> more transfers after it. The recovery runs load into the off-heap repository, like a large deployment would.
+ * */
+public class ColdStart {
+
+    private static final int CREATE_BATCH = 1000;
+    private static final long INITIAL_BALANCE = 1_000_000L;
+
+    public static void main(String[] args) throws Exception {
+        String mode = args[0];
+        Path directory = Paths.get(args[1]);
+        int accounts = Integer.parseInt(args[2]);
+        Path journalPath = directory.resolve("transfer.journal");
+        Path snapshotPath = directory.resolve("accounts.snapshot");
+
+        switch (mode) {
+            case "generate":
+                generate(directory, journalPath, snapshotPath, accounts, Long.parseLong(args[3]), Long.parseLong(args[4]));
+                break;
+            case "snapshot":
+                recover(journalPath, snapshotPath, accounts);
+                break;
+            case "journal":
+                recover(journalPath, null, accounts);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mode " + mode + ", expected generate, snapshot or journal.");
+        }
+    }
+
+    private static void generate(Path directory, Path journalPath, Path snapshotPath, int accounts, long history, long tail)
+            throws Exception {
+        Files.createDirectories(directory);
+        Files.deleteIfExists(journalPath);
+        Files.deleteIfExists(snapshotPath);
+        long[] balances = new long[accounts];
+        SplittableRandom random = new SplittableRandom(42);
+
+        try (TransferJournal journal = TransferJournal.open(journalPath, ignoring(), 0, TimeUnit.MICROSECONDS, 1024 * 1024)) {
+            List<Account> created = new ArrayList<>(CREATE_BATCH);
+            for (int i = 0; i < accounts; i++) {
+                balances[i] = INITIAL_BALANCE;
+                created.add(account(i, balances[i]));
+                if (created.size() == CREATE_BATCH || i == accounts - 1) {
+                    journal.appendAccounts(created);
+                    created = new ArrayList<>(CREATE_BATCH);
+                }
+            }
+            appendTransfers(journal, balances, random, history);
+            journal.awaitDurable(journal.getAppendedPosition());
+
+            long started = System.nanoTime();
+            try (AccountSnapshot.Writer writer = AccountSnapshot.create(snapshotPath, journal.getAppendedPosition())) {
+                for (int i = 0; i < accounts; i++) {
+                    writer.add(account(i, balances[i]));
+                }
+                writer.publish();
+            }
+            System.out.printf("snapshot of %d accounts written in %d ms%n", accounts,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+
+            appendTransfers(journal, balances, random, tail);
+            journal.awaitDurable(journal.getAppendedPosition());
+        }
+        System.out.printf("journal %d MB, snapshot %d MB%n", Files.size(journalPath) >> 20, Files.size(snapshotPath) >> 20);
+    }
+
+    private static void appendTransfers(TransferJournal journal, long[] balances, SplittableRandom random, long transfers) {
+        for (long t = 0; t < transfers; t++) {
+            int from = random.nextInt(balances.length);
+            int to = (from + 1 + random.nextInt(balances.length - 1)) % balances.length;
+            long amount = random.nextInt(100);
+            balances[from] -= amount;
+            balances[to] += amount;
+            journal.appendAccounts(List.of(account(from, balances[from]), account(to, balances[to])));
+        }
+    }
+
+    private static void recover(Path journalPath, Path snapshotPath, int accounts) {
+        long started = System.nanoTime();
+        AccountRepository accountRepository = new OffHeapAccountRepository(accounts);
+        JournaledAccountRepository journaledAccountRepository = JournaledAccountRepository.open(accountRepository,
+                journalPath, snapshotPath, 0, 1024 * 1024);
+        long elapsed = System.nanoTime() - started;
+        journaledAccountRepository.getJournal().close();
+
+        long[] total = new long[2];
+        accountRepository.forEachAccount(account -> {
+            total[0]++;
+            total[1] += account.getBalance();
+        });
+        System.out.printf("%s: %d accounts recovered in %d ms (balance check %s)%n",
+                snapshotPath == null ? "whole journal" : "snapshot + journal tail", total[0],
+                TimeUnit.NANOSECONDS.toMillis(elapsed), total[1] == accounts * INITIAL_BALANCE ? "ok" : "FAILED");
+    }
+
+    private static Account account(int index, long balance) {
+        return Account.builder()
+                .id(new UUID(0x5452L, index))
+                .userId("user-" + index)
+                .balance(balance)
+                .build();
+    }
+
+    private static JournalVisitor ignoring() {
+        return new JournalVisitor() {
+            @Override
+            public void onAccounts(List<Account> accounts) {
+            }
+
+            @Override
+            public void onDelete(UUID accountId) {
+            }
+
+            @Override
+            public void onDeleteAll() {
+            }
+        };
+    }
+}
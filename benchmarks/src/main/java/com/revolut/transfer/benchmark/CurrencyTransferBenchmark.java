@@ -0,0 +1,123 @@
+package com.revolut.transfer.benchmark;
+
+import com.revolut.transfer.config.TransferEngine;
+import com.revolut.transfer.converter.AccountResponseConverter;
+import com.revolut.transfer.converter.MoneyConverter;
+import com.revolut.transfer.execption.InsufficientBalanceException;
+import com.revolut.transfer.fx.FxRateTable;
+import com.revolut.transfer.fx.FxRates;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.lock.AccountLockManager;
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.repository.AccountRepository;
+import com.revolut.transfer.repository.AccountRepositoryImpl;
+import com.revolut.transfer.request.TransferMoneyRequest;
+import com.revolut.transfer.service.AccountService;
+import com.revolut.transfer.service.AccountServiceImpl;
+import com.revolut.transfer.service.HotAccounts;
+import com.revolut.transfer.service.OptimisticAccountServiceImpl;
+import com.revolut.transfer.service.ShardedAccountServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Cost of converting inside the critical section: transfers from GBP accounts to accounts in the same currency,
+ * or to EUR accounts, with the same engines and the same number of accounts.
+ * */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class CurrencyTransferBenchmark {
+
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    @Param({"locking", "optimistic", "sharded"})
+    private String engine;
+
+    @Param({"same", "cross"})
+    private String currencies;
+
+    @Param({"10000"})
+    private int accountCount;
+
+    private UUID[] fromAccountIds;
+    private UUID[] toAccountIds;
+    private AccountService accountService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        AccountRepository accountRepository = new AccountRepositoryImpl();
+        AccountResponseConverter accountResponseConverter = new AccountResponseConverter();
+        TransactionLedger transactionLedger = TransactionLedger.disabled();
+        FxRates fxRates = new FxRates(FxRateTable.of(MoneyConverter.DEFAULT_CURRENCY, Map.of(EUR, new BigDecimal("1.17"),
+                Currency.getInstance("USD"), new BigDecimal("1.27"), Currency.getInstance("JPY"), new BigDecimal("190"))));
+        switch (TransferEngine.from(engine)) {
+            case OPTIMISTIC:
+                accountService = new OptimisticAccountServiceImpl(accountRepository, accountResponseConverter, transactionLedger,
+                        fxRates);
+                break;
+            case SHARDED:
+                accountService = new ShardedAccountServiceImpl(accountRepository, accountResponseConverter,
+                        Runtime.getRuntime().availableProcessors(), transactionLedger, fxRates);
+                break;
+            default:
+                accountService = new AccountServiceImpl(accountRepository, accountResponseConverter, new AccountLockManager(),
+                        transactionLedger, HotAccounts.none(), fxRates);
+        }
+        Currency toCurrency = "cross".equals(currencies) ? EUR : MoneyConverter.DEFAULT_CURRENCY;
+        fromAccountIds = new UUID[accountCount];
+        toAccountIds = new UUID[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            fromAccountIds[i] = UUID.randomUUID();
+            toAccountIds[i] = UUID.randomUUID();
+            accountRepository.save(Account.builder()
+                    .id(fromAccountIds[i])
+                    .userId("from-" + i)
+                    .balance(1_000_000_000L)
+                    .build());
+            accountRepository.save(Account.builder()
+                    .id(toAccountIds[i])
+                    .userId("to-" + i)
+                    .balance(1_000_000_000L)
+                    .currency(toCurrency)
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public boolean transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+            accountService.transferMoney(TransferMoneyRequest.builder()
+                    .fromAccount(fromAccountIds[random.nextInt(accountCount)])
+                    .toAccount(toAccountIds[random.nextInt(accountCount)])
+                    .amount(BigDecimal.ONE)
+                    .build());
+            return true;
+        } catch (InsufficientBalanceException ex) {
+            return false;
+        }
+    }
+}
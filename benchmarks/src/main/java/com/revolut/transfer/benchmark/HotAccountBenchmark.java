@@ -0,0 +1,121 @@
+package com.revolut.transfer.benchmark;
+
+import com.revolut.transfer.converter.AccountResponseConverter;
+import com.revolut.transfer.execption.InsufficientBalanceException;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.lock.AccountLockManager;
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.repository.AccountRepository;
+import com.revolut.transfer.repository.AccountRepositoryImpl;
+import com.revolut.transfer.repository.JournaledAccountRepository;
+import com.revolut.transfer.request.TransferMoneyRequest;
+import com.revolut.transfer.service.AccountServiceImpl;
+import com.revolut.transfer.service.HotAccounts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Transfers of the locking engine where 95% of the transfers credit one merchant account and the rest are paid out
+ * of it, with the merchant account kept whole (slots 0) or split into slots.
+ * With the journal the lock of the credited account is held until the change is forced to disk, which is where
+ * a single hot lock hurts most, -p repository=journal -p journalWindowMicros=200 adds a group commit window.
+ * */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class HotAccountBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+    private static final int HOT_PERCENT = 95;
+
+    @Param({"0", "8"})
+    private int slots;
+
+    @Param({"heap", "journal"})
+    private String repository;
+
+    @Param({"0"})
+    private long journalWindowMicros;
+
+    private UUID hotAccountId;
+    private UUID[] accountIds;
+    private Path journalPath;
+    private JournaledAccountRepository journaledAccountRepository;
+    private AccountServiceImpl accountService;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        AccountRepository accountRepository = new AccountRepositoryImpl();
+        if ("journal".equals(repository)) {
+            journalPath = Files.createTempFile("hot-account-bench", ".journal");
+            journaledAccountRepository = JournaledAccountRepository.open(accountRepository, journalPath, journalWindowMicros, 1024 * 1024);
+            accountRepository = journaledAccountRepository;
+        }
+
+        hotAccountId = UUID.randomUUID();
+        accountIds = new UUID[ACCOUNTS];
+        List<Account> accounts = new ArrayList<>(ACCOUNTS + 1);
+        accounts.add(Account.builder().id(hotAccountId).userId("merchant").balance(0).build());
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountIds[i] = UUID.randomUUID();
+            accounts.add(Account.builder().id(accountIds[i]).userId("user-" + i).balance(1_000_000_000L).build());
+        }
+        accountRepository.saveAll(accounts);
+
+        HotAccounts hotAccounts = slots == 0 ? HotAccounts.none() : new HotAccounts(slots, Set.of(hotAccountId));
+        accountService = new AccountServiceImpl(accountRepository, new AccountResponseConverter(), new AccountLockManager(),
+                TransactionLedger.disabled(), hotAccounts);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (journaledAccountRepository != null) {
+            journaledAccountRepository.getJournal().close();
+            Files.deleteIfExists(journalPath);
+        }
+    }
+
+    @Benchmark
+    public boolean transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        UUID accountId = accountIds[random.nextInt(ACCOUNTS)];
+        boolean credit = random.nextInt(100) < HOT_PERCENT;
+        try {
+            accountService.transferMoney(TransferMoneyRequest.builder()
+                    .fromAccount(credit ? accountId : hotAccountId)
+                    .toAccount(credit ? hotAccountId : accountId)
+                    .amount(BigDecimal.ONE)
+                    .build());
+            return true;
+        } catch (InsufficientBalanceException ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.revolut.transfer.benchmark;
+
+import com.revolut.transfer.converter.AccountResponseConverter;
+import com.revolut.transfer.execption.InsufficientBalanceException;
+import com.revolut.transfer.idempotency.IdempotencyCache;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.lock.AccountLockManager;
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.repository.AccountRepositoryImpl;
+import com.revolut.transfer.request.TransferMoneyRequest;
+import com.revolut.transfer.service.AccountService;
+import com.revolut.transfer.service.AccountServiceImpl;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Transfers of concurrent clients of which a share are retries of recently sent requests, some of them still running,
+ * once without and once with idempotency keys. Reports throughput, how often money was moved by a retry, the hit rate of
+ * the idempotency cache, and its estimated against its measured heap bytes per entry. Not a JMH benchmark, as it needs
+ * many client threads sharing the recently sent requests:
+ *   java -Xms2g -Xmx2g -cp target/benchmarks.jar com.revolut.transfer.benchmark.IdempotentRetryLoad [seconds] [clients] [retry-rate]
+ * */
+public class IdempotentRetryLoad {
+
+    private static final int ACCOUNTS = 10_000;
+    private static final int RECENT_REQUESTS = 1024;
+    private static final int MEASURED_ENTRIES = 200_000;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        double retryRate = args.length > 2 ? Double.parseDouble(args[2]) : 0.2;
+
+        System.out.printf("duration=%ds clients=%d retry rate=%.0f%%%n", seconds, clients, retryRate * 100);
+        System.out.printf("%-16s %12s %12s %16s %10s %10s%n", "mode", "requests/s", "executed", "moved by retry", "hit rate", "coalesced");
+        run(false, seconds, clients, retryRate);
+        run(true, seconds, clients, retryRate);
+        measureEntryBytes();
+    }
+
+    private static void run(boolean withKeys, int seconds, int clients, double retryRate) throws Exception {
+        AccountRepositoryImpl accountRepository = new AccountRepositoryImpl();
+        AccountService accountService = new AccountServiceImpl(accountRepository, new AccountResponseConverter(), new AccountLockManager(),
+                TransactionLedger.disabled());
+        IdempotencyCache idempotencyCache = new IdempotencyCache(IdempotencyCache.DEFAULT_MAX_ENTRIES,
+                IdempotencyCache.DEFAULT_TTL_SECONDS, TimeUnit.SECONDS);
+        UUID[] accountIds = new UUID[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountIds[i] = UUID.randomUUID();
+            accountRepository.save(Account.builder().id(accountIds[i]).userId("user-" + i).balance(1_000_000_000L).build());
+        }
+
+        AtomicReferenceArray<SentRequest> recent = new AtomicReferenceArray<>(RECENT_REQUESTS);
+        AtomicLong sent = new AtomicLong();
+        LongAdder requests = new LongAdder();
+        LongAdder executed = new LongAdder();
+        LongAdder unique = new LongAdder();
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (running.get()) {
+                    SentRequest request = null;
+                    if (random.nextDouble() < retryRate) {
+                        request = recent.get(random.nextInt(RECENT_REQUESTS));
+                    }
+                    if (request == null) {
+                        int from = random.nextInt(ACCOUNTS);
+                        int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                        request = new SentRequest(UUID.randomUUID().toString(), TransferMoneyRequest.builder()
+                                .fromAccount(accountIds[from])
+                                .toAccount(accountIds[to])
+                                .amount(BigDecimal.ONE)
+                                .build());
+                        recent.set((int) (sent.getAndIncrement() % RECENT_REQUESTS), request);
+                        unique.increment();
+                    }
+                    TransferMoneyRequest transfer = request.transfer;
+                    try {
+                        if (withKeys) {
+                            idempotencyCache.execute("transfer", request.key, transfer, () -> {
+                                accountService.transferMoney(transfer);
+                                executed.increment();
+                                return "";
+                            }).getBody();
+                        } else {
+                            accountService.transferMoney(transfer);
+                            executed.increment();
+                        }
+                    } catch (InsufficientBalanceException ignored) {
+                    }
+                    requests.increment();
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        System.out.printf("%-16s %12.0f %12d %16d %9.1f%% %10d%n", withKeys ? "idempotency-key" : "no key",
+                requests.sum() / (double) seconds, executed.sum(), executed.sum() - unique.sum(),
+                idempotencyCache.getHitRate() * 100, idempotencyCache.getCoalesced());
+    }
+
+    /*
+    * Heap held per stored entry of a transfer request with a UUID key, against the estimate of the cache.
+    * */
+    private static void measureEntryBytes() {
+        IdempotencyCache idempotencyCache = new IdempotencyCache(MEASURED_ENTRIES, 1, TimeUnit.HOURS);
+        long before = usedHeap();
+        for (int i = 0; i < MEASURED_ENTRIES; i++) {
+            TransferMoneyRequest transfer = TransferMoneyRequest.builder()
+                    .fromAccount(UUID.randomUUID())
+                    .toAccount(UUID.randomUUID())
+                    .amount(BigDecimal.valueOf(i, 2))
+                    .build();
+            idempotencyCache.execute("transfer", UUID.randomUUID().toString(), transfer, () -> "\"Money has been transferred successfully\"");
+        }
+        long after = usedHeap();
+        System.out.printf("bytes per entry: measured %d, estimated %d%n", (after - before) / idempotencyCache.getEntries(),
+                idempotencyCache.getEstimatedBytes() / idempotencyCache.getEntries());
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static final class SentRequest {
+
+        private final String key;
+        private final TransferMoneyRequest transfer;
+
+        private SentRequest(String key, TransferMoneyRequest transfer) {
+            this.key = key;
+            this.transfer = transfer;
+        }
+    }
+}
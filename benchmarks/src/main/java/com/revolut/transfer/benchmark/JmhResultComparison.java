@@ -0,0 +1,134 @@
+package com.revolut.transfer.benchmark;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/*
+ * Compares two runs of JMH JSON results (-rf json), e.g. of the previous and the current build, see run-suites.sh:
+ * java -cp target/benchmarks.jar com.revolut.transfer.benchmark.JmhResultComparison baseline current [threshold-percent]
+ *
+ * Both arguments are a JSON result file or a directory of them. Results are matched by benchmark and parameters.
+ * A result is a regression when it is worse than the baseline by more than the threshold (default 10%) and by more
+ * than the error margins of both runs together. The exit status is 1 when there is a regression.
+ * */
+public final class JmhResultComparison {
+
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10;
+
+    private JmhResultComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: JmhResultComparison <baseline file or directory> <current file or directory> [threshold-percent]");
+            System.exit(2);
+        }
+        Map<String, Result> baseline = read(Paths.get(args[0]));
+        Map<String, Result> current = read(Paths.get(args[1]));
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+
+        int regressions = 0;
+        System.out.printf("%-90s %14s %14s %9s%n", "benchmark", "baseline", "current", "change");
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result result = entry.getValue();
+            Result before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-90s %14s %14.3f %9s  %s%n", entry.getKey(), "-", result.score, "", result.unit);
+                continue;
+            }
+            double change = (result.score - before.score) / before.score * 100;
+            double worse = result.higherIsBetter ? -change : change;
+            boolean regression = worse > threshold
+                    && Math.abs(result.score - before.score) > errorOf(result) + errorOf(before);
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf("%-90s %14.3f %14.3f %+8.1f%%  %s%s%n", entry.getKey(), before.score, result.score, change,
+                    result.unit, regression ? "  REGRESSION" : "");
+        }
+        for (String missing : baseline.keySet()) {
+            if (!current.containsKey(missing)) {
+                System.out.printf("%-90s %14.3f %14s%n", missing, baseline.get(missing).score, "-");
+            }
+        }
+        System.out.printf("%d regression(s) above %.1f%%%n", regressions, threshold);
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+    private static double errorOf(Result result) {
+        return Double.isNaN(result.scoreError) ? 0 : result.scoreError;
+    }
+
+    private static Map<String, Result> read(Path path) throws IOException {
+        Map<String, Result> results = new TreeMap<>();
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> files = Files.list(path)) {
+                for (Path file : (Iterable<Path>) files.filter(file -> file.toString().endsWith(".json")).sorted()::iterator) {
+                    readFile(file, results);
+                }
+            }
+        } else {
+            readFile(path, results);
+        }
+        return results;
+    }
+
+    private static void readFile(Path file, Map<String, Result> results) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            JsonArray runs = new JsonParser().parse(reader).getAsJsonArray();
+            for (JsonElement element : runs) {
+                JsonObject run = element.getAsJsonObject();
+                StringBuilder key = new StringBuilder(shortName(run.get("benchmark").getAsString()));
+                if (run.has("params")) {
+                    Map<String, String> params = new TreeMap<>();
+                    for (Map.Entry<String, JsonElement> param : run.getAsJsonObject("params").entrySet()) {
+                        params.put(param.getKey(), param.getValue().getAsString());
+                    }
+                    key.append(params);
+                }
+                JsonObject metric = run.getAsJsonObject("primaryMetric");
+                String mode = run.get("mode").getAsString();
+                JsonElement scoreError = metric.get("scoreError");
+                results.put(key.toString(), new Result(
+                        metric.get("score").getAsDouble(),
+                        scoreError == null || !scoreError.isJsonPrimitive() || !scoreError.getAsJsonPrimitive().isNumber()
+                                ? Double.NaN : scoreError.getAsDouble(),
+                        metric.get("scoreUnit").getAsString(),
+                        "thrpt".equals(mode)));
+            }
+        }
+    }
+
+    private static String shortName(String benchmark) {
+        int method = benchmark.lastIndexOf('.');
+        int type = benchmark.lastIndexOf('.', method - 1);
+        return benchmark.substring(type + 1);
+    }
+
+    private static final class Result {
+
+        private final double score;
+        private final double scoreError;
+        private final String unit;
+        private final boolean higherIsBetter;
+
+        private Result(double score, double scoreError, String unit, boolean higherIsBetter) {
+            this.score = score;
+            this.scoreError = scoreError;
+            this.unit = unit;
+            this.higherIsBetter = higherIsBetter;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.revolut.transfer.benchmark;
+
+import com.revolut.transfer.converter.AccountResponseConverter;
+import com.revolut.transfer.execption.InsufficientBalanceException;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.lock.AccountLockManager;
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.repository.AccountRepositoryImpl;
+import com.revolut.transfer.repository.JournaledAccountRepository;
+import com.revolut.transfer.request.TransferMoneyRequest;
+import com.revolut.transfer.service.AccountService;
+import com.revolut.transfer.service.AccountServiceImpl;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * Throughput and latency of durable transfers (locking engine over a journaled heap repository)
+ * at 1, 16 and 256 concurrent clients, together with how many transfers share one force().
+ * Not a JMH benchmark, as it needs hundreds of client threads and a latency distribution per run:
+ *   java -cp target/benchmarks.jar com.revolut.transfer.benchmark.JournalGroupCommit /data/journal-bench 10 [window-micros]
+ * Use a directory on the disk to be measured, as the numbers are dominated by its fsync latency.
+ * */
+public class JournalGroupCommit {
+
+    private static final int ACCOUNTS = 100_000;
+    private static final int[] CLIENTS = {1, 16, 256};
+    private static final int MAX_SAMPLES_PER_CLIENT = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        Path directory = Paths.get(args.length > 0 ? args[0] : "target/journal-bench");
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        long windowMicros = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        Files.createDirectories(directory);
+
+        System.out.printf("window=%dus duration=%ds directory=%s%n", windowMicros, seconds, directory.toAbsolutePath());
+        System.out.printf("%8s %12s %10s %10s %10s %12s%n", "clients", "transfers/s", "p50 us", "p99 us", "p99.9 us", "per force");
+        for (int clients : CLIENTS) {
+            run(directory.resolve("transfer-" + clients + ".journal"), clients, seconds, windowMicros);
+        }
+    }
+
+    private static void run(Path path, int clients, int seconds, long windowMicros) throws Exception {
+        Files.deleteIfExists(path);
+        JournaledAccountRepository accountRepository = JournaledAccountRepository.open(new AccountRepositoryImpl(), path,
+                windowMicros, 1024 * 1024);
+        AccountService accountService = new AccountServiceImpl(accountRepository, new AccountResponseConverter(), new AccountLockManager(),
+                TransactionLedger.disabled());
+        UUID[] accountIds = new UUID[ACCOUNTS];
+        List<Account> accounts = new ArrayList<>(ACCOUNTS);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountIds[i] = UUID.randomUUID();
+            accounts.add(Account.builder().id(accountIds[i]).userId("user-" + i).balance(1_000_000_000L).build());
+        }
+        accountRepository.saveAll(accounts);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        long[][] samples = new long[clients][];
+        int[] counts = new int[clients];
+        Thread[] threads = new Thread[clients];
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            samples[client] = new long[MAX_SAMPLES_PER_CLIENT / clients];
+            threads[client] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (running.get()) {
+                    int from = random.nextInt(ACCOUNTS);
+                    int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                    long started = System.nanoTime();
+                    try {
+                        accountService.transferMoney(TransferMoneyRequest.builder()
+                                .fromAccount(accountIds[from])
+                                .toAccount(accountIds[to])
+                                .amount(BigDecimal.ONE)
+                                .build());
+                    } catch (InsufficientBalanceException ignored) {
+                    }
+                    long[] clientSamples = samples[client];
+                    clientSamples[counts[client] % clientSamples.length] = System.nanoTime() - started;
+                    counts[client]++;
+                }
+            });
+        }
+
+        long forcesBefore = accountRepository.getJournal().getForceCount();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long forces = accountRepository.getJournal().getForceCount() - forcesBefore;
+        accountRepository.getJournal().close();
+
+        long transfers = 0;
+        List<Long> latencies = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            transfers += counts[c];
+            int kept = Math.min(counts[c], samples[c].length);
+            for (int i = 0; i < kept; i++) {
+                latencies.add(samples[c][i]);
+            }
+        }
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        System.out.printf("%8d %12.0f %10.0f %10.0f %10.0f %12.1f%n", clients, transfers / (double) seconds,
+                percentileMicros(sorted, 0.50), percentileMicros(sorted, 0.99), percentileMicros(sorted, 0.999),
+                transfers / (double) Math.max(forces, 1));
+        deleteQuietly(path);
+    }
+
+    private static double percentileMicros(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.floor(percentile * sorted.length))] / 1000.0;
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+        }
+    }
+}
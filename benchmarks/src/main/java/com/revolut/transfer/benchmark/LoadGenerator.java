@@ -0,0 +1,450 @@
+package com.revolut.transfer.benchmark;
+
+import com.google.gson.JsonParser;
+import com.revolut.transfer.MoneyTransferAPI;
+import com.revolut.transfer.metrics.LatencyRecorder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Drives the REST API end to end, to qualify a release for our traffic: seeds accounts, then sends an open-loop mix of
+ * transfers, deposits, withdrawals and reads at a fixed rate, and finally checks that no money was created or lost.
+ * Not a JMH benchmark, as it measures the whole HTTP stack:
+ *   java -cp target/benchmarks.jar com.revolut.transfer.benchmark.LoadGenerator [name=value ...]
+ * e.g. LoadGenerator rate=2000 seconds=60 accounts=10000 distribution=zipfian mix=transfer:70,deposit:10,withdraw:10,read:10
+ *
+ * target=inprocess (default) starts MoneyTransferAPI in this JVM, configured by the usual -Dtransfer.* properties;
+ * target=http://host:port sends to a running server, which must not serve other traffic for the invariant check.
+ * distribution is uniform, zipfian (the account of rank k is picked with a probability proportional to 1/k) or hotpair.
+ *
+ * == NOTE ==:
+ * Open loop: request i is due at start + i / rate whether or not the earlier ones have been answered, and its latency is
+ * measured from that time, not from when it was actually sent. A stalled server or a generator which fell behind is
+ * so charged to every request which should have been sent meanwhile, instead of being hidden by the requests that were
+ * never sent (coordinated omission). The latency from the actual send is reported beside it as "service time".
+ * Every request runs on its own virtual thread, up to max-in-flight of them; beyond that the generator waits, and the
+ * wait counts in the latency.
+ *
+ * Deposits and withdrawals are sent with an Idempotency-Key. When one has no definite answer (an I/O error, a timeout or
+ * a status other than 200, 400 or 429), it is resent with the same key after the run until it has one, so that the expected
+ * total is exact. The exit status is 1 when the total is not the expected one or when a request failed.
+ * */
+public class LoadGenerator {
+
+    private static final String IN_PROCESS = "inprocess";
+    private static final String LOCAL_URL = "http://localhost:4567";
+    private static final String[] OPERATIONS = {"transfer", "deposit", "withdraw", "read"};
+    private static final int TRANSFER = 0;
+    private static final int DEPOSIT = 1;
+    private static final int WITHDRAW = 2;
+    private static final int SEED_CONCURRENCY = 64;
+    private static final int RESOLVE_ATTEMPTS = 10;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final String baseUrl;
+    private final Duration timeout;
+    private final LatencyRecorder[] latencies = new LatencyRecorder[OPERATIONS.length];
+    private final LatencyRecorder[] serviceTimes = new LatencyRecorder[OPERATIONS.length];
+    private final LongAdder[] succeeded = new LongAdder[OPERATIONS.length];
+    private final LongAdder[] rejected = new LongAdder[OPERATIONS.length];
+    private final LongAdder[] failed = new LongAdder[OPERATIONS.length];
+    private final LongAdder deposited = new LongAdder();
+    private final LongAdder withdrawn = new LongAdder();
+    private final Queue<Unresolved> unresolved = new ConcurrentLinkedQueue<>();
+
+    private LoadGenerator(String baseUrl, Duration timeout) {
+        this.baseUrl = baseUrl;
+        this.timeout = timeout;
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            latencies[i] = new LatencyRecorder();
+            serviceTimes[i] = new LatencyRecorder();
+            succeeded[i] = new LongAdder();
+            rejected[i] = new LongAdder();
+            failed[i] = new LongAdder();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("target", IN_PROCESS);
+        options.put("accounts", "10000");
+        options.put("balance", "1000000");
+        options.put("rate", "1000");
+        options.put("seconds", "30");
+        options.put("warmup", "10");
+        options.put("mix", "transfer:70,deposit:10,withdraw:10,read:10");
+        options.put("distribution", "uniform");
+        options.put("max-in-flight", "10000");
+        options.put("timeout-seconds", "10");
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals < 0 || !options.containsKey(arg.substring(0, equals))) {
+                throw new IllegalArgumentException("Unknown argument: " + arg + ", expected one of name=value with the names "
+                        + options.keySet());
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        System.out.println(options);
+
+        String target = options.get("target");
+        if (IN_PROCESS.equals(target)) {
+            MoneyTransferAPI.main(new String[0]);
+            target = LOCAL_URL;
+        }
+        awaitPort(URI.create(target));
+
+        LoadGenerator loadGenerator = new LoadGenerator(target, Duration.ofSeconds(Long.parseLong(options.get("timeout-seconds"))));
+        BigDecimal balance = new BigDecimal(options.get("balance"));
+        String[] accountIds = loadGenerator.seed(Integer.parseInt(options.get("accounts")), balance);
+        Picker picker = new Picker(options.get("distribution"), accountIds.length);
+        int[] mix = parseMix(options.get("mix"));
+
+        double rate = Double.parseDouble(options.get("rate"));
+        int warmup = Integer.parseInt(options.get("warmup"));
+        int seconds = Integer.parseInt(options.get("seconds"));
+        long sent = loadGenerator.run(accountIds, picker, mix, rate, warmup, seconds,
+                Integer.parseInt(options.get("max-in-flight")));
+        loadGenerator.report(sent, rate, seconds);
+
+        boolean failures = loadGenerator.resolveUnresolved();
+        BigDecimal expected = balance.multiply(BigDecimal.valueOf(accountIds.length))
+                .add(BigDecimal.valueOf(loadGenerator.deposited.sum()))
+                .subtract(BigDecimal.valueOf(loadGenerator.withdrawn.sum()));
+        BigDecimal actual = loadGenerator.totalBalance(accountIds);
+        boolean conserved = expected.compareTo(actual) == 0;
+        System.out.printf("conservation: expected total %s, actual total %s: %s%n", expected.toPlainString(),
+                actual.toPlainString(), conserved ? "OK" : "VIOLATED");
+        System.exit(conserved && !failures ? 0 : 1);
+    }
+
+    private String[] seed(int accounts, BigDecimal balance) throws Exception {
+        long started = System.nanoTime();
+        String[] accountIds = new String[accounts];
+        Semaphore permits = new Semaphore(SEED_CONCURRENCY);
+        List<Exception> errors = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < accounts; i++) {
+                int number = i;
+                permits.acquire();
+                executor.execute(() -> {
+                    try {
+                        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/accounts"))
+                                .POST(HttpRequest.BodyPublishers.ofString("{\"userId\":\"load-" + UUID.randomUUID() + "-" + number
+                                        + "\",\"balance\":" + balance.toPlainString() + "}")));
+                        if (response.statusCode() != 201) {
+                            throw new IOException("Account could not be created: " + response.statusCode());
+                        }
+                        accountIds[number] = new JsonParser().parse(response.body()).getAsString();
+                    } catch (Exception ex) {
+                        synchronized (errors) {
+                            errors.add(ex);
+                        }
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new IllegalStateException(errors.size() + " accounts could not be created.", errors.get(0));
+        }
+        System.out.printf("seeded %d accounts in %d ms%n", accounts, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return accountIds;
+    }
+
+    /*
+    * @return requests sent after the warmup
+    * */
+    private long run(String[] accountIds, Picker picker, int[] mix, double rate, int warmup, int seconds, int maxInFlight)
+            throws InterruptedException {
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long total = (long) (rate * (warmup + seconds));
+        long warmupRequests = (long) (rate * warmup);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long started = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < total; i++) {
+                long due = started + (long) (i * intervalNanos);
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                inFlight.acquire();
+                boolean measured = i >= warmupRequests;
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int operation = pickOperation(mix, random.nextInt(mix[mix.length - 1]));
+                int from = picker.next(random);
+                int to = operation == TRANSFER ? picker.nextOtherThan(random, from) : -1;
+                executor.execute(() -> {
+                    try {
+                        execute(operation, accountIds, from, to, due, measured);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        return total - warmupRequests;
+    }
+
+    private void execute(int operation, String[] accountIds, int from, int to, long due, boolean measured) {
+        String idempotencyKey = operation == DEPOSIT || operation == WITHDRAW ? UUID.randomUUID().toString() : null;
+        HttpRequest.Builder request = request(operation, accountIds, from, to, idempotencyKey);
+        long sentAt = System.nanoTime();
+        int status;
+        try {
+            status = send(request).statusCode();
+        } catch (IOException | InterruptedException ex) {
+            status = -1;
+        }
+        long now = System.nanoTime();
+        if (measured) {
+            latencies[operation].record(now - due);
+            serviceTimes[operation].record(now - sentAt);
+        }
+        if (status == 200 || status == 201) {
+            succeeded[operation].increment();
+            settle(operation);
+        } else if (status == 400 || status == 429) {
+            rejected[operation].increment();
+        } else {
+            failed[operation].increment();
+            if (operation == DEPOSIT || operation == WITHDRAW) {
+                unresolved.add(new Unresolved(operation, accountIds, from, idempotencyKey));
+            }
+        }
+    }
+
+    private HttpRequest.Builder request(int operation, String[] accountIds, int from, int to, String idempotencyKey) {
+        switch (operation) {
+            case TRANSFER:
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/accounts/transfer"))
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"fromAccount\":\"" + accountIds[from] + "\",\"toAccount\":\""
+                                + accountIds[to] + "\",\"amount\":1}"));
+            case DEPOSIT:
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/accounts/deposit"))
+                        .header("Idempotency-Key", idempotencyKey)
+                        .PUT(HttpRequest.BodyPublishers.ofString("{\"accountId\":\"" + accountIds[from] + "\",\"amount\":1}"));
+            case WITHDRAW:
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/accounts/withdraw"))
+                        .header("Idempotency-Key", idempotencyKey)
+                        .PUT(HttpRequest.BodyPublishers.ofString("{\"accountId\":\"" + accountIds[from] + "\",\"amount\":1}"));
+            default:
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/accounts/" + accountIds[from])).GET();
+        }
+    }
+
+    private void settle(int operation) {
+        if (operation == DEPOSIT) {
+            deposited.increment();
+        } else if (operation == WITHDRAW) {
+            withdrawn.increment();
+        }
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return httpClient.send(request.header("Content-Type", "application/json").timeout(timeout).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    /*
+    * Resends the deposits and withdrawals without a definite answer with their Idempotency-Key: the server either runs
+    * them now or answers with the stored result of the first attempt, so each is counted exactly once.
+    * @return whether there were any failed requests
+    * */
+    private boolean resolveUnresolved() throws InterruptedException {
+        long failures = Arrays.stream(failed).mapToLong(LongAdder::sum).sum();
+        int resolved = 0;
+        for (Unresolved request : unresolved) {
+            for (int attempt = 0; attempt < RESOLVE_ATTEMPTS; attempt++) {
+                int status;
+                try {
+                    status = send(request(request.operation, request.accountIds, request.account, -1, request.idempotencyKey))
+                            .statusCode();
+                } catch (IOException ex) {
+                    status = -1;
+                }
+                if (status == 200 || status == 400) {
+                    if (status == 200) {
+                        settle(request.operation);
+                    }
+                    resolved++;
+                    break;
+                }
+                TimeUnit.MILLISECONDS.sleep(100L << Math.min(attempt, 5));
+            }
+        }
+        if (!unresolved.isEmpty()) {
+            System.out.printf("resent %d deposits and withdrawals without a definite answer, %d resolved%n", unresolved.size(),
+                    resolved);
+        }
+        if (resolved < unresolved.size()) {
+            throw new IllegalStateException((unresolved.size() - resolved) + " requests have no definite answer, the total cannot be checked.");
+        }
+        return failures > 0;
+    }
+
+    private BigDecimal totalBalance(String[] accountIds) throws IOException, InterruptedException {
+        BigDecimal total = BigDecimal.ZERO;
+        for (String accountId : accountIds) {
+            HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/accounts/" + accountId)).GET());
+            if (response.statusCode() != 200) {
+                throw new IOException("Account " + accountId + " could not be read: " + response.statusCode());
+            }
+            total = total.add(new JsonParser().parse(response.body()).getAsJsonObject().get("balance").getAsBigDecimal());
+        }
+        return total;
+    }
+
+    private void report(long sent, double rate, int seconds) {
+        long completed = 0;
+        System.out.printf("target %.0f requests/s, sent %.0f requests/s after the warmup%n", rate, sent / (double) seconds);
+        System.out.printf("%-10s %10s %10s %10s %10s %10s %10s %10s %10s %14s%n", "operation", "succeeded", "rejected", "failed",
+                "p50 ms", "p99 ms", "p99.9 ms", "max ms", "requests/s", "svc p99.9 ms");
+        LatencyRecorder all = new LatencyRecorder();
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            LatencyRecorder.Snapshot latency = latencies[i].snapshot();
+            completed += latency.getCount();
+            System.out.printf("%-10s %10d %10d %10d %10.2f %10.2f %10.2f %10.2f %10.0f %14.2f%n", OPERATIONS[i],
+                    succeeded[i].sum(), rejected[i].sum(), failed[i].sum(),
+                    millis(latency.valueAt(0.5)), millis(latency.valueAt(0.99)), millis(latency.valueAt(0.999)),
+                    millis(latency.getMaxNanos()), latency.getCount() / (double) seconds,
+                    millis(serviceTimes[i].snapshot().valueAt(0.999)));
+        }
+        System.out.printf("completed %d of %d measured requests; succeeded, rejected and failed include the warmup%n", completed, sent);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /*
+    * @return cumulative weights of transfer, deposit, withdraw and read
+    * */
+    private static int[] parseMix(String mix) {
+        int[] weights = new int[OPERATIONS.length];
+        for (String part : mix.split(",")) {
+            String[] weight = part.split(":");
+            int operation = Arrays.asList(OPERATIONS).indexOf(weight[0].trim());
+            if (operation < 0 || weight.length != 2) {
+                throw new IllegalArgumentException("Unknown operation in mix: " + part + ", expected one of " + Arrays.toString(OPERATIONS));
+            }
+            weights[operation] = Integer.parseInt(weight[1].trim());
+        }
+        for (int i = 1; i < weights.length; i++) {
+            weights[i] += weights[i - 1];
+        }
+        if (weights[weights.length - 1] <= 0) {
+            throw new IllegalArgumentException("The mix has no operations: " + mix);
+        }
+        return weights;
+    }
+
+    private static int pickOperation(int[] cumulativeWeights, int value) {
+        int operation = 0;
+        while (value >= cumulativeWeights[operation]) {
+            operation++;
+        }
+        return operation;
+    }
+
+    private static void awaitPort(URI target) throws InterruptedException {
+        for (int i = 0; i < 300; i++) {
+            try (Socket ignored = new Socket(target.getHost(), target.getPort())) {
+                return;
+            } catch (IOException ex) {
+                Thread.sleep(100);
+            }
+        }
+        throw new IllegalStateException("Server did not start: " + target);
+    }
+
+    private static final class Picker {
+
+        private final String distribution;
+        private final int accounts;
+        private double[] zipfianCumulative;
+
+        private Picker(String distribution, int accounts) {
+            if (!Arrays.asList("uniform", "zipfian", "hotpair").contains(distribution)) {
+                throw new IllegalArgumentException("Unknown distribution: " + distribution);
+            }
+            if (accounts < 2) {
+                throw new IllegalArgumentException("At least 2 accounts are needed for transfers.");
+            }
+            this.distribution = distribution;
+            this.accounts = accounts;
+            if ("zipfian".equals(distribution)) {
+                zipfianCumulative = new double[accounts];
+                double sum = 0;
+                for (int rank = 1; rank <= accounts; rank++) {
+                    sum += 1.0 / rank;
+                    zipfianCumulative[rank - 1] = sum;
+                }
+                for (int i = 0; i < accounts; i++) {
+                    zipfianCumulative[i] /= sum;
+                }
+            }
+        }
+
+        private int next(ThreadLocalRandom random) {
+            switch (distribution) {
+                case "zipfian":
+                    int index = Arrays.binarySearch(zipfianCumulative, random.nextDouble());
+                    return Math.min(index < 0 ? -index - 1 : index, accounts - 1);
+                case "hotpair":
+                    return random.nextInt(2);
+                default:
+                    return random.nextInt(accounts);
+            }
+        }
+
+        private int nextOtherThan(ThreadLocalRandom random, int account) {
+            int next = next(random);
+            while (next == account) {
+                next = next(random);
+            }
+            return next;
+        }
+    }
+
+    private static final class Unresolved {
+
+        private final int operation;
+        private final String[] accountIds;
+        private final int account;
+        private final String idempotencyKey;
+
+        private Unresolved(int operation, String[] accountIds, int account, String idempotencyKey) {
+            this.operation = operation;
+            this.accountIds = accountIds;
+            this.account = account;
+            this.idempotencyKey = idempotencyKey;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.revolut.transfer.benchmark;
+
+import com.revolut.transfer.converter.AccountResponseConverter;
+import com.revolut.transfer.execption.InsufficientBalanceException;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.lock.AccountLockManager;
+import com.revolut.transfer.metrics.LatencyRecorder;
+import com.revolut.transfer.metrics.MetricsRegistry;
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.repository.AccountRepository;
+import com.revolut.transfer.repository.AccountRepositoryImpl;
+import com.revolut.transfer.request.TransferMoneyRequest;
+import com.revolut.transfer.service.AccountService;
+import com.revolut.transfer.service.AccountServiceImpl;
+import com.revolut.transfer.service.MeteredAccountService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Cost of the metrics on the request path: a single recording, and a transfer of the locking engine with and without
+ * the MeteredAccountService around it (which also records the lock waits in both cases).
+ * Run with -prof gc, recording should add no allocation per operation.
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsRecordingBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+
+    @Param({"false", "true"})
+    private boolean metered;
+
+    private final LatencyRecorder recorder = new LatencyRecorder();
+    private UUID[] accountIds;
+    private AccountService accountService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        AccountRepository accountRepository = new AccountRepositoryImpl();
+        accountService = new AccountServiceImpl(accountRepository, new AccountResponseConverter(), new AccountLockManager(),
+                TransactionLedger.disabled());
+        if (metered) {
+            accountService = MeteredAccountService.of(accountService, new MetricsRegistry());
+        }
+        accountIds = new UUID[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountIds[i] = UUID.randomUUID();
+            accountRepository.save(Account.builder().id(accountIds[i]).userId("user-" + i).balance(1_000_000_000L).build());
+        }
+    }
+
+    @Benchmark
+    public void record() {
+        recorder.record(ThreadLocalRandom.current().nextLong(1_000_000));
+    }
+
+    @Benchmark
+    public boolean transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(ACCOUNTS);
+        int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        try {
+            accountService.transferMoney(TransferMoneyRequest.builder()
+                    .fromAccount(accountIds[from])
+                    .toAccount(accountIds[to])
+                    .amount(BigDecimal.ONE)
+                    .build());
+            return true;
+        } catch (InsufficientBalanceException ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.revolut.transfer.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * The balance arithmetic of one transfer, with BigDecimal balances and with long minor unit balances.
+ * Run with -prof gc to see allocations per transfer.
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoneyRepresentationBenchmark {
+
+    private BigDecimal decimalFrom = new BigDecimal("1000000000.00");
+    private BigDecimal decimalTo = new BigDecimal("1000000000.00");
+    private BigDecimal decimalAmount = new BigDecimal("12.34");
+
+    private long minorFrom = 100_000_000_000L;
+    private long minorTo = 100_000_000_000L;
+    private long minorAmount = 1234L;
+
+    @Benchmark
+    public BigDecimal bigDecimalTransfer() {
+        if (decimalFrom.compareTo(BigDecimal.ZERO) < 0 || decimalFrom.compareTo(decimalAmount) < 0) {
+            decimalFrom = decimalFrom.add(decimalTo);
+        }
+        decimalFrom = decimalFrom.subtract(decimalAmount);
+        decimalTo = decimalTo.add(decimalAmount);
+        return decimalFrom;
+    }
+
+    @Benchmark
+    public long minorUnitTransfer() {
+        if (minorFrom < 0 || minorFrom < minorAmount) {
+            minorFrom = Math.addExact(minorFrom, minorTo);
+        }
+        minorFrom = Math.subtractExact(minorFrom, minorAmount);
+        minorTo = Math.addExact(minorTo, minorAmount);
+        return minorFrom;
+    }
+}
@@ -0,0 +1,116 @@
+package com.revolut.transfer.benchmark;
+
+import com.google.gson.Gson;
+import com.revolut.transfer.request.BatchTransferRequest;
+import com.revolut.transfer.request.TransferMoneyRequest;
+import com.revolut.transfer.response.AccountResponse;
+import com.revolut.transfer.response.BatchTransferResponse;
+import com.revolut.transfer.response.TransferResult;
+import com.revolut.transfer.response.TransferStatus;
+import com.revolut.transfer.serialization.JsonSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Per request JSON handling of the controller: a new Gson and a body String per request,
+ * against the shared JsonSerializer reading from and writing to streams.
+ * Run with -prof gc to see allocations per request.
+ * The batch cases read and write a batch of BATCH_SIZE transfers with the shared JsonSerializer.
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RequestSerializationBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    private final JsonSerializer jsonSerializer = new JsonSerializer();
+    private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(256);
+
+    private byte[] transferBody;
+    private AccountResponse accountResponse;
+    private byte[] batchBody;
+    private BatchTransferResponse batchTransferResponse;
+
+    @Setup
+    public void setup() {
+        transferBody = ("{\"fromAccount\":\"" + UUID.randomUUID() + "\",\"toAccount\":\"" + UUID.randomUUID()
+                + "\",\"amount\":12.34}").getBytes(StandardCharsets.UTF_8);
+        accountResponse = AccountResponse.builder()
+                .accountId(UUID.randomUUID())
+                .userId("Benchmark User")
+                .balance(new BigDecimal("1000.5"))
+                .build();
+
+        StringBuilder batch = new StringBuilder("{\"atomic\":false,\"transfers\":[");
+        List<TransferResult> results = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.append(i == 0 ? "" : ",").append("{\"fromAccount\":\"").append(UUID.randomUUID())
+                    .append("\",\"toAccount\":\"").append(UUID.randomUUID()).append("\",\"amount\":").append(i + 1).append(".5}");
+            results.add(i % 10 == 0
+                    ? TransferResult.builder().index(i).status(TransferStatus.FAILED).message("Insufficient balance in account id: " + UUID.randomUUID()).build()
+                    : TransferResult.builder().index(i).status(TransferStatus.TRANSFERRED).build());
+        }
+        batchBody = batch.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+        batchTransferResponse = BatchTransferResponse.builder()
+                .transferred(BATCH_SIZE - BATCH_SIZE / 10)
+                .failed(BATCH_SIZE / 10)
+                .results(results)
+                .build();
+    }
+
+    @Benchmark
+    public TransferMoneyRequest readTransferWithNewGson() {
+        return new Gson().fromJson(new String(transferBody, StandardCharsets.UTF_8), TransferMoneyRequest.class);
+    }
+
+    @Benchmark
+    public TransferMoneyRequest readTransferWithSharedSerializer() {
+        return jsonSerializer.read(new ByteArrayInputStream(transferBody), TransferMoneyRequest.class);
+    }
+
+    @Benchmark
+    public byte[] writeAccountWithNewGson() {
+        return new Gson().toJson(accountResponse).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int writeAccountWithSharedSerializer() throws IOException {
+        outputStream.reset();
+        jsonSerializer.write(accountResponse, outputStream);
+        return outputStream.size();
+    }
+
+    @Benchmark
+    public BatchTransferRequest readBatchWithSharedSerializer() {
+        return jsonSerializer.read(new ByteArrayInputStream(batchBody), BatchTransferRequest.class);
+    }
+
+    @Benchmark
+    public int writeBatchResponseWithSharedSerializer() throws IOException {
+        outputStream.reset();
+        jsonSerializer.write(batchTransferResponse, outputStream);
+        return outputStream.size();
+    }
+}
@@ -0,0 +1,78 @@
+package com.revolut.transfer.benchmark;
+
+import com.revolut.transfer.ledger.Posting;
+import com.revolut.transfer.ledger.TransactionLedger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Cost of the transaction history: recording the two postings of a transfer, and reading a page of the history of an
+ * account with a full history, both the latest page (from the ring) and a page deep in the compacted segments.
+ *   java -jar target/benchmarks.jar TransactionLedgerBenchmark -prof gc
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionLedgerBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+
+    @Param({"50"})
+    private int pageSize;
+
+    private TransactionLedger transactionLedger;
+    private UUID[] accountIds;
+    private long deepCursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        transactionLedger = new TransactionLedger(TransactionLedger.DEFAULT_RING_SIZE, TransactionLedger.DEFAULT_RETAINED_POSTINGS);
+        accountIds = new UUID[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountIds[i] = UUID.randomUUID();
+        }
+        for (int i = 0; i < ACCOUNTS * 200; i++) {
+            transactionLedger.recordTransfer(accountIds[i % ACCOUNTS], 1_000_000 - i, accountIds[(i + 1) % ACCOUNTS], 1_000_000 + i, 1);
+        }
+        List<Posting> postings = transactionLedger.getPostings(accountIds[0], Long.MAX_VALUE, TransactionLedger.MAX_PAGE_SIZE);
+        deepCursor = postings.get(postings.size() * 3 / 4).getSequence();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordTransfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(ACCOUNTS);
+        int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        transactionLedger.recordTransfer(accountIds[from], 1_000, accountIds[to], 1_000, 1);
+    }
+
+    @Benchmark
+    public List<Posting> latestPage() {
+        return transactionLedger.getPostings(accountIds[0], Long.MAX_VALUE, pageSize);
+    }
+
+    @Benchmark
+    public List<Posting> deepPage() {
+        return transactionLedger.getPostings(accountIds[0], deepCursor, pageSize);
+    }
+}
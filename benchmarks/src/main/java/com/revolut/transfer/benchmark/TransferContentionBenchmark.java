@@ -0,0 +1,123 @@
+package com.revolut.transfer.benchmark;
+
+import com.revolut.transfer.converter.AccountResponseConverter;
+import com.revolut.transfer.execption.InsufficientBalanceException;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.lock.AccountLockManager;
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.repository.AccountRepository;
+import com.revolut.transfer.repository.AccountRepositoryImpl;
+import com.revolut.transfer.request.TransferMoneyRequest;
+import com.revolut.transfer.service.AccountServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * AccountServiceImpl under different contention, chosen by the way accounts are picked:
+ * uniform over all accounts, Zipfian (the account of rank k is picked with a probability proportional to 1/k, so a
+ * few accounts take most of the traffic) or always the same pair of accounts.
+ * readPercent of the operations are getAccount calls of an account picked the same way, the rest are transfers.
+ * */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class TransferContentionBenchmark {
+
+    @Param({"uniform", "zipfian", "hotpair"})
+    private String distribution;
+
+    @Param({"0", "90"})
+    private int readPercent;
+
+    @Param({"10000"})
+    private int accountCount;
+
+    private UUID[] accountIds;
+    private double[] zipfianCumulative;
+    private AccountServiceImpl accountService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if (!Arrays.asList("uniform", "zipfian", "hotpair").contains(distribution)) {
+            throw new IllegalArgumentException("Unknown distribution: " + distribution);
+        }
+        AccountRepository accountRepository = new AccountRepositoryImpl();
+        accountService = new AccountServiceImpl(accountRepository, new AccountResponseConverter(), new AccountLockManager(),
+                TransactionLedger.disabled());
+        accountIds = new UUID[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accountIds[i] = UUID.randomUUID();
+            accountRepository.save(Account.builder()
+                    .id(accountIds[i])
+                    .userId("user-" + i)
+                    .balance(1_000_000_000L)
+                    .build());
+        }
+
+        zipfianCumulative = new double[accountCount];
+        double sum = 0;
+        for (int rank = 1; rank <= accountCount; rank++) {
+            sum += 1.0 / rank;
+            zipfianCumulative[rank - 1] = sum;
+        }
+        for (int i = 0; i < accountCount; i++) {
+            zipfianCumulative[i] /= sum;
+        }
+    }
+
+    @Benchmark
+    public Object operation() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextInt(100) < readPercent) {
+            return accountService.getAccount(accountIds[nextAccount(random)]);
+        }
+        int from = nextAccount(random);
+        int to = nextAccount(random);
+        while (to == from) {
+            to = nextAccount(random);
+        }
+        try {
+            accountService.transferMoney(TransferMoneyRequest.builder()
+                    .fromAccount(accountIds[from])
+                    .toAccount(accountIds[to])
+                    .amount(BigDecimal.ONE)
+                    .build());
+            return Boolean.TRUE;
+        } catch (InsufficientBalanceException ex) {
+            return Boolean.FALSE;
+        }
+    }
+
+    private int nextAccount(ThreadLocalRandom random) {
+        switch (distribution) {
+            case "zipfian":
+                int index = Arrays.binarySearch(zipfianCumulative, random.nextDouble());
+                return Math.min(index < 0 ? -index - 1 : index, accountCount - 1);
+            case "hotpair":
+                return random.nextInt(2);
+            default:
+                return random.nextInt(accountCount);
+        }
+    }
+}
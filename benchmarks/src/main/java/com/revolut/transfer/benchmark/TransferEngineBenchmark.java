@@ -0,0 +1,110 @@
+package com.revolut.transfer.benchmark;
+
+import com.revolut.transfer.config.TransferEngine;
+import com.revolut.transfer.converter.AccountResponseConverter;
+import com.revolut.transfer.execption.InsufficientBalanceException;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.lock.AccountLockManager;
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.repository.AccountRepository;
+import com.revolut.transfer.repository.AccountRepositoryImpl;
+import com.revolut.transfer.request.TransferMoneyRequest;
+import com.revolut.transfer.response.AccountResponse;
+import com.revolut.transfer.service.AccountService;
+import com.revolut.transfer.service.AccountServiceImpl;
+import com.revolut.transfer.service.OptimisticAccountServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Compares the locking and optimistic engines on the same workload: transfers between random accounts
+ * running next to balance reads of random accounts.
+ * */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class TransferEngineBenchmark {
+
+    @Param({"locking", "optimistic"})
+    private String engine;
+
+    @Param({"16", "10000"})
+    private int accountCount;
+
+    /*
+    * Transaction history is off by default, -p ledgerRetainedPostings=1024 measures the engines with it.
+    * */
+    @Param({"0"})
+    private int ledgerRetainedPostings;
+
+    private UUID[] accountIds;
+    private AccountService accountService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        AccountRepository accountRepository = new AccountRepositoryImpl();
+        AccountResponseConverter accountResponseConverter = new AccountResponseConverter();
+        TransactionLedger transactionLedger = new TransactionLedger(TransactionLedger.DEFAULT_RING_SIZE, ledgerRetainedPostings);
+        if (TransferEngine.from(engine) == TransferEngine.OPTIMISTIC) {
+            accountService = new OptimisticAccountServiceImpl(accountRepository, accountResponseConverter, transactionLedger);
+        } else {
+            accountService = new AccountServiceImpl(accountRepository, accountResponseConverter, new AccountLockManager(),
+                    transactionLedger);
+        }
+        accountIds = new UUID[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accountIds[i] = UUID.randomUUID();
+            accountRepository.save(Account.builder()
+                    .id(accountIds[i])
+                    .userId("user-" + i)
+                    .balance(1_000_000_000L)
+                    .build());
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(6)
+    public boolean transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accountCount);
+        int to = (from + 1 + random.nextInt(accountCount - 1)) % accountCount;
+        try {
+            accountService.transferMoney(TransferMoneyRequest.builder()
+                    .fromAccount(accountIds[from])
+                    .toAccount(accountIds[to])
+                    .amount(BigDecimal.ONE)
+                    .build());
+            return true;
+        } catch (InsufficientBalanceException ex) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public AccountResponse read() {
+        return accountService.getAccount(accountIds[ThreadLocalRandom.current().nextInt(accountCount)]);
+    }
+}
@@ -0,0 +1,147 @@
+package com.revolut.transfer.benchmark;
+
+import com.revolut.transfer.config.TransferEngine;
+import com.revolut.transfer.converter.AccountResponseConverter;
+import com.revolut.transfer.execption.InsufficientBalanceException;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.lock.AccountLockManager;
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.repository.AccountRepository;
+import com.revolut.transfer.repository.AccountRepositoryImpl;
+import com.revolut.transfer.request.TransferMoneyRequest;
+import com.revolut.transfer.service.AccountService;
+import com.revolut.transfer.service.AccountServiceImpl;
+import com.revolut.transfer.service.OptimisticAccountServiceImpl;
+import com.revolut.transfer.service.ShardedAccountServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Transfer throughput of the engines for a growing number of caller threads, run once per thread count:
+ * java -jar target/benchmarks.jar TransferScalingBenchmark -t 8 (see scaling.sh for the 1 to 32 thread curve)
+ *
+ * transfer waits for every transfer, like an HTTP request thread does.
+ * pipelinedTransfer keeps a window of transfers in flight per caller, which only the sharded engine can do.
+ * The sharded engine runs as many shards as the machine has cores unless -Dtransfer.shards is given.
+ * */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransferScalingBenchmark {
+
+    private static final int PIPELINE_WINDOW = 64;
+
+    @Param({"locking", "optimistic", "sharded"})
+    private String engine;
+
+    @Param({"100000"})
+    private int accountCount;
+
+    /*
+    * Transaction history is off by default, -p ledgerRetainedPostings=1024 measures the engines with it.
+    * */
+    @Param({"0"})
+    private int ledgerRetainedPostings;
+
+    private UUID[] accountIds;
+    private AccountService accountService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        AccountRepository accountRepository = new AccountRepositoryImpl();
+        AccountResponseConverter accountResponseConverter = new AccountResponseConverter();
+        TransactionLedger transactionLedger = new TransactionLedger(TransactionLedger.DEFAULT_RING_SIZE, ledgerRetainedPostings);
+        switch (TransferEngine.from(engine)) {
+            case OPTIMISTIC:
+                accountService = new OptimisticAccountServiceImpl(accountRepository, accountResponseConverter, transactionLedger);
+                break;
+            case SHARDED:
+                accountService = new ShardedAccountServiceImpl(accountRepository, accountResponseConverter,
+                        Integer.getInteger("transfer.shards", Runtime.getRuntime().availableProcessors()), transactionLedger);
+                break;
+            default:
+                accountService = new AccountServiceImpl(accountRepository, accountResponseConverter, new AccountLockManager(),
+                        transactionLedger);
+        }
+        accountIds = new UUID[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accountIds[i] = UUID.randomUUID();
+            accountRepository.save(Account.builder()
+                    .id(accountIds[i])
+                    .userId("user-" + i)
+                    .balance(1_000_000_000L)
+                    .build());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Pipeline {
+        private final CompletableFuture<?>[] inFlight = new CompletableFuture<?>[PIPELINE_WINDOW];
+        private int next;
+
+        @TearDown(Level.Iteration)
+        public void drain() {
+            for (CompletableFuture<?> future : inFlight) {
+                if (future != null) {
+                    future.exceptionally(ex -> null).join();
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean transfer() {
+        try {
+            accountService.transferMoney(randomTransfer());
+            return true;
+        } catch (InsufficientBalanceException ex) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    public Object pipelinedTransfer(Pipeline pipeline) {
+        if (!(accountService instanceof ShardedAccountServiceImpl)) {
+            return transfer();
+        }
+        int slot = pipeline.next;
+        pipeline.next = (slot + 1) % PIPELINE_WINDOW;
+        CompletableFuture<?> previous = pipeline.inFlight[slot];
+        if (previous != null) {
+            previous.exceptionally(ex -> null).join();
+        }
+        pipeline.inFlight[slot] = ((ShardedAccountServiceImpl) accountService).transferMoneyAsync(randomTransfer());
+        return previous;
+    }
+
+    private TransferMoneyRequest randomTransfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accountCount);
+        int to = (from + 1 + random.nextInt(accountCount - 1)) % accountCount;
+        return TransferMoneyRequest.builder()
+                .fromAccount(accountIds[from])
+                .toAccount(accountIds[to])
+                .amount(BigDecimal.ONE)
+                .build();
+    }
+}
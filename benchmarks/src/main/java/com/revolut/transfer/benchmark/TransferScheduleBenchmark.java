@@ -0,0 +1,72 @@
+package com.revolut.transfer.benchmark;
+
+import com.revolut.transfer.schedule.TimingWheel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Cost of scheduling a transfer with pendingTransfers already pending, in the TimingWheel of the TransferScheduler and,
+ * for comparison, in a binary heap like the one of ScheduledThreadPoolExecutor, which reorders log(n) entries on
+ * every insert and removal. Deadlines are spread over a day of 100 ms ticks. Each call schedules one entry and takes
+ * one out again (cancelled in the wheel, the earliest polled from the heap), so the number pending stays the same.
+ *   java -Xmx4g -jar target/benchmarks.jar TransferScheduleBenchmark -prof gc
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+@State(Scope.Benchmark)
+public class TransferScheduleBenchmark {
+
+    private static final long START_TICK = 17_000_000_000L;
+    private static final int HORIZON_TICKS = 864_000;
+    private static final Object TRANSFER = new Object();
+
+    @Param({"0", "1000000", "10000000"})
+    private int pendingTransfers;
+
+    private final SplittableRandom random = new SplittableRandom(42);
+    private TimingWheel<Object> timingWheel;
+    private PriorityQueue<Long> heap;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        timingWheel = new TimingWheel<>(START_TICK);
+        heap = new PriorityQueue<>(pendingTransfers + 1);
+        for (int i = 0; i < pendingTransfers; i++) {
+            long deadline = nextDeadline();
+            timingWheel.schedule(TRANSFER, deadline);
+            heap.add(deadline);
+        }
+    }
+
+    @Benchmark
+    public boolean wheelScheduleAndCancel() {
+        return timingWheel.cancel(timingWheel.schedule(TRANSFER, nextDeadline()));
+    }
+
+    @Benchmark
+    public Long heapScheduleAndPoll() {
+        heap.add(nextDeadline());
+        return heap.poll();
+    }
+
+    private long nextDeadline() {
+        return START_TICK + 1 + random.nextInt(HORIZON_TICKS);
+    }
+}
@@ -2,15 +2,26 @@ package com.revolut.transfer;
 
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.revolut.transfer.config.ApplicationProperties;
 import com.revolut.transfer.config.BindingConfig;
+import com.revolut.transfer.config.HttpMode;
 import com.revolut.transfer.controller.AccountController;
-import com.revolut.transfer.execption.AccountAlreadyExistsException;
-import com.revolut.transfer.execption.AccountNotFoundException;
-import com.revolut.transfer.execption.InsufficientBalanceException;
+import com.revolut.transfer.controller.AuditController;
+import com.revolut.transfer.controller.ErrorResponse;
+import com.revolut.transfer.controller.FxController;
+import com.revolut.transfer.controller.MetricsController;
+import com.revolut.transfer.server.AsyncHttpServer;
+import com.revolut.transfer.server.VirtualThreadPool;
 import io.swagger.annotations.Info;
 import io.swagger.annotations.SwaggerDefinition;
 import io.swagger.annotations.Tag;
-import org.eclipse.jetty.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.ExceptionHandler;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
+
+import java.util.concurrent.TimeUnit;
 
 import static spark.Spark.exception;
 
@@ -24,39 +35,64 @@ import static spark.Spark.exception;
         tags = {@Tag(name = "swagger")})
 public class MoneyTransferAPI {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(MoneyTransferAPI.class);
+
+    private static AsyncHttpServer asyncHttpServer;
+
     public static void main(String[] args) {
         setExceptionHandlers();
         startApplication();
     }
 
 
-    private static void startApplication() {
+    /*
+    * Creating the controller creates the account store, which loads the snapshot and replays the journal when configured.
+    * The VIRTUAL mode only swaps the thread pool of the Spark server, which is created with the first route.
+    * The ASYNC mode serves the /accounts routes and GET /metrics, the other /metrics routes are only served by Spark.
+    * Its server is started once per JVM, like the Spark server.
+    * */
+    private static synchronized void startApplication() {
+        HttpMode httpMode = ApplicationProperties.getHttpMode();
+        if (httpMode == HttpMode.ASYNC && asyncHttpServer != null) {
+            return;
+        }
+        long started = System.nanoTime();
         Injector injector = Guice.createInjector(new BindingConfig());
-        AccountController accountController = injector.getInstance(AccountController.class);
-        accountController.registerApiRoutes();
+        if (httpMode == HttpMode.ASYNC) {
+            asyncHttpServer = injector.getInstance(AsyncHttpServer.class);
+            asyncHttpServer.start();
+        } else {
+            if (httpMode == HttpMode.VIRTUAL) {
+                EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY, new EmbeddedJettyFactory().withThreadPool(new VirtualThreadPool()));
+            }
+            AccountController accountController = injector.getInstance(AccountController.class);
+            accountController.registerApiRoutes();
+            MetricsController metricsController = injector.getInstance(MetricsController.class);
+            metricsController.registerApiRoutes();
+            FxController fxController = injector.getInstance(FxController.class);
+            fxController.registerApiRoutes();
+            AuditController auditController = injector.getInstance(AuditController.class);
+            auditController.registerApiRoutes();
+        }
+        LOGGER.info("Money transfer API started in {} ms ({} HTTP mode).", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started),
+                httpMode);
     }
 
+    /*
+    * Every exception type mapped by ErrorResponse gets its status, body and Retry-After header, the same as in the ASYNC
+    * HTTP mode.
+    * */
     private static void setExceptionHandlers() {
-        exception(AccountAlreadyExistsException.class, (ex, request, response) -> {
-            response.status(HttpStatus.CONFLICT_409);
-            response.body(ex.getMessage());
-        });
-
-        exception(AccountNotFoundException.class, (ex, request, response) -> {
-            response.status(HttpStatus.NOT_FOUND_404);
-            response.body(ex.getMessage());
-        });
-
-        exception(InsufficientBalanceException.class, (ex, request, response) -> {
-            response.status(HttpStatus.BAD_REQUEST_400);
-            response.body(ex.getMessage());
-        });
-
-        exception(IllegalArgumentException.class, (ex, request, response) -> {
-            response.status(HttpStatus.BAD_REQUEST_400);
-            response.body(ex.getMessage());
-        });
-
-
+        ExceptionHandler<Exception> handler = (ex, request, response) -> {
+            ErrorResponse errorResponse = ErrorResponse.of(ex);
+            response.status(errorResponse.getStatus());
+            if (errorResponse.getRetryAfterSeconds() > 0) {
+                response.header(ErrorResponse.RETRY_AFTER_HEADER, String.valueOf(errorResponse.getRetryAfterSeconds()));
+            }
+            response.body(errorResponse.getBody());
+        };
+        for (Class<? extends Exception> type : ErrorResponse.getMappedTypes()) {
+            exception(type, handler);
+        }
     }
 }
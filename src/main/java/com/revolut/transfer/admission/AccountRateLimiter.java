@@ -0,0 +1,122 @@
+package com.revolut.transfer.admission;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/*
+ * == NOTE ==:
+ * A token bucket per account, kept as a single long: the time at which the bucket will be full again (the "theoretical
+ * arrival time" of the generic cell rate algorithm). Every admitted request pushes it one interval further, starting
+ * from now when it lies in the past; a request which would push it more than the burst beyond now is rejected and the
+ * time is left as it is. Admitting a request is so one compare and set of that long, without any lock, and a flooded
+ * account only ever contends on its own bucket.
+ *
+ * A bucket whose time lies in the past is full, which is exactly the state of a bucket not in the table at all, so
+ * buckets which have been idle for a while are evicted without changing any decision. They are swept on the calling
+ * thread, at most once per idle time and by one thread at a time. A request which got its bucket just before the sweep
+ * removed it is charged to the removed bucket, which lets at most one request more through.
+ * */
+public class AccountRateLimiter {
+
+    public static final long DEFAULT_IDLE_SECONDS = 60;
+
+    private final ConcurrentHashMap<UUID, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final long idleNanos;
+    private final LongSupplier nanoClock;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final LongAdder evictions = new LongAdder();
+    private volatile long nextEviction;
+
+    /**
+     * @param ratePerSecond requests of one account admitted per second in the long run
+     * @param burst         requests of one account admitted at once after it has been idle
+     * @param idle          time after which the bucket of an idle account is evicted
+     */
+    public AccountRateLimiter(double ratePerSecond, int burst, long idle, TimeUnit unit) {
+        this(ratePerSecond, burst, idle, unit, System::nanoTime);
+    }
+
+    AccountRateLimiter(double ratePerSecond, int burst, long idle, TimeUnit unit, LongSupplier nanoClock) {
+        if (ratePerSecond <= 0 || burst <= 0 || idle <= 0) {
+            throw new IllegalArgumentException("Account rate, burst and idle time should be positive.");
+        }
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond));
+        this.burstNanos = Math.multiplyExact(intervalNanos, (long) burst);
+        this.idleNanos = unit.toNanos(idle);
+        this.nanoClock = nanoClock;
+        this.nextEviction = nanoClock.getAsLong() + idleNanos;
+    }
+
+    /**
+     * @return 0 when the request is admitted, otherwise the nanoseconds until the next request of the account would be
+     */
+    public long tryAcquire(UUID accountId) {
+        long now = nanoClock.getAsLong();
+        if (now - nextEviction >= 0) {
+            evictIdle(now);
+        }
+        AtomicLong bucket = buckets.get(accountId);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(accountId, id -> new AtomicLong(now));
+        }
+        while (true) {
+            long fullAt = bucket.get();
+            long next = (fullAt - now > 0 ? fullAt : now) + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Gives back the token of a request admitted by {@link #tryAcquire(UUID)} which did not run after all, e.g. because
+     * the limit of calls in flight turned it away. A bucket which has been evicted meanwhile is full already.
+     */
+    public void refund(UUID accountId) {
+        AtomicLong bucket = buckets.get(accountId);
+        if (bucket != null) {
+            bucket.addAndGet(-intervalNanos);
+        }
+    }
+
+    public long getTrackedAccounts() {
+        return buckets.size();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private void evictIdle(long now) {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            if (now - nextEviction < 0) {
+                return;
+            }
+            long idleSince = now - idleNanos;
+            buckets.values().removeIf(bucket -> {
+                boolean idle = bucket.get() - idleSince <= 0;
+                if (idle) {
+                    evictions.increment();
+                }
+                return idle;
+            });
+            nextEviction = now + idleNanos;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+}
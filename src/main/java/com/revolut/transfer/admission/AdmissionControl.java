@@ -0,0 +1,81 @@
+package com.revolut.transfer.admission;
+
+import com.revolut.transfer.execption.AccountThrottledException;
+import com.revolut.transfer.execption.ServiceOverloadedException;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Decides whether a call may reach the engine at all, before it takes any lock: first the bucket of the account, so a
+ * flooded account is turned away without touching anything shared, then the limit of calls in flight over all accounts.
+ * A call turned away by that limit gets its token back, so an overload does not throttle the accounts whose calls never
+ * ran. Either may be switched off, see ApplicationProperties.
+ * */
+public class AdmissionControl {
+
+    private final AccountRateLimiter accountRateLimiter;
+    private final ConcurrencyLimit concurrencyLimit;
+
+    /**
+     * @param accountRateLimiter null admits every account at any rate
+     * @param concurrencyLimit   null admits any number of calls in flight
+     */
+    public AdmissionControl(AccountRateLimiter accountRateLimiter, ConcurrencyLimit concurrencyLimit) {
+        this.accountRateLimiter = accountRateLimiter;
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    public static AdmissionControl disabled() {
+        return new AdmissionControl(null, null);
+    }
+
+    public boolean isEnabled() {
+        return accountRateLimiter != null || concurrencyLimit != null;
+    }
+
+    /**
+     * @param accountId account the call is charged to, null to only count it in flight
+     * @return time the call was admitted, to be handed to release once it is done
+     * @throws AccountThrottledException   when the account sent more than its rate
+     * @throws ServiceOverloadedException when too many calls are in flight
+     */
+    public long admit(UUID accountId) {
+        boolean charged = accountRateLimiter != null && accountId != null;
+        if (charged) {
+            long waitNanos = accountRateLimiter.tryAcquire(accountId);
+            if (waitNanos > 0) {
+                throw new AccountThrottledException("Too many requests for account id: " + accountId,
+                        Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1)));
+            }
+        }
+        if (concurrencyLimit != null && !concurrencyLimit.tryAcquire()) {
+            if (charged) {
+                accountRateLimiter.refund(accountId);
+            }
+            throw new ServiceOverloadedException("Too many requests in flight, please retry later.");
+        }
+        return System.nanoTime();
+    }
+
+    public void release(long admittedAt) {
+        if (concurrencyLimit != null) {
+            concurrencyLimit.release(System.nanoTime() - admittedAt);
+        }
+    }
+
+    /**
+     * @return the current limit of calls in flight, 0 when there is none
+     */
+    public int getConcurrencyLimit() {
+        return concurrencyLimit == null ? 0 : concurrencyLimit.getLimit();
+    }
+
+    public int getInFlight() {
+        return concurrencyLimit == null ? 0 : concurrencyLimit.getInFlight();
+    }
+
+    public long getTrackedAccounts() {
+        return accountRateLimiter == null ? 0 : accountRateLimiter.getTrackedAccounts();
+    }
+}
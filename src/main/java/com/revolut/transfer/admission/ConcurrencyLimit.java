@@ -0,0 +1,139 @@
+package com.revolut.transfer.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/*
+ * == NOTE ==:
+ * Limit of the calls in flight over all accounts, adapted to their latency like a gradient limiter: once per window the
+ * average latency of the window is compared with a long-term average. While they are alike the limit grows by about
+ * its square root, the queue a server may hold without hurting latency; when the window is slower the limit shrinks in
+ * proportion, by at most half. Changes are smoothed, so a single slow window, e.g. a GC pause, moves the limit a little.
+ * When the window is much faster than the long-term average, as after an overload, the average follows it down quickly.
+ *
+ * The limit starts at its maximum, so a server which has just started turns nothing away, and is not raised while less
+ * than half of it was used in the window, since latency then tells nothing about what more calls would cost.
+ *
+ * Acquiring is a compare and set of the counter in flight. Latencies are summed in adders and the window is closed by
+ * the first call which finds it over and gets the lock, so no call waits for another.
+ * */
+public class ConcurrencyLimit {
+
+    public static final int DEFAULT_MIN_LIMIT = 8;
+
+    static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    static final int MIN_WINDOW_SAMPLES = 10;
+
+    private static final double SMOOTHING = 0.2;
+    private static final double TOLERANCE = 1.5;
+    private static final int LONG_TERM_WINDOWS = 100;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final LongSupplier nanoClock;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger windowPeak = new AtomicInteger();
+    private final LongAdder windowLatency = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final ReentrantLock windowLock = new ReentrantLock();
+    private volatile int limit;
+    private volatile long windowEnd;
+
+    /*
+    * Guarded by windowLock.
+    * */
+    private double estimatedLimit;
+    private double longTermLatency;
+
+    public ConcurrencyLimit(int minLimit, int maxLimit) {
+        this(minLimit, maxLimit, System::nanoTime);
+    }
+
+    ConcurrencyLimit(int minLimit, int maxLimit, LongSupplier nanoClock) {
+        if (minLimit <= 0 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Concurrency limits should be positive, the maximum at least the minimum.");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.nanoClock = nanoClock;
+        this.limit = maxLimit;
+        this.estimatedLimit = maxLimit;
+        this.windowEnd = nanoClock.getAsLong() + WINDOW_NANOS;
+    }
+
+    /**
+     * @return whether the call may run, in which case it has to be released
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                if (current >= windowPeak.get()) {
+                    windowPeak.accumulateAndGet(current + 1, Math::max);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param latencyNanos time the call took, since it was acquired
+     */
+    public void release(long latencyNanos) {
+        inFlight.decrementAndGet();
+        windowLatency.add(latencyNanos);
+        windowSamples.increment();
+        long now = nanoClock.getAsLong();
+        if (now - windowEnd >= 0 && windowLock.tryLock()) {
+            try {
+                if (now - windowEnd >= 0) {
+                    closeWindow(now);
+                }
+            } finally {
+                windowLock.unlock();
+            }
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /*
+    * A window with too few calls is extended, an average of a handful of calls says little.
+    * */
+    private void closeWindow(long now) {
+        windowEnd = now + WINDOW_NANOS;
+        if (windowSamples.sum() < MIN_WINDOW_SAMPLES) {
+            return;
+        }
+        long samples = windowSamples.sumThenReset();
+        double latency = (double) windowLatency.sumThenReset() / samples;
+        if (longTermLatency == 0) {
+            longTermLatency = latency;
+        } else {
+            longTermLatency += (latency - longTermLatency) / LONG_TERM_WINDOWS;
+            if (longTermLatency > 2 * latency) {
+                longTermLatency *= 0.95;
+            }
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longTermLatency / Math.max(latency, 1)));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        int peak = windowPeak.getAndSet(inFlight.get());
+        if (newLimit > estimatedLimit && peak < estimatedLimit / 2) {
+            return;
+        }
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING));
+        limit = (int) estimatedLimit;
+    }
+}
@@ -0,0 +1,41 @@
+package com.revolut.transfer.audit;
+
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.repository.AccountRepository;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/*
+ * The accounts of the watched repository as they were at one cut, see ConservationAuditor.readAtCut. Only valid while
+ * the reader passed to it runs.
+ * */
+public final class AccountsAtCut {
+
+    private final AccountRepository accountRepository;
+    private final BalanceCut balanceCut;
+
+    AccountsAtCut(AccountRepository accountRepository, BalanceCut balanceCut) {
+        this.accountRepository = accountRepository;
+        this.balanceCut = balanceCut;
+    }
+
+    /**
+     * Walks the store and passes every account which existed at the cut, as it was then.
+     */
+    public void forEach(Consumer<Account> action) {
+        accountRepository.forEachAccount(read -> {
+            Account account = balanceCut.accountAt(read.getId(), read, accountRepository);
+            if (account != null) {
+                action.accept(account);
+            }
+        });
+    }
+
+    /**
+     * @return the account as it was at the cut, null when it did not exist then
+     */
+    public Account get(UUID accountId) {
+        return balanceCut.accountAt(accountId, accountRepository.getAccountById(accountId), accountRepository);
+    }
+}
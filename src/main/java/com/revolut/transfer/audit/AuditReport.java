@@ -0,0 +1,98 @@
+package com.revolut.transfer.audit;
+
+import java.util.Currency;
+import java.util.List;
+
+/*
+ * Outcome of one audit, amounts in minor units. The sum of the balances and the amount in flight of a currency is
+ * expected to be the sum of the balances at the first audit plus all external flows and conversions since.
+ * */
+public final class AuditReport {
+
+    private final long auditedAtMillis;
+    private final long durationNanos;
+    private final long accounts;
+    private final List<Totals> currencies;
+
+    AuditReport(long auditedAtMillis, long durationNanos, long accounts, List<Totals> currencies) {
+        this.auditedAtMillis = auditedAtMillis;
+        this.durationNanos = durationNanos;
+        this.accounts = accounts;
+        this.currencies = List.copyOf(currencies);
+    }
+
+    public long getAuditedAtMillis() {
+        return auditedAtMillis;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * Accounts in the cut, internal accounts of the engine included.
+     */
+    public long getAccounts() {
+        return accounts;
+    }
+
+    public List<Totals> getCurrencies() {
+        return currencies;
+    }
+
+    /**
+     * @return true when no money has been created or lost in any currency
+     */
+    public boolean isBalanced() {
+        for (Totals totals : currencies) {
+            if (totals.getDiscrepancy() != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static final class Totals {
+
+        private final Currency currency;
+        private final long balance;
+        private final long inFlight;
+        private final long expected;
+
+        Totals(Currency currency, long balance, long inFlight, long expected) {
+            this.currency = currency;
+            this.balance = balance;
+            this.inFlight = inFlight;
+            this.expected = expected;
+        }
+
+        public Currency getCurrency() {
+            return currency;
+        }
+
+        /**
+         * Sum of the balances of all accounts in the currency at the cut.
+         */
+        public long getBalance() {
+            return balance;
+        }
+
+        /**
+         * Debited by transfers and not credited yet at the cut.
+         */
+        public long getInFlight() {
+            return inFlight;
+        }
+
+        public long getExpected() {
+            return expected;
+        }
+
+        /**
+         * Money created (positive) or lost (negative).
+         */
+        public long getDiscrepancy() {
+            return balance + inFlight - expected;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.revolut.transfer.audit;
+
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.repository.AccountRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/*
+ * The repository of the engines when audits are run. While an audit walks the store, every change after its cut keeps
+ * the changed account first, see BalanceCut. Otherwise each write only reads one volatile field more.
+ * */
+class AuditedAccountRepository implements AccountRepository {
+
+    private final AccountRepository accountRepository;
+    private final ConservationAuditor conservationAuditor;
+
+    AuditedAccountRepository(AccountRepository accountRepository, ConservationAuditor conservationAuditor) {
+        this.accountRepository = accountRepository;
+        this.conservationAuditor = conservationAuditor;
+    }
+
+    @Override
+    public void save(Account account) {
+        keep(account);
+        accountRepository.save(account);
+    }
+
+    @Override
+    public void saveAll(Collection<Account> accounts) {
+        accounts.forEach(this::keep);
+        accountRepository.saveAll(accounts);
+    }
+
+    @Override
+    public boolean saveIfUserAbsent(Account account) {
+        keep(account);
+        return accountRepository.saveIfUserAbsent(account);
+    }
+
+    @Override
+    public List<Account> saveAllIfUsersAbsent(Collection<Account> accounts) {
+        accounts.forEach(this::keep);
+        return accountRepository.saveAllIfUsersAbsent(accounts);
+    }
+
+    /*
+    * A compare and set which leaves the balance as it is, e.g. a claim of the optimistic engine, does not need the
+    * account to be kept.
+    * */
+    @Override
+    public boolean replace(Account expected, Account updated) {
+        BalanceCut cut = expected.getBalance() == updated.getBalance() ? null : conservationAuditor.cutToKeep();
+        if (cut == null) {
+            return accountRepository.replace(expected, updated);
+        }
+        BalanceCut.KeptAccount pending = cut.keepPending(expected);
+        boolean replaced = false;
+        try {
+            replaced = accountRepository.replace(expected, updated);
+            return replaced;
+        } finally {
+            cut.settle(pending, replaced);
+        }
+    }
+
+    @Override
+    public <T> T durably(Supplier<T> changes) {
+        return accountRepository.durably(changes);
+    }
+
+    @Override
+    public CompletableFuture<Void> durablyAsync(Runnable changes) {
+        return accountRepository.durablyAsync(changes);
+    }
+
+    @Override
+    public Account getAccountById(UUID accountId) {
+        return accountRepository.getAccountById(accountId);
+    }
+
+    @Override
+    public Collection<Account> getAllAccounts() {
+        return accountRepository.getAllAccounts();
+    }
+
+    @Override
+    public void forEachAccount(Consumer<Account> action) {
+        accountRepository.forEachAccount(action);
+    }
+
+    @Override
+    public List<Account> getAccountsAfter(UUID after, int limit) {
+        return accountRepository.getAccountsAfter(after, limit);
+    }
+
+    @Override
+    public long size() {
+        return accountRepository.size();
+    }
+
+    @Override
+    public void deleteAccount(UUID accountId) {
+        BalanceCut cut = conservationAuditor.cutToKeep();
+        if (cut != null) {
+            cut.keep(accountId, () -> accountRepository.getAccountById(accountId));
+        }
+        accountRepository.deleteAccount(accountId);
+    }
+
+    /*
+    * The flows recorded so far are about the deleted accounts, the next audit starts over.
+    * */
+    @Override
+    public void deleteAllAccounts() {
+        accountRepository.deleteAllAccounts();
+        conservationAuditor.reset();
+    }
+
+    @Override
+    public boolean isUserExists(String userId) {
+        return accountRepository.isUserExists(userId);
+    }
+
+    private void keep(Account account) {
+        BalanceCut cut = conservationAuditor.cutToKeep();
+        if (cut != null) {
+            cut.keep(account.getId(), () -> accountRepository.getAccountById(account.getId()));
+        }
+    }
+}
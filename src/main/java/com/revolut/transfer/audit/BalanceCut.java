@@ -0,0 +1,137 @@
+package com.revolut.transfer.audit;
+
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.repository.AccountRepository;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/*
+ * == NOTE ==:
+ * The accounts as they were at the cut of one audit. Only accounts changed after the cut, while the audit walks the
+ * store, are kept: the first change of an account after the cut keeps the account as it was before the change
+ * (or that it did not exist), every later change finds it kept already. An account which is not kept has not been
+ * changed after the cut, so the store still holds it as it was at the cut.
+ *
+ * A change by compare and set does not know whether it will happen. Its account is kept pending, and dropped again
+ * when the compare and set fails. The walk waits for a pending account to be settled, which takes no longer than one
+ * compare and set.
+ * */
+final class BalanceCut {
+
+    private static final int SPINS_BEFORE_YIELD = 64;
+
+    private final long epoch;
+    private final ConcurrentHashMap<UUID, KeptAccount> keptAccounts = new ConcurrentHashMap<>();
+
+    BalanceCut(long epoch) {
+        this.epoch = epoch;
+    }
+
+    /**
+     * Last epoch of the operations which are part of the cut.
+     */
+    long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Keeps the stored account before its first change after the cut. The caller holds the account, so nobody else
+     * saves it until the change is saved, a compare and set of it in progress is settled first.
+     *
+     * @param stored reads the stored account, null when it does not exist
+     */
+    void keep(UUID accountId, Supplier<Account> stored) {
+        while (true) {
+            KeptAccount kept = keptAccounts.get(accountId);
+            if (kept == null) {
+                if (keptAccounts.putIfAbsent(accountId, new KeptAccount(stored.get(), KeptAccount.KEPT)) == null) {
+                    return;
+                }
+            } else if (kept.awaitSettled() == KeptAccount.KEPT) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Keeps the expected account of a compare and set before it is tried. Another compare and set of the account in
+     * progress is settled first: only once it failed may this one be the first change after the cut.
+     *
+     * @return the pending account to settle with the outcome, null when the account has been kept before
+     */
+    KeptAccount keepPending(Account expected) {
+        while (true) {
+            KeptAccount kept = keptAccounts.get(expected.getId());
+            if (kept == null) {
+                KeptAccount pending = new KeptAccount(expected, KeptAccount.PENDING);
+                if (keptAccounts.putIfAbsent(expected.getId(), pending) == null) {
+                    return pending;
+                }
+            } else if (kept.awaitSettled() == KeptAccount.KEPT) {
+                return null;
+            }
+        }
+    }
+
+    void settle(KeptAccount pending, boolean replaced) {
+        if (pending == null) {
+            return;
+        }
+        if (replaced) {
+            pending.state = KeptAccount.KEPT;
+        } else {
+            keptAccounts.remove(pending.account.getId(), pending);
+            pending.state = KeptAccount.DROPPED;
+        }
+    }
+
+    /**
+     * The account as it was at the cut, given the account read from the store. The store is read before the kept
+     * accounts are looked up, so a change saved after the read has kept the account already.
+     *
+     * @return null when the account did not exist at the cut
+     */
+    Account accountAt(UUID accountId, Account read, AccountRepository accountRepository) {
+        Account current = read;
+        while (true) {
+            KeptAccount kept = keptAccounts.get(accountId);
+            if (kept == null) {
+                return current;
+            }
+            if (kept.awaitSettled() == KeptAccount.KEPT) {
+                return kept.account;
+            }
+            current = accountRepository.getAccountById(accountId);
+        }
+    }
+
+    static final class KeptAccount {
+
+        static final int PENDING = 0;
+        static final int KEPT = 1;
+        static final int DROPPED = 2;
+
+        private final Account account;
+        private volatile int state;
+
+        private KeptAccount(Account account, int state) {
+            this.account = account;
+            this.state = state;
+        }
+
+        private int awaitSettled() {
+            int spins = 0;
+            int current;
+            while ((current = state) == PENDING) {
+                if (spins++ < SPINS_BEFORE_YIELD) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+            return current;
+        }
+    }
+}
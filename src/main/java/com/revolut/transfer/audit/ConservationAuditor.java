@@ -0,0 +1,396 @@
+package com.revolut.transfer.audit;
+
+import com.revolut.transfer.repository.AccountRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/*
+ * == NOTE ==:
+ * Checks that money is conserved while transfers go on: per currency, the sum of all balances (plus the amount
+ * debited and not credited yet) only changes by external flows, i.e. deposits, withdrawals and the opening balances
+ * of new accounts, and by the conversions of transfers between currencies. Engines report those flows as they happen,
+ * into striped LongAdders, and an audit compares their running totals with the balances.
+ *
+ * The balances have to be summed at one point in time, without stopping traffic. Every change of accounts is an
+ * operation of the current epoch: engines enter it where they hold the changed accounts and exit once the change and
+ * its flows have been recorded. An audit opens a cut and moves on to the next epoch. Operations of the previous epoch
+ * are all before the cut, the audit waits until none of them is running anymore, and operations of the new epoch are
+ * all after the cut. Those keep every account they change first as it was before (see BalanceCut), so the audit can
+ * walk the whole store at its own pace and sum every account as it was at the cut.
+ *
+ * Entering and exiting an epoch is one atomic increment and decrement of a counter padded to its own cache line,
+ * picked by thread, and flows are LongAdders of the epoch, so operations never contend on the auditor. While no audit
+ * walks, nothing is kept. A walk costs one pass over the store per audit, whatever the number of accounts, and holds
+ * only the accounts changed meanwhile, so at 10M accounts the cost is bounded by the interval between audits.
+ *
+ * The first audit takes the balances as they are as baseline, the money in the store before flows were recorded
+ * (e.g. recovered from the journal). Deleting all accounts starts over with a new baseline.
+ *
+ * Balance snapshots of the engines are read at a cut the same way (readAtCut), so they stop no writer either. Every cut
+ * closes an epoch and drains its flows, whether it is taken for an audit or not.
+ * */
+public class ConservationAuditor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConservationAuditor.class);
+
+    /*
+    * 16 longs are 128 bytes, so two counters never share a cache line, nor adjacent lines prefetched together.
+    * */
+    private static final int PADDING = 16;
+    private static final int STRIPES = Math.max(8, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1);
+    private static final int SPINS_BEFORE_YIELD = 64;
+    private static final int YIELDS_BEFORE_PARK = 16;
+    private static final long PARK_NANOS = 10_000;
+
+    private final boolean enabled;
+    private final AtomicLongArray running = new AtomicLongArray(STRIPES * 2 * PADDING);
+    private final ThreadLocal<Operation> operations = ThreadLocal.withInitial(Operation::new);
+    private final Flows[] flows = {new Flows(), new Flows()};
+
+    private volatile long epoch = 1;
+    private volatile BalanceCut cut;
+    private volatile AuditReport lastReport;
+    private volatile AccountRepository accountRepository;
+
+    private final Map<Currency, Long> externalTotals = new HashMap<>();
+    private final Map<Currency, Long> conversionTotals = new HashMap<>();
+    private final Map<Currency, Long> inFlightTotals = new HashMap<>();
+    private Map<Currency, Long> baseline;
+    private volatile long audits;
+    private ScheduledExecutorService auditScheduler;
+
+    public ConservationAuditor() {
+        this(true);
+    }
+
+    private ConservationAuditor(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Auditor for engines which are not audited: operations and flows are not tracked and audits can not be run.
+     */
+    public static ConservationAuditor disabled() {
+        return new ConservationAuditor(false);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Wraps the repository of the engines, which is the one walked by audits. Every change of accounts has to go
+     * through the returned repository.
+     */
+    public AccountRepository watch(AccountRepository accountRepository) {
+        if (!enabled) {
+            return accountRepository;
+        }
+        this.accountRepository = accountRepository;
+        return new AuditedAccountRepository(accountRepository, this);
+    }
+
+    /**
+     * Starts an operation which changes accounts, in the current epoch. The caller holds the accounts it changes
+     * and calls {@link #exit()} after the change and its flows have been recorded. Operations may be nested,
+     * a nested one is part of the outer one.
+     */
+    public void enter() {
+        if (!enabled) {
+            return;
+        }
+        Operation operation = operations.get();
+        if (operation.depth++ > 0) {
+            return;
+        }
+        int stripe = stripeOf(Thread.currentThread());
+        while (true) {
+            long current = epoch;
+            int index = indexOf(stripe, current);
+            running.incrementAndGet(index);
+            /*
+            * An audit which moved on meanwhile may have seen this counter at 0 already, the operation belongs to the new epoch then.
+            * */
+            if (epoch == current) {
+                operation.epoch = current;
+                operation.index = index;
+                return;
+            }
+            running.decrementAndGet(index);
+        }
+    }
+
+    public void exit() {
+        if (!enabled) {
+            return;
+        }
+        Operation operation = operations.get();
+        if (--operation.depth == 0) {
+            running.decrementAndGet(operation.index);
+            operation.epoch = 0;
+        }
+    }
+
+    /**
+     * Money which entered (positive) or left (negative) the store, within an operation.
+     */
+    public void recordFlow(Currency currency, long amount) {
+        if (enabled && amount != 0) {
+            Flows current = flows[parityOf(currentEpoch())];
+            current.add(current.external, currency, amount);
+        }
+    }
+
+    /**
+     * A debit of one currency credited in another, within an operation.
+     */
+    public void recordConversion(Currency from, long debited, Currency to, long credited) {
+        if (enabled && from != to) {
+            Flows current = flows[parityOf(currentEpoch())];
+            current.add(current.conversions, from, -debited);
+            current.add(current.conversions, to, credited);
+        }
+    }
+
+    /**
+     * Money debited and not credited yet (positive) or credited or refunded (negative), within an operation.
+     */
+    public void recordInFlight(Currency currency, long amount) {
+        if (enabled && amount != 0) {
+            Flows current = flows[parityOf(currentEpoch())];
+            current.add(current.inFlight, currency, amount);
+        }
+    }
+
+    /**
+     * Takes a cut of the balances and checks them against the flows. Only one audit runs at a time, changes of
+     * accounts go on meanwhile.
+     *
+     * @throws IllegalStateException when the auditor is disabled or watches no repository
+     */
+    public synchronized AuditReport audit() {
+        long started = System.nanoTime();
+        Map<Currency, Long> balances = new HashMap<>();
+        long accounts = readAtCut(accountsAtCut -> {
+            long[] count = new long[1];
+            accountsAtCut.forEach(account -> {
+                balances.merge(account.getCurrency(), account.getBalance(), Long::sum);
+                count[0]++;
+            });
+            return count[0];
+        });
+
+        Set<Currency> currencies = new HashSet<>(balances.keySet());
+        currencies.addAll(externalTotals.keySet());
+        currencies.addAll(conversionTotals.keySet());
+        currencies.addAll(inFlightTotals.keySet());
+        if (baseline == null) {
+            baseline = new HashMap<>();
+            for (Currency currency : currencies) {
+                baseline.put(currency, balances.getOrDefault(currency, 0L) + inFlightTotals.getOrDefault(currency, 0L)
+                        - externalTotals.getOrDefault(currency, 0L) - conversionTotals.getOrDefault(currency, 0L));
+            }
+        }
+        currencies.addAll(baseline.keySet());
+
+        List<AuditReport.Totals> totals = new ArrayList<>(currencies.size());
+        for (Currency currency : currencies) {
+            long expected = baseline.getOrDefault(currency, 0L) + externalTotals.getOrDefault(currency, 0L)
+                    + conversionTotals.getOrDefault(currency, 0L);
+            totals.add(new AuditReport.Totals(currency, balances.getOrDefault(currency, 0L),
+                    inFlightTotals.getOrDefault(currency, 0L), expected));
+        }
+        totals.sort((left, right) -> left.getCurrency().getCurrencyCode().compareTo(right.getCurrency().getCurrencyCode()));
+        AuditReport report = new AuditReport(System.currentTimeMillis(), System.nanoTime() - started, accounts, totals);
+        audits++;
+        lastReport = report;
+        return report;
+    }
+
+    /**
+     * Opens a cut and passes the accounts as they were at it to the reader, while changes of accounts go on. Only one
+     * cut is open at a time, audits included.
+     *
+     * @throws IllegalStateException when the auditor is disabled or watches no repository
+     */
+    public synchronized <T> T readAtCut(Function<AccountsAtCut, T> reader) {
+        AccountRepository repository = accountRepository;
+        if (!enabled || repository == null) {
+            throw new IllegalStateException("No repository is audited.");
+        }
+        BalanceCut balanceCut = new BalanceCut(epoch);
+        cut = balanceCut;
+        epoch = balanceCut.getEpoch() + 1;
+        try {
+            awaitOperations(balanceCut.getEpoch());
+            Flows previous = flows[parityOf(balanceCut.getEpoch())];
+            previous.drainInto(previous.external, externalTotals);
+            previous.drainInto(previous.conversions, conversionTotals);
+            previous.drainInto(previous.inFlight, inFlightTotals);
+            return reader.apply(new AccountsAtCut(repository, balanceCut));
+        } finally {
+            cut = null;
+        }
+    }
+
+    /**
+     * @return the report of the latest audit, null before the first one
+     */
+    public AuditReport getLastReport() {
+        return lastReport;
+    }
+
+    public long getAudits() {
+        return audits;
+    }
+
+    /**
+     * Forgets all flows and the baseline, when all accounts have been deleted.
+     */
+    public synchronized void reset() {
+        if (!enabled) {
+            return;
+        }
+        for (Flows parity : flows) {
+            parity.external.clear();
+            parity.conversions.clear();
+            parity.inFlight.clear();
+        }
+        externalTotals.clear();
+        conversionTotals.clear();
+        inFlightTotals.clear();
+        baseline = null;
+    }
+
+    /**
+     * Runs an audit at a fixed interval, on a background thread. A discrepancy is logged as an error.
+     */
+    public synchronized void scheduleAudits(long interval, TimeUnit unit) {
+        if (auditScheduler != null) {
+            throw new IllegalStateException("Audits are already scheduled.");
+        }
+        auditScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "conservation-auditor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        auditScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                AuditReport report = audit();
+                if (report.isBalanced()) {
+                    LOGGER.info("Audited {} accounts in {} ms, money is conserved.", report.getAccounts(),
+                            TimeUnit.NANOSECONDS.toMillis(report.getDurationNanos()));
+                } else {
+                    for (AuditReport.Totals totals : report.getCurrencies()) {
+                        if (totals.getDiscrepancy() != 0) {
+                            LOGGER.error("Audit found a discrepancy of {} minor units of {}.", totals.getDiscrepancy(),
+                                    totals.getCurrency().getCurrencyCode());
+                        }
+                    }
+                }
+            } catch (RuntimeException ex) {
+                LOGGER.error("Audit failed.", ex);
+            }
+        }, interval, interval, unit);
+    }
+
+    /*
+    * The cut to keep accounts for, when the current operation is after the cut of the audit walking the store.
+    * */
+    BalanceCut cutToKeep() {
+        BalanceCut current = cut;
+        return current == null || currentEpoch() <= current.getEpoch() ? null : current;
+    }
+
+    /*
+    * The counters are read one after the other. An operation which enters after its counter has been read re-reads
+    * the epoch after counting itself, finds the new one and does not belong to the waited epoch.
+    * */
+    private void awaitOperations(long waitedEpoch) {
+        int attempt = 0;
+        while (true) {
+            long operationsRunning = 0;
+            for (int stripe = 0; stripe < STRIPES; stripe++) {
+                operationsRunning += running.get(indexOf(stripe, waitedEpoch));
+            }
+            if (operationsRunning == 0) {
+                return;
+            }
+            if (attempt < SPINS_BEFORE_YIELD) {
+                Thread.onSpinWait();
+            } else if (attempt < SPINS_BEFORE_YIELD + YIELDS_BEFORE_PARK) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+            attempt++;
+        }
+    }
+
+    /*
+    * Epoch of the current operation. Flows recorded outside of an operation belong to the current epoch.
+    * */
+    private long currentEpoch() {
+        long current = operations.get().epoch;
+        return current == 0 ? epoch : current;
+    }
+
+    private static int stripeOf(Thread thread) {
+        long id = thread.threadId() * 0x9E3779B97F4A7C15L;
+        return (int) (id >>> 32) & (STRIPES - 1);
+    }
+
+    private static int indexOf(int stripe, long epoch) {
+        return (stripe << 1 | parityOf(epoch)) * PADDING;
+    }
+
+    private static int parityOf(long epoch) {
+        return (int) (epoch & 1);
+    }
+
+    private static final class Operation {
+
+        private long epoch;
+        private int index;
+        private int depth;
+    }
+
+    /*
+    * Flows of the operations of one epoch parity. An epoch is drained by the audit which closed it, before the
+    * epoch of the same parity after it is entered.
+    * */
+    private static final class Flows {
+
+        private final ConcurrentHashMap<Currency, LongAdder> external = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Currency, LongAdder> conversions = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Currency, LongAdder> inFlight = new ConcurrentHashMap<>();
+
+        private void add(ConcurrentHashMap<Currency, LongAdder> amounts, Currency currency, long amount) {
+            LongAdder adder = amounts.get(currency);
+            if (adder == null) {
+                adder = amounts.computeIfAbsent(currency, ignored -> new LongAdder());
+            }
+            adder.add(amount);
+        }
+
+        private void drainInto(ConcurrentHashMap<Currency, LongAdder> amounts, Map<Currency, Long> totals) {
+            amounts.forEach((currency, adder) -> totals.merge(currency, adder.sumThenReset(), Long::sum));
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.revolut.transfer.config;
+
+import com.revolut.transfer.admission.AccountRateLimiter;
+import com.revolut.transfer.admission.ConcurrencyLimit;
+import com.revolut.transfer.converter.MoneyConverter;
+import com.revolut.transfer.idempotency.IdempotencyCache;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.lock.AccountLockManager;
+import com.revolut.transfer.repository.OffHeapAccountRepository;
+import com.revolut.transfer.schedule.TransferScheduler;
+import com.revolut.transfer.service.BalanceSnapshots;
+import com.revolut.transfer.service.HotAccounts;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Currency;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Application settings are provided as JVM system properties, e.g. -Dtransfer.engine=optimistic
+ * */
+public final class ApplicationProperties {
+
+    public static final String TRANSFER_ENGINE = "transfer.engine";
+    public static final String HTTP_MODE = "transfer.http.mode";
+    public static final String HTTP_ASYNC_WORKERS = "transfer.http.async.workers";
+    public static final String LOCK_STRIPES = "transfer.lock.stripes";
+    public static final String REPOSITORY = "transfer.repository";
+    public static final String EXPECTED_ACCOUNTS = "transfer.repository.expected-accounts";
+    public static final String BATCH_MAX_SIZE = "transfer.batch.max-size";
+    public static final String BULK_MAX_SIZE = "transfer.bulk.max-size";
+    public static final String SHARDS = "transfer.shards";
+    public static final String JOURNAL_PATH = "transfer.journal.path";
+    public static final String JOURNAL_WINDOW_MICROS = "transfer.journal.group-commit.window-micros";
+    public static final String JOURNAL_MAX_BATCH_BYTES = "transfer.journal.group-commit.max-bytes";
+    public static final String SNAPSHOT_PATH = "transfer.snapshot.path";
+    public static final String SNAPSHOT_INTERVAL_SECONDS = "transfer.snapshot.interval-seconds";
+    public static final String IDEMPOTENCY_MAX_ENTRIES = "transfer.idempotency.max-entries";
+    public static final String IDEMPOTENCY_TTL_SECONDS = "transfer.idempotency.ttl-seconds";
+    public static final String LEDGER_RING_SIZE = "transfer.ledger.ring-size";
+    public static final String LEDGER_RETAINED_POSTINGS = "transfer.ledger.retained-postings";
+    public static final String HOT_ACCOUNTS = "transfer.hot-accounts";
+    public static final String HOT_ACCOUNT_SLOTS = "transfer.hot-accounts.slots";
+    public static final String BALANCES_MAX_AGE_MILLIS = "transfer.balances.max-age-millis";
+    public static final String FX_BASE = "transfer.fx.base";
+    public static final String FX_RATES = "transfer.fx.rates";
+    public static final String AUDIT_INTERVAL_SECONDS = "transfer.audit.interval-seconds";
+    public static final String ADMISSION_ACCOUNT_RATE = "transfer.admission.account-rate";
+    public static final String ADMISSION_ACCOUNT_BURST = "transfer.admission.account-burst";
+    public static final String ADMISSION_ACCOUNT_IDLE_SECONDS = "transfer.admission.account-idle-seconds";
+    public static final String ADMISSION_MAX_CONCURRENCY = "transfer.admission.max-concurrency";
+    public static final String ADMISSION_MIN_CONCURRENCY = "transfer.admission.min-concurrency";
+    public static final String SCHEDULE_TICK_MILLIS = "transfer.schedule.tick-millis";
+    public static final String SCHEDULE_BATCH_SIZE = "transfer.schedule.batch-size";
+    public static final String SCHEDULE_WORKERS = "transfer.schedule.workers";
+    public static final String SCHEDULE_FINISHED_RETENTION_SECONDS = "transfer.schedule.finished-retention-seconds";
+
+    public static final int DEFAULT_BATCH_MAX_SIZE = 1000;
+    public static final int DEFAULT_BULK_MAX_SIZE = 1000;
+    public static final int DEFAULT_JOURNAL_MAX_BATCH_BYTES = 1024 * 1024;
+    public static final long DEFAULT_SNAPSHOT_INTERVAL_SECONDS = 300;
+    public static final long DEFAULT_AUDIT_INTERVAL_SECONDS = 60;
+    public static final int DEFAULT_ADMISSION_ACCOUNT_BURST = 20;
+
+    private ApplicationProperties() {
+    }
+
+    public static TransferEngine getTransferEngine() {
+        return TransferEngine.from(System.getProperty(TRANSFER_ENGINE, TransferEngine.LOCKING.name()));
+    }
+
+    public static HttpMode getHttpMode() {
+        return HttpMode.from(System.getProperty(HTTP_MODE, HttpMode.SPARK.name()));
+    }
+
+    /*
+    * Threads of the async front end which run the calls of engines that block, i.e. all but the sharded engine.
+    * */
+    public static int getHttpAsyncWorkers() {
+        return Integer.getInteger(HTTP_ASYNC_WORKERS, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public static int getLockStripes() {
+        return Integer.getInteger(LOCK_STRIPES, AccountLockManager.DEFAULT_STRIPES);
+    }
+
+    public static RepositoryType getRepositoryType() {
+        return RepositoryType.from(System.getProperty(REPOSITORY, RepositoryType.HEAP.name()));
+    }
+
+    public static int getExpectedAccounts() {
+        return Integer.getInteger(EXPECTED_ACCOUNTS, OffHeapAccountRepository.DEFAULT_EXPECTED_ACCOUNTS);
+    }
+
+    public static int getBatchMaxSize() {
+        return Integer.getInteger(BATCH_MAX_SIZE, DEFAULT_BATCH_MAX_SIZE);
+    }
+
+    /*
+    * Maximum number of accounts in one POST /accounts/bulk request, and the chunk size of POST /accounts/import.
+    * */
+    public static int getBulkMaxSize() {
+        return Integer.getInteger(BULK_MAX_SIZE, DEFAULT_BULK_MAX_SIZE);
+    }
+
+    public static int getShards() {
+        return Integer.getInteger(SHARDS, Runtime.getRuntime().availableProcessors());
+    }
+
+    /*
+    * Journaling is enabled only when a journal file is configured.
+    * */
+    public static Path getJournalPath() {
+        String path = System.getProperty(JOURNAL_PATH);
+        return path == null || path.trim().isEmpty() ? null : Paths.get(path.trim());
+    }
+
+    /*
+    * Accounts split by the locking engine are recorded next to the journal, since without one they do not outlive the
+    * process anyway.
+    * */
+    public static Path getSplitAccountsPath() {
+        Path journalPath = getJournalPath();
+        return journalPath == null ? null : journalPath.resolveSibling(journalPath.getFileName() + ".split-accounts");
+    }
+
+    public static long getJournalWindowMicros() {
+        return Long.getLong(JOURNAL_WINDOW_MICROS, 0L);
+    }
+
+    public static int getJournalMaxBatchBytes() {
+        return Integer.getInteger(JOURNAL_MAX_BATCH_BYTES, DEFAULT_JOURNAL_MAX_BATCH_BYTES);
+    }
+
+    /*
+    * Snapshots are taken only together with a journal, when a snapshot file is configured.
+    * */
+    public static Path getSnapshotPath() {
+        String path = System.getProperty(SNAPSHOT_PATH);
+        return path == null || path.trim().isEmpty() ? null : Paths.get(path.trim());
+    }
+
+    /*
+    * 0 only loads the snapshot on startup and never writes a new one.
+    * */
+    public static long getSnapshotIntervalSeconds() {
+        return Long.getLong(SNAPSHOT_INTERVAL_SECONDS, DEFAULT_SNAPSHOT_INTERVAL_SECONDS);
+    }
+
+    public static int getIdempotencyMaxEntries() {
+        return Integer.getInteger(IDEMPOTENCY_MAX_ENTRIES, IdempotencyCache.DEFAULT_MAX_ENTRIES);
+    }
+
+    public static long getIdempotencyTtlSeconds() {
+        return Long.getLong(IDEMPOTENCY_TTL_SECONDS, IdempotencyCache.DEFAULT_TTL_SECONDS);
+    }
+
+    public static int getLedgerRingSize() {
+        return Integer.getInteger(LEDGER_RING_SIZE, TransactionLedger.DEFAULT_RING_SIZE);
+    }
+
+    /*
+    * 0 disables the transaction history.
+    * */
+    public static int getLedgerRetainedPostings() {
+        return Integer.getInteger(LEDGER_RETAINED_POSTINGS, TransactionLedger.DEFAULT_RETAINED_POSTINGS);
+    }
+
+    /*
+    * Comma separated ids of the accounts split by the locking engine, see HotAccounts.
+    * */
+    public static Set<UUID> getHotAccounts() {
+        Set<UUID> accountIds = new LinkedHashSet<>();
+        for (String accountId : System.getProperty(HOT_ACCOUNTS, "").split(",")) {
+            if (!accountId.trim().isEmpty()) {
+                accountIds.add(UUID.fromString(accountId.trim()));
+            }
+        }
+        return accountIds;
+    }
+
+    public static int getHotAccountSlots() {
+        return Integer.getInteger(HOT_ACCOUNT_SLOTS, HotAccounts.DEFAULT_SLOTS);
+    }
+
+    /*
+    * Maximum age of the balance snapshot served by POST /accounts/balances, 0 takes a new snapshot for every request.
+    * */
+    public static long getBalancesMaxAgeMillis() {
+        return Long.getLong(BALANCES_MAX_AGE_MILLIS, BalanceSnapshots.DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    public static Currency getFxBase() {
+        return Currency.getInstance(System.getProperty(FX_BASE, MoneyConverter.DEFAULT_CURRENCY.getCurrencyCode()).trim());
+    }
+
+    /*
+    * Comma separated rates against the base currency on startup, e.g. EUR:1.17,USD:1.27,JPY:190 (units per unit of the base).
+    * */
+    public static Map<Currency, BigDecimal> getFxRates() {
+        Map<Currency, BigDecimal> rates = new LinkedHashMap<>();
+        for (String rate : System.getProperty(FX_RATES, "").split(",")) {
+            if (rate.trim().isEmpty()) {
+                continue;
+            }
+            String[] parts = rate.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("FX rate should be given as CURRENCY:rate, found: " + rate.trim());
+            }
+            rates.put(Currency.getInstance(parts[0].trim()), new BigDecimal(parts[1].trim()));
+        }
+        return rates;
+    }
+
+    /*
+    * 0 runs audits only on demand, with POST /admin/audit.
+    * */
+    public static long getAuditIntervalSeconds() {
+        return Long.getLong(AUDIT_INTERVAL_SECONDS, DEFAULT_AUDIT_INTERVAL_SECONDS);
+    }
+
+    /*
+    * Money movements per second admitted for one account, 0 admits any rate, see AccountRateLimiter.
+    * */
+    public static double getAdmissionAccountRate() {
+        return Double.parseDouble(System.getProperty(ADMISSION_ACCOUNT_RATE, "0"));
+    }
+
+    public static int getAdmissionAccountBurst() {
+        return Integer.getInteger(ADMISSION_ACCOUNT_BURST, DEFAULT_ADMISSION_ACCOUNT_BURST);
+    }
+
+    public static long getAdmissionAccountIdleSeconds() {
+        return Long.getLong(ADMISSION_ACCOUNT_IDLE_SECONDS, AccountRateLimiter.DEFAULT_IDLE_SECONDS);
+    }
+
+    /*
+    * Upper bound of the adaptive limit of money movements in flight, 0 admits any number, see ConcurrencyLimit.
+    * */
+    public static int getAdmissionMaxConcurrency() {
+        return Integer.getInteger(ADMISSION_MAX_CONCURRENCY, 0);
+    }
+
+    public static int getAdmissionMinConcurrency() {
+        return Integer.getInteger(ADMISSION_MIN_CONCURRENCY, ConcurrencyLimit.DEFAULT_MIN_LIMIT);
+    }
+
+    /*
+    * Resolution of scheduled transfers, which run at most one tick after their time, see TransferScheduler.
+    * */
+    public static long getScheduleTickMillis() {
+        return Long.getLong(SCHEDULE_TICK_MILLIS, TransferScheduler.DEFAULT_TICK_MILLIS);
+    }
+
+    /*
+    * Scheduled transfers made in one batch, at most the maximum size of a batch request.
+    * */
+    public static int getScheduleBatchSize() {
+        return Integer.getInteger(SCHEDULE_BATCH_SIZE, TransferScheduler.DEFAULT_BATCH_SIZE);
+    }
+
+    public static int getScheduleWorkers() {
+        return Integer.getInteger(SCHEDULE_WORKERS, Runtime.getRuntime().availableProcessors());
+    }
+
+    /*
+    * How long the outcome of a one-off scheduled transfer can be read once it has run, see TransferScheduler.
+    * */
+    public static long getScheduleFinishedRetentionSeconds() {
+        return Long.getLong(SCHEDULE_FINISHED_RETENTION_SECONDS,
+                TimeUnit.MILLISECONDS.toSeconds(TransferScheduler.DEFAULT_FINISHED_RETENTION_MILLIS));
+    }
+}
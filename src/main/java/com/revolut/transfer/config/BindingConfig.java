@@ -1,16 +1,206 @@
 package com.revolut.transfer.config;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Provider;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
+import com.revolut.transfer.admission.AccountRateLimiter;
+import com.revolut.transfer.admission.AdmissionControl;
+import com.revolut.transfer.admission.ConcurrencyLimit;
+import com.revolut.transfer.audit.ConservationAuditor;
+import com.revolut.transfer.converter.AccountResponseConverter;
+import com.revolut.transfer.fx.FxRateTable;
+import com.revolut.transfer.fx.FxRates;
+import com.revolut.transfer.idempotency.IdempotencyCache;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.lock.AccountLockManager;
+import com.revolut.transfer.metrics.MetricsRegistry;
+import com.revolut.transfer.metrics.PrometheusExporter;
 import com.revolut.transfer.repository.AccountRepository;
 import com.revolut.transfer.repository.AccountRepositoryImpl;
+import com.revolut.transfer.repository.JournaledAccountRepository;
+import com.revolut.transfer.repository.OffHeapAccountRepository;
+import com.revolut.transfer.schedule.TransferScheduler;
+import com.revolut.transfer.serialization.JsonSerializer;
+import com.revolut.transfer.server.AsyncHttpServer;
 import com.revolut.transfer.service.AccountService;
 import com.revolut.transfer.service.AccountServiceImpl;
+import com.revolut.transfer.service.HotAccounts;
+import com.revolut.transfer.service.MeteredAccountService;
+import com.revolut.transfer.service.OptimisticAccountServiceImpl;
+import com.revolut.transfer.service.ShardedAccountServiceImpl;
+import com.revolut.transfer.service.ThrottledAccountService;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
 
 public class BindingConfig extends AbstractModule {
 
     @Override
     protected void configure() {
-        bind(AccountRepository.class).to(AccountRepositoryImpl.class);
-        bind(AccountService.class).to(AccountServiceImpl.class);
+        bind(JsonSerializer.class).in(Singleton.class);
+        bind(MetricsRegistry.class).in(Singleton.class);
+    }
+
+    /*
+    * One engine serves all routes, every call of it is recorded in the MetricsRegistry. Money movements turned away by
+    * the AdmissionControl never reach the engine, so they are not recorded as calls of it.
+    * */
+    @Provides
+    @Singleton
+    AccountService provideAccountService(Provider<AccountServiceImpl> lockingEngine,
+                                         Provider<OptimisticAccountServiceImpl> optimisticEngine,
+                                         Provider<ShardedAccountServiceImpl> shardedEngine,
+                                         MetricsRegistry metricsRegistry, AdmissionControl admissionControl) {
+        AccountService accountService;
+        switch (ApplicationProperties.getTransferEngine()) {
+            case OPTIMISTIC:
+                accountService = optimisticEngine.get();
+                break;
+            case SHARDED:
+                accountService = shardedEngine.get();
+                break;
+            case LOCKING:
+            default:
+                accountService = lockingEngine.get();
+        }
+        return ThrottledAccountService.of(MeteredAccountService.of(accountService, metricsRegistry), admissionControl);
+    }
+
+    @Provides
+    @Singleton
+    AdmissionControl provideAdmissionControl() {
+        double accountRate = ApplicationProperties.getAdmissionAccountRate();
+        int maxConcurrency = ApplicationProperties.getAdmissionMaxConcurrency();
+        return new AdmissionControl(
+                accountRate > 0 ? new AccountRateLimiter(accountRate, ApplicationProperties.getAdmissionAccountBurst(),
+                        ApplicationProperties.getAdmissionAccountIdleSeconds(), TimeUnit.SECONDS) : null,
+                maxConcurrency > 0 ? new ConcurrencyLimit(Math.min(ApplicationProperties.getAdmissionMinConcurrency(), maxConcurrency),
+                        maxConcurrency) : null);
+    }
+
+    /*
+    * The journal, when configured, wraps the selected repository and is replayed into it on startup,
+    * on top of the latest snapshot when snapshots are configured. The engines change it through the auditor.
+    * */
+    @Provides
+    @Singleton
+    AccountRepository provideAccountRepository(Provider<AccountRepositoryImpl> heapRepository,
+                                               Provider<OffHeapAccountRepository> offHeapRepository,
+                                               ConservationAuditor conservationAuditor) {
+        AccountRepository accountRepository;
+        switch (ApplicationProperties.getRepositoryType()) {
+            case OFFHEAP:
+                accountRepository = offHeapRepository.get();
+                break;
+            case HEAP:
+            default:
+                accountRepository = heapRepository.get();
+        }
+        Path journalPath = ApplicationProperties.getJournalPath();
+        if (journalPath != null) {
+            accountRepository = journaled(accountRepository, journalPath);
+        }
+        AccountRepository auditedAccountRepository = conservationAuditor.watch(accountRepository);
+        long auditIntervalSeconds = ApplicationProperties.getAuditIntervalSeconds();
+        if (auditIntervalSeconds > 0) {
+            conservationAuditor.scheduleAudits(auditIntervalSeconds, TimeUnit.SECONDS);
+        }
+        return auditedAccountRepository;
+    }
+
+    private static JournaledAccountRepository journaled(AccountRepository accountRepository, Path journalPath) {
+        Path snapshotPath = ApplicationProperties.getSnapshotPath();
+        JournaledAccountRepository journaledAccountRepository = JournaledAccountRepository.open(accountRepository, journalPath,
+                snapshotPath, ApplicationProperties.getJournalWindowMicros(), ApplicationProperties.getJournalMaxBatchBytes());
+        long snapshotIntervalSeconds = ApplicationProperties.getSnapshotIntervalSeconds();
+        if (snapshotPath != null && snapshotIntervalSeconds > 0) {
+            journaledAccountRepository.scheduleSnapshots(snapshotPath, snapshotIntervalSeconds, TimeUnit.SECONDS);
+        }
+        return journaledAccountRepository;
+    }
+
+    @Provides
+    @Singleton
+    ConservationAuditor provideConservationAuditor() {
+        return new ConservationAuditor();
+    }
+
+    @Provides
+    @Singleton
+    IdempotencyCache provideIdempotencyCache() {
+        return new IdempotencyCache(ApplicationProperties.getIdempotencyMaxEntries(),
+                ApplicationProperties.getIdempotencyTtlSeconds(), TimeUnit.SECONDS);
+    }
+
+    @Provides
+    @Singleton
+    TransactionLedger provideTransactionLedger() {
+        return new TransactionLedger(ApplicationProperties.getLedgerRingSize(), ApplicationProperties.getLedgerRetainedPostings());
+    }
+
+    /*
+    * Accounts split before stay split, so their slots keep counting towards their balance.
+    * */
+    @Provides
+    @Singleton
+    HotAccounts provideHotAccounts() {
+        return new HotAccounts(ApplicationProperties.getHotAccountSlots(), ApplicationProperties.getHotAccounts(),
+                ApplicationProperties.getSplitAccountsPath());
+    }
+
+    /*
+    * Rates of the properties on startup, replaced as a whole by PUT /fx/rates.
+    * */
+    @Provides
+    @Singleton
+    FxRates provideFxRates() {
+        return new FxRates(FxRateTable.of(ApplicationProperties.getFxBase(), ApplicationProperties.getFxRates()));
+    }
+
+    @Provides
+    @Singleton
+    AsyncHttpServer provideAsyncHttpServer(AccountService accountService, JsonSerializer jsonSerializer,
+                                           IdempotencyCache idempotencyCache, MetricsRegistry metricsRegistry,
+                                           PrometheusExporter prometheusExporter, FxRates fxRates,
+                                           ConservationAuditor conservationAuditor, TransferScheduler transferScheduler) {
+        return new AsyncHttpServer(AsyncHttpServer.PORT, ApplicationProperties.getHttpAsyncWorkers(), accountService,
+                jsonSerializer, idempotencyCache, metricsRegistry, prometheusExporter, fxRates, conservationAuditor, transferScheduler);
+    }
+
+    /*
+    * Due transfers go through the same decorated service as the routes, so they are metered and admitted like a batch.
+    * */
+    @Provides
+    @Singleton
+    TransferScheduler provideTransferScheduler(AccountService accountService) {
+        TransferScheduler transferScheduler = new TransferScheduler(accountService, ApplicationProperties.getScheduleTickMillis(),
+                Math.min(ApplicationProperties.getScheduleBatchSize(), ApplicationProperties.getBatchMaxSize()),
+                TimeUnit.SECONDS.toMillis(ApplicationProperties.getScheduleFinishedRetentionSeconds()),
+                ApplicationProperties.getScheduleWorkers());
+        transferScheduler.start();
+        return transferScheduler;
+    }
+
+    @Provides
+    @Singleton
+    AccountLockManager provideAccountLockManager() {
+        return new AccountLockManager(ApplicationProperties.getLockStripes());
+    }
+
+    @Provides
+    @Singleton
+    OffHeapAccountRepository provideOffHeapAccountRepository() {
+        return new OffHeapAccountRepository(ApplicationProperties.getExpectedAccounts());
+    }
+
+    @Provides
+    @Singleton
+    ShardedAccountServiceImpl provideShardedAccountService(AccountRepository accountRepository,
+                                                           AccountResponseConverter accountResponseConverter,
+                                                           TransactionLedger transactionLedger, FxRates fxRates,
+                                                           ConservationAuditor conservationAuditor) {
+        return new ShardedAccountServiceImpl(accountRepository, accountResponseConverter, ApplicationProperties.getShards(),
+                transactionLedger, fxRates, conservationAuditor);
     }
 }
@@ -0,0 +1,23 @@
+package com.revolut.transfer.config;
+
+import java.util.Locale;
+
+/*
+ * HTTP front end serving the API.
+ * SPARK runs the Spark routes, which hold a Jetty thread for the whole request.
+ * VIRTUAL runs the Spark routes on virtual threads, one per request, which release their carrier while they wait.
+ * ASYNC serves the /accounts routes with asynchronous servlets, which hold no thread while a request waits on the engine.
+ * */
+public enum HttpMode {
+    SPARK,
+    VIRTUAL,
+    ASYNC;
+
+    public static HttpMode from(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown HTTP mode: " + value);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.revolut.transfer.config;
+
+import java.util.Locale;
+
+/*
+ * Account store behind the AccountRepository.
+ * HEAP keeps Account objects in a ConcurrentHashMap, OFFHEAP keeps fixed width account records in direct memory.
+ * */
+public enum RepositoryType {
+    HEAP,
+    OFFHEAP;
+
+    public static RepositoryType from(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown repository type: " + value);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.revolut.transfer.config;
+
+import java.util.Locale;
+
+/*
+ * Engine used by the account service to apply money movements.
+ * LOCKING takes striped account monitors, OPTIMISTIC commits immutable account snapshots with CAS,
+ * SHARDED applies all changes of an account on the single thread of its shard.
+ * */
+public enum TransferEngine {
+    LOCKING,
+    OPTIMISTIC,
+    SHARDED;
+
+    public static TransferEngine from(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown transfer engine: " + value);
+        }
+    }
+}
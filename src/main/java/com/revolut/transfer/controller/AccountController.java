@@ -1,65 +1,269 @@
 package com.revolut.transfer.controller;
 
-import com.google.gson.Gson;
 import com.google.inject.Inject;
+import com.revolut.transfer.idempotency.IdempotencyCache;
+import com.revolut.transfer.idempotency.IdempotentResult;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.metrics.LatencyRecorder;
+import com.revolut.transfer.metrics.MetricsRegistry;
+import com.revolut.transfer.request.AccountBalancesRequest;
+import com.revolut.transfer.request.BatchTransferRequest;
+import com.revolut.transfer.request.BulkCreateAccountRequest;
 import com.revolut.transfer.request.CreateAccountRequest;
 import com.revolut.transfer.request.DepositMoneyRequest;
+import com.revolut.transfer.request.ScheduleTransferRequest;
 import com.revolut.transfer.request.TransferMoneyRequest;
 import com.revolut.transfer.request.WithdrawMoneyRequest;
+import com.revolut.transfer.schedule.TransferScheduler;
+import com.revolut.transfer.serialization.AccountImportReader;
+import com.revolut.transfer.serialization.ImportFormat;
+import com.revolut.transfer.serialization.JsonSerializer;
+import com.revolut.transfer.service.AccountImporter;
 import com.revolut.transfer.service.AccountService;
 import org.eclipse.jetty.http.HttpStatus;
 import spark.Request;
 import spark.Response;
+import spark.Route;
 
-import javax.validation.Valid;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestWrapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.UUID;
+import java.util.function.Supplier;
 
-import static spark.Spark.*;
+import static com.revolut.transfer.controller.AccountRoutes.*;
+import static spark.Spark.delete;
+import static spark.Spark.get;
+import static spark.Spark.post;
+import static spark.Spark.put;
 
 public class AccountController {
 
-    private static final String BASE_URL = "/accounts";
+    private static final String JSON_CONTENT_TYPE = "application/json";
+    private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
     private AccountService accountService;
+    private JsonSerializer jsonSerializer;
+    private IdempotencyCache idempotencyCache;
+    private MetricsRegistry metricsRegistry;
+    private AccountImporter accountImporter;
+    private TransferScheduler transferScheduler;
+
+    private final String accountsDeleted;
+    private final String moneyTransferred;
+    private final String amountWithdrawn;
+    private final String amountDeposited;
 
     @Inject
-    public AccountController(AccountService accountService) {
+    public AccountController(AccountService accountService, JsonSerializer jsonSerializer, IdempotencyCache idempotencyCache,
+                             MetricsRegistry metricsRegistry, AccountImporter accountImporter, TransferScheduler transferScheduler) {
         this.accountService = accountService;
+        this.jsonSerializer = jsonSerializer;
+        this.idempotencyCache = idempotencyCache;
+        this.metricsRegistry = metricsRegistry;
+        this.accountImporter = accountImporter;
+        this.transferScheduler = transferScheduler;
+        this.accountsDeleted = jsonSerializer.toJson("All accounts have been deleted");
+        this.moneyTransferred = jsonSerializer.toJson("Money has been transferred successfully");
+        this.amountWithdrawn = jsonSerializer.toJson("Amount has been withdrawal");
+        this.amountDeposited = jsonSerializer.toJson("Amount has been deposited");
     }
 
     public void registerApiRoutes() {
 
-        get(BASE_URL + "/:accountId", (request, response) -> {
-            UUID accountId = UUID.fromString(request.params(":accountId"));
-            return new Gson().toJson(accountService.getAccount(accountId));
-        });
+        get(url(ACCOUNTS_PATH), timed("GET", ACCOUNTS_PATH, (request, response) -> {
+            String cursor = request.queryParams("cursor");
+            String limit = request.queryParams("limit");
+            return writeBody(response, accountService.getAccounts(
+                    cursor == null ? null : UUID.fromString(cursor),
+                    limit == null ? AccountService.DEFAULT_ACCOUNT_PAGE_SIZE : Integer.parseInt(limit)));
+        }));
+
+        /*
+        * Registered before /:accountId, which would match it too.
+        * */
+        get(url(EXPORT_PATH), timed("GET", EXPORT_PATH, (request, response) -> {
+            response.type(NDJSON_CONTENT_TYPE);
+            writeLines(response.raw().getOutputStream());
+            return "";
+        }));
+
+        get(url(ACCOUNT_PATH), timed("GET", ACCOUNT_PATH, (request, response) -> {
+            UUID accountId = UUID.fromString(request.params(ACCOUNT_ID_PARAM));
+            return writeBody(response, accountService.getAccount(accountId));
+        }));
 
-        post(BASE_URL, (request, response) -> {
-            CreateAccountRequest createAccountRequest = new Gson().fromJson(request.body(), CreateAccountRequest.class);
+        get(url(ACCOUNT_TRANSACTIONS_PATH), timed("GET", ACCOUNT_TRANSACTIONS_PATH, (request, response) -> {
+            UUID accountId = UUID.fromString(request.params(ACCOUNT_ID_PARAM));
+            String cursor = request.queryParams("cursor");
+            String limit = request.queryParams("limit");
+            return writeBody(response, accountService.getTransactions(accountId,
+                    cursor == null ? null : Long.valueOf(cursor),
+                    limit == null ? TransactionLedger.DEFAULT_PAGE_SIZE : Integer.parseInt(limit)));
+        }));
+
+        post(url(ACCOUNTS_PATH), timed("POST", ACCOUNTS_PATH, (request, response) -> {
+            CreateAccountRequest createAccountRequest = readBody(request, CreateAccountRequest.class);
+            UUID accountId = accountService.createAccount(createAccountRequest);
             response.status(HttpStatus.CREATED_201);
-            return new Gson().toJson(accountService.createAccount(createAccountRequest));
-        });
+            return writeBody(response, accountId);
+        }));
 
-        delete(BASE_URL, (request, response) -> {
+        delete(url(ACCOUNTS_PATH), timed("DELETE", ACCOUNTS_PATH, (request, response) -> {
             accountService.deleteAllAccounts();
-            return new Gson().toJson("All accounts have been deleted");
-        });
-
-        post(BASE_URL + "/transfer", (Request request, Response response) -> {
-            TransferMoneyRequest transferMoneyRequest = new Gson().fromJson(request.body(), TransferMoneyRequest.class);
-            accountService.transferMoney(transferMoneyRequest);
-            return new Gson().toJson("Money has been transferred successfully");
-        });
-
-        put(BASE_URL + "/withdraw", (request, response) -> {
-            WithdrawMoneyRequest withdrawMoneyRequest = new Gson().fromJson(request.body(), WithdrawMoneyRequest.class);
-            accountService.withdrawMoney(withdrawMoneyRequest);
-            return new Gson().toJson("Amount has been withdrawal");
-        });
-
-        put(BASE_URL + "/deposit", (request, response) -> {
-            DepositMoneyRequest depositMoneyRequest = new Gson().fromJson(request.body(), DepositMoneyRequest.class);
-            accountService.depositMoney(depositMoneyRequest);
-            return new Gson().toJson("Amount has been deposited");
-        });
+            return accountsDeleted;
+        }));
+
+        post(url(BULK_PATH), timed("POST", BULK_PATH, (request, response) -> {
+            BulkCreateAccountRequest bulkCreateAccountRequest = readBody(request, BulkCreateAccountRequest.class);
+            return writeBody(response, accountService.createAccounts(bulkCreateAccountRequest.getAccounts()));
+        }));
+
+        post(url(IMPORT_PATH), timed("POST", IMPORT_PATH, (request, response) -> {
+            ImportFormat format = ImportFormat.of(request.queryParams("format"), request.contentType());
+            AccountImportReader reader = new AccountImportReader(rawInputStream(request), format, jsonSerializer);
+            return writeBody(response, accountImporter.importAccounts(reader));
+        }));
+
+        post(url(BALANCES_PATH), timed("POST", BALANCES_PATH, (request, response) -> {
+            AccountBalancesRequest accountBalancesRequest = readBody(request, AccountBalancesRequest.class);
+            return writeBody(response, accountService.getBalances(accountBalancesRequest.getAccountIds()));
+        }));
+
+        post(url(TRANSFER_PATH), timed("POST", TRANSFER_PATH, (Request request, Response response) -> {
+            TransferMoneyRequest transferMoneyRequest = readBody(request, TransferMoneyRequest.class);
+            return idempotent(request, response, "transfer", transferMoneyRequest, () -> {
+                accountService.transferMoney(transferMoneyRequest);
+                return moneyTransferred;
+            });
+        }));
+
+        post(url(BATCH_TRANSFER_PATH), timed("POST", BATCH_TRANSFER_PATH, (request, response) -> {
+            BatchTransferRequest batchTransferRequest = readBody(request, BatchTransferRequest.class);
+            return writeBody(response, accountService.transferMoneyInBatch(batchTransferRequest));
+        }));
+
+        post(url(SCHEDULED_PATH), timed("POST", SCHEDULED_PATH, (request, response) -> {
+            ScheduleTransferRequest scheduleTransferRequest = readBody(request, ScheduleTransferRequest.class);
+            response.status(HttpStatus.CREATED_201);
+            return writeBody(response, transferScheduler.schedule(scheduleTransferRequest));
+        }));
+
+        get(url(SCHEDULED_PATH), timed("GET", SCHEDULED_PATH, (request, response) -> {
+            String accountId = request.queryParams("accountId");
+            return writeBody(response, transferScheduler.getScheduledTransfers(accountId == null ? null : UUID.fromString(accountId)));
+        }));
+
+        get(url(SCHEDULED_TRANSFER_PATH), timed("GET", SCHEDULED_TRANSFER_PATH, (request, response) -> {
+            UUID scheduledTransferId = UUID.fromString(request.params(SCHEDULED_TRANSFER_ID_PARAM));
+            return writeBody(response, transferScheduler.getScheduledTransfer(scheduledTransferId));
+        }));
+
+        delete(url(SCHEDULED_TRANSFER_PATH), timed("DELETE", SCHEDULED_TRANSFER_PATH, (request, response) -> {
+            UUID scheduledTransferId = UUID.fromString(request.params(SCHEDULED_TRANSFER_ID_PARAM));
+            return writeBody(response, transferScheduler.cancel(scheduledTransferId));
+        }));
+
+        put(url(WITHDRAW_PATH), timed("PUT", WITHDRAW_PATH, (request, response) -> {
+            WithdrawMoneyRequest withdrawMoneyRequest = readBody(request, WithdrawMoneyRequest.class);
+            return idempotent(request, response, "withdraw", withdrawMoneyRequest, () -> {
+                accountService.withdrawMoney(withdrawMoneyRequest);
+                return amountWithdrawn;
+            });
+        }));
+
+        put(url(DEPOSIT_PATH), timed("PUT", DEPOSIT_PATH, (request, response) -> {
+            DepositMoneyRequest depositMoneyRequest = readBody(request, DepositMoneyRequest.class);
+            return idempotent(request, response, "deposit", depositMoneyRequest, () -> {
+                accountService.depositMoney(depositMoneyRequest);
+                return amountDeposited;
+            });
+        }));
+    }
+
+    /*
+    * == NOTE ==:
+    * Spark wraps the servlet request and copies the whole body into a byte array on first access.
+    * Nothing before the route reads the body, so it is parsed straight from the underlying servlet input stream instead.
+    * */
+    private <T> T readBody(Request request, Class<T> type) throws IOException {
+        return jsonSerializer.read(rawInputStream(request), type);
+    }
+
+    private static InputStream rawInputStream(Request request) throws IOException {
+        ServletRequest servletRequest = request.raw();
+        while (servletRequest instanceof ServletRequestWrapper) {
+            servletRequest = ((ServletRequestWrapper) servletRequest).getRequest();
+        }
+        return servletRequest.getInputStream();
+    }
+
+    /*
+    * Requests without an Idempotency-Key are run as they are. With a key, a retry gets the response of the first request
+    * with that key, see IdempotencyCache.
+    * */
+    private String idempotent(Request request, Response response, String operation, Object body, Supplier<String> action) {
+        String idempotencyKey = request.headers(IDEMPOTENCY_KEY_HEADER);
+        if (idempotencyKey == null) {
+            return action.get();
+        }
+        IdempotentResult result = idempotencyCache.execute(operation, idempotencyKey, body, action);
+        if (result.isReplayed()) {
+            response.header(IDEMPOTENT_REPLAYED_HEADER, "true");
+        }
+        return result.getBody();
+    }
+
+    /*
+    * Records the duration of the route and counts the exceptions it leaves to the exception handlers of MoneyTransferAPI.
+    * The path is the one within BASE_URL, see AccountRoutes.
+    * */
+    private Route timed(String method, String path, Route route) {
+        LatencyRecorder recorder = metricsRegistry.route(name(method, path));
+        return (request, response) -> {
+            long started = System.nanoTime();
+            try {
+                return route.handle(request, response);
+            } catch (Exception ex) {
+                metricsRegistry.rejected(ex);
+                throw ex;
+            } finally {
+                recorder.recordSince(started);
+            }
+        };
+    }
+
+    /*
+    * One account per line, written as the store is walked, so the response is streamed in chunks of the output buffer
+    * and never held in memory as a whole.
+    * */
+    private void writeLines(OutputStream outputStream) throws IOException {
+        JsonSerializer.LineWriter lineWriter = jsonSerializer.lineWriter(outputStream);
+        try {
+            accountService.exportAccounts(account -> {
+                try {
+                    lineWriter.write(account);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        lineWriter.flush();
+    }
+
+    /*
+    * The response is written and committed here, so Spark has nothing left to serialize.
+    * */
+    private String writeBody(Response response, Object value) throws IOException {
+        response.type(JSON_CONTENT_TYPE);
+        jsonSerializer.write(value, response.raw().getOutputStream());
+        return "";
     }
 }
@@ -0,0 +1,42 @@
+package com.revolut.transfer.controller;
+
+/*
+ * The routes of AccountController, served by AsyncAccountServlet too. Paths are relative to BASE_URL, the empty path
+ * is BASE_URL itself. Both front ends record their durations under the same route names.
+ * */
+public final class AccountRoutes {
+
+    public static final String BASE_URL = "/accounts";
+
+    public static final String ACCOUNT_ID_PARAM = ":accountId";
+    public static final String SCHEDULED_TRANSFER_ID_PARAM = ":scheduledTransferId";
+
+    public static final String ACCOUNTS_PATH = "";
+    public static final String EXPORT_PATH = "/export";
+    public static final String ACCOUNT_PATH = "/" + ACCOUNT_ID_PARAM;
+    public static final String TRANSACTIONS_PATH = "/transactions";
+    public static final String ACCOUNT_TRANSACTIONS_PATH = ACCOUNT_PATH + TRANSACTIONS_PATH;
+    public static final String BULK_PATH = "/bulk";
+    public static final String IMPORT_PATH = "/import";
+    public static final String BALANCES_PATH = "/balances";
+    public static final String TRANSFER_PATH = "/transfer";
+    public static final String BATCH_TRANSFER_PATH = "/transfers/batch";
+    public static final String SCHEDULED_PATH = "/transfers/scheduled";
+    public static final String SCHEDULED_TRANSFER_PATH = SCHEDULED_PATH + "/" + SCHEDULED_TRANSFER_ID_PARAM;
+    public static final String WITHDRAW_PATH = "/withdraw";
+    public static final String DEPOSIT_PATH = "/deposit";
+
+    private AccountRoutes() {
+    }
+
+    public static String url(String path) {
+        return BASE_URL + path;
+    }
+
+    /**
+     * @return the route name the durations are recorded under, e.g. "GET /accounts/:accountId"
+     */
+    public static String name(String method, String path) {
+        return method + " " + url(path);
+    }
+}
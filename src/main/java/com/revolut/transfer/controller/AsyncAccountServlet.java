@@ -0,0 +1,588 @@
+package com.revolut.transfer.controller;
+
+import com.revolut.transfer.execption.ServiceOverloadedException;
+import com.revolut.transfer.idempotency.IdempotencyCache;
+import com.revolut.transfer.idempotency.IdempotentResult;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.metrics.LatencyRecorder;
+import com.revolut.transfer.metrics.MetricsRegistry;
+import com.revolut.transfer.request.AccountBalancesRequest;
+import com.revolut.transfer.request.BatchTransferRequest;
+import com.revolut.transfer.request.BulkCreateAccountRequest;
+import com.revolut.transfer.request.CreateAccountRequest;
+import com.revolut.transfer.request.DepositMoneyRequest;
+import com.revolut.transfer.request.ScheduleTransferRequest;
+import com.revolut.transfer.request.TransferMoneyRequest;
+import com.revolut.transfer.request.WithdrawMoneyRequest;
+import com.revolut.transfer.schedule.TransferScheduler;
+import com.revolut.transfer.serialization.AccountImportReader;
+import com.revolut.transfer.serialization.ImportFormat;
+import com.revolut.transfer.serialization.JsonSerializer;
+import com.revolut.transfer.service.AccountImporter;
+import com.revolut.transfer.service.AccountService;
+import com.revolut.transfer.service.AsyncAccountService;
+import org.eclipse.jetty.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.revolut.transfer.controller.AccountRoutes.*;
+
+/*
+ * == NOTE ==:
+ * The routes of AccountController as an asynchronous servlet, for the ASYNC HTTP mode. The request is put in async mode
+ * right away and the Jetty thread goes back to the selector, so a connection costs a socket and a few buffers, not a thread.
+ *
+ * The body is read with a ReadListener, only once it has fully arrived. Transfers, withdrawals and deposits without an
+ * Idempotency-Key go to the futures of an AsyncAccountService and the response is written by the thread completing them.
+ * Everything else may block (on an account lock, on the journal, on another request with the same Idempotency-Key) and
+ * runs on the worker executor. Reads of the sharded engine do not block and run right away.
+ *
+ * Scheduled transfers only take the lock of the TransferScheduler and are answered right away, except scheduling, which
+ * looks the accounts up first.
+ *
+ * Imports are read from the buffered body like everything else, so they are limited to its maximum size here; large
+ * imports need one of the Spark modes, which stream the body.
+ *
+ * Status codes, bodies and Retry-After headers are the ones of ErrorResponse, like for the Spark exception handlers.
+ * A request not answered within the timeout is answered 503 with a Retry-After, the way an overloaded service is: its
+ * change may still be made once it gets the lock or the journal it waits on, and the late reply is then dropped. A
+ * request is answered once, by whichever of its reply and its timeout comes first.
+ * Paths are the ones of AccountRoutes, and durations are recorded under the same route names as AccountController,
+ * from the start of the request until its response has been written.
+ * */
+public class AsyncAccountServlet extends HttpServlet {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncAccountServlet.class);
+
+    private static final String JSON_CONTENT_TYPE = "application/json";
+    private static final String TEXT_CONTENT_TYPE = "text/plain";
+    private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final long REQUEST_TIMEOUT_MILLIS = 30_000;
+    private static final int MAX_BODY_BYTES = 1024 * 1024;
+    private static final int READ_BUFFER_BYTES = 1024;
+
+    private final AccountService accountService;
+    private final AsyncAccountService asyncAccountService;
+    private final JsonSerializer jsonSerializer;
+    private final IdempotencyCache idempotencyCache;
+    private final AccountImporter accountImporter;
+    private final TransferScheduler transferScheduler;
+    private final Executor workers;
+    private final MetricsRegistry metricsRegistry;
+
+    private final String accountsDeleted;
+    private final String moneyTransferred;
+    private final String amountWithdrawn;
+    private final String amountDeposited;
+
+    private final LatencyRecorder createAccountRoute;
+    private final LatencyRecorder bulkCreateAccountsRoute;
+    private final LatencyRecorder importAccountsRoute;
+    private final LatencyRecorder balancesRoute;
+    private final LatencyRecorder deleteAccountsRoute;
+    private final LatencyRecorder transferRoute;
+    private final LatencyRecorder batchTransferRoute;
+    private final LatencyRecorder withdrawRoute;
+    private final LatencyRecorder depositRoute;
+    private final LatencyRecorder getAccountsRoute;
+    private final LatencyRecorder exportAccountsRoute;
+    private final LatencyRecorder getAccountRoute;
+    private final LatencyRecorder getTransactionsRoute;
+    private final LatencyRecorder scheduleTransferRoute;
+    private final LatencyRecorder getScheduledTransfersRoute;
+    private final LatencyRecorder getScheduledTransferRoute;
+    private final LatencyRecorder cancelScheduledTransferRoute;
+
+    public AsyncAccountServlet(AccountService accountService, JsonSerializer jsonSerializer, IdempotencyCache idempotencyCache,
+                               TransferScheduler transferScheduler, Executor workers, MetricsRegistry metricsRegistry) {
+        this.accountService = accountService;
+        this.asyncAccountService = accountService instanceof AsyncAccountService ? (AsyncAccountService) accountService : null;
+        this.jsonSerializer = jsonSerializer;
+        this.idempotencyCache = idempotencyCache;
+        this.accountImporter = new AccountImporter(accountService);
+        this.transferScheduler = transferScheduler;
+        this.workers = workers;
+        this.metricsRegistry = metricsRegistry;
+        this.accountsDeleted = jsonSerializer.toJson("All accounts have been deleted");
+        this.moneyTransferred = jsonSerializer.toJson("Money has been transferred successfully");
+        this.amountWithdrawn = jsonSerializer.toJson("Amount has been withdrawal");
+        this.amountDeposited = jsonSerializer.toJson("Amount has been deposited");
+        this.createAccountRoute = metricsRegistry.route(name("POST", ACCOUNTS_PATH));
+        this.bulkCreateAccountsRoute = metricsRegistry.route(name("POST", BULK_PATH));
+        this.importAccountsRoute = metricsRegistry.route(name("POST", IMPORT_PATH));
+        this.balancesRoute = metricsRegistry.route(name("POST", BALANCES_PATH));
+        this.deleteAccountsRoute = metricsRegistry.route(name("DELETE", ACCOUNTS_PATH));
+        this.transferRoute = metricsRegistry.route(name("POST", TRANSFER_PATH));
+        this.batchTransferRoute = metricsRegistry.route(name("POST", BATCH_TRANSFER_PATH));
+        this.withdrawRoute = metricsRegistry.route(name("PUT", WITHDRAW_PATH));
+        this.depositRoute = metricsRegistry.route(name("PUT", DEPOSIT_PATH));
+        this.getAccountsRoute = metricsRegistry.route(name("GET", ACCOUNTS_PATH));
+        this.exportAccountsRoute = metricsRegistry.route(name("GET", EXPORT_PATH));
+        this.getAccountRoute = metricsRegistry.route(name("GET", ACCOUNT_PATH));
+        this.getTransactionsRoute = metricsRegistry.route(name("GET", ACCOUNT_TRANSACTIONS_PATH));
+        this.scheduleTransferRoute = metricsRegistry.route(name("POST", SCHEDULED_PATH));
+        this.getScheduledTransfersRoute = metricsRegistry.route(name("GET", SCHEDULED_PATH));
+        this.getScheduledTransferRoute = metricsRegistry.route(name("GET", SCHEDULED_TRANSFER_PATH));
+        this.cancelScheduledTransferRoute = metricsRegistry.route(name("DELETE", SCHEDULED_TRANSFER_PATH));
+    }
+
+    @Override
+    protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long started = System.nanoTime();
+        String method = request.getMethod();
+        String path = request.getPathInfo() == null ? "" : request.getPathInfo();
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(isExport(method, path) ? 0 : REQUEST_TIMEOUT_MILLIS);
+        PendingResponse pending = new PendingResponse(asyncContext);
+        asyncContext.addListener(new TimeoutListener(pending));
+        if (!"POST".equals(method) && !"PUT".equals(method)) {
+            dispatch(pending, request, method, path, null, started);
+            return;
+        }
+        ServletInputStream inputStream = request.getInputStream();
+        inputStream.setReadListener(new ReadListener() {
+
+            private final ByteArrayOutputStream body = new ByteArrayOutputStream(Math.max(0, request.getContentLength()));
+            private final byte[] buffer = new byte[READ_BUFFER_BYTES];
+            private boolean rejected;
+
+            @Override
+            public void onDataAvailable() throws IOException {
+                while (!rejected && inputStream.isReady() && !inputStream.isFinished()) {
+                    int read = inputStream.read(buffer);
+                    if (read < 0) {
+                        return;
+                    }
+                    body.write(buffer, 0, read);
+                    if (body.size() > MAX_BODY_BYTES) {
+                        rejected = true;
+                        complete(pending, Reply.text(HttpStatus.PAYLOAD_TOO_LARGE_413, "Request body is too large."));
+                    }
+                }
+            }
+
+            @Override
+            public void onAllDataRead() {
+                if (!rejected) {
+                    dispatch(pending, request, method, path, body.toByteArray(), started);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                if (!rejected) {
+                    complete(pending, errorReply(throwable));
+                }
+            }
+        });
+    }
+
+    private void dispatch(PendingResponse pending, HttpServletRequest request, String method, String path, byte[] body,
+                          long started) {
+        LatencyRecorder recorder = recorderOf(method, path);
+        CompletableFuture<Reply> reply;
+        try {
+            reply = route(pending, request, method, path, body);
+        } catch (RuntimeException ex) {
+            reply = CompletableFuture.completedFuture(errorReply(ex));
+        }
+        reply.whenComplete((result, ex) -> {
+            complete(pending, ex == null ? result : errorReply(ex));
+            if (recorder != null) {
+                recorder.recordSince(started);
+            }
+        });
+    }
+
+    /*
+    * Recorder of the route the request is for, null for a path which is not found. Matched the way route() and get() do.
+    * */
+    private LatencyRecorder recorderOf(String method, String path) {
+        if (isScheduledPath(path)) {
+            return scheduledRecorderOf(method, path.substring(SCHEDULED_PATH.length()));
+        }
+        switch (method) {
+            case "POST":
+                return ACCOUNTS_PATH.equals(path) ? createAccountRoute
+                        : BULK_PATH.equals(path) ? bulkCreateAccountsRoute
+                        : IMPORT_PATH.equals(path) ? importAccountsRoute
+                        : BALANCES_PATH.equals(path) ? balancesRoute
+                        : TRANSFER_PATH.equals(path) ? transferRoute
+                        : BATCH_TRANSFER_PATH.equals(path) ? batchTransferRoute : null;
+            case "PUT":
+                return WITHDRAW_PATH.equals(path) ? withdrawRoute : DEPOSIT_PATH.equals(path) ? depositRoute : null;
+            case "DELETE":
+                return ACCOUNTS_PATH.equals(path) ? deleteAccountsRoute : null;
+            case "GET":
+                if (ACCOUNTS_PATH.equals(path)) {
+                    return getAccountsRoute;
+                }
+                if (EXPORT_PATH.equals(path)) {
+                    return exportAccountsRoute;
+                }
+                if (path.endsWith(TRANSACTIONS_PATH) && path.indexOf('/', 1) == path.length() - TRANSACTIONS_PATH.length()) {
+                    return getTransactionsRoute;
+                }
+                return path.length() > 1 && path.indexOf('/', 1) < 0 ? getAccountRoute : null;
+            default:
+                return null;
+        }
+    }
+
+    private LatencyRecorder scheduledRecorderOf(String method, String path) {
+        if (path.isEmpty()) {
+            return "POST".equals(method) ? scheduleTransferRoute : "GET".equals(method) ? getScheduledTransfersRoute : null;
+        }
+        if (path.length() > 1 && path.indexOf('/', 1) < 0) {
+            return "GET".equals(method) ? getScheduledTransferRoute : "DELETE".equals(method) ? cancelScheduledTransferRoute : null;
+        }
+        return null;
+    }
+
+    /*
+    * The path within /accounts is taken in service(), Jetty resets it once service() has returned.
+    * */
+    private CompletableFuture<Reply> route(PendingResponse pending, HttpServletRequest request, String method, String path,
+                                           byte[] body) {
+        switch (method + ' ' + path) {
+            case "POST " + ACCOUNTS_PATH:
+                CreateAccountRequest createAccountRequest = readBody(body, CreateAccountRequest.class);
+                return onWorker(() -> Reply.json(HttpStatus.CREATED_201, accountService.createAccount(createAccountRequest)));
+            case "POST " + BULK_PATH:
+                BulkCreateAccountRequest bulkCreateAccountRequest = readBody(body, BulkCreateAccountRequest.class);
+                return onWorker(() -> Reply.json(HttpStatus.OK_200, accountService.createAccounts(bulkCreateAccountRequest.getAccounts())));
+            case "POST " + IMPORT_PATH:
+                AccountImportReader reader = new AccountImportReader(new ByteArrayInputStream(body),
+                        ImportFormat.of(request.getParameter("format"), request.getContentType()), jsonSerializer);
+                return onWorker(() -> {
+                    try {
+                        return Reply.json(HttpStatus.OK_200, accountImporter.importAccounts(reader));
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            case "POST " + BALANCES_PATH:
+                AccountBalancesRequest accountBalancesRequest = readBody(body, AccountBalancesRequest.class);
+                return onWorker(() -> Reply.json(HttpStatus.OK_200, accountService.getBalances(accountBalancesRequest.getAccountIds())));
+            case "DELETE " + ACCOUNTS_PATH:
+                return onWorker(() -> {
+                    accountService.deleteAllAccounts();
+                    return Reply.json(HttpStatus.OK_200, accountsDeleted);
+                });
+            case "POST " + TRANSFER_PATH:
+                return moveMoney(request, "transfer", readBody(body, TransferMoneyRequest.class),
+                        transferMoneyRequest -> asyncAccountService.transferMoneyAsync(transferMoneyRequest),
+                        accountService::transferMoney, moneyTransferred);
+            case "POST " + BATCH_TRANSFER_PATH:
+                BatchTransferRequest batchTransferRequest = readBody(body, BatchTransferRequest.class);
+                return onWorker(() -> Reply.json(HttpStatus.OK_200, accountService.transferMoneyInBatch(batchTransferRequest)));
+            case "PUT " + WITHDRAW_PATH:
+                return moveMoney(request, "withdraw", readBody(body, WithdrawMoneyRequest.class),
+                        withdrawMoneyRequest -> asyncAccountService.withdrawMoneyAsync(withdrawMoneyRequest),
+                        accountService::withdrawMoney, amountWithdrawn);
+            case "PUT " + DEPOSIT_PATH:
+                return moveMoney(request, "deposit", readBody(body, DepositMoneyRequest.class),
+                        depositMoneyRequest -> asyncAccountService.depositMoneyAsync(depositMoneyRequest),
+                        accountService::depositMoney, amountDeposited);
+            default:
+                if (isScheduledPath(path)) {
+                    return scheduled(request, method, path.substring(SCHEDULED_PATH.length()), body);
+                }
+                return "GET".equals(method) ? get(pending, request, path) : CompletableFuture.completedFuture(notFound());
+        }
+    }
+
+    /*
+    * GET of the account list, the export, /{accountId} and /{accountId}/transactions, any other path is not found.
+    * Listing and exporting walk the whole store, so they run on the worker executor whatever the engine. The export is
+    * written by its worker task itself, never by the thread which completes the reply, and has no timeout, as it takes
+    * as long as the store is large. The reply of the task is then dropped, the request has been answered.
+    * */
+    private CompletableFuture<Reply> get(PendingResponse pending, HttpServletRequest request, String path) {
+        if (ACCOUNTS_PATH.equals(path)) {
+            String cursor = request.getParameter("cursor");
+            String limit = request.getParameter("limit");
+            UUID after = cursor == null ? null : UUID.fromString(cursor);
+            int pageSize = limit == null ? AccountService.DEFAULT_ACCOUNT_PAGE_SIZE : Integer.parseInt(limit);
+            return onWorker(() -> Reply.json(HttpStatus.OK_200, accountService.getAccounts(after, pageSize)));
+        }
+        if (EXPORT_PATH.equals(path)) {
+            return onWorker(() -> {
+                Reply reply = Reply.streamed(NDJSON_CONTENT_TYPE, this::writeAccounts);
+                complete(pending, reply);
+                return reply;
+            });
+        }
+        if (path.endsWith(TRANSACTIONS_PATH) && path.indexOf('/', 1) == path.length() - TRANSACTIONS_PATH.length()) {
+            UUID accountId = UUID.fromString(path.substring(1, path.length() - TRANSACTIONS_PATH.length()));
+            String cursor = request.getParameter("cursor");
+            String limit = request.getParameter("limit");
+            return read(() -> Reply.json(HttpStatus.OK_200, accountService.getTransactions(accountId,
+                    cursor == null ? null : Long.valueOf(cursor),
+                    limit == null ? TransactionLedger.DEFAULT_PAGE_SIZE : Integer.parseInt(limit))));
+        }
+        if (path.length() > 1 && path.indexOf('/', 1) < 0) {
+            UUID accountId = UUID.fromString(path.substring(1));
+            return read(() -> Reply.json(HttpStatus.OK_200, accountService.getAccount(accountId)));
+        }
+        return CompletableFuture.completedFuture(notFound());
+    }
+
+    /*
+    * POST and GET of /transfers/scheduled, GET and DELETE of /transfers/scheduled/{scheduledTransferId}.
+    * */
+    private CompletableFuture<Reply> scheduled(HttpServletRequest request, String method, String path, byte[] body) {
+        if (path.isEmpty() && "POST".equals(method)) {
+            ScheduleTransferRequest scheduleTransferRequest = readBody(body, ScheduleTransferRequest.class);
+            return onWorker(() -> Reply.json(HttpStatus.CREATED_201, transferScheduler.schedule(scheduleTransferRequest)));
+        }
+        if (path.isEmpty() && "GET".equals(method)) {
+            String accountId = request.getParameter("accountId");
+            return CompletableFuture.completedFuture(Reply.json(HttpStatus.OK_200,
+                    transferScheduler.getScheduledTransfers(accountId == null ? null : UUID.fromString(accountId))));
+        }
+        if (path.length() > 1 && path.indexOf('/', 1) < 0) {
+            UUID scheduledTransferId = UUID.fromString(path.substring(1));
+            if ("GET".equals(method)) {
+                return CompletableFuture.completedFuture(Reply.json(HttpStatus.OK_200,
+                        transferScheduler.getScheduledTransfer(scheduledTransferId)));
+            }
+            if ("DELETE".equals(method)) {
+                return CompletableFuture.completedFuture(Reply.json(HttpStatus.OK_200, transferScheduler.cancel(scheduledTransferId)));
+            }
+        }
+        return CompletableFuture.completedFuture(notFound());
+    }
+
+    private static boolean isExport(String method, String path) {
+        return "GET".equals(method) && EXPORT_PATH.equals(path);
+    }
+
+    private static boolean isScheduledPath(String path) {
+        return path.startsWith(SCHEDULED_PATH) && (path.length() == SCHEDULED_PATH.length() || path.charAt(SCHEDULED_PATH.length()) == '/');
+    }
+
+    /*
+    * Requests with an Idempotency-Key go through the IdempotencyCache, which may wait on the first request with the key.
+    * */
+    private <T> CompletableFuture<Reply> moveMoney(HttpServletRequest request, String operation, T moneyRequest,
+                                                   Function<T, CompletableFuture<Void>> asyncAction, Consumer<T> action,
+                                                   String body) {
+        String idempotencyKey = request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        if (idempotencyKey == null && asyncAccountService != null) {
+            return asyncAction.apply(moneyRequest).thenApply(ignored -> Reply.json(HttpStatus.OK_200, body));
+        }
+        return onWorker(() -> {
+            if (idempotencyKey == null) {
+                action.accept(moneyRequest);
+                return Reply.json(HttpStatus.OK_200, body);
+            }
+            IdempotentResult result = idempotencyCache.execute(operation, idempotencyKey, moneyRequest, () -> {
+                action.accept(moneyRequest);
+                return body;
+            });
+            Reply reply = Reply.json(HttpStatus.OK_200, result.getBody());
+            reply.replayed = result.isReplayed();
+            return reply;
+        });
+    }
+
+    private CompletableFuture<Reply> read(Supplier<Reply> action) {
+        return asyncAccountService != null ? CompletableFuture.completedFuture(action.get()) : onWorker(action);
+    }
+
+    private CompletableFuture<Reply> onWorker(Supplier<Reply> action) {
+        return CompletableFuture.supplyAsync(action, workers);
+    }
+
+    private <T> T readBody(byte[] body, Class<T> type) {
+        return jsonSerializer.read(new ByteArrayInputStream(body), type);
+    }
+
+    private Reply errorReply(Throwable throwable) {
+        Throwable ex = throwable;
+        while ((ex instanceof CompletionException || ex instanceof ExecutionException) && ex.getCause() != null) {
+            ex = ex.getCause();
+        }
+        metricsRegistry.rejected(ex);
+        ErrorResponse errorResponse = ErrorResponse.of(ex);
+        if (errorResponse != null) {
+            Reply reply = Reply.text(errorResponse.getStatus(), errorResponse.getBody());
+            reply.retryAfterSeconds = errorResponse.getRetryAfterSeconds();
+            return reply;
+        }
+        LOGGER.error("Request failed.", ex);
+        return Reply.text(HttpStatus.INTERNAL_SERVER_ERROR_500, "Internal server error.");
+    }
+
+    private static Reply notFound() {
+        return Reply.text(HttpStatus.NOT_FOUND_404, "Not found.");
+    }
+
+    /*
+    * Written by complete() inside the worker task of the export, without a Content-Length, so it is sent chunked.
+    * */
+    private void writeAccounts(OutputStream outputStream) throws IOException {
+        JsonSerializer.LineWriter lineWriter = jsonSerializer.lineWriter(outputStream);
+        try {
+            accountService.exportAccounts(account -> {
+                try {
+                    lineWriter.write(account);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        lineWriter.flush();
+    }
+
+    /*
+    * Writes the reply, unless the request has been answered already. The container may have completed the request too,
+    * when the client went away.
+    * */
+    private void complete(PendingResponse pending, Reply reply) {
+        if (!pending.answered.compareAndSet(false, true)) {
+            return;
+        }
+        AsyncContext asyncContext = pending.asyncContext;
+        try {
+            HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+            if (reply.body instanceof StreamedBody) {
+                response.setStatus(reply.status);
+                response.setContentType(reply.contentType);
+                ((StreamedBody) reply.body).writeTo(response.getOutputStream());
+                return;
+            }
+            byte[] body = reply.body instanceof String
+                    ? ((String) reply.body).getBytes(StandardCharsets.UTF_8)
+                    : serialize(reply.body);
+            response.setStatus(reply.status);
+            response.setContentType(reply.contentType);
+            if (reply.replayed) {
+                response.setHeader(IDEMPOTENT_REPLAYED_HEADER, "true");
+            }
+            if (reply.retryAfterSeconds > 0) {
+                response.setHeader(ErrorResponse.RETRY_AFTER_HEADER, String.valueOf(reply.retryAfterSeconds));
+            }
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+        } catch (IOException | IllegalStateException ex) {
+            LOGGER.debug("Response could not be written.", ex);
+        } finally {
+            try {
+                asyncContext.complete();
+            } catch (IllegalStateException ex) {
+                LOGGER.debug("Request has been completed already.", ex);
+            }
+        }
+    }
+
+    private byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(256);
+        jsonSerializer.write(value, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    /*
+    * The async context of a request, with whether it has been answered.
+    * */
+    private static final class PendingResponse {
+
+        private final AsyncContext asyncContext;
+        private final AtomicBoolean answered = new AtomicBoolean();
+
+        private PendingResponse(AsyncContext asyncContext) {
+            this.asyncContext = asyncContext;
+        }
+    }
+
+    private final class TimeoutListener implements AsyncListener {
+
+        private final PendingResponse pending;
+
+        private TimeoutListener(PendingResponse pending) {
+            this.pending = pending;
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            complete(pending, errorReply(new ServiceOverloadedException("Request timed out, its change may still be made.")));
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    private interface StreamedBody {
+
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+
+    /*
+    * Status and body of a response, a String body is written as it is, a StreamedBody writes itself and any other body
+    * is serialized to JSON.
+    * */
+    private static final class Reply {
+
+        private final int status;
+        private final String contentType;
+        private final Object body;
+        private boolean replayed;
+        private long retryAfterSeconds;
+
+        private Reply(int status, String contentType, Object body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        private static Reply json(int status, Object body) {
+            return new Reply(status, JSON_CONTENT_TYPE, body);
+        }
+
+        private static Reply streamed(String contentType, StreamedBody body) {
+            return new Reply(HttpStatus.OK_200, contentType, body);
+        }
+
+        private static Reply text(int status, String message) {
+            return new Reply(status, TEXT_CONTENT_TYPE, String.valueOf(message));
+        }
+    }
+}
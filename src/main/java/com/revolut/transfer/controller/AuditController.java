@@ -0,0 +1,51 @@
+package com.revolut.transfer.controller;
+
+import com.google.inject.Inject;
+import com.revolut.transfer.audit.AuditReport;
+import com.revolut.transfer.audit.ConservationAuditor;
+import com.revolut.transfer.converter.AuditReportResponseConverter;
+import com.revolut.transfer.serialization.JsonSerializer;
+import org.eclipse.jetty.http.HttpStatus;
+
+import static spark.Spark.get;
+import static spark.Spark.post;
+
+public class AuditController {
+
+    private static final String BASE_URL = "/admin/audit";
+    private static final String JSON_CONTENT_TYPE = "application/json";
+
+    private ConservationAuditor conservationAuditor;
+    private AuditReportResponseConverter auditReportResponseConverter;
+    private JsonSerializer jsonSerializer;
+
+    @Inject
+    public AuditController(ConservationAuditor conservationAuditor, AuditReportResponseConverter auditReportResponseConverter,
+                           JsonSerializer jsonSerializer) {
+        this.conservationAuditor = conservationAuditor;
+        this.auditReportResponseConverter = auditReportResponseConverter;
+        this.jsonSerializer = jsonSerializer;
+    }
+
+    public void registerApiRoutes() {
+
+        get(BASE_URL, (request, response) -> {
+            AuditReport report = conservationAuditor.getLastReport();
+            if (report == null) {
+                response.status(HttpStatus.NOT_FOUND_404);
+                return "No audit has been run yet.";
+            }
+            response.type(JSON_CONTENT_TYPE);
+            return jsonSerializer.toJson(auditReportResponseConverter.createFrom(report));
+        });
+
+        /*
+        * Runs an audit right away, after the one in progress if any. Transfers go on meanwhile.
+        * */
+        post(BASE_URL, (request, response) -> {
+            AuditReport report = conservationAuditor.audit();
+            response.type(JSON_CONTENT_TYPE);
+            return jsonSerializer.toJson(auditReportResponseConverter.createFrom(report));
+        });
+    }
+}
@@ -0,0 +1,58 @@
+package com.revolut.transfer.controller;
+
+import com.revolut.transfer.audit.AuditReport;
+import com.revolut.transfer.audit.ConservationAuditor;
+import com.revolut.transfer.converter.AuditReportResponseConverter;
+import com.revolut.transfer.serialization.JsonSerializer;
+import org.eclipse.jetty.http.HttpStatus;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * GET and POST /admin/audit of the ASYNC HTTP mode, the same as the Spark routes of AuditController.
+ * An audit walks the whole store, so POST holds its Jetty thread for as long; it is an admin route, not a hot one.
+ * */
+public class AuditServlet extends HttpServlet {
+
+    private static final String JSON_CONTENT_TYPE = "application/json";
+    private static final String TEXT_CONTENT_TYPE = "text/plain";
+
+    private final ConservationAuditor conservationAuditor;
+    private final AuditReportResponseConverter auditReportResponseConverter;
+    private final JsonSerializer jsonSerializer;
+
+    public AuditServlet(ConservationAuditor conservationAuditor, AuditReportResponseConverter auditReportResponseConverter,
+                        JsonSerializer jsonSerializer) {
+        this.conservationAuditor = conservationAuditor;
+        this.auditReportResponseConverter = auditReportResponseConverter;
+        this.jsonSerializer = jsonSerializer;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        AuditReport report = conservationAuditor.getLastReport();
+        if (report == null) {
+            write(response, HttpStatus.NOT_FOUND_404, TEXT_CONTENT_TYPE, "No audit has been run yet.");
+            return;
+        }
+        write(response, HttpStatus.OK_200, JSON_CONTENT_TYPE, jsonSerializer.toJson(auditReportResponseConverter.createFrom(report)));
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        AuditReport report = conservationAuditor.audit();
+        write(response, HttpStatus.OK_200, JSON_CONTENT_TYPE, jsonSerializer.toJson(auditReportResponseConverter.createFrom(report)));
+    }
+
+    private static void write(HttpServletResponse response, int status, String contentType, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        response.setStatus(status);
+        response.setContentType(contentType);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+}
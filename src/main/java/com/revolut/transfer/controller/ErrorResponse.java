@@ -0,0 +1,98 @@
+package com.revolut.transfer.controller;
+
+import com.google.gson.JsonParseException;
+import com.revolut.transfer.execption.AccountAlreadyExistsException;
+import com.revolut.transfer.execption.AccountNotFoundException;
+import com.revolut.transfer.execption.AccountThrottledException;
+import com.revolut.transfer.execption.IdempotencyKeyReusedException;
+import com.revolut.transfer.execption.InsufficientBalanceException;
+import com.revolut.transfer.execption.JournalException;
+import com.revolut.transfer.execption.ScheduledTransferNotFoundException;
+import com.revolut.transfer.execption.ServiceOverloadedException;
+import org.eclipse.jetty.http.HttpStatus;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/*
+ * == NOTE ==:
+ * Status, plain text body and Retry-After header of the response to an exception. The Spark exception handlers of
+ * MoneyTransferAPI are registered for the mapped types and the servlets of the ASYNC HTTP mode look the exception up
+ * here, so a new exception type is mapped once for both front ends. An exception which is not mapped is an internal
+ * server error.
+ * */
+public final class ErrorResponse {
+
+    public static final String RETRY_AFTER_HEADER = "Retry-After";
+
+    private static final Map<Class<? extends Exception>, Function<Exception, ErrorResponse>> MAPPINGS = new LinkedHashMap<>();
+
+    static {
+        map(AccountAlreadyExistsException.class, ex -> new ErrorResponse(HttpStatus.CONFLICT_409, ex.getMessage(), 0));
+        map(AccountNotFoundException.class, ex -> new ErrorResponse(HttpStatus.NOT_FOUND_404, ex.getMessage(), 0));
+        map(ScheduledTransferNotFoundException.class, ex -> new ErrorResponse(HttpStatus.NOT_FOUND_404, ex.getMessage(), 0));
+        map(InsufficientBalanceException.class, ex -> new ErrorResponse(HttpStatus.BAD_REQUEST_400, ex.getMessage(), 0));
+        map(IllegalArgumentException.class, ex -> new ErrorResponse(HttpStatus.BAD_REQUEST_400, ex.getMessage(), 0));
+        map(ArithmeticException.class,
+                ex -> new ErrorResponse(HttpStatus.BAD_REQUEST_400, "Amount exceeds the supported balance range.", 0));
+        map(JournalException.class,
+                ex -> new ErrorResponse(HttpStatus.SERVICE_UNAVAILABLE_503, "Change could not be made durable.", 0));
+        map(IdempotencyKeyReusedException.class,
+                ex -> new ErrorResponse(HttpStatus.UNPROCESSABLE_ENTITY_422, ex.getMessage(), 0));
+        map(JsonParseException.class, ex -> new ErrorResponse(HttpStatus.BAD_REQUEST_400, "Malformed request body.", 0));
+        map(AccountThrottledException.class,
+                ex -> new ErrorResponse(HttpStatus.TOO_MANY_REQUESTS_429, ex.getMessage(), ex.getRetryAfterSeconds()));
+        map(ServiceOverloadedException.class, ex -> new ErrorResponse(HttpStatus.SERVICE_UNAVAILABLE_503, ex.getMessage(), 1));
+    }
+
+    private final int status;
+    private final String body;
+    private final long retryAfterSeconds;
+
+    private ErrorResponse(int status, String body, long retryAfterSeconds) {
+        this.status = status;
+        this.body = body;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    private static <T extends Exception> void map(Class<T> type, Function<T, ErrorResponse> mapping) {
+        MAPPINGS.put(type, ex -> mapping.apply(type.cast(ex)));
+    }
+
+    /**
+     * @return the exception types with a response, including their subtypes
+     */
+    public static Set<Class<? extends Exception>> getMappedTypes() {
+        return Collections.unmodifiableSet(MAPPINGS.keySet());
+    }
+
+    /**
+     * @return the response to the exception, null when it is not mapped
+     */
+    public static ErrorResponse of(Throwable ex) {
+        for (Map.Entry<Class<? extends Exception>, Function<Exception, ErrorResponse>> mapping : MAPPINGS.entrySet()) {
+            if (mapping.getKey().isInstance(ex)) {
+                return mapping.getValue().apply((Exception) ex);
+            }
+        }
+        return null;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * @return seconds for the Retry-After header, 0 for none
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,48 @@
+package com.revolut.transfer.controller;
+
+import com.google.inject.Inject;
+import com.revolut.transfer.converter.FxRatesResponseConverter;
+import com.revolut.transfer.fx.FxRates;
+import com.revolut.transfer.request.UpdateFxRatesRequest;
+import com.revolut.transfer.serialization.JsonSerializer;
+
+import static spark.Spark.get;
+import static spark.Spark.put;
+
+public class FxController {
+
+    private static final String BASE_URL = "/fx/rates";
+    private static final String JSON_CONTENT_TYPE = "application/json";
+
+    private FxRates fxRates;
+    private FxRatesResponseConverter fxRatesResponseConverter;
+    private JsonSerializer jsonSerializer;
+
+    @Inject
+    public FxController(FxRates fxRates, FxRatesResponseConverter fxRatesResponseConverter, JsonSerializer jsonSerializer) {
+        this.fxRates = fxRates;
+        this.fxRatesResponseConverter = fxRatesResponseConverter;
+        this.jsonSerializer = jsonSerializer;
+    }
+
+    public void registerApiRoutes() {
+
+        get(BASE_URL, (request, response) -> {
+            response.type(JSON_CONTENT_TYPE);
+            return jsonSerializer.toJson(fxRatesResponseConverter.createFrom(fxRates.getTable()));
+        });
+
+        /*
+        * Replaces all rates at once, transfers in flight finish with the rates they started with.
+        * */
+        put(BASE_URL, (request, response) -> {
+            UpdateFxRatesRequest updateFxRatesRequest = jsonSerializer.read(request.body(), UpdateFxRatesRequest.class);
+            if (updateFxRatesRequest == null) {
+                throw new IllegalArgumentException("Request body can not be empty.");
+            }
+            fxRates.update(fxRatesResponseConverter.createFrom(updateFxRatesRequest));
+            response.type(JSON_CONTENT_TYPE);
+            return jsonSerializer.toJson(fxRatesResponseConverter.createFrom(fxRates.getTable()));
+        });
+    }
+}
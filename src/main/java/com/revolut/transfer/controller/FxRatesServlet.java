@@ -0,0 +1,63 @@
+package com.revolut.transfer.controller;
+
+import com.google.gson.JsonParseException;
+import com.revolut.transfer.converter.FxRatesResponseConverter;
+import com.revolut.transfer.fx.FxRateTable;
+import com.revolut.transfer.fx.FxRates;
+import com.revolut.transfer.request.UpdateFxRatesRequest;
+import com.revolut.transfer.serialization.JsonSerializer;
+import org.eclipse.jetty.http.HttpStatus;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * GET and PUT /fx/rates of the ASYNC HTTP mode, the same as the Spark routes of FxController.
+ * Neither waits for an engine, so both are served right away on the Jetty thread.
+ * */
+public class FxRatesServlet extends HttpServlet {
+
+    private static final String JSON_CONTENT_TYPE = "application/json";
+    private static final String TEXT_CONTENT_TYPE = "text/plain";
+
+    private final FxRates fxRates;
+    private final FxRatesResponseConverter fxRatesResponseConverter;
+    private final JsonSerializer jsonSerializer;
+
+    public FxRatesServlet(FxRates fxRates, FxRatesResponseConverter fxRatesResponseConverter, JsonSerializer jsonSerializer) {
+        this.fxRates = fxRates;
+        this.fxRatesResponseConverter = fxRatesResponseConverter;
+        this.jsonSerializer = jsonSerializer;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        write(response, HttpStatus.OK_200, JSON_CONTENT_TYPE, jsonSerializer.toJson(fxRatesResponseConverter.createFrom(fxRates.getTable())));
+    }
+
+    @Override
+    protected void doPut(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        FxRateTable table;
+        try {
+            table = fxRatesResponseConverter.createFrom(jsonSerializer.<UpdateFxRatesRequest>read(request.getInputStream(),
+                    UpdateFxRatesRequest.class));
+        } catch (IllegalArgumentException | JsonParseException ex) {
+            ErrorResponse errorResponse = ErrorResponse.of(ex);
+            write(response, errorResponse.getStatus(), TEXT_CONTENT_TYPE, String.valueOf(errorResponse.getBody()));
+            return;
+        }
+        fxRates.update(table);
+        write(response, HttpStatus.OK_200, JSON_CONTENT_TYPE, jsonSerializer.toJson(fxRatesResponseConverter.createFrom(table)));
+    }
+
+    private static void write(HttpServletResponse response, int status, String contentType, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        response.setStatus(status);
+        response.setContentType(contentType);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+}
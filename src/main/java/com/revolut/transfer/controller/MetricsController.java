@@ -0,0 +1,47 @@
+package com.revolut.transfer.controller;
+
+import com.google.inject.Inject;
+import com.revolut.transfer.idempotency.IdempotencyCache;
+import com.revolut.transfer.metrics.PrometheusExporter;
+import com.revolut.transfer.response.IdempotencyMetricsResponse;
+import com.revolut.transfer.serialization.JsonSerializer;
+
+import static spark.Spark.get;
+
+public class MetricsController {
+
+    private static final String BASE_URL = "/metrics";
+    private static final String JSON_CONTENT_TYPE = "application/json";
+
+    private IdempotencyCache idempotencyCache;
+    private JsonSerializer jsonSerializer;
+    private PrometheusExporter prometheusExporter;
+
+    @Inject
+    public MetricsController(IdempotencyCache idempotencyCache, JsonSerializer jsonSerializer, PrometheusExporter prometheusExporter) {
+        this.idempotencyCache = idempotencyCache;
+        this.jsonSerializer = jsonSerializer;
+        this.prometheusExporter = prometheusExporter;
+    }
+
+    public void registerApiRoutes() {
+
+        get(BASE_URL, (request, response) -> {
+            response.type(PrometheusExporter.CONTENT_TYPE);
+            return prometheusExporter.scrape();
+        });
+
+        get(BASE_URL + "/idempotency", (request, response) -> {
+            response.type(JSON_CONTENT_TYPE);
+            return jsonSerializer.toJson(IdempotencyMetricsResponse.builder()
+                    .hits(idempotencyCache.getHits())
+                    .coalesced(idempotencyCache.getCoalesced())
+                    .misses(idempotencyCache.getMisses())
+                    .hitRate(idempotencyCache.getHitRate())
+                    .evictions(idempotencyCache.getEvictions())
+                    .entries(idempotencyCache.getEntries())
+                    .estimatedBytes(idempotencyCache.getEstimatedBytes())
+                    .build());
+        });
+    }
+}
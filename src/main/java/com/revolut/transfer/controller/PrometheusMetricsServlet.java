@@ -0,0 +1,30 @@
+package com.revolut.transfer.controller;
+
+import com.revolut.transfer.metrics.PrometheusExporter;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * GET /metrics of the ASYNC HTTP mode, the same text as the Spark route of MetricsController.
+ * Scraping only reads counters, so it is served right away on the Jetty thread.
+ * */
+public class PrometheusMetricsServlet extends HttpServlet {
+
+    private final PrometheusExporter prometheusExporter;
+
+    public PrometheusMetricsServlet(PrometheusExporter prometheusExporter) {
+        this.prometheusExporter = prometheusExporter;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        byte[] body = prometheusExporter.scrape().getBytes(StandardCharsets.UTF_8);
+        response.setContentType(PrometheusExporter.CONTENT_TYPE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+}
@@ -1,7 +1,14 @@
 package com.revolut.transfer.converter;
 
+import com.revolut.transfer.ledger.Posting;
 import com.revolut.transfer.model.Account;
 import com.revolut.transfer.response.AccountResponse;
+import com.revolut.transfer.response.TransactionPageResponse;
+import com.revolut.transfer.response.TransactionResponse;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 
 public class AccountResponseConverter {
 
@@ -9,7 +16,31 @@ public class AccountResponseConverter {
         return AccountResponse.builder()
                 .accountId(account.getId())
                 .userId(account.getUserId())
-                .balance(account.getBalance())
+                .balance(MoneyConverter.toDecimal(account.getBalance(), account.getCurrency()))
+                .currency(account.getCurrency())
+                .build();
+    }
+
+    /*
+    * Every posting is in the currency of the account: a cross currency transfer is debited in the currency of the
+    * source account and credited in the currency of the target account.
+    * */
+    public TransactionPageResponse createFrom(Account account, List<Posting> postings, Long nextCursor) {
+        List<TransactionResponse> transactions = new ArrayList<>(postings.size());
+        for (Posting posting : postings) {
+            transactions.add(TransactionResponse.builder()
+                    .transactionId(posting.getSequence())
+                    .type(posting.getType())
+                    .amount(MoneyConverter.toDecimal(posting.getAmount(), account.getCurrency()))
+                    .balance(MoneyConverter.toDecimal(posting.getBalance(), account.getCurrency()))
+                    .counterpartyAccountId(posting.getCounterpartyAccountId())
+                    .timestamp(Instant.ofEpochMilli(posting.getTimestamp()))
+                    .build());
+        }
+        return TransactionPageResponse.builder()
+                .accountId(account.getId())
+                .transactions(transactions)
+                .nextCursor(nextCursor)
                 .build();
     }
 }
@@ -0,0 +1,33 @@
+package com.revolut.transfer.converter;
+
+import com.revolut.transfer.audit.AuditReport;
+import com.revolut.transfer.response.AuditReportResponse;
+import com.revolut.transfer.response.CurrencyAudit;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class AuditReportResponseConverter {
+
+    public AuditReportResponse createFrom(AuditReport report) {
+        List<CurrencyAudit> currencies = new ArrayList<>(report.getCurrencies().size());
+        for (AuditReport.Totals totals : report.getCurrencies()) {
+            currencies.add(CurrencyAudit.builder()
+                    .currency(totals.getCurrency())
+                    .balance(MoneyConverter.toDecimal(totals.getBalance(), totals.getCurrency()))
+                    .inFlight(MoneyConverter.toDecimal(totals.getInFlight(), totals.getCurrency()))
+                    .expected(MoneyConverter.toDecimal(totals.getExpected(), totals.getCurrency()))
+                    .discrepancy(MoneyConverter.toDecimal(totals.getDiscrepancy(), totals.getCurrency()))
+                    .build());
+        }
+        return AuditReportResponse.builder()
+                .auditedAt(Instant.ofEpochMilli(report.getAuditedAtMillis()))
+                .durationMillis(TimeUnit.NANOSECONDS.toMillis(report.getDurationNanos()))
+                .accounts(report.getAccounts())
+                .balanced(report.isBalanced())
+                .currencies(currencies)
+                .build();
+    }
+}
@@ -0,0 +1,26 @@
+package com.revolut.transfer.converter;
+
+import com.revolut.transfer.fx.FxRateTable;
+import com.revolut.transfer.request.UpdateFxRatesRequest;
+import com.revolut.transfer.response.FxRatesResponse;
+
+import java.time.Instant;
+import java.util.Map;
+
+public class FxRatesResponseConverter {
+
+    public FxRatesResponse createFrom(FxRateTable table) {
+        return FxRatesResponse.builder()
+                .base(table.getBase())
+                .rates(table.getRates())
+                .updatedAt(Instant.ofEpochMilli(table.getCreatedAtMillis()))
+                .build();
+    }
+
+    /**
+     * @throws IllegalArgumentException when the base currency is missing or a rate is invalid
+     */
+    public FxRateTable createFrom(UpdateFxRatesRequest request) {
+        return FxRateTable.of(request.getBase(), request.getRates() == null ? Map.of() : request.getRates());
+    }
+}
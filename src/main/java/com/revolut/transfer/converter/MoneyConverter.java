@@ -0,0 +1,52 @@
+package com.revolut.transfer.converter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/*
+ * == NOTE ==:
+ * Balances are kept as long minor units (e.g. pence) of the currency, so the transfer path only does
+ * overflow checked long arithmetic and allocates nothing. BigDecimal is only used at the JSON edge:
+ * request amounts are converted to minor units once, and balances are converted back in responses.
+ * */
+public final class MoneyConverter {
+
+    public static final Currency DEFAULT_CURRENCY = Currency.getInstance("GBP");
+
+    private MoneyConverter() {
+    }
+
+    public static long toMinorUnits(BigDecimal amount) {
+        return toMinorUnits(amount, DEFAULT_CURRENCY);
+    }
+
+    public static long toMinorUnits(BigDecimal amount, Currency currency) {
+        if (amount == null) {
+            throw new IllegalArgumentException("Amount can not be null.");
+        }
+        int scale = scaleOf(currency);
+        try {
+            return amount.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Invalid amount provided: " + amount.toPlainString()
+                    + ". Amount should fit in " + scale + " decimal places for " + currency.getCurrencyCode() + ".");
+        }
+    }
+
+    public static BigDecimal toDecimal(long minorUnits) {
+        return toDecimal(minorUnits, DEFAULT_CURRENCY);
+    }
+
+    /*
+    * Trailing zeros are dropped, so whole amounts are rendered as they were received, e.g. 100 instead of 100.00
+    * */
+    public static BigDecimal toDecimal(long minorUnits, Currency currency) {
+        BigDecimal amount = BigDecimal.valueOf(minorUnits, scaleOf(currency)).stripTrailingZeros();
+        return amount.scale() < 0 ? amount.setScale(0) : amount;
+    }
+
+    public static int scaleOf(Currency currency) {
+        return Math.max(currency.getDefaultFractionDigits(), 0);
+    }
+}
@@ -0,0 +1,15 @@
+package com.revolut.transfer.execption;
+
+public class AccountThrottledException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public AccountThrottledException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
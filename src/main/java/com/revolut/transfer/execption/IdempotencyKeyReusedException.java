@@ -0,0 +1,8 @@
+package com.revolut.transfer.execption;
+
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    public IdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.revolut.transfer.execption;
+
+public class ScheduledTransferNotFoundException extends RuntimeException {
+
+    public ScheduledTransferNotFoundException(String message) {
+        super(message);
+    }
+}
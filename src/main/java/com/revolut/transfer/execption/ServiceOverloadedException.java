@@ -0,0 +1,8 @@
+package com.revolut.transfer.execption;
+
+public class ServiceOverloadedException extends RuntimeException {
+
+    public ServiceOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,166 @@
+package com.revolut.transfer.fx;
+
+import com.revolut.transfer.converter.MoneyConverter;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * == NOTE ==:
+ * Immutable matrix of the conversion factors between every pair of currencies with a rate. Rates are quoted against one
+ * base currency (units of the currency per unit of the base), so the rate from one currency to another is
+ * rate(to) / rate(from). All of them are computed once, when the table is built, as fixed point factors with 9 decimals
+ * which already include the difference of the minor units of both currencies (e.g. pence to yen).
+ *
+ * Converting is then a lookup of the factor and one multiplication and division of longs, 128 bits wide so that no
+ * balance overflows halfway. It allocates nothing and takes no lock, which is what lets the engines convert inside the
+ * critical section of a transfer. The result is rounded to the nearest minor unit of the target currency, halves up.
+ * A factor is rounded to 9 decimals, so an amount below a billion minor units is at most one minor unit off the quoted rate.
+ * */
+public final class FxRateTable {
+
+    public static final int FACTOR_DECIMALS = 9;
+
+    private static final long FACTOR_UNIT = 1_000_000_000L;
+    private static final long LOW_32_BITS = 0xffffffffL;
+
+    private final Currency base;
+    private final Map<Currency, BigDecimal> rates;
+    private final Map<Currency, Integer> indexes;
+    private final long[] factors;
+    private final int currencyCount;
+    private final long createdAtMillis;
+
+    private FxRateTable(Currency base, Map<Currency, BigDecimal> rates, Map<Currency, Integer> indexes, long[] factors) {
+        this.base = base;
+        this.rates = rates;
+        this.indexes = indexes;
+        this.factors = factors;
+        this.currencyCount = rates.size();
+        this.createdAtMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * @param base  currency the rates are quoted against
+     * @param rates units of each currency per unit of the base currency, the base currency itself may be left out
+     * @throws IllegalArgumentException when a rate is not positive, or two currencies are too far apart to be converted
+     */
+    public static FxRateTable of(Currency base, Map<Currency, BigDecimal> rates) {
+        if (base == null) {
+            throw new IllegalArgumentException("Base currency can not be null.");
+        }
+        Map<Currency, BigDecimal> quoted = new LinkedHashMap<>();
+        quoted.put(base, BigDecimal.ONE);
+        for (Map.Entry<Currency, BigDecimal> rate : rates.entrySet()) {
+            if (rate.getKey() == null || rate.getValue() == null || rate.getValue().signum() <= 0) {
+                throw new IllegalArgumentException("Invalid FX rate provided for " + rate.getKey() + ". Rates should be positive.");
+            }
+            if (rate.getKey() != base) {
+                quoted.put(rate.getKey(), rate.getValue());
+            }
+        }
+
+        Currency[] currencies = quoted.keySet().toArray(new Currency[0]);
+        Map<Currency, Integer> indexes = new HashMap<>();
+        long[] factors = new long[currencies.length * currencies.length];
+        for (int from = 0; from < currencies.length; from++) {
+            indexes.put(currencies[from], from);
+            for (int to = 0; to < currencies.length; to++) {
+                factors[from * currencies.length + to] = factorOf(currencies[from], quoted.get(currencies[from]),
+                        currencies[to], quoted.get(currencies[to]));
+            }
+        }
+        return new FxRateTable(base, Collections.unmodifiableMap(quoted), Map.copyOf(indexes), factors);
+    }
+
+    /**
+     * Table with no rates, which only converts a currency to itself.
+     */
+    public static FxRateTable empty() {
+        return of(MoneyConverter.DEFAULT_CURRENCY, Map.of());
+    }
+
+    /**
+     * @param minorUnits amount in minor units of the from currency, not negative
+     * @return the amount in minor units of the to currency, rounded to the nearest minor unit
+     * @throws IllegalArgumentException when there is no rate for one of the currencies
+     * @throws ArithmeticException      when the converted amount does not fit in a long
+     */
+    public long convert(long minorUnits, Currency from, Currency to) {
+        if (from == to) {
+            return minorUnits;
+        }
+        Integer fromIndex = indexes.get(from);
+        Integer toIndex = indexes.get(to);
+        if (fromIndex == null || toIndex == null) {
+            throw new IllegalArgumentException("No FX rate from " + from.getCurrencyCode() + " to " + to.getCurrencyCode() + ".");
+        }
+        if (minorUnits < 0) {
+            throw new IllegalArgumentException("Only amounts which are not negative are converted.");
+        }
+        return multiplyDivide(minorUnits, factors[fromIndex * currencyCount + toIndex]);
+    }
+
+    public Currency getBase() {
+        return base;
+    }
+
+    /**
+     * @return the rates as quoted against the base currency, including the base currency
+     */
+    public Map<Currency, BigDecimal> getRates() {
+        return rates;
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    /*
+    * rate(to) / rate(from), shifted by the minor unit digits of both currencies, with FACTOR_DECIMALS decimals.
+    * */
+    private static long factorOf(Currency from, BigDecimal fromRate, Currency to, BigDecimal toRate) {
+        BigDecimal factor = toRate.divide(fromRate, MathContext.DECIMAL128)
+                .scaleByPowerOfTen(MoneyConverter.scaleOf(to) - MoneyConverter.scaleOf(from) + FACTOR_DECIMALS)
+                .setScale(0, RoundingMode.HALF_EVEN);
+        if (factor.signum() <= 0 || factor.unscaledValue().bitLength() > 63) {
+            throw new IllegalArgumentException("FX rate from " + from.getCurrencyCode() + " to " + to.getCurrencyCode()
+                    + " is out of the supported range.");
+        }
+        return factor.longValueExact();
+    }
+
+    /*
+    * value * factor / FACTOR_UNIT, rounded half up, for values and factors which are not negative. The product may take
+    * up to 126 bits, it is divided 32 bits at a time: every remainder is below FACTOR_UNIT < 2^30, so every step fits in a long.
+    * */
+    static long multiplyDivide(long value, long factor) {
+        long high = Math.multiplyHigh(value, factor);
+        long low = value * factor;
+        if (high == 0 && low >= 0) {
+            return roundHalfUp(low / FACTOR_UNIT, low % FACTOR_UNIT);
+        }
+        long dividend = high >>> 32;
+        long quotient3 = dividend / FACTOR_UNIT;
+        dividend = (dividend % FACTOR_UNIT) << 32 | (high & LOW_32_BITS);
+        long quotient2 = dividend / FACTOR_UNIT;
+        dividend = (dividend % FACTOR_UNIT) << 32 | (low >>> 32);
+        long quotient1 = dividend / FACTOR_UNIT;
+        dividend = (dividend % FACTOR_UNIT) << 32 | (low & LOW_32_BITS);
+        long quotient0 = dividend / FACTOR_UNIT;
+        if (quotient3 != 0 || quotient2 != 0 || quotient1 > Integer.MAX_VALUE) {
+            throw new ArithmeticException("long overflow");
+        }
+        return roundHalfUp(quotient1 << 32 | quotient0, dividend % FACTOR_UNIT);
+    }
+
+    private static long roundHalfUp(long quotient, long remainder) {
+        return remainder >= FACTOR_UNIT / 2 ? Math.addExact(quotient, 1) : quotient;
+    }
+}
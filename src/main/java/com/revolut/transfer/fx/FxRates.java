@@ -0,0 +1,40 @@
+package com.revolut.transfer.fx;
+
+import java.util.Currency;
+
+/*
+ * == NOTE ==:
+ * The FX rates in use. Engines read the current FxRateTable with a single volatile read and convert with it, so a
+ * transfer never waits for an update. An update builds a whole new table and publishes it with one volatile write:
+ * a transfer converts with either the old or the new table, never with a mix of both.
+ * */
+public class FxRates {
+
+    private volatile FxRateTable table;
+
+    public FxRates(FxRateTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Rates for engines used with a single currency, only a currency to itself is converted.
+     */
+    public static FxRates none() {
+        return new FxRates(FxRateTable.empty());
+    }
+
+    public FxRateTable getTable() {
+        return table;
+    }
+
+    public void update(FxRateTable table) {
+        this.table = table;
+    }
+
+    /**
+     * @see FxRateTable#convert(long, Currency, Currency)
+     */
+    public long convert(long minorUnits, Currency from, Currency to) {
+        return from == to ? minorUnits : table.convert(minorUnits, from, to);
+    }
+}
@@ -0,0 +1,241 @@
+package com.revolut.transfer.idempotency;
+
+import com.revolut.transfer.execption.AccountThrottledException;
+import com.revolut.transfer.execption.IdempotencyKeyReusedException;
+import com.revolut.transfer.execption.JournalException;
+import com.revolut.transfer.execption.ServiceOverloadedException;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/*
+ * == NOTE ==:
+ * Results of requests sent with an Idempotency-Key, so that a retried request is answered with the result of the first
+ * execution instead of moving money again. The first request with a key puts an in-flight entry into the map and runs
+ * the operation. A duplicate arriving meanwhile waits on that entry instead of running the operation a second time,
+ * and a duplicate arriving later gets the stored result right away. Neither takes any account lock.
+ *
+ * Failures are stored like results (a retried transfer with insufficient balance fails the same way), except journal
+ * failures: nothing is known about the durability of that change, so the entry is dropped and the next retry runs again.
+ * Requests turned away by the admission control never ran, so they are dropped as well.
+ * A key is bound to its request: sending another request with the same key fails instead of returning a wrong result.
+ *
+ * Completed entries are evicted in the order they were stored, when they are older than the time to live or when there
+ * are more completed entries than the limit. In-flight entries are neither evicted nor counted against the limit, so a
+ * burst of new keys can not push out results which are still within their time to live.
+ * */
+public class IdempotencyCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 100_000;
+    public static final long DEFAULT_TTL_SECONDS = 24 * 60 * 60;
+    public static final int MAX_KEY_LENGTH = 255;
+
+    /*
+    * Map node, queue node, entry, future, outcome and a parsed transfer request, measured with IdempotentRetryLoad.
+    * The key is added per entry, at one byte per character (compact strings). Response bodies are constants of the
+    * controller and not counted, failures are counted with their message and an allowance for the stack trace.
+    * */
+    static final int ENTRY_OVERHEAD_BYTES = 320;
+    static final int FAILURE_OVERHEAD_BYTES = 600;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> storedOrder = new ConcurrentLinkedQueue<>();
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final AtomicLong estimatedBytes = new AtomicLong();
+    private final AtomicInteger completedEntries = new AtomicInteger();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    public IdempotencyCache(int maxEntries, long ttl, TimeUnit unit) {
+        this(maxEntries, ttl, unit, System::nanoTime);
+    }
+
+    IdempotencyCache(int maxEntries, long ttl, TimeUnit unit, LongSupplier nanoClock) {
+        if (maxEntries <= 0 || ttl <= 0) {
+            throw new IllegalArgumentException("Idempotency cache size and time to live should be positive.");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Runs the operation once per key and request, see the class comment.
+     *
+     * @param operation      name of the endpoint, the same key may be used for different endpoints
+     * @param idempotencyKey key chosen by the client
+     * @param request        parsed request, compared with equals to the request first sent with the key. Money requests
+     *                       compare their amounts regardless of scale
+     * @param action         the operation, returning the response body
+     * @throws IdempotencyKeyReusedException when the key was sent before with another request
+     */
+    public IdempotentResult execute(String operation, String idempotencyKey, Object request, Supplier<String> action) {
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key should have 1 to " + MAX_KEY_LENGTH + " characters.");
+        }
+        String cacheKey = operation + ' ' + idempotencyKey;
+        while (true) {
+            Entry entry = entries.get(cacheKey);
+            if (entry != null && isExpired(entry, nanoClock.getAsLong())) {
+                remove(entry);
+                continue;
+            }
+            if (entry == null) {
+                Entry created = new Entry(cacheKey, request);
+                entry = entries.putIfAbsent(cacheKey, created);
+                if (entry == null) {
+                    misses.increment();
+                    return new IdempotentResult(run(created, action), false);
+                }
+            }
+            if (!Objects.equals(entry.request, request)) {
+                throw new IdempotencyKeyReusedException("Idempotency-Key " + idempotencyKey + " was already used for another request.");
+            }
+            if (entry.outcome.isDone()) {
+                hits.increment();
+            } else {
+                coalesced.increment();
+            }
+            Outcome outcome = entry.outcome.join();
+            if (outcome != null) {
+                return new IdempotentResult(outcome, true);
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Duplicates which arrived while the first request with their key was still running.
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return share of keyed requests answered without running the operation
+     */
+    public double getHitRate() {
+        long hits = getHits() + getCoalesced();
+        long requests = hits + getMisses();
+        return requests == 0 ? 0 : hits / (double) requests;
+    }
+
+    public int getEntries() {
+        return entries.size();
+    }
+
+    /**
+     * @return estimated heap bytes held by the stored entries
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes.get();
+    }
+
+    private Outcome run(Entry entry, Supplier<String> action) {
+        Outcome outcome;
+        try {
+            outcome = new Outcome(action.get(), null);
+        } catch (JournalException | AccountThrottledException | ServiceOverloadedException ex) {
+            abandon(entry);
+            throw ex;
+        } catch (RuntimeException ex) {
+            outcome = new Outcome(null, ex);
+        } catch (Error ex) {
+            abandon(entry);
+            throw ex;
+        }
+        store(entry, outcome);
+        return outcome;
+    }
+
+    /*
+    * Waiting duplicates find no outcome and run the operation themselves.
+    * */
+    private void abandon(Entry entry) {
+        entries.remove(entry.key, entry);
+        entry.outcome.complete(null);
+    }
+
+    private void store(Entry entry, Outcome outcome) {
+        long now = nanoClock.getAsLong();
+        entry.storedNanos = now;
+        entry.bytes = ENTRY_OVERHEAD_BYTES + entry.key.length()
+                + (outcome.getFailure() == null ? 0 : FAILURE_OVERHEAD_BYTES + String.valueOf(outcome.getFailure().getMessage()).length());
+        estimatedBytes.addAndGet(entry.bytes);
+        completedEntries.incrementAndGet();
+        entry.outcome.complete(outcome);
+        storedOrder.add(entry);
+
+        /*
+        * One thread evicts at a time, the others leave it to the next store. So the map can briefly hold
+        * as many completed entries above the limit as there are concurrent writers.
+        * */
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            Entry oldest;
+            while ((oldest = storedOrder.peek()) != null && (completedEntries.get() > maxEntries || isExpired(oldest, now))) {
+                storedOrder.poll();
+                remove(oldest);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return entry.outcome.isDone() && now - entry.storedNanos > ttlNanos;
+    }
+
+    /*
+    * Only called with completed entries, in-flight ones are dropped by abandon.
+    * */
+    private void remove(Entry entry) {
+        if (entries.remove(entry.key, entry)) {
+            estimatedBytes.addAndGet(-entry.bytes);
+            completedEntries.decrementAndGet();
+            evictions.increment();
+        }
+    }
+
+    private static final class Entry {
+
+        private final String key;
+        private final Object request;
+        private final CompletableFuture<Outcome> outcome = new CompletableFuture<>();
+        private volatile long storedNanos;
+        private volatile int bytes;
+
+        private Entry(String key, Object request) {
+            this.key = key;
+            this.request = request;
+        }
+    }
+}
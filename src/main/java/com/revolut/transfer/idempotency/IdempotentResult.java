@@ -0,0 +1,33 @@
+package com.revolut.transfer.idempotency;
+
+/*
+ * Result of one request sent with an Idempotency-Key.
+ * */
+public final class IdempotentResult {
+
+    private final Outcome outcome;
+    private final boolean replayed;
+
+    IdempotentResult(Outcome outcome, boolean replayed) {
+        this.outcome = outcome;
+        this.replayed = replayed;
+    }
+
+    /**
+     * @return response body of the operation
+     * @throws RuntimeException the failure of the operation, which the exception handlers turn into the same response
+     */
+    public String getBody() {
+        if (outcome.getFailure() != null) {
+            throw outcome.getFailure();
+        }
+        return outcome.getBody();
+    }
+
+    /**
+     * @return true when the operation was run by an earlier request with the same key
+     */
+    public boolean isReplayed() {
+        return replayed;
+    }
+}
@@ -0,0 +1,15 @@
+package com.revolut.transfer.idempotency;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/*
+ * Stored result of an operation: either the response body or the exception it failed with.
+ * */
+@Getter
+@AllArgsConstructor
+final class Outcome {
+
+    private final String body;
+    private final RuntimeException failure;
+}
@@ -0,0 +1,261 @@
+package com.revolut.transfer.journal;
+
+import com.revolut.transfer.execption.JournalException;
+import com.revolut.transfer.model.Account;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/*
+ * == NOTE ==:
+ * Compact binary image of all accounts, taken at a journal position. The file is:
+ *
+ *   int magic | int format version | long journal position | accounts | long account count | int crc32c
+ *
+ * Accounts use the layout of the journal (long msb | long lsb | long balance | long version | currency code (3 ASCII)
+ * | short userId length | userId UTF-8) and the checksum covers everything in front of it. Snapshots of format version 1
+ * hold accounts without a currency code, which are loaded in MoneyConverter.DEFAULT_CURRENCY.
+ *
+ * A snapshot is fuzzy: it is taken while accounts keep changing, so an account changed during the snapshot may be in its
+ * old or new state. Every change which is not in it has a journal record at or after the journal position, so loading the
+ * snapshot and replaying the journal from that position restores the latest state (records hold after images, replaying a
+ * change which is already in the snapshot does no harm).
+ *
+ * A snapshot is written to a temporary file and moved over the previous one only when complete and forced, so there is
+ * always one whole snapshot on disk. The snapshot it replaces is kept as path.previous, which is what recovery falls back
+ * to when the latest one turns out to be corrupted, so the journal only has to be kept from the previous snapshot on.
+ * It is read through memory mapped windows, without copying the file to the heap.
+ * */
+public final class AccountSnapshot {
+
+    static final int MAGIC = 0x54525353;
+    static final int FORMAT_VERSION = 2;
+    static final int FORMAT_VERSION_WITHOUT_CURRENCY = 1;
+    static final int HEADER_BYTES = 4 + 4 + 8;
+    static final int TRAILER_BYTES = 8 + 4;
+
+    private static final int WRITE_BUFFER_BYTES = 1024 * 1024;
+    private static final long MAP_WINDOW_BYTES = 64L * 1024 * 1024;
+    private static final int LOAD_CHUNK_ACCOUNTS = 4096;
+
+    private final long journalPosition;
+    private final long accountCount;
+
+    private AccountSnapshot(long journalPosition, long accountCount) {
+        this.journalPosition = journalPosition;
+        this.accountCount = accountCount;
+    }
+
+    /**
+     * @return journal position from which the journal has to be replayed on top of this snapshot
+     */
+    public long getJournalPosition() {
+        return journalPosition;
+    }
+
+    public long getAccountCount() {
+        return accountCount;
+    }
+
+    /**
+     * Starts a snapshot which is published at the given path by {@link Writer#publish()}.
+     *
+     * @param journalPosition appended journal position taken before the first account is read
+     */
+    public static Writer create(Path path, long journalPosition) {
+        return new Writer(path, journalPosition);
+    }
+
+    /**
+     * @return path where the snapshot replaced by the latest one at the given path is kept
+     */
+    public static Path previousOf(Path path) {
+        return path.resolveSibling(path.getFileName() + ".previous");
+    }
+
+    /**
+     * Passes the accounts of the snapshot to the visitor, in chunks.
+     *
+     * @throws JournalException when the file is not a complete snapshot. Accounts may have been passed already.
+     */
+    public static AccountSnapshot load(Path path, JournalVisitor visitor) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + TRAILER_BYTES) {
+                throw new JournalException("Snapshot is incomplete: " + path);
+            }
+            long accountsEnd = size - TRAILER_BYTES;
+            CRC32C crc = new CRC32C();
+
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAP_WINDOW_BYTES));
+            int magic = window.getInt();
+            int formatVersion = window.getInt();
+            if (magic != MAGIC || (formatVersion != FORMAT_VERSION && formatVersion != FORMAT_VERSION_WITHOUT_CURRENCY)) {
+                throw new JournalException("Not an account snapshot, or an unsupported format version: " + path);
+            }
+            boolean withCurrency = formatVersion == FORMAT_VERSION;
+            long journalPosition = window.getLong();
+
+            long windowStart = 0;
+            long count = 0;
+            List<Account> accounts = new ArrayList<>(LOAD_CHUNK_ACCOUNTS);
+            while (windowStart + window.position() < accountsEnd) {
+                window.limit((int) Math.min(window.capacity(), accountsEnd - windowStart));
+                int accountBytes = JournalFormat.accountBytesAt(window, withCurrency);
+                if (accountBytes < 0 || window.remaining() < accountBytes) {
+                    if (windowStart + window.limit() >= accountsEnd) {
+                        throw new JournalException("Snapshot is corrupted: " + path);
+                    }
+                    crc.update(window.flip());
+                    windowStart += window.limit();
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(size - windowStart, MAP_WINDOW_BYTES));
+                    continue;
+                }
+                accounts.add(JournalFormat.getAccount(window, withCurrency));
+                count++;
+                if (accounts.size() == LOAD_CHUNK_ACCOUNTS) {
+                    visitor.onAccounts(accounts);
+                    accounts = new ArrayList<>(LOAD_CHUNK_ACCOUNTS);
+                }
+            }
+            crc.update(window.flip());
+            if (!accounts.isEmpty()) {
+                visitor.onAccounts(accounts);
+            }
+
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES);
+            while (trailer.hasRemaining() && channel.read(trailer, accountsEnd + trailer.position()) >= 0) {
+            }
+            trailer.flip();
+            crc.update(trailer.array(), 0, 8);
+            long expectedCount = trailer.getLong();
+            if (trailer.getInt() != (int) crc.getValue() || expectedCount != count) {
+                throw new JournalException("Snapshot is corrupted: " + path);
+            }
+            return new AccountSnapshot(journalPosition, count);
+        } catch (IOException ex) {
+            throw new JournalException("Snapshot can not be read: " + path, ex);
+        }
+    }
+
+    /*
+    * Appends accounts to a temporary file next to the snapshot. Closing an unpublished writer deletes the temporary file.
+    * */
+    public static final class Writer implements Closeable {
+
+        private final Path path;
+        private final Path temporaryPath;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+        private final CRC32C crc = new CRC32C();
+        private long count;
+        private boolean published;
+
+        private Writer(Path path, long journalPosition) {
+            this.path = path;
+            this.temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+            try {
+                if (path.getParent() != null) {
+                    Files.createDirectories(path.getParent());
+                }
+                this.channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+            } catch (IOException ex) {
+                throw new JournalException("Snapshot can not be created: " + temporaryPath, ex);
+            }
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(journalPosition);
+        }
+
+        public void add(Account account) {
+            byte[] userId = JournalFormat.userIdBytes(account);
+            int accountBytes = JournalFormat.accountBytes(userId);
+            if (buffer.remaining() < accountBytes) {
+                flush();
+            }
+            /*
+            * A claim of the optimistic engine (odd version) holds the balance of the committed version before it.
+            * */
+            Account committed = (account.getVersion() & 1) == 0 ? account
+                    : account.toBuilder().version(account.getVersion() - 1).build();
+            JournalFormat.putAccount(buffer, committed, userId);
+            count++;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Forces the snapshot to disk and moves it over the previous snapshot, which is kept at {@link #previousOf(Path)}.
+         * Call it only once every change in the snapshot is durable in the journal.
+         */
+        public void publish() {
+            buffer.putLong(count);
+            flush();
+            buffer.putInt((int) crc.getValue());
+            try {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+                channel.close();
+                if (Files.exists(path)) {
+                    Files.move(path, previousOf(path), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                forceDirectory();
+                published = true;
+            } catch (IOException ex) {
+                throw new JournalException("Snapshot can not be written: " + path, ex);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (published) {
+                return;
+            }
+            try {
+                channel.close();
+                Files.deleteIfExists(temporaryPath);
+            } catch (IOException ex) {
+                throw new JournalException("Snapshot can not be discarded: " + temporaryPath, ex);
+            }
+        }
+
+        private void flush() {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException ex) {
+                throw new JournalException("Snapshot can not be written: " + temporaryPath, ex);
+            }
+            buffer.clear();
+        }
+
+        /*
+        * Makes the rename durable, where the file system allows to force a directory.
+        * */
+        private void forceDirectory() {
+            Path directory = path.toAbsolutePath().getParent();
+            try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+                directoryChannel.force(true);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.revolut.transfer.journal;
+
+import com.revolut.transfer.model.Account;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/*
+ * == NOTE ==:
+ * Binary layout of the journal. The first segment file starts with a header (int magic | int format version), every
+ * later segment with int magic | int segment format version | long journal position of its first record. Records follow:
+ *
+ *   int length | int crc32c | payload (length bytes)
+ *
+ * payload of ACCOUNTS: byte type | int count | count x (long msb | long lsb | long balance | long version | currency code (3 ASCII)
+ *                      | short userId length | userId UTF-8)
+ * payload of DELETE:   byte type | long msb | long lsb
+ * payload of CLEAR:    byte type
+ *
+ * Journals written before accounts had a currency hold ACCOUNTS_WITHOUT_CURRENCY records, the same without the currency
+ * code. They are still replayed, as accounts in MoneyConverter.DEFAULT_CURRENCY.
+ *
+ * All accounts of one repository call are one record, so a transfer is never half in the journal.
+ * A record is valid only when it is complete and its checksum matches. Reading stops at the first invalid record,
+ * which can only be the tail torn by a crash, because records are acknowledged after they are durable.
+ * */
+final class JournalFormat {
+
+    static final int MAGIC = 0x54524a4c;
+    static final int FORMAT_VERSION = 1;
+    static final int SEGMENT_FORMAT_VERSION = 2;
+    static final int FILE_HEADER_BYTES = 8;
+    static final int SEGMENT_HEADER_BYTES = 16;
+    static final int RECORD_HEADER_BYTES = 8;
+
+    static final byte ACCOUNTS_WITHOUT_CURRENCY = 1;
+    static final byte DELETE = 2;
+    static final byte CLEAR = 3;
+    static final byte ACCOUNTS = 4;
+
+    private static final int CURRENCY_BYTES = 3;
+    private static final int ACCOUNT_FIXED_BYTES = 8 * 4 + CURRENCY_BYTES + 2;
+    private static final int ACCOUNT_WITHOUT_CURRENCY_FIXED_BYTES = 8 * 4 + 2;
+
+    private JournalFormat() {
+    }
+
+    static byte[] userIdBytes(Account account) {
+        byte[] userId = account.getUserId() == null ? new byte[0] : account.getUserId().getBytes(StandardCharsets.UTF_8);
+        if (userId.length > 0xffff) {
+            throw new IllegalArgumentException("User id is too long.");
+        }
+        return userId;
+    }
+
+    static int accountsPayloadBytes(byte[][] userIds) {
+        int bytes = 1 + 4;
+        for (byte[] userId : userIds) {
+            bytes += accountBytes(userId);
+        }
+        return bytes;
+    }
+
+    static void putAccounts(ByteBuffer buffer, List<Account> accounts, byte[][] userIds) {
+        buffer.put(ACCOUNTS);
+        buffer.putInt(accounts.size());
+        for (int i = 0; i < accounts.size(); i++) {
+            putAccount(buffer, accounts.get(i), userIds[i]);
+        }
+    }
+
+    static int accountBytes(byte[] userId) {
+        return ACCOUNT_FIXED_BYTES + userId.length;
+    }
+
+    static void putAccount(ByteBuffer buffer, Account account, byte[] userId) {
+        buffer.putLong(account.getId().getMostSignificantBits());
+        buffer.putLong(account.getId().getLeastSignificantBits());
+        buffer.putLong(account.getBalance());
+        buffer.putLong(account.getVersion());
+        String currencyCode = account.getCurrency().getCurrencyCode();
+        for (int i = 0; i < CURRENCY_BYTES; i++) {
+            buffer.put((byte) currencyCode.charAt(i));
+        }
+        buffer.putShort((short) userId.length);
+        buffer.put(userId);
+    }
+
+    /*
+    * Bytes of the account starting at the buffer position, or -1 when not even its fixed part is in the buffer.
+    * */
+    static int accountBytesAt(ByteBuffer buffer, boolean withCurrency) {
+        int fixedBytes = withCurrency ? ACCOUNT_FIXED_BYTES : ACCOUNT_WITHOUT_CURRENCY_FIXED_BYTES;
+        if (buffer.remaining() < fixedBytes) {
+            return -1;
+        }
+        return fixedBytes + (buffer.getShort(buffer.position() + fixedBytes - 2) & 0xffff);
+    }
+
+    /*
+    * Accounts written without a currency are in MoneyConverter.DEFAULT_CURRENCY.
+    * */
+    static Account getAccount(ByteBuffer buffer, boolean withCurrency) {
+        Account.AccountBuilder account = Account.builder()
+                .id(new UUID(buffer.getLong(), buffer.getLong()))
+                .balance(buffer.getLong())
+                .version(buffer.getLong());
+        if (withCurrency) {
+            byte[] currencyCode = new byte[CURRENCY_BYTES];
+            buffer.get(currencyCode);
+            account.currency(Currency.getInstance(new String(currencyCode, StandardCharsets.US_ASCII)));
+        }
+        byte[] userId = new byte[buffer.getShort() & 0xffff];
+        buffer.get(userId);
+        return account.userId(new String(userId, StandardCharsets.UTF_8)).build();
+    }
+
+    static void putDelete(ByteBuffer buffer, UUID accountId) {
+        buffer.put(DELETE);
+        buffer.putLong(accountId.getMostSignificantBits());
+        buffer.putLong(accountId.getLeastSignificantBits());
+    }
+
+    /*
+    * Writes the record header in front of a payload written at [payloadStart, buffer.position()).
+    * */
+    static void putRecordHeader(ByteBuffer buffer, int recordStart, int payloadStart) {
+        int length = buffer.position() - payloadStart;
+        buffer.putInt(recordStart, length);
+        buffer.putInt(recordStart + 4, checksum(buffer, payloadStart, length));
+    }
+
+    static int checksum(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer payload = buffer.duplicate();
+        payload.limit(offset + length).position(offset);
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /*
+    * Decodes one payload and passes it to the visitor.
+    * */
+    static void visit(ByteBuffer payload, JournalVisitor visitor) {
+        byte type = payload.get();
+        switch (type) {
+            case ACCOUNTS:
+            case ACCOUNTS_WITHOUT_CURRENCY:
+                int count = payload.getInt();
+                List<Account> accounts = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    accounts.add(getAccount(payload, type == ACCOUNTS));
+                }
+                visitor.onAccounts(accounts);
+                break;
+            case DELETE:
+                visitor.onDelete(new UUID(payload.getLong(), payload.getLong()));
+                break;
+            case CLEAR:
+                visitor.onDeleteAll();
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record type: " + type);
+        }
+    }
+}
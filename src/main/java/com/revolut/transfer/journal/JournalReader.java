@@ -0,0 +1,82 @@
+package com.revolut.transfer.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * Reads the records of a journal segment in order, stopping at the first incomplete or corrupted record. The segment
+ * header is checked when the segment is listed, see TransferJournal.
+ * */
+final class JournalReader {
+
+    private static final int READ_BUFFER_BYTES = 1024 * 1024;
+
+    private JournalReader() {
+    }
+
+    /**
+     * @param from file offset of the first record to read
+     * @return file offset after the last valid record, where new records are appended
+     */
+    static long read(FileChannel channel, long from, JournalVisitor visitor) throws IOException {
+        long size = channel.size();
+        long position = from;
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        buffer.flip();
+        while (true) {
+            if (buffer.remaining() < JournalFormat.RECORD_HEADER_BYTES) {
+                buffer = fill(channel, buffer, position + buffer.remaining(), size, JournalFormat.RECORD_HEADER_BYTES);
+                if (buffer.remaining() < JournalFormat.RECORD_HEADER_BYTES) {
+                    return position;
+                }
+            }
+            int length = buffer.getInt(buffer.position());
+            int checksum = buffer.getInt(buffer.position() + 4);
+            if (length <= 0 || length > size - position - JournalFormat.RECORD_HEADER_BYTES) {
+                return position;
+            }
+            int recordBytes = JournalFormat.RECORD_HEADER_BYTES + length;
+            if (buffer.remaining() < recordBytes) {
+                buffer = fill(channel, buffer, position + buffer.remaining(), size, recordBytes);
+                if (buffer.remaining() < recordBytes) {
+                    return position;
+                }
+            }
+            int payloadStart = buffer.position() + JournalFormat.RECORD_HEADER_BYTES;
+            if (JournalFormat.checksum(buffer, payloadStart, length) != checksum) {
+                return position;
+            }
+
+            ByteBuffer payload = buffer.duplicate();
+            payload.limit(payloadStart + length).position(payloadStart);
+            JournalFormat.visit(payload, visitor);
+
+            buffer.position(payloadStart + length);
+            position += recordBytes;
+        }
+    }
+
+    /*
+    * Keeps the unread bytes and reads more from the file, growing the buffer when one record does not fit.
+    * */
+    private static ByteBuffer fill(FileChannel channel, ByteBuffer buffer, long filePosition, long size, int needed) throws IOException {
+        if (buffer.capacity() < needed) {
+            ByteBuffer larger = ByteBuffer.allocate(needed);
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            buffer.compact();
+        }
+        long readPosition = filePosition;
+        while (buffer.hasRemaining() && readPosition < size) {
+            int read = channel.read(buffer, readPosition);
+            if (read < 0) {
+                break;
+            }
+            readPosition += read;
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
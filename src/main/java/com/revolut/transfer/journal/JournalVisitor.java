@@ -0,0 +1,21 @@
+package com.revolut.transfer.journal;
+
+import com.revolut.transfer.model.Account;
+
+import java.util.List;
+import java.util.UUID;
+
+/*
+ * Receives the records of a journal in the order they have been appended.
+ * */
+public interface JournalVisitor {
+
+    /*
+    * After images of accounts saved in one repository call, e.g. both accounts of a transfer.
+    * */
+    void onAccounts(List<Account> accounts);
+
+    void onDelete(UUID accountId);
+
+    void onDeleteAll();
+}
@@ -0,0 +1,668 @@
+package com.revolut.transfer.journal;
+
+import com.revolut.transfer.execption.JournalException;
+import com.revolut.transfer.model.Account;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * == NOTE ==:
+ * Append only journal with group commit. Writers encode their record into the pending buffer and get back the
+ * journal position after their record. A single flusher thread swaps the pending buffer with a spare one,
+ * writes it through the FileChannel and calls force() once for all records in it, then wakes up every writer
+ * whose position is durable. While a force() is running, new records collect in the other buffer, so the more
+ * writers there are, the more records share one force(). Writers which must not block ask for a future instead, which
+ * the flusher completes once their position is durable.
+ *
+ * The flusher can wait a little for more records before it writes (window), which trades latency for fewer
+ * force() calls at low concurrency. It never waits once the pending records reach the size limit.
+ *
+ * After a failed write or force() the journal is broken: nothing is known about the durability of the pending
+ * records, so every waiting and later writer gets a JournalException.
+ *
+ * The journal is a chain of segment files. The first one is the path itself, every later one is named after the journal
+ * position of its first record (path.<position>) and has that position in its header, so journal positions go on across
+ * segments. roll() makes the flusher seal the active segment at a record boundary and start a new one; once a snapshot
+ * covers the records of the sealed segments, deleteSegmentsBefore removes them, which keeps the journal from growing
+ * without bound. A sealed segment was forced completely before the next one was started, so only the active segment
+ * can have a torn tail.
+ * */
+public class TransferJournal implements Closeable {
+
+    private static final int MIN_BUFFER_BYTES = 64 * 1024;
+
+    private final Path path;
+    private final List<Segment> segments;
+    private FileChannel channel;
+    private final long windowNanos;
+    private final int maxBatchBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pendingRecords = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private final PriorityQueue<DurableWaiter> durableWaiters = new PriorityQueue<>(Comparator.comparingLong(waiter -> waiter.position));
+
+    private ByteBuffer pending;
+    private ByteBuffer spare;
+    private long appendedPosition;
+    private long durablePosition;
+    private long firstPendingNanos;
+    private long forceCount;
+    private boolean rollRequested;
+    private int rollOffset;
+    private long rollPosition;
+    private JournalException failure;
+    private boolean closed;
+
+    private final Thread flusher;
+
+    /*
+    * The channel is the one of the last segment. Only the flusher switches it to a new segment, the list of segments is
+    * guarded by the lock.
+    * */
+    private TransferJournal(Path path, List<Segment> segments, FileChannel channel, long position, long windowNanos, int maxBatchBytes) {
+        this.path = path;
+        this.segments = segments;
+        this.channel = channel;
+        this.windowNanos = windowNanos;
+        this.maxBatchBytes = maxBatchBytes;
+        int bufferBytes = Math.max(maxBatchBytes, MIN_BUFFER_BYTES);
+        this.pending = ByteBuffer.allocateDirect(bufferBytes);
+        this.spare = ByteBuffer.allocateDirect(bufferBytes);
+        this.appendedPosition = position;
+        this.durablePosition = position;
+        this.flusher = new Thread(this::flushLoop, "transfer-journal-flusher");
+        this.flusher.setDaemon(true);
+    }
+
+    /**
+     * Opens the journal at the given path, creating it when it does not exist. Records of an existing journal are
+     * passed to the visitor first, and a tail torn by a crash is cut off before new records are appended.
+     *
+     * @param window        how long the flusher waits for more records before it writes, 0 to write right away
+     * @param maxBatchBytes pending bytes at which the flusher writes without waiting for the window
+     */
+    public static TransferJournal open(Path path, JournalVisitor recovery, long window, TimeUnit unit, int maxBatchBytes) {
+        return open(path, JournalFormat.FILE_HEADER_BYTES, recovery, window, unit, maxBatchBytes);
+    }
+
+    /**
+     * Like {@link #open(Path, JournalVisitor, long, TimeUnit, int)}, but only the records from the given journal position on
+     * are passed to the visitor, e.g. the tail after an {@link AccountSnapshot}.
+     *
+     * @throws JournalException when the journal ends before that position, i.e. the journal does not belong to the snapshot,
+     *                          or when its segments before that position have been deleted already
+     */
+    public static TransferJournal open(Path path, long from, JournalVisitor recovery, long window, TimeUnit unit, int maxBatchBytes) {
+        if (window < 0 || maxBatchBytes <= 0) {
+            throw new IllegalArgumentException("Group commit window can not be negative and batch size should be positive.");
+        }
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            List<Segment> segments = Segment.list(path);
+            FileChannel channel;
+            long position;
+            if (segments.isEmpty() && from <= JournalFormat.FILE_HEADER_BYTES) {
+                Segment first = new Segment(path, JournalFormat.FILE_HEADER_BYTES);
+                channel = first.create();
+                segments.add(first);
+                position = first.firstPosition;
+            } else {
+                if (segments.isEmpty() || from < segments.get(0).firstPosition) {
+                    throw new JournalException("Journal " + path + " has no record at position " + from + ".");
+                }
+                channel = null;
+                position = from;
+                try {
+                    for (int i = 0; i < segments.size(); i++) {
+                        Segment segment = segments.get(i);
+                        boolean active = i == segments.size() - 1;
+                        long end = active ? Long.MAX_VALUE : segments.get(i + 1).firstPosition;
+                        if (end <= position) {
+                            continue;
+                        }
+                        FileChannel segmentChannel = FileChannel.open(segment.path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                        if (active) {
+                            channel = segmentChannel;
+                        }
+                        try {
+                            if (segment.offsetOf(position) > segmentChannel.size()) {
+                                throw new JournalException("Journal " + path + " has no record at position " + position + ".");
+                            }
+                            position = segment.positionAt(JournalReader.read(segmentChannel, segment.offsetOf(position), recovery));
+                        } finally {
+                            if (!active) {
+                                segmentChannel.close();
+                            }
+                        }
+                        if (!active && position != end) {
+                            throw new JournalException("Journal segment " + segment.path + " ends at position " + position
+                                    + ", before the next one starts.");
+                        }
+                    }
+                    channel.truncate(segments.get(segments.size() - 1).offsetOf(position));
+                    channel.force(true);
+                    channel.position(segments.get(segments.size() - 1).offsetOf(position));
+                } catch (IOException | RuntimeException ex) {
+                    if (channel != null) {
+                        channel.close();
+                    }
+                    throw ex;
+                }
+            }
+
+            TransferJournal journal = new TransferJournal(path, segments, channel, position, unit.toNanos(window), maxBatchBytes);
+            journal.flusher.start();
+            return journal;
+        } catch (IOException ex) {
+            throw new JournalException("Journal can not be opened: " + path, ex);
+        }
+    }
+
+    /**
+     * @return journal position after the record, see {@link #awaitDurable(long)}
+     */
+    public long appendAccounts(List<Account> accounts) {
+        byte[][] userIds = new byte[accounts.size()][];
+        for (int i = 0; i < userIds.length; i++) {
+            userIds[i] = JournalFormat.userIdBytes(accounts.get(i));
+        }
+        int payloadBytes = JournalFormat.accountsPayloadBytes(userIds);
+
+        lock.lock();
+        try {
+            ByteBuffer buffer = reserve(payloadBytes);
+            int recordStart = buffer.position();
+            buffer.position(recordStart + JournalFormat.RECORD_HEADER_BYTES);
+            JournalFormat.putAccounts(buffer, accounts, userIds);
+            return appended(buffer, recordStart);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long appendDelete(UUID accountId) {
+        lock.lock();
+        try {
+            ByteBuffer buffer = reserve(1 + 16);
+            int recordStart = buffer.position();
+            buffer.position(recordStart + JournalFormat.RECORD_HEADER_BYTES);
+            JournalFormat.putDelete(buffer, accountId);
+            return appended(buffer, recordStart);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long appendDeleteAll() {
+        lock.lock();
+        try {
+            ByteBuffer buffer = reserve(1);
+            int recordStart = buffer.position();
+            buffer.position(recordStart + JournalFormat.RECORD_HEADER_BYTES);
+            buffer.put(JournalFormat.CLEAR);
+            return appended(buffer, recordStart);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every record up to the given position has been forced to disk.
+     *
+     * @throws JournalException when the journal can not write anymore
+     */
+    public void awaitDurable(long position) {
+        lock.lock();
+        try {
+            while (durablePosition < position) {
+                checkUsable();
+                flushed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Like {@link #awaitDurable(long)} without blocking: the future is completed by the flusher thread, or right away
+     * when the position is durable already, and fails with the JournalException when the journal can not write anymore.
+     */
+    public CompletableFuture<Void> whenDurable(long position) {
+        lock.lock();
+        try {
+            if (durablePosition >= position) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (failure != null) {
+                return CompletableFuture.failedFuture(failure);
+            }
+            DurableWaiter waiter = new DurableWaiter(position);
+            durableWaiters.add(waiter);
+            return waiter.durable;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Seals the active segment after the last appended record and starts a new segment there. Records appended meanwhile
+     * go to the new segment. Does nothing when the active segment has no records yet.
+     *
+     * @return journal position where the new segment starts, i.e. the appended position
+     */
+    public long roll() {
+        lock.lock();
+        try {
+            while (rollRequested) {
+                checkUsable();
+                flushed.awaitUninterruptibly();
+            }
+            checkUsable();
+            long position = appendedPosition;
+            if (position == segments.get(segments.size() - 1).firstPosition) {
+                return position;
+            }
+            rollRequested = true;
+            rollOffset = pending.position();
+            rollPosition = position;
+            pendingRecords.signal();
+            while (segments.get(segments.size() - 1).firstPosition < position) {
+                checkUsable();
+                flushed.awaitUninterruptibly();
+            }
+            return position;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the sealed segments which only hold records before the given position, e.g. the position of a snapshot
+     * which covers them. The active segment is never deleted.
+     *
+     * @return number of deleted segments
+     */
+    public int deleteSegmentsBefore(long position) {
+        List<Segment> covered = new ArrayList<>();
+        lock.lock();
+        try {
+            while (segments.size() > 1 && segments.get(1).firstPosition <= position) {
+                covered.add(segments.remove(0));
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Segment segment : covered) {
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException ex) {
+                throw new JournalException("Journal segment can not be deleted: " + segment.path, ex);
+            }
+        }
+        return covered.size();
+    }
+
+    /**
+     * @return journal position after the last appended record, durable or not
+     */
+    public long getAppendedPosition() {
+        lock.lock();
+        try {
+            return appendedPosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDurablePosition() {
+        lock.lock();
+        try {
+            return durablePosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of force() calls so far, i.e. appended records divided by this is the group commit batch size.
+     */
+    public long getForceCount() {
+        lock.lock();
+        try {
+            return forceCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getSegmentCount() {
+        lock.lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /*
+    * Flushes the pending records and closes the file.
+    * */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pendingRecords.signal();
+        } finally {
+            lock.unlock();
+        }
+        boolean interrupted = false;
+        while (flusher.isAlive()) {
+            try {
+                flusher.join();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            throw new JournalException("Journal can not be closed: " + path, ex);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /*
+    * Makes room for one record in the pending buffer. Called with the lock held.
+    * */
+    private ByteBuffer reserve(int payloadBytes) {
+        int recordBytes = JournalFormat.RECORD_HEADER_BYTES + payloadBytes;
+        while (true) {
+            checkUsable();
+            if (pending.remaining() >= recordBytes) {
+                return pending;
+            }
+            if (pending.position() == 0) {
+                pending = ByteBuffer.allocateDirect(recordBytes);
+                return pending;
+            }
+            pendingRecords.signal();
+            flushed.awaitUninterruptibly();
+        }
+    }
+
+    private long appended(ByteBuffer buffer, int recordStart) {
+        JournalFormat.putRecordHeader(buffer, recordStart, recordStart + JournalFormat.RECORD_HEADER_BYTES);
+        if (recordStart == 0) {
+            firstPendingNanos = System.nanoTime();
+            pendingRecords.signal();
+        } else if (buffer.position() >= maxBatchBytes) {
+            pendingRecords.signal();
+        }
+        appendedPosition += buffer.position() - recordStart;
+        return appendedPosition;
+    }
+
+    private void checkUsable() {
+        if (failure != null) {
+            throw failure;
+        }
+        if (closed) {
+            throw new JournalException("Journal is closed: " + path);
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            ByteBuffer batch;
+            long batchEnd;
+            int batchRollOffset;
+            long batchRollPosition;
+            lock.lock();
+            try {
+                while (pending.position() == 0 && !rollRequested && !closed) {
+                    pendingRecords.awaitUninterruptibly();
+                }
+                if (pending.position() == 0 && !rollRequested) {
+                    return;
+                }
+                long remaining;
+                while (!closed && !rollRequested && pending.position() < maxBatchBytes
+                        && (remaining = firstPendingNanos + windowNanos - System.nanoTime()) > 0) {
+                    try {
+                        pendingRecords.awaitNanos(remaining);
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+                batch = pending;
+                batchEnd = appendedPosition;
+                batchRollOffset = rollRequested ? rollOffset : -1;
+                batchRollPosition = rollPosition;
+                pending = spare.capacity() >= batch.capacity() ? spare : ByteBuffer.allocateDirect(batch.capacity());
+                spare = null;
+            } finally {
+                lock.unlock();
+            }
+
+            JournalException batchFailure = null;
+            Segment rolledTo = null;
+            List<DurableWaiter> completed = new ArrayList<>();
+            try {
+                batch.flip();
+                if (batchRollOffset >= 0) {
+                    /*
+                    * The records in front of the roll are forced into the sealed segment before the new one exists.
+                    * */
+                    ByteBuffer sealed = batch.duplicate();
+                    sealed.limit(batchRollOffset);
+                    if (sealed.hasRemaining()) {
+                        write(channel, sealed);
+                        channel.force(false);
+                    }
+                    rolledTo = new Segment(Segment.pathOf(path, batchRollPosition), batchRollPosition);
+                    FileChannel next = rolledTo.create();
+                    channel.close();
+                    channel = next;
+                    batch.position(batchRollOffset);
+                }
+                if (batch.hasRemaining()) {
+                    write(channel, batch);
+                    channel.force(false);
+                }
+            } catch (IOException ex) {
+                batchFailure = new JournalException("Journal can not be written: " + path, ex);
+            }
+
+            lock.lock();
+            try {
+                batch.clear();
+                spare = batch;
+                if (batchFailure != null) {
+                    failure = batchFailure;
+                    completed.addAll(durableWaiters);
+                    durableWaiters.clear();
+                } else {
+                    if (rolledTo != null) {
+                        segments.add(rolledTo);
+                        rollRequested = false;
+                    }
+                    durablePosition = batchEnd;
+                    forceCount++;
+                    while (!durableWaiters.isEmpty() && durableWaiters.peek().position <= durablePosition) {
+                        completed.add(durableWaiters.poll());
+                    }
+                }
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            /*
+            * Completed outside the lock, so that writers are not held up by the completion stages of the futures.
+            * */
+            for (DurableWaiter waiter : completed) {
+                if (batchFailure != null) {
+                    waiter.durable.completeExceptionally(batchFailure);
+                } else {
+                    waiter.durable.complete(null);
+                }
+            }
+            if (batchFailure != null) {
+                return;
+            }
+        }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static final class DurableWaiter {
+
+        private final long position;
+        private final CompletableFuture<Void> durable = new CompletableFuture<>();
+
+        private DurableWaiter(long position) {
+            this.position = position;
+        }
+    }
+
+    /*
+    * One file of the journal. Its records start after the header, at the journal position firstPosition.
+    * */
+    private static final class Segment {
+
+        private final Path path;
+        private final long firstPosition;
+        private final int headerBytes;
+
+        private Segment(Path path, long firstPosition) {
+            this.path = path;
+            this.firstPosition = firstPosition;
+            this.headerBytes = firstPosition == JournalFormat.FILE_HEADER_BYTES
+                    ? JournalFormat.FILE_HEADER_BYTES : JournalFormat.SEGMENT_HEADER_BYTES;
+        }
+
+        private static Path pathOf(Path path, long firstPosition) {
+            return path.resolveSibling(String.format("%s.%019d", path.getFileName(), firstPosition));
+        }
+
+        /*
+        * Segments of the journal at the given path, oldest first. A segment whose header was not written completely
+        * was being started by a crashed roll, no record was appended to it, so it is deleted.
+        * */
+        private static List<Segment> list(Path path) throws IOException {
+            List<Segment> segments = new ArrayList<>();
+            if (Files.exists(path) && Files.size(path) > 0) {
+                segments.add(read(path, true));
+            }
+            String prefix = path.getFileName() + ".";
+            Path directory = path.toAbsolutePath().getParent();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, file -> isSegmentName(file, prefix))) {
+                for (Path file : files) {
+                    Path segmentPath = path.resolveSibling(file.getFileName());
+                    if (Files.size(segmentPath) < JournalFormat.SEGMENT_HEADER_BYTES) {
+                        Files.delete(segmentPath);
+                    } else {
+                        segments.add(read(segmentPath, false));
+                    }
+                }
+            }
+            segments.sort(Comparator.comparingLong(segment -> segment.firstPosition));
+            return segments;
+        }
+
+        private static boolean isSegmentName(Path file, String prefix) {
+            String name = file.getFileName().toString();
+            return name.length() > prefix.length() && name.startsWith(prefix)
+                    && name.substring(prefix.length()).chars().allMatch(Character::isDigit);
+        }
+
+        private static Segment read(Path path, boolean first) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(JournalFormat.SEGMENT_HEADER_BYTES);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                }
+            }
+            header.flip();
+            if (header.remaining() >= JournalFormat.FILE_HEADER_BYTES && header.getInt() == JournalFormat.MAGIC) {
+                int formatVersion = header.getInt();
+                if (first && formatVersion == JournalFormat.FORMAT_VERSION) {
+                    return new Segment(path, JournalFormat.FILE_HEADER_BYTES);
+                }
+                if (!first && formatVersion == JournalFormat.SEGMENT_FORMAT_VERSION && header.remaining() >= 8) {
+                    return new Segment(path, header.getLong());
+                }
+            }
+            throw new JournalException("Not a transfer journal, or an unsupported format version: " + path);
+        }
+
+        /*
+        * Creates the file with its header, both forced, and returns it open for appending.
+        * */
+        private FileChannel create() throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            ByteBuffer header = ByteBuffer.allocate(headerBytes);
+            header.putInt(JournalFormat.MAGIC);
+            if (headerBytes == JournalFormat.FILE_HEADER_BYTES) {
+                header.putInt(JournalFormat.FORMAT_VERSION);
+            } else {
+                header.putInt(JournalFormat.SEGMENT_FORMAT_VERSION).putLong(firstPosition);
+            }
+            header.flip();
+            write(channel, header);
+            channel.force(true);
+            forceDirectory(path);
+            return channel;
+        }
+
+        private long offsetOf(long position) {
+            return position - firstPosition + headerBytes;
+        }
+
+        private long positionAt(long offset) {
+            return firstPosition + offset - headerBytes;
+        }
+
+        /*
+        * Makes a new file durable, where the file system allows to force a directory.
+        * */
+        private static void forceDirectory(Path path) {
+            try (FileChannel directory = FileChannel.open(path.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+                directory.force(true);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
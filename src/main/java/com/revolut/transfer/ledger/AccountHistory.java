@@ -0,0 +1,145 @@
+package com.revolut.transfer.ledger;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * == NOTE ==:
+ * Postings of one account. The latest postings are kept in a ring of primitive arrays, one array per field, so a posting
+ * allocates nothing. The ring starts small and doubles up to its capacity, as most accounts only ever see a few postings.
+ * When the full ring gets another posting, its older half is compacted into a HistorySegment and the ring moves on.
+ * Segments are dropped oldest first, so that the segments and a full ring never hold more than the retained postings.
+ *
+ * The sequence of a posting is taken from the global sequence while this history is locked,
+ * so postings of an account are always in ascending sequence order, in the ring and across segments.
+ * */
+final class AccountHistory {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final int ringCapacity;
+    private final int retainedPostings;
+
+    private long[] sequences;
+    private byte[] types;
+    private long[] amounts;
+    private long[] balances;
+    private long[] timestamps;
+    private long[] counterpartyMsbs;
+    private long[] counterpartyLsbs;
+    private int head;
+    private int size;
+
+    private final ArrayDeque<HistorySegment> segments = new ArrayDeque<>();
+    private int segmentPostings;
+
+    /**
+     * @param ringCapacity     power of two, at least 2 and at most retainedPostings
+     * @param retainedPostings postings kept per account, older ones are dropped a segment at a time
+     */
+    AccountHistory(int ringCapacity, int retainedPostings) {
+        this.ringCapacity = ringCapacity;
+        this.retainedPostings = retainedPostings;
+        allocate(Math.min(INITIAL_CAPACITY, ringCapacity));
+    }
+
+    /**
+     * @return sequence of the appended posting
+     */
+    synchronized long append(AtomicLong sequence, PostingType type, long amount, long balance, UUID counterparty,
+                             long timestamp) {
+        if (size == sequences.length) {
+            if (size < ringCapacity) {
+                grow();
+            } else {
+                compactOlderHalf();
+            }
+        }
+        int index = (head + size) & (sequences.length - 1);
+        long postingSequence = sequence.incrementAndGet();
+        sequences[index] = postingSequence;
+        types[index] = (byte) type.ordinal();
+        amounts[index] = amount;
+        balances[index] = balance;
+        timestamps[index] = timestamp;
+        counterpartyMsbs[index] = counterparty == null ? 0 : counterparty.getMostSignificantBits();
+        counterpartyLsbs[index] = counterparty == null ? 0 : counterparty.getLeastSignificantBits();
+        size++;
+        return postingSequence;
+    }
+
+    /**
+     * Adds the postings with a sequence before the given one to out, newest first, until out holds limit postings.
+     * Only the ring entries and segments which are passed on the way are read.
+     */
+    synchronized void collect(long beforeSequence, int limit, List<Posting> out) {
+        int mask = sequences.length - 1;
+        for (int i = size - 1; i >= 0 && out.size() < limit; i--) {
+            int index = (head + i) & mask;
+            if (sequences[index] < beforeSequence) {
+                PostingType type = PostingType.fromOrdinal(types[index]);
+                UUID counterparty = type.hasCounterparty() ? new UUID(counterpartyMsbs[index], counterpartyLsbs[index]) : null;
+                out.add(new Posting(sequences[index], type, amounts[index], balances[index], counterparty, timestamps[index]));
+            }
+        }
+        Iterator<HistorySegment> newestFirst = segments.descendingIterator();
+        while (newestFirst.hasNext() && out.size() < limit) {
+            HistorySegment segment = newestFirst.next();
+            if (segment.getFirstSequence() < beforeSequence) {
+                segment.collect(beforeSequence, limit, out);
+            }
+        }
+    }
+
+    synchronized int getPostingCount() {
+        return size + segmentPostings;
+    }
+
+    private void compactOlderHalf() {
+        int half = size / 2;
+        segments.addLast(HistorySegment.compact(sequences, types, amounts, balances, timestamps, counterpartyMsbs,
+                counterpartyLsbs, head, half, sequences.length - 1));
+        segmentPostings += half;
+        head = (head + half) & (sequences.length - 1);
+        size -= half;
+        while (segmentPostings + ringCapacity > retainedPostings && !segments.isEmpty()) {
+            segmentPostings -= segments.removeFirst().getCount();
+        }
+    }
+
+    private void grow() {
+        long[] oldSequences = sequences;
+        byte[] oldTypes = types;
+        long[] oldAmounts = amounts;
+        long[] oldBalances = balances;
+        long[] oldTimestamps = timestamps;
+        long[] oldCounterpartyMsbs = counterpartyMsbs;
+        long[] oldCounterpartyLsbs = counterpartyLsbs;
+        int mask = oldSequences.length - 1;
+        allocate(oldSequences.length * 2);
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) & mask;
+            sequences[i] = oldSequences[index];
+            types[i] = oldTypes[index];
+            amounts[i] = oldAmounts[index];
+            balances[i] = oldBalances[index];
+            timestamps[i] = oldTimestamps[index];
+            counterpartyMsbs[i] = oldCounterpartyMsbs[index];
+            counterpartyLsbs[i] = oldCounterpartyLsbs[index];
+        }
+        head = 0;
+    }
+
+    private void allocate(int capacity) {
+        sequences = new long[capacity];
+        types = new byte[capacity];
+        amounts = new long[capacity];
+        balances = new long[capacity];
+        timestamps = new long[capacity];
+        counterpartyMsbs = new long[capacity];
+        counterpartyLsbs = new long[capacity];
+    }
+}
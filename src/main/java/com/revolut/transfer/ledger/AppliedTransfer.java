@@ -0,0 +1,20 @@
+package com.revolut.transfer.ledger;
+
+import lombok.Value;
+
+import java.util.UUID;
+
+/*
+ * A transfer which has been applied, with the balances of both accounts right after it. The amount is debited in the
+ * currency of the source account, the credited amount is in the currency of the target account.
+ * */
+@Value
+public class AppliedTransfer {
+
+    private UUID fromAccountId;
+    private long fromBalance;
+    private UUID toAccountId;
+    private long toBalance;
+    private long amount;
+    private long creditedAmount;
+}
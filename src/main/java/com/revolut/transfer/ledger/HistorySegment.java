@@ -0,0 +1,172 @@
+package com.revolut.transfer.ledger;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/*
+ * == NOTE ==:
+ * Immutable block of the older postings of one account, compacted into a byte array. Postings are stored oldest first,
+ * each as a difference to the posting before it:
+ *
+ *   varint sequence delta | byte type | zigzag amount | zigzag (balance - previous balance - amount) | zigzag timestamp delta | counterparty
+ *
+ * The balance after a posting is usually the balance before it plus its amount, so that difference is a single zero byte.
+ * The counterparty (long msb | long lsb) is only written for types that have one. A transfer posting takes about
+ * 25 bytes here, against 49 bytes in the primitive arrays of the ring.
+ * */
+final class HistorySegment {
+
+    private final long firstSequence;
+    private final int count;
+    private final byte[] data;
+
+    private HistorySegment(long firstSequence, int count, byte[] data) {
+        this.firstSequence = firstSequence;
+        this.count = count;
+        this.data = data;
+    }
+
+    long getFirstSequence() {
+        return firstSequence;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    int getBytes() {
+        return data.length;
+    }
+
+    /**
+     * Compacts count postings of the ring arrays, starting at index start and wrapping around with mask.
+     */
+    static HistorySegment compact(long[] sequences, byte[] types, long[] amounts, long[] balances, long[] timestamps,
+                                  long[] counterpartyMsbs, long[] counterpartyLsbs, int start, int count, int mask) {
+        Encoder encoder = new Encoder(count * 32);
+        long previousSequence = 0;
+        long previousBalance = 0;
+        long previousTimestamp = 0;
+        for (int i = 0; i < count; i++) {
+            int index = (start + i) & mask;
+            PostingType type = PostingType.fromOrdinal(types[index]);
+            encoder.putVarLong(sequences[index] - previousSequence);
+            encoder.putByte(types[index]);
+            encoder.putVarLong(zigzag(amounts[index]));
+            encoder.putVarLong(zigzag(balances[index] - previousBalance - amounts[index]));
+            encoder.putVarLong(zigzag(timestamps[index] - previousTimestamp));
+            if (type.hasCounterparty()) {
+                encoder.putLong(counterpartyMsbs[index]);
+                encoder.putLong(counterpartyLsbs[index]);
+            }
+            previousSequence = sequences[index];
+            previousBalance = balances[index];
+            previousTimestamp = timestamps[index];
+        }
+        return new HistorySegment(sequences[start & mask], count, encoder.toByteArray());
+    }
+
+    /**
+     * Adds the postings with a sequence before the given one to out, newest first, until out holds limit postings.
+     * The segment is decoded as a whole, it holds only half a ring of postings.
+     */
+    void collect(long beforeSequence, int limit, List<Posting> out) {
+        Posting[] postings = new Posting[count];
+        Decoder decoder = new Decoder(data);
+        long sequence = 0;
+        long balance = 0;
+        long timestamp = 0;
+        for (int i = 0; i < count; i++) {
+            sequence += decoder.getVarLong();
+            PostingType type = PostingType.fromOrdinal(decoder.getByte());
+            long amount = unzigzag(decoder.getVarLong());
+            balance += amount + unzigzag(decoder.getVarLong());
+            timestamp += unzigzag(decoder.getVarLong());
+            UUID counterparty = type.hasCounterparty() ? new UUID(decoder.getLong(), decoder.getLong()) : null;
+            postings[i] = new Posting(sequence, type, amount, balance, counterparty, timestamp);
+        }
+        for (int i = count - 1; i >= 0 && out.size() < limit; i--) {
+            if (postings[i].getSequence() < beforeSequence) {
+                out.add(postings[i]);
+            }
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Encoder {
+
+        private byte[] bytes;
+        private int position;
+
+        private Encoder(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        private void putByte(int value) {
+            if (position == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[position++] = (byte) value;
+        }
+
+        private void putVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                putByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            putByte((int) value);
+        }
+
+        private void putLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                putByte((int) (value >>> shift));
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(bytes, position);
+        }
+    }
+
+    private static final class Decoder {
+
+        private final byte[] bytes;
+        private int position;
+
+        private Decoder(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private int getByte() {
+            return bytes[position++];
+        }
+
+        private long getVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        private long getLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (bytes[position++] & 0xFF);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.revolut.transfer.ledger;
+
+import lombok.Value;
+
+import java.util.UUID;
+
+/*
+ * One change of the balance of an account.
+ * */
+@Value
+public class Posting {
+
+    /*
+    * Position in the global sequence of all postings, used as transaction id and paging cursor.
+    * */
+    private long sequence;
+    private PostingType type;
+    /*
+    * Signed change of the balance in minor units, negative for money leaving the account.
+    * */
+    private long amount;
+    /*
+    * Balance in minor units right after the change.
+    * */
+    private long balance;
+    /*
+    * The other account of a transfer or refund, null for deposits and withdrawals.
+    * */
+    private UUID counterpartyAccountId;
+    private long timestamp;
+}
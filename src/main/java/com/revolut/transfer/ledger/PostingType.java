@@ -0,0 +1,22 @@
+package com.revolut.transfer.ledger;
+
+public enum PostingType {
+    TRANSFER_OUT,
+    TRANSFER_IN,
+    DEPOSIT,
+    WITHDRAWAL,
+    /*
+    * Amount of a transfer given back to its source account, when the target account could not be credited.
+    * */
+    REFUND;
+
+    private static final PostingType[] VALUES = values();
+
+    static PostingType fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    boolean hasCounterparty() {
+        return this == TRANSFER_OUT || this == TRANSFER_IN || this == REFUND;
+    }
+}
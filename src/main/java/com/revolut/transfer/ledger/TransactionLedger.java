@@ -0,0 +1,169 @@
+package com.revolut.transfer.ledger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/*
+ * == NOTE ==:
+ * In-memory history of the balance changes made by the transfer engines. Every change of an account is one posting,
+ * a transfer is two (TRANSFER_OUT on the source and TRANSFER_IN on the target account). Each posting takes the next
+ * number of one global sequence, which orders all postings and serves as their transaction id.
+ *
+ * Postings are kept per account (see AccountHistory), so reading the history of an account never looks at other accounts.
+ * A page of postings is read newest first, starting before a cursor sequence, and only the postings of the page are
+ * copied out. The history is bounded per account and is not journaled, so it starts empty after a restart.
+ *
+ * Engines record a change right after saving it. The locking and sharded engines still own the changed accounts then
+ * (stripe locks, shard thread), so the postings of an account are in the order in which its balance changed.
+ * The optimistic engine has given up its claims by then, so concurrent changes of one account may be recorded in either
+ * order. The balance of every posting is still the one its change committed.
+ * */
+public class TransactionLedger {
+
+    public static final int DEFAULT_RING_SIZE = 64;
+    public static final int DEFAULT_RETAINED_POSTINGS = 1024;
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private final ConcurrentHashMap<UUID, AccountHistory> histories = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final int ringSize;
+    private final int retainedPostings;
+    private final LongSupplier clock;
+
+    /**
+     * @param ringSize         latest postings per account kept uncompacted, rounded up to the next power of two
+     * @param retainedPostings postings kept per account, 0 records nothing
+     */
+    public TransactionLedger(int ringSize, int retainedPostings) {
+        this(ringSize, retainedPostings, System::currentTimeMillis);
+    }
+
+    TransactionLedger(int ringSize, int retainedPostings, LongSupplier clock) {
+        if (ringSize < 2 || ringSize > (1 << 20) || retainedPostings < 0) {
+            throw new IllegalArgumentException("Ledger ring size should be between 2 and 2^20 and retained postings should not be negative.");
+        }
+        int size = Integer.highestOneBit(ringSize);
+        if (size < ringSize) {
+            size <<= 1;
+        }
+        this.ringSize = retainedPostings == 0 ? size : Math.min(size, Integer.highestOneBit(Math.max(retainedPostings, 2)));
+        this.retainedPostings = retainedPostings;
+        this.clock = clock;
+    }
+
+    /**
+     * Ledger which records nothing, for engines used without history.
+     */
+    public static TransactionLedger disabled() {
+        return new TransactionLedger(DEFAULT_RING_SIZE, 0);
+    }
+
+    public boolean isEnabled() {
+        return retainedPostings > 0;
+    }
+
+    public void recordTransfer(UUID fromAccountId, long fromBalance, UUID toAccountId, long toBalance, long amount) {
+        recordTransfer(fromAccountId, fromBalance, toAccountId, toBalance, amount, amount);
+    }
+
+    /**
+     * Records a transfer between accounts of different currencies.
+     *
+     * @param amount         debited amount, in the currency of the source account
+     * @param creditedAmount credited amount, in the currency of the target account
+     */
+    public void recordTransfer(UUID fromAccountId, long fromBalance, UUID toAccountId, long toBalance, long amount,
+                               long creditedAmount) {
+        if (!isEnabled()) {
+            return;
+        }
+        long timestamp = clock.getAsLong();
+        historyOf(fromAccountId).append(sequence, PostingType.TRANSFER_OUT, -amount, fromBalance, toAccountId, timestamp);
+        historyOf(toAccountId).append(sequence, PostingType.TRANSFER_IN, creditedAmount, toBalance, fromAccountId, timestamp);
+    }
+
+    public void recordTransfers(List<AppliedTransfer> transfers) {
+        for (AppliedTransfer transfer : transfers) {
+            recordTransfer(transfer.getFromAccountId(), transfer.getFromBalance(), transfer.getToAccountId(),
+                    transfer.getToBalance(), transfer.getAmount(), transfer.getCreditedAmount());
+        }
+    }
+
+    /**
+     * Records the debit of a transfer on its own, for engines which credit the target account later.
+     */
+    public void recordTransferOut(UUID fromAccountId, long fromBalance, UUID toAccountId, long amount) {
+        record(fromAccountId, PostingType.TRANSFER_OUT, -amount, fromBalance, toAccountId);
+    }
+
+    /**
+     * Records the credit of a transfer whose debit was recorded with {@link #recordTransferOut}.
+     */
+    public void recordTransferIn(UUID toAccountId, long toBalance, UUID fromAccountId, long amount) {
+        record(toAccountId, PostingType.TRANSFER_IN, amount, toBalance, fromAccountId);
+    }
+
+    public void recordRefund(UUID fromAccountId, long fromBalance, UUID toAccountId, long amount) {
+        record(fromAccountId, PostingType.REFUND, amount, fromBalance, toAccountId);
+    }
+
+    public void recordDeposit(UUID accountId, long balance, long amount) {
+        record(accountId, PostingType.DEPOSIT, amount, balance, null);
+    }
+
+    public void recordWithdrawal(UUID accountId, long balance, long amount) {
+        record(accountId, PostingType.WITHDRAWAL, -amount, balance, null);
+    }
+
+    /**
+     * @param beforeSequence only postings with a smaller sequence are returned, Long.MAX_VALUE for the latest ones
+     * @param limit          maximum number of postings returned
+     * @return postings of the account, newest first
+     */
+    public List<Posting> getPostings(UUID accountId, long beforeSequence, int limit) {
+        AccountHistory history = histories.get(accountId);
+        if (history == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        List<Posting> postings = new ArrayList<>(Math.min(limit, ringSize));
+        history.collect(beforeSequence, limit, postings);
+        return postings;
+    }
+
+    public int getPostingCount(UUID accountId) {
+        AccountHistory history = histories.get(accountId);
+        return history == null ? 0 : history.getPostingCount();
+    }
+
+    /**
+     * @return sequence of the latest posting, 0 before the first one
+     */
+    public long getSequence() {
+        return sequence.get();
+    }
+
+    public void clear() {
+        histories.clear();
+    }
+
+    private void record(UUID accountId, PostingType type, long amount, long balance, UUID counterparty) {
+        if (!isEnabled()) {
+            return;
+        }
+        historyOf(accountId).append(sequence, type, amount, balance, counterparty, clock.getAsLong());
+    }
+
+    private AccountHistory historyOf(UUID accountId) {
+        AccountHistory history = histories.get(accountId);
+        if (history == null) {
+            history = histories.computeIfAbsent(accountId, id -> new AccountHistory(ringSize, retainedPostings));
+        }
+        return history;
+    }
+}
@@ -0,0 +1,156 @@
+package com.revolut.transfer.lock;
+
+import com.google.inject.Inject;
+import com.revolut.transfer.metrics.LatencyRecorder;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/*
+ * == NOTE ==:
+ * Account locks are taken from a fixed size table of ReentrantLocks instead of interning the account id.
+ * The stripe of an account is chosen from the bits of its UUID, so two accounts may share a stripe.
+ * Sharing a stripe is safe (it only serializes a few unrelated requests), while the table never grows
+ * and lookup is a plain array access with no global string table involved.
+ *
+ * For transfers, locks are ordered by stripe index, larger first and then smaller.
+ * Ordering by account id is not enough anymore, because two accounts with larger/smaller ids can map
+ * to stripes in the opposite order. Ordering on stripes keeps the deadlock-free guarantee.
+ * Batches lock all of their stripes in the same descending order, so they are deadlock-free
+ * against each other and against single transfers.
+ *
+ * The locks are ReentrantLocks rather than monitors, so that a virtual thread waiting for an account parks and
+ * releases its carrier thread instead of pinning it. Engines release them before a journaled change is waited for,
+ * see JournaledAccountRepository.
+ *
+ * Locks taken through lock() record how long the caller waited for them. A free lock is taken with tryLock() and
+ * recorded as no wait, so only contended locks pay for reading the clock.
+ * */
+public class AccountLockManager {
+
+    public static final int DEFAULT_STRIPES = 1024;
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+    private final LatencyRecorder lockWaits = new LatencyRecorder();
+
+    @Inject
+    public AccountLockManager() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param stripes number of locks, rounded up to the next power of two
+     */
+    public AccountLockManager(int stripes) {
+        if (stripes <= 0 || stripes > (1 << 30)) {
+            throw new IllegalArgumentException("Number of lock stripes should be between 1 and 2^30.");
+        }
+        int size = Integer.highestOneBit(stripes);
+        if (size < stripes) {
+            size <<= 1;
+        }
+        this.locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    public ReentrantLock lockFor(UUID accountId) {
+        return locks[stripeOf(accountId)];
+    }
+
+    /**
+     * Locks the lock, recording the wait, see {@link #getLockWaits()}.
+     */
+    public void lock(ReentrantLock lock) {
+        if (lock.tryLock()) {
+            lockWaits.record(0);
+            return;
+        }
+        long started = System.nanoTime();
+        lock.lock();
+        lockWaits.recordSince(started);
+    }
+
+    /**
+     * Lock to be obtained first while working on two accounts, i.e. lock of the larger stripe.
+     */
+    public ReentrantLock firstLockFor(UUID accountId, UUID otherAccountId) {
+        return locks[Math.max(stripeOf(accountId), stripeOf(otherAccountId))];
+    }
+
+    /**
+     * Lock to be obtained second (nested) while working on two accounts, i.e. lock of the smaller stripe.
+     * When both accounts share a stripe, it is the same lock as {@link #firstLockFor(UUID, UUID)}.
+     */
+    public ReentrantLock secondLockFor(UUID accountId, UUID otherAccountId) {
+        return locks[Math.min(stripeOf(accountId), stripeOf(otherAccountId))];
+    }
+
+    /**
+     * Runs the action holding the locks of all given accounts. Every stripe is locked once, larger stripe first,
+     * and unlocked in reverse order.
+     */
+    public <T> T callWithLocks(Collection<UUID> accountIds, Supplier<T> action) {
+        int[] stripes = new int[accountIds.size()];
+        int count = 0;
+        for (UUID accountId : accountIds) {
+            stripes[count++] = stripeOf(accountId);
+        }
+        Arrays.sort(stripes, 0, count);
+
+        int[] ordered = new int[count];
+        int distinct = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            if (distinct == 0 || ordered[distinct - 1] != stripes[i]) {
+                ordered[distinct++] = stripes[i];
+            }
+        }
+        return callLocked(ordered, distinct, action);
+    }
+
+    /**
+     * Runs the action holding every stripe, i.e. while no account can be changed by a holder of these locks.
+     */
+    public <T> T callWithAllLocks(Supplier<T> action) {
+        int[] ordered = new int[locks.length];
+        for (int i = 0; i < ordered.length; i++) {
+            ordered[i] = ordered.length - 1 - i;
+        }
+        return callLocked(ordered, ordered.length, action);
+    }
+
+    private <T> T callLocked(int[] stripes, int count, Supplier<T> action) {
+        int locked = 0;
+        try {
+            while (locked < count) {
+                lock(locks[stripes[locked]]);
+                locked++;
+            }
+            return action.get();
+        } finally {
+            while (locked > 0) {
+                locks[stripes[--locked]].unlock();
+            }
+        }
+    }
+
+    public LatencyRecorder getLockWaits() {
+        return lockWaits;
+    }
+
+    public int getStripes() {
+        return locks.length;
+    }
+
+    int stripeOf(UUID accountId) {
+        long bits = accountId.getMostSignificantBits() ^ accountId.getLeastSignificantBits();
+        int hash = (int) (bits ^ (bits >>> 32));
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,48 @@
+package com.revolut.transfer.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * == NOTE ==:
+ * Recorders of the HTTP routes and service methods, and counters of the requests rejected by an exception handler.
+ * Recorders are looked up once, when a route or a service is set up, and then kept by it, so the request path only
+ * records. Rejections are counted per exception type, looking the counter up by class, which does not allocate either.
+ * */
+public class MetricsRegistry {
+
+    private final ConcurrentHashMap<String, LatencyRecorder> routes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LatencyRecorder> serviceMethods = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, LongAdder> rejections = new ConcurrentHashMap<>();
+
+    /**
+     * @param route method and route pattern, e.g. "GET /accounts/:accountId"
+     */
+    public LatencyRecorder route(String route) {
+        return routes.computeIfAbsent(route, ignored -> new LatencyRecorder());
+    }
+
+    public LatencyRecorder serviceMethod(String method) {
+        return serviceMethods.computeIfAbsent(method, ignored -> new LatencyRecorder());
+    }
+
+    public void rejected(Throwable ex) {
+        rejections.computeIfAbsent(ex.getClass(), ignored -> new LongAdder()).increment();
+    }
+
+    Map<String, LatencyRecorder> getRoutes() {
+        return new TreeMap<>(routes);
+    }
+
+    Map<String, LatencyRecorder> getServiceMethods() {
+        return new TreeMap<>(serviceMethods);
+    }
+
+    Map<String, Long> getRejections() {
+        Map<String, Long> counts = new TreeMap<>();
+        rejections.forEach((type, count) -> counts.merge(type.getSimpleName(), count.sum(), Long::sum));
+        return counts;
+    }
+}
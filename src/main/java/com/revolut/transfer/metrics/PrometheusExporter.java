@@ -0,0 +1,151 @@
+package com.revolut.transfer.metrics;
+
+import com.google.inject.Inject;
+import com.revolut.transfer.admission.AdmissionControl;
+import com.revolut.transfer.audit.AuditReport;
+import com.revolut.transfer.audit.ConservationAuditor;
+import com.revolut.transfer.idempotency.IdempotencyCache;
+import com.revolut.transfer.lock.AccountLockManager;
+import com.revolut.transfer.repository.AccountRepository;
+import com.revolut.transfer.schedule.TransferScheduler;
+
+import java.util.Map;
+
+/*
+ * Renders all metrics in the Prometheus text exposition format (version 0.0.4) for GET /metrics.
+ * Latencies are summaries in seconds with the 0.5, 0.9, 0.99 and 0.999 quantiles since startup, plus their maximum.
+ * */
+public class PrometheusExporter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final MetricsRegistry metricsRegistry;
+    private final AccountRepository accountRepository;
+    private final AccountLockManager accountLockManager;
+    private final IdempotencyCache idempotencyCache;
+    private final ConservationAuditor conservationAuditor;
+    private final AdmissionControl admissionControl;
+    private final TransferScheduler transferScheduler;
+
+    @Inject
+    public PrometheusExporter(MetricsRegistry metricsRegistry, AccountRepository accountRepository,
+                              AccountLockManager accountLockManager, IdempotencyCache idempotencyCache,
+                              ConservationAuditor conservationAuditor, AdmissionControl admissionControl,
+                              TransferScheduler transferScheduler) {
+        this.metricsRegistry = metricsRegistry;
+        this.accountRepository = accountRepository;
+        this.accountLockManager = accountLockManager;
+        this.idempotencyCache = idempotencyCache;
+        this.conservationAuditor = conservationAuditor;
+        this.admissionControl = admissionControl;
+        this.transferScheduler = transferScheduler;
+    }
+
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+
+        header(out, "transfer_http_request_duration_seconds", "summary", "Time to serve a request, by route.");
+        for (Map.Entry<String, LatencyRecorder> route : metricsRegistry.getRoutes().entrySet()) {
+            summary(out, "transfer_http_request_duration_seconds", "route", route.getKey(), route.getValue());
+        }
+        header(out, "transfer_http_request_duration_max_seconds", "gauge", "Longest request since startup, by route.");
+        for (Map.Entry<String, LatencyRecorder> route : metricsRegistry.getRoutes().entrySet()) {
+            sample(out, "transfer_http_request_duration_max_seconds", "route", route.getKey(),
+                    LatencyRecorder.Snapshot.toSeconds(route.getValue().snapshot().getMaxNanos()));
+        }
+
+        header(out, "transfer_http_rejections_total", "counter", "Requests answered by an exception handler, by exception type.");
+        for (Map.Entry<String, Long> rejection : metricsRegistry.getRejections().entrySet()) {
+            sample(out, "transfer_http_rejections_total", "exception", rejection.getKey(), rejection.getValue());
+        }
+
+        header(out, "transfer_service_call_duration_seconds", "summary", "Time spent in the transfer engine, by method.");
+        for (Map.Entry<String, LatencyRecorder> method : metricsRegistry.getServiceMethods().entrySet()) {
+            summary(out, "transfer_service_call_duration_seconds", "method", method.getKey(), method.getValue());
+        }
+
+        header(out, "transfer_lock_wait_seconds", "summary", "Time waited for an account lock stripe by the locking engine.");
+        summary(out, "transfer_lock_wait_seconds", null, null, accountLockManager.getLockWaits());
+
+        header(out, "transfer_accounts", "gauge", "Accounts in the repository.");
+        sample(out, "transfer_accounts", null, null, accountRepository.size());
+
+        header(out, "transfer_idempotency_hits_total", "counter", "Requests answered with a stored Idempotency-Key result.");
+        sample(out, "transfer_idempotency_hits_total", null, null, idempotencyCache.getHits());
+        header(out, "transfer_idempotency_coalesced_total", "counter", "Requests which waited for a request in flight with the same key.");
+        sample(out, "transfer_idempotency_coalesced_total", null, null, idempotencyCache.getCoalesced());
+        header(out, "transfer_idempotency_misses_total", "counter", "Requests with an Idempotency-Key run for the first time.");
+        sample(out, "transfer_idempotency_misses_total", null, null, idempotencyCache.getMisses());
+        header(out, "transfer_idempotency_evictions_total", "counter", "Stored results evicted before their time to live.");
+        sample(out, "transfer_idempotency_evictions_total", null, null, idempotencyCache.getEvictions());
+        header(out, "transfer_idempotency_entries", "gauge", "Stored Idempotency-Key results.");
+        sample(out, "transfer_idempotency_entries", null, null, idempotencyCache.getEntries());
+        header(out, "transfer_idempotency_estimated_bytes", "gauge", "Estimated heap held by stored results.");
+        sample(out, "transfer_idempotency_estimated_bytes", null, null, idempotencyCache.getEstimatedBytes());
+
+        header(out, "transfer_audits_total", "counter", "Conservation audits run.");
+        sample(out, "transfer_audits_total", null, null, conservationAuditor.getAudits());
+        AuditReport report = conservationAuditor.getLastReport();
+        if (report != null) {
+            header(out, "transfer_audit_duration_seconds", "gauge", "Time taken by the latest audit.");
+            sample(out, "transfer_audit_duration_seconds", null, null, LatencyRecorder.Snapshot.toSeconds(report.getDurationNanos()));
+            header(out, "transfer_audit_discrepancy_minor_units", "gauge",
+                    "Money created (positive) or lost (negative) found by the latest audit, by currency.");
+            for (AuditReport.Totals totals : report.getCurrencies()) {
+                sample(out, "transfer_audit_discrepancy_minor_units", "currency", totals.getCurrency().getCurrencyCode(),
+                        totals.getDiscrepancy());
+            }
+        }
+
+        if (admissionControl.isEnabled()) {
+            header(out, "transfer_admission_concurrency_limit", "gauge", "Current limit of money movements in flight, 0 when there is none.");
+            sample(out, "transfer_admission_concurrency_limit", null, null, admissionControl.getConcurrencyLimit());
+            header(out, "transfer_admission_in_flight", "gauge", "Admitted money movements in flight.");
+            sample(out, "transfer_admission_in_flight", null, null, admissionControl.getInFlight());
+            header(out, "transfer_admission_tracked_accounts", "gauge", "Accounts with a token bucket which has not been evicted yet.");
+            sample(out, "transfer_admission_tracked_accounts", null, null, admissionControl.getTrackedAccounts());
+        }
+
+        header(out, "transfer_scheduled_pending", "gauge", "Scheduled transfers and standing orders waiting for their next execution.");
+        sample(out, "transfer_scheduled_pending", null, null, transferScheduler.getPending());
+        header(out, "transfer_scheduled_executions_total", "counter", "Executions of scheduled transfers, by outcome.");
+        sample(out, "transfer_scheduled_executions_total", "outcome", "transferred", transferScheduler.getExecuted());
+        sample(out, "transfer_scheduled_executions_total", "outcome", "failed", transferScheduler.getFailed());
+        header(out, "transfer_scheduled_deferred_batches_total", "counter", "Batches of due transfers turned away by admission control and retried.");
+        sample(out, "transfer_scheduled_deferred_batches_total", null, null, transferScheduler.getDeferred());
+        return out.toString();
+    }
+
+    private static void summary(StringBuilder out, String name, String label, String value, LatencyRecorder recorder) {
+        LatencyRecorder.Snapshot snapshot = recorder.snapshot();
+        for (double quantile : QUANTILES) {
+            out.append(name).append('{');
+            if (label != null) {
+                out.append(label).append("=\"").append(escape(value)).append("\",");
+            }
+            out.append("quantile=\"").append(quantile).append("\"} ")
+                    .append(LatencyRecorder.Snapshot.toSeconds(snapshot.valueAt(quantile))).append('\n');
+        }
+        sample(out, name + "_sum", label, value, LatencyRecorder.Snapshot.toSeconds(snapshot.getSumNanos()));
+        sample(out, name + "_count", label, value, snapshot.getCount());
+    }
+
+    private static void sample(StringBuilder out, String name, String label, String value, Number sample) {
+        out.append(name);
+        if (label != null) {
+            out.append('{').append(label).append("=\"").append(escape(value)).append("\"}");
+        }
+        out.append(' ').append(sample).append('\n');
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -1,15 +1,28 @@
 package com.revolut.transfer.model;
 
+import com.revolut.transfer.converter.MoneyConverter;
 import lombok.Builder;
 import lombok.Data;
 
-import java.math.BigDecimal;
+import java.util.Currency;
 import java.util.UUID;
 
-@Builder
+@Builder(toBuilder = true)
 @Data
 public class Account {
     private UUID id;
     private String userId;
-    private BigDecimal balance;
+    /*
+    * Balance in minor units of the currency, see MoneyConverter.
+    * */
+    private long balance;
+    /*
+    * Currency of the balance, it never changes once the account is created.
+    * */
+    @Builder.Default
+    private Currency currency = MoneyConverter.DEFAULT_CURRENCY;
+    /*
+    * Incremented on every change by the optimistic engine. Odd version means the account is claimed by an in-flight transfer.
+    * */
+    private long version;
 }
@@ -1,20 +1,103 @@
 package com.revolut.transfer.repository;
 
+import com.revolut.transfer.execption.AccountAlreadyExistsException;
 import com.revolut.transfer.model.Account;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public interface AccountRepository {
 
+    /**
+     * Stores the account, new or changed.
+     *
+     * @throws AccountAlreadyExistsException when another account has its userId, nothing is stored then
+     */
     void save(final Account account);
 
     void saveAll(final Collection<Account> accounts);
 
+    /**
+     * Saves a new account only if no account exists yet for its userId, as one atomic step.
+     *
+     * @return false if an account already exists for the userId
+     */
+    boolean saveIfUserAbsent(final Account account);
+
+    /**
+     * Saves each of the new accounts only if no account exists yet for its userId, see {@link #saveIfUserAbsent(Account)}.
+     * Of several accounts with the same userId only the first is saved.
+     *
+     * @return the accounts which have not been saved because their userId is taken, in the given order
+     */
+    default List<Account> saveAllIfUsersAbsent(final Collection<Account> accounts) {
+        List<Account> rejected = new ArrayList<>();
+        for (Account account : accounts) {
+            if (!saveIfUserAbsent(account)) {
+                rejected.add(account);
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * Atomically replaces the stored account with the updated one, only if it is still equal to the expected one.
+     *
+     * @return true if the account has been replaced
+     */
+    boolean replace(final Account expected, final Account updated);
+
+    /**
+     * Runs changes of accounts the caller holds, e.g. under its account locks, and returns once they are durable.
+     * A journaled repository appends the changes as they are made but waits for the disk only after they have returned,
+     * i.e. once the caller has released its accounts, see JournaledAccountRepository. Other repositories just run them.
+     * Nested calls wait at the end of the outermost one.
+     */
+    default <T> T durably(Supplier<T> changes) {
+        return changes.get();
+    }
+
+    /**
+     * Like {@link #durably(Supplier)}, but returns right after the changes with a future which is completed once they
+     * are durable, for callers which must not wait at all.
+     */
+    default CompletableFuture<Void> durablyAsync(Runnable changes) {
+        changes.run();
+        return CompletableFuture.completedFuture(null);
+    }
+
     Account getAccountById(UUID accountId);
 
     Collection<Account> getAllAccounts();
 
+    /**
+     * Passes every account to the action without copying the whole store first.
+     * Accounts changed during the iteration may be passed in their old or new state.
+     */
+    default void forEachAccount(Consumer<Account> action) {
+        getAllAccounts().forEach(action);
+    }
+
+    /**
+     * Accounts with an id above the given one, in id order, for listing the store page by page: the last id of a page
+     * is the cursor of the next one, so an account stored during the whole listing is listed exactly once whatever is
+     * created or deleted meanwhile. Stores keep their ids in a sorted index and seek to the cursor, so a page costs
+     * a lookup and its own accounts, not a pass over the store.
+     *
+     * @param after id of the last account of the previous page, null for the first page
+     */
+    List<Account> getAccountsAfter(UUID after, int limit);
+
+    /**
+     * Number of stored accounts, accounts created or deleted meanwhile may or may not be counted.
+     */
+    long size();
+
     void deleteAccount(UUID accountId);
 
     void deleteAllAccounts();
@@ -1,32 +1,82 @@
 package com.revolut.transfer.repository;
 
 import com.google.inject.Inject;
+import com.revolut.transfer.execption.AccountAlreadyExistsException;
 import com.revolut.transfer.model.Account;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class AccountRepositoryImpl implements AccountRepository {
 
     private final Map<UUID, Account> accountsStorage;
+    /*
+    * Secondary index userId -> accountId, kept in line with accountsStorage by every write. A userId belongs to one
+    * account: it is claimed with putIfAbsent before the account is stored, so a write giving the userId of another
+    * account fails and changes nothing.
+    * */
+    private final Map<String, UUID> userIndex;
+    /*
+    * Account ids in id order, for getAccountsAfter to seek to its cursor. An id is added once its account is stored
+    * and removed once it is deleted, pages skip the ids of accounts deleted meanwhile.
+    * */
+    private final NavigableSet<UUID> idIndex;
 
     @Inject
     public AccountRepositoryImpl() {
         this.accountsStorage = new ConcurrentHashMap<>();
+        this.userIndex = new ConcurrentHashMap<>();
+        this.idIndex = new ConcurrentSkipListSet<>();
     }
 
     @Override
     public void save(Account account) {
-        accountsStorage.put(account.getId(), account);
+        claimUser(account);
+        Account previous = accountsStorage.put(account.getId(), account);
+        if (previous == null) {
+            idIndex.add(account.getId());
+        }
+        releaseUser(previous, account);
     }
 
     @Override
     public void saveAll(Collection<Account> accounts) {
-        accounts.forEach(account -> accountsStorage.put(account.getId(), account));
+        accounts.forEach(this::save);
+    }
+
+    @Override
+    public boolean saveIfUserAbsent(Account account) {
+        if (userIndex.putIfAbsent(account.getUserId(), account.getId()) != null) {
+            return false;
+        }
+        accountsStorage.put(account.getId(), account);
+        idIndex.add(account.getId());
+        return true;
+    }
+
+    @Override
+    public boolean replace(Account expected, Account updated) {
+        boolean userChanged = !Objects.equals(expected.getUserId(), updated.getUserId());
+        if (userChanged) {
+            claimUser(updated);
+        }
+        if (!accountsStorage.replace(expected.getId(), expected, updated)) {
+            if (userChanged) {
+                userIndex.remove(updated.getUserId(), updated.getId());
+            }
+            return false;
+        }
+        releaseUser(expected, updated);
+        return true;
     }
 
     @Override
@@ -39,18 +89,62 @@ public class AccountRepositoryImpl implements AccountRepository {
         return accountsStorage.values().stream().collect(Collectors.toUnmodifiableList());
     }
 
+    @Override
+    public void forEachAccount(Consumer<Account> action) {
+        accountsStorage.values().forEach(action);
+    }
+
+    @Override
+    public List<Account> getAccountsAfter(UUID after, int limit) {
+        List<Account> accounts = new ArrayList<>();
+        for (UUID accountId : after == null ? idIndex : idIndex.tailSet(after, false)) {
+            if (accounts.size() == limit) {
+                break;
+            }
+            Account account = accountsStorage.get(accountId);
+            if (account != null) {
+                accounts.add(account);
+            }
+        }
+        return accounts;
+    }
+
+    @Override
+    public long size() {
+        return accountsStorage.size();
+    }
+
     @Override
     public void deleteAccount(UUID accountId) {
-        accountsStorage.remove(accountId);
+        Account account = accountsStorage.remove(accountId);
+        if (account != null) {
+            idIndex.remove(accountId);
+            userIndex.remove(account.getUserId(), accountId);
+        }
     }
 
     @Override
     public void deleteAllAccounts() {
         accountsStorage.clear();
+        idIndex.clear();
+        userIndex.clear();
     }
 
     @Override
     public boolean isUserExists(String userId) {
-        return accountsStorage.values().stream().anyMatch(account -> account.getUserId().equals(userId));
+        return userIndex.containsKey(userId);
+    }
+
+    private void claimUser(Account account) {
+        UUID owner = userIndex.putIfAbsent(account.getUserId(), account.getId());
+        if (owner != null && !owner.equals(account.getId())) {
+            throw new AccountAlreadyExistsException("Account already exists for userId: " + account.getUserId());
+        }
+    }
+
+    private void releaseUser(Account previous, Account account) {
+        if (previous != null && !Objects.equals(previous.getUserId(), account.getUserId())) {
+            userIndex.remove(previous.getUserId(), previous.getId());
+        }
     }
 }
@@ -0,0 +1,468 @@
+package com.revolut.transfer.repository;
+
+import com.revolut.transfer.execption.JournalException;
+import com.revolut.transfer.journal.AccountSnapshot;
+import com.revolut.transfer.journal.JournalVisitor;
+import com.revolut.transfer.journal.TransferJournal;
+import com.revolut.transfer.lock.AccountLockManager;
+import com.revolut.transfer.model.Account;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/*
+ * == NOTE ==:
+ * Write-ahead journaling around any repository. Every change is applied to the wrapped repository and its after image
+ * is appended to the journal, and the call only returns once the record is durable. As the engines return to the
+ * controller only after the repository call, a money movement is acknowledged only once it is on disk.
+ *
+ * Applying and appending happen under the stripe lock of the account, so the journal has the changes of an account
+ * in the same order as the repository. Waiting for durability happens after the stripe lock is released, so
+ * concurrent writers share one force() of the group commit. The stripe locks are private to this class and always
+ * the innermost locks taken, so they can not deadlock with the locks of an engine.
+ *
+ * Engines make their changes inside durably (or durablyAsync), holding their account locks, shards or claims. There a
+ * change only remembers its journal position, and the wait for it happens once durably returns, after the engine has
+ * let go of its accounts. So the next change of a hot account waits for its lock, not for the disk. The price is that
+ * a change is visible before it is durable (early lock release):
+ *  - Another change of the same account reads it, but is appended after it, since appending happens while the engine
+ *    still holds the account. It is durable only once its predecessor is, so it is never acknowledged before it either.
+ *    A crash can lose a balance another change was built on, but then it loses that change too, and neither has been
+ *    acknowledged.
+ *  - Reads (single accounts, balances, listings) may return a balance which is not durable yet and which a crash rolls
+ *    back. Only acknowledged money movements are guaranteed to survive a crash, not every balance ever read.
+ * Changes made outside durably wait before the call returns, as before.
+ *
+ * Compare and sets which change nothing but the version are not journaled: the claims of the optimistic engine (odd
+ * versions) and the releases of claims nobody committed on. The journal keeps the last committed state then, which is
+ * the state after them apart from the version.
+ *
+ * A change whose record can not be appended, e.g. because the journal is broken, is undone in the wrapped repository
+ * before the stripe lock is released, so the caller gets the JournalException and no one sees the change. A broken
+ * journal stays broken, so from then on no change is made at all, and retries can not apply a change twice. Deletes
+ * can not fail in the wrapped repository, so they are appended first and applied only once the append succeeded.
+ * Undoing a commit of the optimistic engine restores the claim by compare and set, which only fails when the committed
+ * account has been claimed again meanwhile; that claimer's commit fails on the broken journal just the same.
+ *
+ * deleteAllAccounts holds every stripe, so no change is applied or appended while the accounts are cleared.
+ *
+ * Snapshots are taken while changes go on (see AccountSnapshot): the snapshot remembers the appended journal position,
+ * streams all accounts, and is published only after every change it may contain is durable. That last position is
+ * read holding every stripe, so no change can be applied to the repository but not yet appended to the journal.
+ * Every snapshot rolls the journal to a new segment at its position. Once it is published, the segments before the
+ * position of the snapshot it replaced are deleted: recovery needs the journal from the latest snapshot on, or from
+ * the previous one when the latest is corrupted, but never the records before both.
+ * Snapshots need the engines to save new Account instances instead of changing stored ones, which they all do.
+ * */
+public class JournaledAccountRepository implements AccountRepository {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JournaledAccountRepository.class);
+
+    private final AccountRepository accountRepository;
+    private final TransferJournal journal;
+    private final AccountLockManager stripes = new AccountLockManager();
+    private final ThreadLocal<Deferral> deferrals = ThreadLocal.withInitial(Deferral::new);
+    private ScheduledExecutorService snapshotScheduler;
+    private long snapshotPosition;
+
+    public JournaledAccountRepository(AccountRepository accountRepository, TransferJournal journal) {
+        this.accountRepository = accountRepository;
+        this.journal = journal;
+    }
+
+    /**
+     * Replays the journal at the given path into the (empty) repository, and journals every further change of it.
+     *
+     * @param windowMicros  group commit window, see {@link TransferJournal}
+     * @param maxBatchBytes group commit size limit, see {@link TransferJournal}
+     */
+    public static JournaledAccountRepository open(AccountRepository accountRepository, Path path, long windowMicros, int maxBatchBytes) {
+        return open(accountRepository, path, null, windowMicros, maxBatchBytes);
+    }
+
+    /**
+     * Loads the snapshot, when there is one, into the (empty) repository and replays only the journal records after it.
+     * A corrupted snapshot is ignored and the previous snapshot is loaded instead, or the whole journal is replayed when
+     * there is none.
+     *
+     * @param snapshotPath snapshot written by {@link #writeSnapshot(Path)}, or null to replay the whole journal
+     */
+    public static JournaledAccountRepository open(AccountRepository accountRepository, Path path, Path snapshotPath,
+                                                  long windowMicros, int maxBatchBytes) {
+        long started = System.nanoTime();
+        JournalVisitor recovery = replayInto(accountRepository);
+        AccountSnapshot snapshot = null;
+        if (snapshotPath != null) {
+            snapshot = loadSnapshot(accountRepository, snapshotPath, recovery);
+            if (snapshot == null) {
+                snapshotPath = AccountSnapshot.previousOf(snapshotPath);
+                snapshot = loadSnapshot(accountRepository, snapshotPath, recovery);
+            }
+        }
+        long snapshotLoaded = System.nanoTime();
+
+        TransferJournal journal = snapshot == null
+                ? TransferJournal.open(path, recovery, windowMicros, TimeUnit.MICROSECONDS, maxBatchBytes)
+                : TransferJournal.open(path, snapshot.getJournalPosition(), recovery, windowMicros, TimeUnit.MICROSECONDS, maxBatchBytes);
+        long finished = System.nanoTime();
+
+        if (snapshot == null) {
+            LOGGER.info("Recovered accounts from journal {} in {} ms.", path, TimeUnit.NANOSECONDS.toMillis(finished - started));
+        } else {
+            LOGGER.info("Recovered {} accounts from snapshot {} in {} ms and the journal tail from position {} in {} ms.",
+                    snapshot.getAccountCount(), snapshotPath, TimeUnit.NANOSECONDS.toMillis(snapshotLoaded - started),
+                    snapshot.getJournalPosition(), TimeUnit.NANOSECONDS.toMillis(finished - snapshotLoaded));
+        }
+        JournaledAccountRepository repository = new JournaledAccountRepository(accountRepository, journal);
+        repository.snapshotPosition = snapshot == null ? 0 : snapshot.getJournalPosition();
+        return repository;
+    }
+
+    private static AccountSnapshot loadSnapshot(AccountRepository accountRepository, Path snapshotPath, JournalVisitor recovery) {
+        if (!Files.exists(snapshotPath)) {
+            return null;
+        }
+        try {
+            return AccountSnapshot.load(snapshotPath, recovery);
+        } catch (JournalException ex) {
+            LOGGER.warn("Snapshot {} can not be loaded.", snapshotPath, ex);
+            accountRepository.deleteAllAccounts();
+            return null;
+        }
+    }
+
+    private static JournalVisitor replayInto(AccountRepository accountRepository) {
+        return new JournalVisitor() {
+            @Override
+            public void onAccounts(List<Account> accounts) {
+                accountRepository.saveAll(accounts);
+            }
+
+            @Override
+            public void onDelete(UUID accountId) {
+                accountRepository.deleteAccount(accountId);
+            }
+
+            @Override
+            public void onDeleteAll() {
+                accountRepository.deleteAllAccounts();
+            }
+        };
+    }
+
+    @Override
+    public void save(Account account) {
+        long position;
+        ReentrantLock lock = stripes.lockFor(account.getId());
+        lock.lock();
+        try {
+            Account previous = accountRepository.getAccountById(account.getId());
+            accountRepository.save(account);
+            position = appendOrUndo(() -> journal.appendAccounts(List.of(account)), () -> restore(account.getId(), previous));
+        } finally {
+            lock.unlock();
+        }
+        awaitOrDefer(position);
+    }
+
+    @Override
+    public void saveAll(Collection<Account> accounts) {
+        List<UUID> accountIds = new ArrayList<>(accounts.size());
+        accounts.forEach(account -> accountIds.add(account.getId()));
+        long position = stripes.callWithLocks(accountIds, () -> {
+            Map<UUID, Account> previous = previousOf(accountIds);
+            return appendOrUndo(() -> {
+                /*
+                * Inside the undo, as an account whose userId belongs to another account fails the save after the
+                * accounts before it are stored.
+                * */
+                accountRepository.saveAll(accounts);
+                return journal.appendAccounts(new ArrayList<>(accounts));
+            }, () -> previous.forEach(this::restore));
+        });
+        awaitOrDefer(position);
+    }
+
+    @Override
+    public boolean saveIfUserAbsent(Account account) {
+        long position;
+        ReentrantLock lock = stripes.lockFor(account.getId());
+        lock.lock();
+        try {
+            Account previous = accountRepository.getAccountById(account.getId());
+            if (!accountRepository.saveIfUserAbsent(account)) {
+                return false;
+            }
+            position = appendOrUndo(() -> journal.appendAccounts(List.of(account)), () -> restore(account.getId(), previous));
+        } finally {
+            lock.unlock();
+        }
+        awaitOrDefer(position);
+        return true;
+    }
+
+    /*
+    * The saved accounts of the whole chunk are appended as one record, so a bulk import waits for one force() per chunk.
+    * */
+    @Override
+    public List<Account> saveAllIfUsersAbsent(Collection<Account> accounts) {
+        List<UUID> accountIds = new ArrayList<>(accounts.size());
+        accounts.forEach(account -> accountIds.add(account.getId()));
+        List<Account> rejected = new ArrayList<>();
+        long position = stripes.callWithLocks(accountIds, () -> {
+            Map<UUID, Account> previous = previousOf(accountIds);
+            rejected.addAll(accountRepository.saveAllIfUsersAbsent(accounts));
+            Set<Account> notSaved = Collections.newSetFromMap(new IdentityHashMap<>());
+            notSaved.addAll(rejected);
+            List<Account> saved = new ArrayList<>(accounts.size() - rejected.size());
+            for (Account account : accounts) {
+                if (!notSaved.contains(account)) {
+                    saved.add(account);
+                }
+            }
+            if (saved.isEmpty()) {
+                return 0L;
+            }
+            return appendOrUndo(() -> journal.appendAccounts(saved),
+                    () -> saved.forEach(account -> restore(account.getId(), previous.get(account.getId()))));
+        });
+        awaitOrDefer(position);
+        return rejected;
+    }
+
+    @Override
+    public boolean replace(Account expected, Account updated) {
+        if ((updated.getVersion() & 1) != 0 || isVersionOnly(expected, updated)) {
+            return accountRepository.replace(expected, updated);
+        }
+        long position;
+        ReentrantLock lock = stripes.lockFor(updated.getId());
+        lock.lock();
+        try {
+            if (!accountRepository.replace(expected, updated)) {
+                return false;
+            }
+            position = appendOrUndo(() -> journal.appendAccounts(List.of(updated)), () -> {
+                if (!accountRepository.replace(updated, expected)) {
+                    LOGGER.error("Account {} changed meanwhile, its change could not be undone.", updated.getId());
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+        awaitOrDefer(position);
+        return true;
+    }
+
+    private static long appendOrUndo(LongSupplier append, Runnable undo) {
+        try {
+            return append.getAsLong();
+        } catch (RuntimeException ex) {
+            undo.run();
+            throw ex;
+        }
+    }
+
+    /*
+    * Stored accounts before a change, null for the accounts which do not exist yet. Called holding their stripes.
+    * */
+    private Map<UUID, Account> previousOf(List<UUID> accountIds) {
+        Map<UUID, Account> previous = new HashMap<>();
+        for (UUID accountId : accountIds) {
+            previous.put(accountId, accountRepository.getAccountById(accountId));
+        }
+        return previous;
+    }
+
+    private void restore(UUID accountId, Account previous) {
+        if (previous == null) {
+            accountRepository.deleteAccount(accountId);
+        } else {
+            accountRepository.save(previous);
+        }
+    }
+
+    private static boolean isVersionOnly(Account expected, Account updated) {
+        return expected.getBalance() == updated.getBalance()
+                && Objects.equals(expected.getUserId(), updated.getUserId())
+                && Objects.equals(expected.getCurrency(), updated.getCurrency());
+    }
+
+    @Override
+    public <T> T durably(Supplier<T> changes) {
+        Deferral deferral = deferrals.get();
+        if (deferral.deferring) {
+            return changes.get();
+        }
+        T result = deferred(deferral, changes);
+        journal.awaitDurable(deferral.position);
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<Void> durablyAsync(Runnable changes) {
+        Deferral deferral = deferrals.get();
+        if (deferral.deferring) {
+            changes.run();
+            return CompletableFuture.completedFuture(null);
+        }
+        deferred(deferral, () -> {
+            changes.run();
+            return null;
+        });
+        return journal.whenDurable(deferral.position);
+    }
+
+    /*
+    * A change which fails is not waited for, its caller gets the failure anyway.
+    * */
+    private <T> T deferred(Deferral deferral, Supplier<T> changes) {
+        deferral.deferring = true;
+        deferral.position = 0;
+        try {
+            return changes.get();
+        } finally {
+            deferral.deferring = false;
+        }
+    }
+
+    private void awaitOrDefer(long position) {
+        Deferral deferral = deferrals.get();
+        if (deferral.deferring) {
+            deferral.position = Math.max(deferral.position, position);
+        } else {
+            journal.awaitDurable(position);
+        }
+    }
+
+    @Override
+    public Account getAccountById(UUID accountId) {
+        return accountRepository.getAccountById(accountId);
+    }
+
+    @Override
+    public Collection<Account> getAllAccounts() {
+        return accountRepository.getAllAccounts();
+    }
+
+    @Override
+    public List<Account> getAccountsAfter(UUID after, int limit) {
+        return accountRepository.getAccountsAfter(after, limit);
+    }
+
+    @Override
+    public long size() {
+        return accountRepository.size();
+    }
+
+    @Override
+    public void deleteAccount(UUID accountId) {
+        long position;
+        ReentrantLock lock = stripes.lockFor(accountId);
+        lock.lock();
+        try {
+            position = journal.appendDelete(accountId);
+            accountRepository.deleteAccount(accountId);
+        } finally {
+            lock.unlock();
+        }
+        awaitOrDefer(position);
+    }
+
+    @Override
+    public void forEachAccount(Consumer<Account> action) {
+        accountRepository.forEachAccount(action);
+    }
+
+    @Override
+    public void deleteAllAccounts() {
+        long position = stripes.callWithAllLocks(() -> {
+            long appended = journal.appendDeleteAll();
+            accountRepository.deleteAllAccounts();
+            return appended;
+        });
+        awaitOrDefer(position);
+    }
+
+    @Override
+    public boolean isUserExists(String userId) {
+        return accountRepository.isUserExists(userId);
+    }
+
+    public TransferJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Writes a snapshot of all accounts to the given path without stopping changes, see {@link AccountSnapshot}, and
+     * deletes the journal segments no snapshot on disk needs anymore.
+     *
+     * @return number of accounts in the snapshot
+     */
+    public synchronized long writeSnapshot(Path snapshotPath) {
+        long journalPosition = journal.roll();
+        long count;
+        try (AccountSnapshot.Writer writer = AccountSnapshot.create(snapshotPath, journalPosition)) {
+            accountRepository.forEachAccount(writer::add);
+            journal.awaitDurable(stripes.callWithAllLocks(journal::getAppendedPosition));
+            writer.publish();
+            count = writer.getCount();
+        }
+        journal.deleteSegmentsBefore(snapshotPosition);
+        snapshotPosition = journalPosition;
+        return count;
+    }
+
+    /**
+     * Writes a snapshot to the given path at a fixed interval, on a background thread.
+     */
+    public synchronized void scheduleSnapshots(Path snapshotPath, long interval, TimeUnit unit) {
+        if (snapshotScheduler != null) {
+            throw new IllegalStateException("Snapshots are already scheduled.");
+        }
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "account-snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                long started = System.nanoTime();
+                long accounts = writeSnapshot(snapshotPath);
+                LOGGER.info("Wrote snapshot of {} accounts to {} in {} ms.", accounts, snapshotPath,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            } catch (RuntimeException ex) {
+                LOGGER.error("Snapshot can not be written to {}.", snapshotPath, ex);
+            }
+        }, interval, interval, unit);
+    }
+
+    /*
+    * Journal position the changes made inside durably on this thread wait for.
+    * */
+    private static final class Deferral {
+
+        private boolean deferring;
+        private long position;
+    }
+}
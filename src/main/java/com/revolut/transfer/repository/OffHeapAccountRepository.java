@@ -0,0 +1,779 @@
+package com.revolut.transfer.repository;
+
+import com.google.inject.Inject;
+import com.revolut.transfer.execption.AccountAlreadyExistsException;
+import com.revolut.transfer.model.Account;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Currency;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/*
+ * == NOTE ==:
+ * Account store which keeps accounts outside of the java heap, so that tens of millions of accounts
+ * do not turn into tens of millions of objects for the garbage collector to walk.
+ *
+ * Accounts are fixed width records in direct byte buffers:
+ *   UUID most significant bits (8) | UUID least significant bits (8) | balance (8) | version (8) | userId offset (4)
+ *   | currency code (4) | unused (4) | state (4)
+ * The unused bytes keep the records 8 byte aligned. The userId is stored once as length prefixed UTF-8 bytes in a separate userId area of the same segment.
+ * The area is only appended to. The bytes of removed accounts, and of accounts whose userId changed, are counted, and
+ * once they make up half of the area and 4 bytes per table slot, the userIds still in use are copied into a new area,
+ * like a rehash does. A compaction walks the table, and the second bound keeps that walk paid for by the bytes it
+ * reclaims.
+ * Records live in open addressed (linear probing) tables, split into segments which are locked independently.
+ *
+ * A second table, also split into segments, maps the hash of a userId to account ids, to find users in O(1).
+ * Lock order is: user segments (ascending index) first, then the account segment. Nobody takes a user
+ * segment lock while holding an account segment lock, which keeps the two tables free of deadlocks.
+ *
+ * Ids are also kept in id order in a SortedIdIndex, updated under the account segment lock whenever an account is
+ * inserted or removed, so a page of getAccountsAfter seeks to its cursor instead of walking every segment.
+ *
+ * Accounts returned by this repository are copies. Changes to them are only stored by saving them again.
+ * */
+public class OffHeapAccountRepository implements AccountRepository {
+
+    public static final int DEFAULT_SEGMENTS = 64;
+    public static final int DEFAULT_EXPECTED_ACCOUNTS = 1 << 16;
+
+    private final AccountSegment[] accountSegments;
+    private final UserSegment[] userSegments;
+    private final SortedIdIndex idIndex = new SortedIdIndex();
+    private final int segmentMask;
+
+    @Inject
+    public OffHeapAccountRepository() {
+        this(DEFAULT_EXPECTED_ACCOUNTS);
+    }
+
+    /**
+     * @param expectedAccounts number of accounts to size the tables for, they grow beyond it when needed
+     */
+    public OffHeapAccountRepository(int expectedAccounts) {
+        int slotsPerSegment = Math.max(16, tableSizeFor((int) (expectedAccounts / DEFAULT_SEGMENTS / Table.MAX_LOAD) + 1));
+        this.accountSegments = new AccountSegment[DEFAULT_SEGMENTS];
+        this.userSegments = new UserSegment[DEFAULT_SEGMENTS];
+        for (int i = 0; i < DEFAULT_SEGMENTS; i++) {
+            accountSegments[i] = new AccountSegment(slotsPerSegment);
+            userSegments[i] = new UserSegment(slotsPerSegment);
+        }
+        this.segmentMask = DEFAULT_SEGMENTS - 1;
+    }
+
+    @Override
+    public void save(Account account) {
+        AccountSegment segment = accountSegmentFor(account.getId());
+        long msb = account.getId().getMostSignificantBits();
+        long lsb = account.getId().getLeastSignificantBits();
+
+        long stamp = segment.lock.writeLock();
+        try {
+            int slot = segment.find(msb, lsb);
+            if (slot >= 0 && segment.userIdEquals(slot, account.getUserId())) {
+                segment.update(slot, account.getBalance(), account.getVersion());
+                return;
+            }
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+        saveWithUserChange(account, segment, msb, lsb);
+    }
+
+    @Override
+    public void saveAll(Collection<Account> accounts) {
+        accounts.forEach(this::save);
+    }
+
+    @Override
+    public boolean saveIfUserAbsent(Account account) {
+        UserSegment userSegment = userSegmentFor(account.getUserId());
+        AccountSegment segment = accountSegmentFor(account.getId());
+        long msb = account.getId().getMostSignificantBits();
+        long lsb = account.getId().getLeastSignificantBits();
+
+        long userStamp = userSegment.lock.writeLock();
+        try {
+            if (ownerOf(userSegment, account.getUserId()) != null) {
+                return false;
+            }
+            long stamp = segment.lock.writeLock();
+            try {
+                if (segment.find(msb, lsb) >= 0) {
+                    throw new IllegalStateException("Account id is already in use: " + account.getId());
+                }
+                segment.insert(msb, lsb, account.getBalance(), account.getVersion(), account.getCurrency(), account.getUserId());
+                idIndex.add(account.getId());
+            } finally {
+                segment.lock.unlockWrite(stamp);
+            }
+            userSegment.insert(hashOf(account.getUserId()), msb, lsb);
+            return true;
+        } finally {
+            userSegment.lock.unlockWrite(userStamp);
+        }
+    }
+
+    /*
+    * The userId of a stored account is never changed by replace, only balance and version.
+    * */
+    @Override
+    public boolean replace(Account expected, Account updated) {
+        AccountSegment segment = accountSegmentFor(expected.getId());
+        long stamp = segment.lock.writeLock();
+        try {
+            int slot = segment.find(expected.getId().getMostSignificantBits(), expected.getId().getLeastSignificantBits());
+            if (slot < 0 || segment.balanceAt(slot) != expected.getBalance() || segment.versionAt(slot) != expected.getVersion()) {
+                return false;
+            }
+            segment.update(slot, updated.getBalance(), updated.getVersion());
+            return true;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Account getAccountById(UUID accountId) {
+        AccountSegment segment = accountSegmentFor(accountId);
+        long stamp = segment.lock.readLock();
+        try {
+            int slot = segment.find(accountId.getMostSignificantBits(), accountId.getLeastSignificantBits());
+            return slot < 0 ? null : segment.read(slot);
+        } finally {
+            segment.lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Account> getAllAccounts() {
+        List<Account> accounts = new ArrayList<>();
+        for (AccountSegment segment : accountSegments) {
+            long stamp = segment.lock.readLock();
+            try {
+                segment.readAll(accounts);
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return List.copyOf(accounts);
+    }
+
+    /*
+    * Accounts are decoded one segment at a time, and the action runs outside of the segment lock.
+    * */
+    @Override
+    public void forEachAccount(Consumer<Account> action) {
+        List<Account> accounts = new ArrayList<>();
+        for (AccountSegment segment : accountSegments) {
+            long stamp = segment.lock.readLock();
+            try {
+                segment.readAll(accounts);
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+            accounts.forEach(action);
+            accounts.clear();
+        }
+    }
+
+    /*
+    * Ids are taken from the index and read one by one, skipping accounts deleted meanwhile.
+    * */
+    @Override
+    public List<Account> getAccountsAfter(UUID after, int limit) {
+        List<Account> accounts = new ArrayList<>(Math.min(limit, SortedIdIndex.BLOCK_IDS));
+        UUID cursor = after;
+        while (accounts.size() < limit) {
+            int wanted = limit - accounts.size();
+            List<UUID> accountIds = idIndex.idsAfter(cursor, wanted);
+            for (UUID accountId : accountIds) {
+                Account account = getAccountById(accountId);
+                if (account != null) {
+                    accounts.add(account);
+                }
+            }
+            if (accountIds.size() < wanted) {
+                break;
+            }
+            cursor = accountIds.get(accountIds.size() - 1);
+        }
+        return accounts;
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (AccountSegment segment : accountSegments) {
+            long stamp = segment.lock.readLock();
+            try {
+                size += segment.size;
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void deleteAccount(UUID accountId) {
+        AccountSegment segment = accountSegmentFor(accountId);
+        long msb = accountId.getMostSignificantBits();
+        long lsb = accountId.getLeastSignificantBits();
+        while (true) {
+            String userId = userIdOf(segment, msb, lsb);
+            if (userId == null) {
+                return;
+            }
+            UserSegment userSegment = userSegmentFor(userId);
+            long userStamp = userSegment.lock.writeLock();
+            try {
+                long stamp = segment.lock.writeLock();
+                try {
+                    int slot = segment.find(msb, lsb);
+                    if (slot < 0 || !segment.userIdEquals(slot, userId)) {
+                        continue;
+                    }
+                    segment.remove(slot);
+                    idIndex.remove(accountId);
+                    userSegment.remove(hashOf(userId), msb, lsb);
+                    return;
+                } finally {
+                    segment.lock.unlockWrite(stamp);
+                }
+            } finally {
+                userSegment.lock.unlockWrite(userStamp);
+            }
+        }
+    }
+
+    @Override
+    public void deleteAllAccounts() {
+        long[] userStamps = new long[userSegments.length];
+        for (int i = 0; i < userSegments.length; i++) {
+            userStamps[i] = userSegments[i].lock.writeLock();
+        }
+        try {
+            for (AccountSegment segment : accountSegments) {
+                long stamp = segment.lock.writeLock();
+                try {
+                    segment.clear();
+                } finally {
+                    segment.lock.unlockWrite(stamp);
+                }
+            }
+            for (UserSegment userSegment : userSegments) {
+                userSegment.clear();
+            }
+            idIndex.clear();
+        } finally {
+            for (int i = userSegments.length - 1; i >= 0; i--) {
+                userSegments[i].lock.unlockWrite(userStamps[i]);
+            }
+        }
+    }
+
+    @Override
+    public boolean isUserExists(String userId) {
+        UserSegment userSegment = userSegmentFor(userId);
+        long stamp = userSegment.lock.readLock();
+        try {
+            return ownerOf(userSegment, userId) != null;
+        } finally {
+            userSegment.lock.unlockRead(stamp);
+        }
+    }
+
+    /*
+    * Bytes of direct memory held by the tables, excluding the fixed overhead of the buffer objects.
+    * */
+    public long getOffHeapBytes() {
+        long bytes = 0;
+        for (int i = 0; i < accountSegments.length; i++) {
+            bytes += accountSegments[i].capacityBytes() + userSegments[i].capacityBytes();
+        }
+        return bytes;
+    }
+
+    /*
+    * Slow path of save, when the account is new or its userId changes, so user segments have to be locked first.
+    * A userId belongs to one account, so the save fails when another account has it. The owner is looked up before
+    * the account segment is locked, as the lookup read locks account segments, and holding the user segment lock
+    * keeps it from changing until the insert.
+    * */
+    private void saveWithUserChange(Account account, AccountSegment segment, long msb, long lsb) {
+        while (true) {
+            String previousUserId = userIdOf(segment, msb, lsb);
+            UserSegment userSegment = userSegmentFor(account.getUserId());
+            UserSegment previousUserSegment = previousUserId == null ? userSegment : userSegmentFor(previousUserId);
+            UserSegment firstUserSegment = indexOf(userSegment) <= indexOf(previousUserSegment) ? userSegment : previousUserSegment;
+            UserSegment secondUserSegment = firstUserSegment == userSegment ? previousUserSegment : userSegment;
+
+            long firstUserStamp = firstUserSegment.lock.writeLock();
+            long secondUserStamp = secondUserSegment == firstUserSegment ? 0 : secondUserSegment.lock.writeLock();
+            try {
+                UUID owner = ownerOf(userSegment, account.getUserId());
+                if (owner != null && !owner.equals(account.getId())) {
+                    throw new AccountAlreadyExistsException("Account already exists for userId: " + account.getUserId());
+                }
+                long stamp = segment.lock.writeLock();
+                try {
+                    int slot = segment.find(msb, lsb);
+                    if (slot < 0) {
+                        if (previousUserId != null) {
+                            continue;
+                        }
+                        segment.insert(msb, lsb, account.getBalance(), account.getVersion(), account.getCurrency(), account.getUserId());
+                        idIndex.add(account.getId());
+                    } else {
+                        if (previousUserId == null || !segment.userIdEquals(slot, previousUserId)) {
+                            continue;
+                        }
+                        previousUserSegment.remove(hashOf(previousUserId), msb, lsb);
+                        segment.remove(slot);
+                        segment.insert(msb, lsb, account.getBalance(), account.getVersion(), account.getCurrency(), account.getUserId());
+                    }
+                    userSegment.insert(hashOf(account.getUserId()), msb, lsb);
+                    return;
+                } finally {
+                    segment.lock.unlockWrite(stamp);
+                }
+            } finally {
+                if (secondUserSegment != firstUserSegment) {
+                    secondUserSegment.lock.unlockWrite(secondUserStamp);
+                }
+                firstUserSegment.lock.unlockWrite(firstUserStamp);
+            }
+        }
+    }
+
+    /*
+    * Id of the account with the userId, null when there is none. Callers hold the lock of the user segment.
+    * */
+    private UUID ownerOf(UserSegment userSegment, String userId) {
+        int hash = hashOf(userId);
+        int mask = userSegment.capacity - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int state = userSegment.stateAt(slot);
+            if (state == Table.FREE) {
+                return null;
+            }
+            if (state == Table.USED && userSegment.hashAt(slot) == hash) {
+                UUID accountId = new UUID(userSegment.msbAt(slot), userSegment.lsbAt(slot));
+                AccountSegment segment = accountSegmentFor(accountId);
+                long stamp = segment.lock.readLock();
+                try {
+                    int accountSlot = segment.find(accountId.getMostSignificantBits(), accountId.getLeastSignificantBits());
+                    if (accountSlot >= 0 && segment.userIdEquals(accountSlot, userId)) {
+                        return accountId;
+                    }
+                } finally {
+                    segment.lock.unlockRead(stamp);
+                }
+            }
+        }
+    }
+
+    private String userIdOf(AccountSegment segment, long msb, long lsb) {
+        long stamp = segment.lock.readLock();
+        try {
+            int slot = segment.find(msb, lsb);
+            return slot < 0 ? null : segment.userIdAt(slot);
+        } finally {
+            segment.lock.unlockRead(stamp);
+        }
+    }
+
+    private AccountSegment accountSegmentFor(UUID accountId) {
+        return accountSegments[(int) (hashOf(accountId.getMostSignificantBits(), accountId.getLeastSignificantBits()) >>> 40) & segmentMask];
+    }
+
+    private UserSegment userSegmentFor(String userId) {
+        return userSegments[(hashOf(userId) >>> 24) & segmentMask];
+    }
+
+    private int indexOf(UserSegment userSegment) {
+        for (int i = 0; i < userSegments.length; i++) {
+            if (userSegments[i] == userSegment) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Unknown user segment");
+    }
+
+    static long hashOf(long msb, long lsb) {
+        long hash = (msb * 0x9E3779B97F4A7C15L) ^ lsb;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        return hash ^ (hash >>> 33);
+    }
+
+    static int hashOf(String userId) {
+        int hash = userId.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int tableSizeFor(int slots) {
+        int size = Integer.highestOneBit(Math.max(slots, 1));
+        return size < slots ? size << 1 : size;
+    }
+
+    /*
+    * Open addressed table of fixed width entries in a direct buffer. The last int of an entry is its state.
+    * */
+    private abstract static class Table {
+        static final int FREE = 0;
+        static final int USED = 1;
+        static final int DELETED = 2;
+        static final double MAX_LOAD = 0.7;
+
+        final StampedLock lock = new StampedLock();
+        final int entrySize;
+        ByteBuffer entries;
+        int capacity;
+        int size;
+        int deleted;
+
+        Table(int capacity, int entrySize) {
+            this.entrySize = entrySize;
+            allocate(capacity);
+        }
+
+        final void allocate(int capacity) {
+            this.capacity = capacity;
+            this.entries = ByteBuffer.allocateDirect(capacity * entrySize).order(ByteOrder.nativeOrder());
+            this.size = 0;
+            this.deleted = 0;
+        }
+
+        final int stateAt(int slot) {
+            return entries.getInt(slot * entrySize + entrySize - 4);
+        }
+
+        final void setState(int slot, int state) {
+            entries.putInt(slot * entrySize + entrySize - 4, state);
+        }
+
+        /*
+        * Finds a free (or deleted) slot for a new entry, growing the table first when it is too full.
+        * */
+        final int freeSlotFor(long hash) {
+            if (size + deleted + 1 > capacity * MAX_LOAD) {
+                rehash(size + 1 > capacity * MAX_LOAD / 2 ? capacity << 1 : capacity);
+            }
+            int mask = capacity - 1;
+            int slot = (int) hash & mask;
+            while (stateAt(slot) == USED) {
+                slot = (slot + 1) & mask;
+            }
+            if (stateAt(slot) == DELETED) {
+                deleted--;
+            }
+            size++;
+            return slot;
+        }
+
+        final void markDeleted(int slot) {
+            setState(slot, DELETED);
+            size--;
+            deleted++;
+        }
+
+        long capacityBytes() {
+            return entries.capacity();
+        }
+
+        abstract void rehash(int newCapacity);
+
+        void clear() {
+            allocate(capacity);
+        }
+    }
+
+    private static final class AccountSegment extends Table {
+        private static final int RECORD_SIZE = 48;
+        private static final int MSB = 0;
+        private static final int LSB = 8;
+        private static final int BALANCE = 16;
+        private static final int VERSION = 24;
+        private static final int USER_ID = 32;
+        private static final int CURRENCY = 36;
+
+        private ByteBuffer userIds;
+        private int userIdsEnd;
+        private int userIdsGarbage;
+
+        AccountSegment(int capacity) {
+            super(capacity, RECORD_SIZE);
+            this.userIds = ByteBuffer.allocateDirect(capacity * 16);
+            this.userIdsEnd = 0;
+        }
+
+        int find(long msb, long lsb) {
+            int mask = capacity - 1;
+            for (int slot = (int) hashOf(msb, lsb) & mask; ; slot = (slot + 1) & mask) {
+                int state = stateAt(slot);
+                if (state == FREE) {
+                    return -1;
+                }
+                int base = slot * RECORD_SIZE;
+                if (state == USED && entries.getLong(base + MSB) == msb && entries.getLong(base + LSB) == lsb) {
+                    return slot;
+                }
+            }
+        }
+
+        void insert(long msb, long lsb, long balance, long version, Currency currency, String userId) {
+            byte[] userIdBytes = userId.getBytes(StandardCharsets.UTF_8);
+            int slot = freeSlotFor(hashOf(msb, lsb));
+            write(slot, msb, lsb, balance, version, codeOf(currency), appendUserId(userIdBytes, 0, userIdBytes.length));
+        }
+
+        void update(int slot, long balance, long version) {
+            int base = slot * RECORD_SIZE;
+            entries.putLong(base + BALANCE, balance);
+            entries.putLong(base + VERSION, version);
+        }
+
+        void remove(int slot) {
+            userIdsGarbage += 4 + userIds.getInt(entries.getInt(slot * RECORD_SIZE + USER_ID));
+            markDeleted(slot);
+            if (userIdsGarbage > userIdsEnd / 2 && userIdsGarbage >= capacity * 4) {
+                compactUserIds();
+            }
+        }
+
+        long balanceAt(int slot) {
+            return entries.getLong(slot * RECORD_SIZE + BALANCE);
+        }
+
+        long versionAt(int slot) {
+            return entries.getLong(slot * RECORD_SIZE + VERSION);
+        }
+
+        Account read(int slot) {
+            int base = slot * RECORD_SIZE;
+            return Account.builder()
+                    .id(new UUID(entries.getLong(base + MSB), entries.getLong(base + LSB)))
+                    .userId(userIdAt(slot))
+                    .balance(entries.getLong(base + BALANCE))
+                    .currency(currencyOf(entries.getInt(base + CURRENCY)))
+                    .version(entries.getLong(base + VERSION))
+                    .build();
+        }
+
+        void readAll(List<Account> accounts) {
+            for (int slot = 0; slot < capacity; slot++) {
+                if (stateAt(slot) == USED) {
+                    accounts.add(read(slot));
+                }
+            }
+        }
+
+        String userIdAt(int slot) {
+            int offset = entries.getInt(slot * RECORD_SIZE + USER_ID);
+            byte[] bytes = new byte[userIds.getInt(offset)];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = userIds.get(offset + 4 + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /*
+        * Compares without decoding the stored userId, as long as the userId is plain ASCII.
+        * */
+        boolean userIdEquals(int slot, String userId) {
+            int offset = entries.getInt(slot * RECORD_SIZE + USER_ID);
+            int length = userIds.getInt(offset);
+            if (userId.length() > length) {
+                return false;
+            }
+            for (int i = 0; i < userId.length(); i++) {
+                char c = userId.charAt(i);
+                if (c >= 0x80) {
+                    return userIdAt(slot).equals(userId);
+                }
+                if (userIds.get(offset + 4 + i) != c) {
+                    return false;
+                }
+            }
+            return userId.length() == length;
+        }
+
+        @Override
+        void rehash(int newCapacity) {
+            ByteBuffer oldEntries = entries;
+            ByteBuffer oldUserIds = userIds;
+            int oldCapacity = capacity;
+
+            allocate(newCapacity);
+            userIds = ByteBuffer.allocateDirect(Math.max(userIdsEnd - userIdsGarbage, newCapacity * 16));
+            userIdsEnd = 0;
+            userIdsGarbage = 0;
+
+            for (int slot = 0; slot < oldCapacity; slot++) {
+                int base = slot * RECORD_SIZE;
+                if (oldEntries.getInt(base + RECORD_SIZE - 4) != USED) {
+                    continue;
+                }
+                long msb = oldEntries.getLong(base + MSB);
+                long lsb = oldEntries.getLong(base + LSB);
+                int newSlot = freeSlotFor(hashOf(msb, lsb));
+                write(newSlot, msb, lsb, oldEntries.getLong(base + BALANCE), oldEntries.getLong(base + VERSION),
+                        oldEntries.getInt(base + CURRENCY), copyUserId(oldUserIds, oldEntries.getInt(base + USER_ID)));
+            }
+        }
+
+        /*
+        * Copies the userIds of the stored accounts into a new area, leaving the records where they are.
+        * */
+        private void compactUserIds() {
+            ByteBuffer oldUserIds = userIds;
+            userIds = ByteBuffer.allocateDirect(Math.max(userIdsEnd - userIdsGarbage, capacity * 16));
+            userIdsEnd = 0;
+            userIdsGarbage = 0;
+            for (int slot = 0; slot < capacity; slot++) {
+                if (stateAt(slot) == USED) {
+                    int base = slot * RECORD_SIZE;
+                    entries.putInt(base + USER_ID, copyUserId(oldUserIds, entries.getInt(base + USER_ID)));
+                }
+            }
+        }
+
+        @Override
+        void clear() {
+            super.clear();
+            userIdsEnd = 0;
+            userIdsGarbage = 0;
+        }
+
+        @Override
+        long capacityBytes() {
+            return super.capacityBytes() + userIds.capacity();
+        }
+
+        private void write(int slot, long msb, long lsb, long balance, long version, int currencyCode, int userIdOffset) {
+            int base = slot * RECORD_SIZE;
+            entries.putLong(base + MSB, msb);
+            entries.putLong(base + LSB, lsb);
+            entries.putLong(base + BALANCE, balance);
+            entries.putLong(base + VERSION, version);
+            entries.putInt(base + USER_ID, userIdOffset);
+            entries.putInt(base + CURRENCY, currencyCode);
+            setState(slot, USED);
+        }
+
+        /*
+        * The three letters of the ISO 4217 code, one byte each.
+        * */
+        private static int codeOf(Currency currency) {
+            String code = currency.getCurrencyCode();
+            return code.charAt(0) << 16 | code.charAt(1) << 8 | code.charAt(2);
+        }
+
+        private static Currency currencyOf(int code) {
+            return Currency.getInstance(new String(new char[]{(char) (code >>> 16), (char) (code >>> 8 & 0xff), (char) (code & 0xff)}));
+        }
+
+        private int appendUserId(byte[] bytes, int from, int length) {
+            int offset = reserveUserId(length);
+            userIds.put(offset + 4, bytes, from, length);
+            return offset;
+        }
+
+        private int copyUserId(ByteBuffer source, int sourceOffset) {
+            int length = source.getInt(sourceOffset);
+            int offset = reserveUserId(length);
+            userIds.put(offset + 4, source, sourceOffset + 4, length);
+            return offset;
+        }
+
+        /*
+        * Appends the length prefix of a userId, growing the area when needed, and returns its offset.
+        * */
+        private int reserveUserId(int length) {
+            if (userIdsEnd + 4 + length > userIds.capacity()) {
+                ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(userIds.capacity() * 2, userIdsEnd + 4 + length));
+                grown.put(0, userIds, 0, userIdsEnd);
+                userIds = grown;
+            }
+            int offset = userIdsEnd;
+            userIds.putInt(offset, length);
+            userIdsEnd += 4 + length;
+            return offset;
+        }
+    }
+
+    /*
+    * Entries: account UUID most significant bits (8) | least significant bits (8) | userId hash (4) | state (4)
+    * */
+    private static final class UserSegment extends Table {
+        private static final int ENTRY_SIZE = 24;
+        private static final int MSB = 0;
+        private static final int LSB = 8;
+        private static final int HASH = 16;
+
+        UserSegment(int capacity) {
+            super(capacity, ENTRY_SIZE);
+        }
+
+        int hashAt(int slot) {
+            return entries.getInt(slot * ENTRY_SIZE + HASH);
+        }
+
+        long msbAt(int slot) {
+            return entries.getLong(slot * ENTRY_SIZE + MSB);
+        }
+
+        long lsbAt(int slot) {
+            return entries.getLong(slot * ENTRY_SIZE + LSB);
+        }
+
+        void insert(int hash, long msb, long lsb) {
+            write(freeSlotFor(hash), hash, msb, lsb);
+        }
+
+        void remove(int hash, long msb, long lsb) {
+            int mask = capacity - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                int state = stateAt(slot);
+                if (state == FREE) {
+                    return;
+                }
+                if (state == USED && hashAt(slot) == hash && msbAt(slot) == msb && lsbAt(slot) == lsb) {
+                    markDeleted(slot);
+                    return;
+                }
+            }
+        }
+
+        @Override
+        void rehash(int newCapacity) {
+            ByteBuffer oldEntries = entries;
+            int oldCapacity = capacity;
+            allocate(newCapacity);
+            for (int slot = 0; slot < oldCapacity; slot++) {
+                int base = slot * ENTRY_SIZE;
+                if (oldEntries.getInt(base + ENTRY_SIZE - 4) == USED) {
+                    int hash = oldEntries.getInt(base + HASH);
+                    write(freeSlotFor(hash), hash, oldEntries.getLong(base + MSB), oldEntries.getLong(base + LSB));
+                }
+            }
+        }
+
+        private void write(int slot, int hash, long msb, long lsb) {
+            int base = slot * ENTRY_SIZE;
+            entries.putInt(base + HASH, hash);
+            entries.putLong(base + MSB, msb);
+            entries.putLong(base + LSB, lsb);
+            setState(slot, USED);
+        }
+    }
+}
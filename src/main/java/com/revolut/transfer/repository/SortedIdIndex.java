@@ -0,0 +1,183 @@
+package com.revolut.transfer.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+/*
+ * == NOTE ==:
+ * Account ids in id order, so OffHeapAccountRepository can seek to the cursor of a page instead of walking the store.
+ * Ids are kept as pairs of longs in sorted blocks of up to BLOCK_IDS ids, and the blocks in a tree keyed by a lower
+ * bound of their ids. The index holds one heap object per block rather than a few per account, like the tables
+ * it indexes. Blocks are split half full, so the index costs about 16 to 32 bytes per account.
+ *
+ * Block keys only bound their ids from below: a block covers the ids from its key up to the key of the next block.
+ * A full block is split in two, an empty one is dropped and its range falls to the previous block.
+ *
+ * Ids are ordered like UUID.compareTo, most significant bits first, both halves as signed longs.
+ * One lock guards the whole index. It is never held while taking another lock, so the store may update the index
+ * under its own segment locks.
+ * */
+final class SortedIdIndex {
+
+    static final int BLOCK_IDS = 256;
+
+    private final TreeMap<UUID, Block> blocks = new TreeMap<>();
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * @return false when the id is already indexed
+     */
+    boolean add(UUID accountId) {
+        long msb = accountId.getMostSignificantBits();
+        long lsb = accountId.getLeastSignificantBits();
+        long stamp = lock.writeLock();
+        try {
+            Map.Entry<UUID, Block> entry = blocks.floorEntry(accountId);
+            if (entry == null) {
+                entry = blocks.firstEntry();
+                if (entry == null) {
+                    Block block = new Block();
+                    block.insert(0, msb, lsb);
+                    blocks.put(accountId, block);
+                    return true;
+                }
+                blocks.remove(entry.getKey());
+                blocks.put(accountId, entry.getValue());
+            }
+            Block block = entry.getValue();
+            int index = block.search(msb, lsb);
+            if (index >= 0) {
+                return false;
+            }
+            block.insert(-index - 1, msb, lsb);
+            if (block.size == BLOCK_IDS) {
+                Block upper = block.splitUpper();
+                blocks.put(new UUID(upper.ids[0], upper.ids[1]), upper);
+            }
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return false when the id is not indexed
+     */
+    boolean remove(UUID accountId) {
+        long stamp = lock.writeLock();
+        try {
+            Map.Entry<UUID, Block> entry = blocks.floorEntry(accountId);
+            if (entry == null) {
+                return false;
+            }
+            Block block = entry.getValue();
+            int index = block.search(accountId.getMostSignificantBits(), accountId.getLeastSignificantBits());
+            if (index < 0) {
+                return false;
+            }
+            block.delete(index);
+            if (block.size == 0) {
+                blocks.remove(entry.getKey());
+            }
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @param after id to start after, null to start from the lowest id
+     * @return up to limit ids above the given one, in id order
+     */
+    List<UUID> idsAfter(UUID after, int limit) {
+        List<UUID> accountIds = new ArrayList<>(Math.min(limit, BLOCK_IDS));
+        long stamp = lock.readLock();
+        try {
+            Map.Entry<UUID, Block> entry = after == null ? blocks.firstEntry() : blocks.floorEntry(after);
+            if (entry == null) {
+                entry = blocks.firstEntry();
+            }
+            int index = 0;
+            if (entry != null && after != null) {
+                index = entry.getValue().search(after.getMostSignificantBits(), after.getLeastSignificantBits());
+                index = index >= 0 ? index + 1 : -index - 1;
+            }
+            while (entry != null && accountIds.size() < limit) {
+                Block block = entry.getValue();
+                for (; index < block.size && accountIds.size() < limit; index++) {
+                    accountIds.add(new UUID(block.ids[2 * index], block.ids[2 * index + 1]));
+                }
+                entry = blocks.higherEntry(entry.getKey());
+                index = 0;
+            }
+            return accountIds;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    void clear() {
+        long stamp = lock.writeLock();
+        try {
+            blocks.clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /*
+    * Sorted ids, the most and least significant bits of each id next to each other.
+    * */
+    private static final class Block {
+        private final long[] ids = new long[2 * BLOCK_IDS];
+        private int size;
+
+        /*
+        * Binary search, like Arrays.binarySearch: the index of the id, or -(insertion point) - 1.
+        * */
+        int search(long msb, long lsb) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int comparison = Long.compare(ids[2 * middle], msb);
+                if (comparison == 0) {
+                    comparison = Long.compare(ids[2 * middle + 1], lsb);
+                }
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+
+        void insert(int index, long msb, long lsb) {
+            System.arraycopy(ids, 2 * index, ids, 2 * index + 2, 2 * (size - index));
+            ids[2 * index] = msb;
+            ids[2 * index + 1] = lsb;
+            size++;
+        }
+
+        void delete(int index) {
+            System.arraycopy(ids, 2 * index + 2, ids, 2 * index, 2 * (size - index - 1));
+            size--;
+        }
+
+        Block splitUpper() {
+            Block upper = new Block();
+            int half = size / 2;
+            upper.size = size - half;
+            System.arraycopy(ids, 2 * half, upper.ids, 0, 2 * upper.size);
+            size = half;
+            return upper;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.revolut.transfer.request;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Builder
+@JsonSerialize
+public class AccountBalancesRequest {
+
+    private List<UUID> accountIds;
+}
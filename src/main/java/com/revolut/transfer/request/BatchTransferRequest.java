@@ -0,0 +1,24 @@
+package com.revolut.transfer.request;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@Builder
+@JsonSerialize
+public class BatchTransferRequest {
+
+    private List<TransferMoneyRequest> transfers;
+    /*
+    * Atomic batches are applied completely or not at all. Otherwise every transfer is applied on its own
+    * and its result is reported per item. Batches are atomic when not specified.
+    * */
+    private Boolean atomic;
+
+    public boolean isAtomic() {
+        return atomic == null || atomic;
+    }
+}
@@ -0,0 +1,15 @@
+package com.revolut.transfer.request;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@Builder
+@JsonSerialize
+public class BulkCreateAccountRequest {
+
+    private List<CreateAccountRequest> accounts;
+}
@@ -1,10 +1,12 @@
 package com.revolut.transfer.request;
 
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.revolut.transfer.converter.MoneyConverter;
 import lombok.Builder;
 import lombok.Getter;
 
 import java.math.BigDecimal;
+import java.util.Currency;
 
 @Builder
 @Getter
@@ -12,4 +14,19 @@ import java.math.BigDecimal;
 public class CreateAccountRequest {
     private String userId;
     private BigDecimal balance;
+    private Currency currency;
+
+    /*
+    * Account is opened with zero balance when no balance is provided.
+    * */
+    public long getBalanceInMinorUnits() {
+        return balance == null ? 0 : MoneyConverter.toMinorUnits(balance, getCurrencyOrDefault());
+    }
+
+    /*
+    * Account is opened in MoneyConverter.DEFAULT_CURRENCY when no currency is provided.
+    * */
+    public Currency getCurrencyOrDefault() {
+        return currency == null ? MoneyConverter.DEFAULT_CURRENCY : currency;
+    }
 }
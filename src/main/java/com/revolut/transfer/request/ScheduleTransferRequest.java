@@ -0,0 +1,40 @@
+package com.revolut.transfer.request;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Currency;
+import java.util.UUID;
+
+@Getter
+@Builder
+@EqualsAndHashCode
+@JsonSerialize
+public class ScheduleTransferRequest {
+
+    private UUID fromAccount;
+    private UUID toAccount;
+    private BigDecimal amount;
+    private Currency currency;
+    /*
+    * Time of the first execution, now when not specified.
+    * */
+    private Instant executeAt;
+    /*
+    * Standing orders are run again every interval after executeAt until they are cancelled, one-off transfers have none.
+    * */
+    private Long intervalSeconds;
+
+    public TransferMoneyRequest toTransferMoneyRequest() {
+        return TransferMoneyRequest.builder()
+                .fromAccount(fromAccount)
+                .toAccount(toAccount)
+                .amount(amount)
+                .currency(currency)
+                .build();
+    }
+}
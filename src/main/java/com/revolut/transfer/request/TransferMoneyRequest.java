@@ -2,20 +2,51 @@ package com.revolut.transfer.request;
 
 
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.revolut.transfer.converter.MoneyConverter;
 import lombok.Builder;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import java.math.BigDecimal;
+import java.util.Currency;
 import java.util.UUID;
 
 @Getter
 @Builder
+@EqualsAndHashCode
 @JsonSerialize
 public class TransferMoneyRequest {
 
     private UUID fromAccount;
     private UUID toAccount;
+    @EqualsAndHashCode.Exclude
     private BigDecimal amount;
+    /*
+    * Optional currency of the amount, which is always the currency of the source account.
+    * The target account is credited with the amount converted to its own currency.
+    * */
+    private Currency currency;
+
+    /**
+     * @param fromCurrency currency of the source account
+     * @throws IllegalArgumentException when the request names another currency, or the amount does not fit the currency
+     */
+    public long getAmountInMinorUnits(Currency fromCurrency) {
+        if (currency != null && currency != fromCurrency) {
+            throw new IllegalArgumentException("Transfer amount should be in " + fromCurrency.getCurrencyCode()
+                    + ", the currency of the source account.");
+        }
+        return MoneyConverter.toMinorUnits(amount, fromCurrency);
+    }
+
+    /*
+    * Requests are compared when they are retried with an Idempotency-Key, and a retry sending 10.0 after 10.00 is
+    * the same request, so equality ignores the scale of the amount.
+    * */
+    @EqualsAndHashCode.Include
+    private BigDecimal normalizedAmount() {
+        return amount == null ? null : amount.stripTrailingZeros();
+    }
 }
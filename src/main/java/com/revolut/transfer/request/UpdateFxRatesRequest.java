@@ -0,0 +1,20 @@
+package com.revolut.transfer.request;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.Map;
+
+@Builder
+@Getter
+@JsonSerialize
+public class UpdateFxRatesRequest {
+    private Currency base;
+    /*
+    * Units of each currency per unit of the base currency, e.g. "EUR": 1.17 for a GBP base.
+    * */
+    private Map<Currency, BigDecimal> rates;
+}
@@ -1,16 +1,36 @@
 package com.revolut.transfer.request;
 
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.revolut.transfer.converter.MoneyConverter;
 import lombok.Builder;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 
 import java.math.BigDecimal;
+import java.util.Currency;
 import java.util.UUID;
 
 @Builder
 @Getter
+@EqualsAndHashCode
 @JsonSerialize
 public class WithdrawMoneyRequest {
     private UUID accountId;
+    @EqualsAndHashCode.Exclude
     private BigDecimal amount;
+
+    /**
+     * @param currency currency of the account, which the amount is in
+     */
+    public long getAmountInMinorUnits(Currency currency) {
+        return MoneyConverter.toMinorUnits(amount, currency);
+    }
+
+    /*
+    * Equality ignores the scale of the amount, see TransferMoneyRequest.
+    * */
+    @EqualsAndHashCode.Include
+    private BigDecimal normalizedAmount() {
+        return amount == null ? null : amount.stripTrailingZeros();
+    }
 }
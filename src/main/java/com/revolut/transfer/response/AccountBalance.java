@@ -0,0 +1,19 @@
+package com.revolut.transfer.response;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.UUID;
+
+@Builder
+@Data
+@JsonSerialize
+public class AccountBalance {
+
+    private UUID accountId;
+    private BigDecimal balance;
+    private Currency currency;
+}
@@ -0,0 +1,25 @@
+package com.revolut.transfer.response;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Builder
+@Data
+@JsonSerialize
+public class AccountBalancesResponse {
+
+    /*
+    * Time of the snapshot all balances were read from.
+    * */
+    private Instant asOf;
+    private List<AccountBalance> balances;
+    /*
+    * Requested accounts which did not exist at that time.
+    * */
+    private List<UUID> notFound;
+}
@@ -0,0 +1,20 @@
+package com.revolut.transfer.response;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Builder
+@Data
+@JsonSerialize
+public class AccountImportResponse {
+
+    private long created;
+    private long failed;
+    /*
+    * The first failed records, by line number. Further failures are only counted in failed.
+    * */
+    private List<CreateAccountResult> failures;
+}
@@ -0,0 +1,20 @@
+package com.revolut.transfer.response;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.UUID;
+
+@Builder
+@Data
+@JsonSerialize
+public class AccountPageResponse {
+
+    private List<AccountResponse> accounts;
+    /*
+    * Cursor of the next page, null on the last page.
+    * */
+    private UUID nextCursor;
+}
@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 
 import java.math.BigDecimal;
+import java.util.Currency;
 import java.util.UUID;
 
 @Builder
@@ -15,4 +16,5 @@ public class AccountResponse {
     private UUID accountId;
     private String userId;
     private BigDecimal balance;
+    private Currency currency;
 }
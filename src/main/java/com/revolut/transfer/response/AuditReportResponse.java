@@ -0,0 +1,23 @@
+package com.revolut.transfer.response;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+@Builder
+@Data
+@JsonSerialize
+public class AuditReportResponse {
+
+    private Instant auditedAt;
+    private long durationMillis;
+    /*
+    * Accounts in the cut, including the slot accounts of split accounts.
+    * */
+    private long accounts;
+    private boolean balanced;
+    private List<CurrencyAudit> currencies;
+}
@@ -0,0 +1,17 @@
+package com.revolut.transfer.response;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Builder
+@Data
+@JsonSerialize
+public class BulkCreateAccountResponse {
+
+    private int created;
+    private int failed;
+    private List<CreateAccountResult> results;
+}
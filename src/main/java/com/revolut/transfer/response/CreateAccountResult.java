@@ -0,0 +1,21 @@
+package com.revolut.transfer.response;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.UUID;
+
+@Builder
+@Data
+@JsonSerialize
+public class CreateAccountResult {
+
+    /*
+    * Position of the account in the bulk request, or line number of the record in an import.
+    * */
+    private long index;
+    private CreateAccountStatus status;
+    private UUID accountId;
+    private String message;
+}
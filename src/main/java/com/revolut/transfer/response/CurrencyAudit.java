@@ -0,0 +1,32 @@
+package com.revolut.transfer.response;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+@Builder
+@Data
+@JsonSerialize
+public class CurrencyAudit {
+
+    private Currency currency;
+    /*
+    * Sum of all balances in the currency at the cut.
+    * */
+    private BigDecimal balance;
+    /*
+    * Debited by transfers and not credited yet at the cut.
+    * */
+    private BigDecimal inFlight;
+    /*
+    * Balances of the first audit plus all deposits, withdrawals, opening balances and conversions since.
+    * */
+    private BigDecimal expected;
+    /*
+    * Money created (positive) or lost (negative), 0 when money is conserved.
+    * */
+    private BigDecimal discrepancy;
+}
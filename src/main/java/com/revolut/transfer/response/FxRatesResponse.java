@@ -0,0 +1,20 @@
+package com.revolut.transfer.response;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Currency;
+import java.util.Map;
+
+@Builder
+@Data
+@JsonSerialize
+public class FxRatesResponse {
+
+    private Currency base;
+    private Map<Currency, BigDecimal> rates;
+    private Instant updatedAt;
+}
@@ -0,0 +1,19 @@
+package com.revolut.transfer.response;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Builder;
+import lombok.Data;
+
+@Builder
+@Data
+@JsonSerialize
+public class IdempotencyMetricsResponse {
+
+    private long hits;
+    private long coalesced;
+    private long misses;
+    private double hitRate;
+    private long evictions;
+    private int entries;
+    private long estimatedBytes;
+}
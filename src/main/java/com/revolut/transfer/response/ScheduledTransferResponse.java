@@ -0,0 +1,39 @@
+package com.revolut.transfer.response;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Currency;
+import java.util.UUID;
+
+@Builder
+@Data
+@JsonSerialize
+public class ScheduledTransferResponse {
+
+    private UUID scheduledTransferId;
+    private UUID fromAccount;
+    private UUID toAccount;
+    private BigDecimal amount;
+    private Currency currency;
+    /*
+    * Time of the next execution.
+    * */
+    private Instant executeAt;
+    private Long intervalSeconds;
+    private ScheduledTransferStatus status;
+    private long executions;
+    private long failures;
+    /*
+    * Reason of the latest failed execution, null when it succeeded.
+    * */
+    private String lastFailure;
+    /*
+    * Whether it was cancelled. A one-off transfer cancelled once handed to a worker is still made, its status is then
+    * the outcome.
+    * */
+    private boolean cancelled;
+}
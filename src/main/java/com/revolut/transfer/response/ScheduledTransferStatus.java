@@ -0,0 +1,9 @@
+package com.revolut.transfer.response;
+
+public enum ScheduledTransferStatus {
+    SCHEDULED,
+    RUNNING,
+    CANCELLED,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,17 @@
+package com.revolut.transfer.response;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.UUID;
+
+@Builder
+@Data
+@JsonSerialize
+public class ScheduledTransfersResponse {
+
+    private UUID accountId;
+    private List<ScheduledTransferResponse> scheduledTransfers;
+}
@@ -0,0 +1,21 @@
+package com.revolut.transfer.response;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.UUID;
+
+@Builder
+@Data
+@JsonSerialize
+public class TransactionPageResponse {
+
+    private UUID accountId;
+    private List<TransactionResponse> transactions;
+    /*
+    * Cursor of the next (older) page, null on the last page.
+    * */
+    private Long nextCursor;
+}
@@ -0,0 +1,26 @@
+package com.revolut.transfer.response;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.revolut.transfer.ledger.PostingType;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+@Builder
+@Data
+@JsonSerialize
+public class TransactionResponse {
+
+    private long transactionId;
+    private PostingType type;
+    /*
+    * Negative for money leaving the account.
+    * */
+    private BigDecimal amount;
+    private BigDecimal balance;
+    private UUID counterpartyAccountId;
+    private Instant timestamp;
+}
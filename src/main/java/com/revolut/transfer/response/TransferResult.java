@@ -0,0 +1,18 @@
+package com.revolut.transfer.response;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Builder;
+import lombok.Data;
+
+@Builder
+@Data
+@JsonSerialize
+public class TransferResult {
+
+    /*
+    * Position of the transfer in the batch request.
+    * */
+    private int index;
+    private TransferStatus status;
+    private String message;
+}
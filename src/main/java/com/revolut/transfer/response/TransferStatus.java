@@ -0,0 +1,6 @@
+package com.revolut.transfer.response;
+
+public enum TransferStatus {
+    TRANSFERRED,
+    FAILED
+}
@@ -0,0 +1,111 @@
+package com.revolut.transfer.schedule;
+
+import com.revolut.transfer.request.TransferMoneyRequest;
+import com.revolut.transfer.response.ScheduledTransferStatus;
+
+import java.util.UUID;
+
+/*
+ * A one-off or standing transfer waiting in the TimingWheel. Everything but the transfer itself is guarded by the lock
+ * of the TransferScheduler.
+ * */
+final class ScheduledTransfer {
+
+    private final UUID id;
+    private final TransferMoneyRequest transfer;
+    private final long intervalMillis;
+    private long executeAtMillis;
+    private ScheduledTransferStatus status = ScheduledTransferStatus.SCHEDULED;
+    private TimingWheel.Timeout<ScheduledTransfer> timeout;
+    private long executions;
+    private long failures;
+    private String lastFailure;
+    private long finishedAtMillis;
+    private boolean cancelled;
+
+    ScheduledTransfer(UUID id, TransferMoneyRequest transfer, long executeAtMillis, long intervalMillis) {
+        this.id = id;
+        this.transfer = transfer;
+        this.executeAtMillis = executeAtMillis;
+        this.intervalMillis = intervalMillis;
+    }
+
+    UUID getId() {
+        return id;
+    }
+
+    TransferMoneyRequest getTransfer() {
+        return transfer;
+    }
+
+    boolean isStandingOrder() {
+        return intervalMillis > 0;
+    }
+
+    long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    long getExecuteAtMillis() {
+        return executeAtMillis;
+    }
+
+    void setExecuteAtMillis(long executeAtMillis) {
+        this.executeAtMillis = executeAtMillis;
+    }
+
+    ScheduledTransferStatus getStatus() {
+        return status;
+    }
+
+    void setStatus(ScheduledTransferStatus status) {
+        this.status = status;
+    }
+
+    TimingWheel.Timeout<ScheduledTransfer> getTimeout() {
+        return timeout;
+    }
+
+    void setTimeout(TimingWheel.Timeout<ScheduledTransfer> timeout) {
+        this.timeout = timeout;
+    }
+
+    long getExecutions() {
+        return executions;
+    }
+
+    long getFailures() {
+        return failures;
+    }
+
+    String getLastFailure() {
+        return lastFailure;
+    }
+
+    long getFinishedAtMillis() {
+        return finishedAtMillis;
+    }
+
+    void setFinishedAtMillis(long finishedAtMillis) {
+        this.finishedAtMillis = finishedAtMillis;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    void setCancelled(boolean cancelled) {
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * @param failure reason the transfer failed, null when it was made
+     */
+    void executed(String failure) {
+        executions++;
+        if (failure != null) {
+            failures++;
+        }
+        lastFailure = failure;
+    }
+}
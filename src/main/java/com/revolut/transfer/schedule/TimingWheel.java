@@ -0,0 +1,176 @@
+package com.revolut.transfer.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * == NOTE ==:
+ * Hashed hierarchical timing wheel: 4 levels of 256 slots, each slot a doubly linked list of timeouts. Level 0 holds the
+ * timeouts due within 256 ticks, one slot per tick; level 1 those due within 256^2 ticks, one slot per 256 ticks; and so
+ * on. A timeout is put in the slot of its deadline on the lowest level which reaches it, so scheduling and cancelling
+ * are a few shifts and a link or unlink, whatever the number of pending timeouts, and nothing is ever reordered.
+ *
+ * Slots are indexed by the bits of the absolute deadline, not by the distance to it. Every 256 ticks, when level 0 has
+ * gone round, the slot of level 1 for the next 256 ticks is emptied and its timeouts are put in again, which puts them
+ * in level 0 now that they are near; when level 1 has gone round too, the same is done for level 2, and so on. A timeout
+ * is so moved at most once per level. A deadline beyond the top level, 256^4 ticks away, is kept in the top level and
+ * cascaded again until it is in reach.
+ *
+ * Not thread safe, see TransferScheduler.
+ * */
+public class TimingWheel<T> {
+
+    static final int LEVELS = 4;
+    static final int SLOT_BITS = 8;
+    static final int SLOTS = 1 << SLOT_BITS;
+
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final long MAX_DISTANCE = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final Timeout<T>[][] slots;
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param startTick first tick advance will expire, deadlines before it expire with it
+     */
+    public TimingWheel(long startTick) {
+        @SuppressWarnings("unchecked")
+        Timeout<T>[][] levels = (Timeout<T>[][]) new Timeout<?>[LEVELS][SLOTS];
+        this.slots = levels;
+        for (Timeout<T>[] level : slots) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                level[slot] = new Timeout<>(null, 0);
+                level[slot].next = level[slot];
+                level[slot].previous = level[slot];
+            }
+        }
+        this.currentTick = startTick;
+    }
+
+    /**
+     * @return the timeout, to cancel it with
+     */
+    public Timeout<T> schedule(T value, long deadlineTick) {
+        Timeout<T> timeout = new Timeout<>(value, deadlineTick);
+        add(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * @return whether the timeout was pending, false when it has expired or was cancelled before
+     */
+    public boolean cancel(Timeout<T> timeout) {
+        if (timeout.next == null) {
+            return false;
+        }
+        unlink(timeout);
+        size--;
+        return true;
+    }
+
+    /**
+     * Expires every tick up to and including the given one.
+     *
+     * @return the values of the timeouts due by then, tick by tick
+     */
+    public List<T> advance(long nowTick) {
+        List<T> expired = new ArrayList<>();
+        if (size == 0) {
+            currentTick = Math.max(currentTick, nowTick + 1);
+            return expired;
+        }
+        while (currentTick - nowTick <= 0) {
+            int slot = (int) currentTick & SLOT_MASK;
+            if (slot == 0) {
+                for (int level = 1; level < LEVELS && cascade(level) == 0; level++) {
+                    // The next level goes round too.
+                }
+            }
+            Timeout<T> head = slots[0][slot];
+            while (head.next != head) {
+                Timeout<T> timeout = head.next;
+                unlink(timeout);
+                size--;
+                expired.add(timeout.value);
+            }
+            currentTick++;
+            if (size == 0) {
+                currentTick = Math.max(currentTick, nowTick + 1);
+            }
+        }
+        return expired;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the next tick advance will expire
+     */
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    /*
+    * Puts the timeouts of the slot of the level for the ticks ahead in again and returns the index of that slot.
+    * */
+    private int cascade(int level) {
+        int slot = (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+        Timeout<T> head = slots[level][slot];
+        Timeout<T> timeout = head.next;
+        head.next = head;
+        head.previous = head;
+        while (timeout != head) {
+            Timeout<T> next = timeout.next;
+            add(timeout);
+            timeout = next;
+        }
+        return slot;
+    }
+
+    private void add(Timeout<T> timeout) {
+        long distance = timeout.deadlineTick - currentTick;
+        long tick = distance < 0 ? currentTick : distance > MAX_DISTANCE ? currentTick + MAX_DISTANCE : timeout.deadlineTick;
+        distance = tick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && distance >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        Timeout<T> head = slots[level][(int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK];
+        timeout.previous = head.previous;
+        timeout.next = head;
+        head.previous.next = timeout;
+        head.previous = timeout;
+    }
+
+    private static <T> void unlink(Timeout<T> timeout) {
+        timeout.previous.next = timeout.next;
+        timeout.next.previous = timeout.previous;
+        timeout.next = null;
+        timeout.previous = null;
+    }
+
+    public static final class Timeout<T> {
+
+        private final T value;
+        private final long deadlineTick;
+        private Timeout<T> previous;
+        private Timeout<T> next;
+
+        private Timeout(T value, long deadlineTick) {
+            this.value = value;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public long getDeadlineTick() {
+            return deadlineTick;
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package com.revolut.transfer.schedule;
+
+import com.revolut.transfer.execption.AccountNotFoundException;
+import com.revolut.transfer.execption.ScheduledTransferNotFoundException;
+import com.revolut.transfer.execption.ServiceOverloadedException;
+import com.revolut.transfer.request.BatchTransferRequest;
+import com.revolut.transfer.request.ScheduleTransferRequest;
+import com.revolut.transfer.request.TransferMoneyRequest;
+import com.revolut.transfer.response.AccountResponse;
+import com.revolut.transfer.response.BatchTransferResponse;
+import com.revolut.transfer.response.ScheduledTransferResponse;
+import com.revolut.transfer.response.ScheduledTransferStatus;
+import com.revolut.transfer.response.ScheduledTransfersResponse;
+import com.revolut.transfer.response.TransferResult;
+import com.revolut.transfer.response.TransferStatus;
+import com.revolut.transfer.service.AccountService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/*
+ * == NOTE ==:
+ * Future-dated transfers and standing orders, kept in a TimingWheel with one slot per tick, so scheduling and
+ * cancelling cost the same with ten or ten million transfers pending. The wheel and the transfers are guarded by one
+ * lock, which is only held to link, unlink or expire, never while money moves.
+ *
+ * Every tick the thread of the scheduler expires the transfers due and hands them to the workers in batches of at most
+ * the batch size, each made as one per-item batch of the AccountService, so the accounts of a batch are taken once and
+ * a failed transfer fails alone. A batch turned away by admission control is put back for the next tick; any other
+ * failure is a failed execution of each of its transfers, and every failed execution is logged. A standing order is
+ * then put back for its next execution after now. A one-off transfer is done: it is kept as COMPLETED or FAILED, with
+ * the reason it failed, for the retention time, so clients can read its outcome (a failed transfer posts nothing to the
+ * transaction history), and then dropped. Finished transfers are kept in the order they finished and dropped by the
+ * ticks, so they take memory for at most the retention time. A one-off transfer cancelled once handed to a worker is
+ * still made, so it is kept the same way, with its outcome and marked cancelled; if admission control turns it away, it
+ * is kept as CANCELLED instead, as no money moved.
+ *
+ * Scheduled transfers are kept in memory only, they are lost on a restart.
+ * */
+public class TransferScheduler {
+
+    public static final long DEFAULT_TICK_MILLIS = 100;
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final long DEFAULT_FINISHED_RETENTION_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    /*
+    * Longest interval of a standing order, and farthest executeAt from now, about a century. It keeps the executions
+    * and deadline ticks of a transfer far from the range of a long of milliseconds.
+    * */
+    public static final long MAX_SCHEDULE_SECONDS = TimeUnit.DAYS.toSeconds(36_525);
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransferScheduler.class);
+
+    private final AccountService accountService;
+    private final long tickMillis;
+    private final int batchSize;
+    private final long finishedRetentionMillis;
+    private final Executor workers;
+    private final LongSupplier millisClock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+    private ScheduledExecutorService ticker;
+
+    /*
+    * Guarded by lock.
+    * */
+    private final TimingWheel<ScheduledTransfer> timingWheel;
+    private final Map<UUID, ScheduledTransfer> scheduledTransfers = new HashMap<>();
+    private final Map<UUID, Set<ScheduledTransfer>> accountTransfers = new HashMap<>();
+    private final LinkedHashMap<UUID, ScheduledTransfer> finishedTransfers = new LinkedHashMap<>();
+
+    /**
+     * @param finishedRetentionMillis how long a one-off transfer can be read once it has run
+     */
+    public TransferScheduler(AccountService accountService, long tickMillis, int batchSize, long finishedRetentionMillis,
+                             int workerCount) {
+        this(accountService, tickMillis, batchSize, finishedRetentionMillis, newWorkers(workerCount), System::currentTimeMillis);
+    }
+
+    TransferScheduler(AccountService accountService, long tickMillis, int batchSize, long finishedRetentionMillis,
+                      Executor workers, LongSupplier millisClock) {
+        if (tickMillis <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Scheduler tick and batch size should be positive.");
+        }
+        if (finishedRetentionMillis < 0) {
+            throw new IllegalArgumentException("Retention of finished transfers can not be negative.");
+        }
+        this.accountService = accountService;
+        this.tickMillis = tickMillis;
+        this.batchSize = batchSize;
+        this.finishedRetentionMillis = finishedRetentionMillis;
+        this.workers = workers;
+        this.millisClock = millisClock;
+        this.timingWheel = new TimingWheel<>(millisClock.getAsLong() / tickMillis);
+    }
+
+    public synchronized void start() {
+        if (ticker != null) {
+            throw new IllegalStateException("Scheduler is already started.");
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transfer-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(() -> {
+            try {
+                tick();
+            } catch (RuntimeException ex) {
+                LOGGER.error("Scheduled transfers could not be expired.", ex);
+            }
+        }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @throws IllegalArgumentException when the transfer or its interval is invalid
+     * @throws AccountNotFoundException when an account does not exist
+     */
+    public ScheduledTransferResponse schedule(ScheduleTransferRequest scheduleTransferRequest) {
+        TransferMoneyRequest transfer = scheduleTransferRequest.toTransferMoneyRequest();
+        validateRequest(transfer);
+        Long intervalSeconds = scheduleTransferRequest.getIntervalSeconds();
+        if (intervalSeconds != null && intervalSeconds <= 0) {
+            throw new IllegalArgumentException("Interval of a standing order should be positive.");
+        }
+        if (intervalSeconds != null && intervalSeconds > MAX_SCHEDULE_SECONDS) {
+            throw new IllegalArgumentException("Interval of a standing order can be at most " + MAX_SCHEDULE_SECONDS + " seconds.");
+        }
+        long now = millisClock.getAsLong();
+        Instant executeAt = scheduleTransferRequest.getExecuteAt();
+        if (executeAt != null && Duration.between(Instant.ofEpochMilli(now), executeAt).abs().getSeconds() > MAX_SCHEDULE_SECONDS) {
+            throw new IllegalArgumentException("Execution time can be at most " + MAX_SCHEDULE_SECONDS + " seconds from now.");
+        }
+        AccountResponse fromAccount = accountService.getAccount(transfer.getFromAccount());
+        transfer.getAmountInMinorUnits(fromAccount.getCurrency());
+        accountService.getAccount(transfer.getToAccount());
+
+        ScheduledTransfer scheduledTransfer = new ScheduledTransfer(UUID.randomUUID(), transfer,
+                executeAt == null ? now : executeAt.toEpochMilli(),
+                intervalSeconds == null ? 0 : TimeUnit.SECONDS.toMillis(intervalSeconds));
+        lock.lock();
+        try {
+            arm(scheduledTransfer, deadlineTick(scheduledTransfer.getExecuteAtMillis()));
+            scheduledTransfers.put(scheduledTransfer.getId(), scheduledTransfer);
+            accountTransfers.computeIfAbsent(transfer.getFromAccount(), accountId -> new LinkedHashSet<>()).add(scheduledTransfer);
+            return responseOf(scheduledTransfer);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @throws ScheduledTransferNotFoundException when it was cancelled, or is a one-off transfer which finished longer
+     *                                            than the retention time ago
+     */
+    public ScheduledTransferResponse getScheduledTransfer(UUID scheduledTransferId) {
+        lock.lock();
+        try {
+            return responseOf(find(scheduledTransferId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the pending transfers debiting the account, in the order they were scheduled
+     */
+    public ScheduledTransfersResponse getScheduledTransfers(UUID accountId) {
+        if (accountId == null) {
+            throw new IllegalArgumentException("Account id can not be null.");
+        }
+        List<ScheduledTransferResponse> responses = new ArrayList<>();
+        lock.lock();
+        try {
+            for (ScheduledTransfer scheduledTransfer : accountTransfers.getOrDefault(accountId, Set.of())) {
+                responses.add(responseOf(scheduledTransfer));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return ScheduledTransfersResponse.builder().accountId(accountId).scheduledTransfers(responses).build();
+    }
+
+    /**
+     * A transfer already handed to a worker is still made, a standing order is not run again. A one-off transfer then
+     * stays RUNNING until it finishes and is kept with its outcome, see {@link #getScheduledTransfer(UUID)}. A finished
+     * or cancelled one-off transfer is returned unchanged.
+     *
+     * @throws ScheduledTransferNotFoundException when it was cancelled already, see {@link #getScheduledTransfer(UUID)}
+     */
+    public ScheduledTransferResponse cancel(UUID scheduledTransferId) {
+        lock.lock();
+        try {
+            ScheduledTransfer scheduledTransfer = find(scheduledTransferId);
+            if (finishedTransfers.containsKey(scheduledTransferId) || scheduledTransfer.isCancelled()) {
+                return responseOf(scheduledTransfer);
+            }
+            scheduledTransfer.setCancelled(true);
+            if (scheduledTransfer.getStatus() == ScheduledTransferStatus.SCHEDULED) {
+                timingWheel.cancel(scheduledTransfer.getTimeout());
+                scheduledTransfer.setTimeout(null);
+            } else if (!scheduledTransfer.isStandingOrder()) {
+                return responseOf(scheduledTransfer);
+            }
+            scheduledTransfer.setStatus(ScheduledTransferStatus.CANCELLED);
+            remove(scheduledTransfer);
+            return responseOf(scheduledTransfer);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return transfers which have not run yet, and standing orders
+     */
+    public int getPending() {
+        lock.lock();
+        try {
+            return scheduledTransfers.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getExecuted() {
+        return executed.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return batches turned away by admission control and put back for the next tick
+     */
+    public long getDeferred() {
+        return deferred.sum();
+    }
+
+    /*
+    * Expires the transfers due by now and hands them to the workers, and drops the finished transfers kept long enough.
+    * */
+    void tick() {
+        long now = millisClock.getAsLong();
+        List<ScheduledTransfer> due;
+        lock.lock();
+        try {
+            dropFinished(now);
+            due = timingWheel.advance(now / tickMillis);
+            for (ScheduledTransfer scheduledTransfer : due) {
+                scheduledTransfer.setStatus(ScheduledTransferStatus.RUNNING);
+                scheduledTransfer.setTimeout(null);
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (int from = 0; from < due.size(); from += batchSize) {
+            List<ScheduledTransfer> batch = new ArrayList<>(due.subList(from, Math.min(due.size(), from + batchSize)));
+            workers.execute(() -> execute(batch));
+        }
+    }
+
+    private void execute(List<ScheduledTransfer> batch) {
+        List<TransferMoneyRequest> transfers = new ArrayList<>(batch.size());
+        for (ScheduledTransfer scheduledTransfer : batch) {
+            transfers.add(scheduledTransfer.getTransfer());
+        }
+        String[] failures = new String[batch.size()];
+        try {
+            BatchTransferResponse batchTransferResponse = accountService.transferMoneyInBatch(BatchTransferRequest.builder()
+                    .transfers(transfers)
+                    .atomic(false)
+                    .build());
+            for (TransferResult result : batchTransferResponse.getResults()) {
+                if (result.getStatus() == TransferStatus.FAILED) {
+                    failures[result.getIndex()] = result.getMessage() == null ? "Transfer failed." : result.getMessage();
+                }
+            }
+        } catch (ServiceOverloadedException ex) {
+            deferred.increment();
+            retry(batch);
+            return;
+        } catch (RuntimeException ex) {
+            LOGGER.error("Batch of {} scheduled transfers failed.", batch.size(), ex);
+            String failure = ex.getMessage() == null ? ex.getClass().getSimpleName() : ex.getMessage();
+            for (int index = 0; index < failures.length; index++) {
+                failures[index] = failure;
+            }
+        }
+        finish(batch, failures);
+    }
+
+    private void finish(List<ScheduledTransfer> batch, String[] failures) {
+        long now = millisClock.getAsLong();
+        lock.lock();
+        try {
+            for (int index = 0; index < batch.size(); index++) {
+                ScheduledTransfer scheduledTransfer = batch.get(index);
+                scheduledTransfer.executed(failures[index]);
+                if (failures[index] == null) {
+                    executed.increment();
+                } else {
+                    failed.increment();
+                    LOGGER.warn("Scheduled transfer {} failed: {}", scheduledTransfer.getId(), failures[index]);
+                }
+                if (scheduledTransfer.getStatus() == ScheduledTransferStatus.CANCELLED) {
+                    continue;
+                }
+                if (scheduledTransfer.isStandingOrder()) {
+                    scheduledTransfer.setExecuteAtMillis(nextExecution(scheduledTransfer, now));
+                    arm(scheduledTransfer, deadlineTick(scheduledTransfer.getExecuteAtMillis()));
+                } else {
+                    keepFinished(scheduledTransfer, failures[index] == null
+                            ? ScheduledTransferStatus.COMPLETED : ScheduledTransferStatus.FAILED, now);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void retry(List<ScheduledTransfer> batch) {
+        long now = millisClock.getAsLong();
+        lock.lock();
+        try {
+            for (ScheduledTransfer scheduledTransfer : batch) {
+                if (!scheduledTransfer.isCancelled()) {
+                    arm(scheduledTransfer, timingWheel.getCurrentTick());
+                } else if (!scheduledTransfer.isStandingOrder()) {
+                    keepFinished(scheduledTransfer, ScheduledTransferStatus.CANCELLED, now);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void arm(ScheduledTransfer scheduledTransfer, long deadlineTick) {
+        scheduledTransfer.setStatus(ScheduledTransferStatus.SCHEDULED);
+        scheduledTransfer.setTimeout(timingWheel.schedule(scheduledTransfer, deadlineTick));
+    }
+
+    private void remove(ScheduledTransfer scheduledTransfer) {
+        scheduledTransfers.remove(scheduledTransfer.getId());
+        UUID fromAccount = scheduledTransfer.getTransfer().getFromAccount();
+        Set<ScheduledTransfer> pending = accountTransfers.get(fromAccount);
+        if (pending != null && pending.remove(scheduledTransfer) && pending.isEmpty()) {
+            accountTransfers.remove(fromAccount);
+        }
+    }
+
+    private void keepFinished(ScheduledTransfer scheduledTransfer, ScheduledTransferStatus status, long now) {
+        remove(scheduledTransfer);
+        scheduledTransfer.setStatus(status);
+        scheduledTransfer.setFinishedAtMillis(now);
+        finishedTransfers.put(scheduledTransfer.getId(), scheduledTransfer);
+    }
+
+    /*
+    * Finished transfers are kept in the order they finished, so the first one kept long enough is at the head.
+    * */
+    private void dropFinished(long now) {
+        Iterator<ScheduledTransfer> finished = finishedTransfers.values().iterator();
+        while (finished.hasNext()) {
+            ScheduledTransfer scheduledTransfer = finished.next();
+            if (now - scheduledTransfer.getFinishedAtMillis() < finishedRetentionMillis) {
+                return;
+            }
+            finished.remove();
+        }
+    }
+
+    private ScheduledTransfer find(UUID scheduledTransferId) {
+        ScheduledTransfer scheduledTransfer = scheduledTransfers.get(scheduledTransferId);
+        if (scheduledTransfer == null) {
+            scheduledTransfer = finishedTransfers.get(scheduledTransferId);
+        }
+        if (scheduledTransfer == null) {
+            throw new ScheduledTransferNotFoundException("Scheduled transfer not found for id: " + scheduledTransferId);
+        }
+        return scheduledTransfer;
+    }
+
+    /*
+    * The first execution after now on the schedule of the standing order, executions missed meanwhile are skipped.
+    * Exact arithmetic, as a wrapped execution would be due at once, every tick.
+    * */
+    private static long nextExecution(ScheduledTransfer scheduledTransfer, long now) {
+        long executeAt = scheduledTransfer.getExecuteAtMillis();
+        long interval = scheduledTransfer.getIntervalMillis();
+        long missed = now < executeAt ? 0 : (now - executeAt) / interval;
+        return Math.addExact(executeAt, Math.multiplyExact(missed + 1, interval));
+    }
+
+    /*
+    * The first tick at or after the time, so a transfer never runs early.
+    * */
+    private long deadlineTick(long executeAtMillis) {
+        return Math.floorDiv(Math.addExact(executeAtMillis, tickMillis - 1), tickMillis);
+    }
+
+    private static void validateRequest(TransferMoneyRequest transfer) {
+        if (transfer.getFromAccount() == null || transfer.getToAccount() == null) {
+            throw new IllegalArgumentException("From or To account can not be null.");
+        }
+        if (transfer.getFromAccount().equals(transfer.getToAccount())) {
+            throw new IllegalArgumentException("From and To accounts are same. Please provide different accounts to transfer money.");
+        }
+        if (transfer.getAmount() == null) {
+            throw new IllegalArgumentException("Amount can not be null.");
+        }
+        if (transfer.getAmount().signum() <= 0) {
+            throw new IllegalArgumentException("Invalid transfer amount provided. Transfer amount should be positive.");
+        }
+    }
+
+    private static ScheduledTransferResponse responseOf(ScheduledTransfer scheduledTransfer) {
+        TransferMoneyRequest transfer = scheduledTransfer.getTransfer();
+        return ScheduledTransferResponse.builder()
+                .scheduledTransferId(scheduledTransfer.getId())
+                .fromAccount(transfer.getFromAccount())
+                .toAccount(transfer.getToAccount())
+                .amount(transfer.getAmount())
+                .currency(transfer.getCurrency())
+                .executeAt(Instant.ofEpochMilli(scheduledTransfer.getExecuteAtMillis()))
+                .intervalSeconds(scheduledTransfer.isStandingOrder()
+                        ? TimeUnit.MILLISECONDS.toSeconds(scheduledTransfer.getIntervalMillis()) : null)
+                .status(scheduledTransfer.getStatus())
+                .executions(scheduledTransfer.getExecutions())
+                .failures(scheduledTransfer.getFailures())
+                .lastFailure(scheduledTransfer.getLastFailure())
+                .cancelled(scheduledTransfer.isCancelled())
+                .build();
+    }
+
+    private static Executor newWorkers(int workerCount) {
+        AtomicInteger workerNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "scheduled-transfer-" + workerNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
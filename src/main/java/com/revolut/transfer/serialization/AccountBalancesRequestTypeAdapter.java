@@ -0,0 +1,65 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.revolut.transfer.request.AccountBalancesRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class AccountBalancesRequestTypeAdapter extends TypeAdapter<AccountBalancesRequest> {
+
+    @Override
+    public void write(JsonWriter out, AccountBalancesRequest value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (value.getAccountIds() != null) {
+            out.name("accountIds").beginArray();
+            for (UUID accountId : value.getAccountIds()) {
+                out.value(accountId == null ? null : accountId.toString());
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public AccountBalancesRequest read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        AccountBalancesRequest.AccountBalancesRequestBuilder builder = AccountBalancesRequest.builder();
+        in.beginObject();
+        while (in.hasNext()) {
+            if ("accountIds".equals(in.nextName())) {
+                builder.accountIds(readAccountIds(in));
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder.build();
+    }
+
+    static List<UUID> readAccountIds(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<UUID> accountIds = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            accountIds.add(JsonValues.readUuid(in));
+        }
+        in.endArray();
+        return accountIds;
+    }
+}
@@ -0,0 +1,108 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.revolut.transfer.response.AccountBalance;
+import com.revolut.transfer.response.AccountBalancesResponse;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class AccountBalancesResponseTypeAdapter extends TypeAdapter<AccountBalancesResponse> {
+
+    @Override
+    public void write(JsonWriter out, AccountBalancesResponse value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (value.getAsOf() != null) {
+            out.name("asOf").value(value.getAsOf().toString());
+        }
+        if (value.getBalances() != null) {
+            out.name("balances").beginArray();
+            for (AccountBalance balance : value.getBalances()) {
+                out.beginObject();
+                JsonValues.writeUuid(out, "accountId", balance.getAccountId());
+                JsonValues.writeDecimal(out, "balance", balance.getBalance());
+                JsonValues.writeCurrency(out, "currency", balance.getCurrency());
+                out.endObject();
+            }
+            out.endArray();
+        }
+        if (value.getNotFound() != null) {
+            out.name("notFound").beginArray();
+            for (UUID accountId : value.getNotFound()) {
+                out.value(accountId.toString());
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public AccountBalancesResponse read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        AccountBalancesResponse.AccountBalancesResponseBuilder builder = AccountBalancesResponse.builder();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "asOf":
+                    String asOf = JsonValues.readString(in);
+                    builder.asOf(asOf == null ? null : Instant.parse(asOf));
+                    break;
+                case "balances":
+                    builder.balances(readBalances(in));
+                    break;
+                case "notFound":
+                    builder.notFound(AccountBalancesRequestTypeAdapter.readAccountIds(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder.build();
+    }
+
+    private List<AccountBalance> readBalances(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<AccountBalance> balances = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            AccountBalance.AccountBalanceBuilder builder = AccountBalance.builder();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "accountId":
+                        builder.accountId(JsonValues.readUuid(in));
+                        break;
+                    case "balance":
+                        builder.balance(JsonValues.readDecimal(in));
+                        break;
+                    case "currency":
+                        builder.currency(JsonValues.readCurrency(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            balances.add(builder.build());
+        }
+        in.endArray();
+        return balances;
+    }
+}
@@ -0,0 +1,144 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.JsonParseException;
+import com.revolut.transfer.request.CreateAccountRequest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * == NOTE ==:
+ * Reads the records of an account import one line at a time, so an import of millions of accounts is never held in
+ * memory as a whole. Blank lines are skipped. A malformed record does not stop the import: it is returned with the
+ * reason instead of a request, and reading goes on with the next line.
+ *
+ * CSV fields may be quoted with double quotes, a quote within a quoted field is doubled. Records span one line.
+ * */
+public class AccountImportReader {
+
+    private static final String USER_ID_HEADER = "userId";
+
+    private final BufferedReader reader;
+    private final ImportFormat format;
+    private final JsonSerializer jsonSerializer;
+    private long line;
+
+    public AccountImportReader(InputStream inputStream, ImportFormat format, JsonSerializer jsonSerializer) {
+        this.reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        this.format = format;
+        this.jsonSerializer = jsonSerializer;
+    }
+
+    /**
+     * @return the next record, or null at the end of the input
+     */
+    public ImportRecord next() throws IOException {
+        String text;
+        do {
+            text = reader.readLine();
+            if (text == null) {
+                return null;
+            }
+            line++;
+        } while (text.trim().isEmpty() || (format == ImportFormat.CSV && line == 1 && isHeader(text)));
+
+        try {
+            CreateAccountRequest request = format == ImportFormat.CSV ? readCsv(text) : jsonSerializer.read(text, CreateAccountRequest.class);
+            if (request == null) {
+                return new ImportRecord(line, null, "Record can not be null.");
+            }
+            return new ImportRecord(line, request, null);
+        } catch (JsonParseException | IllegalStateException ex) {
+            return new ImportRecord(line, null, "Malformed record.");
+        } catch (IllegalArgumentException ex) {
+            return new ImportRecord(line, null, ex.getMessage());
+        }
+    }
+
+    private static boolean isHeader(String text) {
+        List<String> fields = splitCsv(text);
+        return !fields.isEmpty() && USER_ID_HEADER.equalsIgnoreCase(fields.get(0).trim());
+    }
+
+    private static CreateAccountRequest readCsv(String text) {
+        List<String> fields = splitCsv(text);
+        if (fields.size() > 2) {
+            throw new IllegalArgumentException("Expected userId and balance but found " + fields.size() + " fields.");
+        }
+        String userId = fields.get(0);
+        String balance = fields.size() > 1 ? fields.get(1).trim() : "";
+        try {
+            return CreateAccountRequest.builder()
+                    .userId(userId.isEmpty() ? null : userId)
+                    .balance(balance.isEmpty() ? null : new BigDecimal(balance))
+                    .build();
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid amount provided: " + balance);
+        }
+    }
+
+    private static List<String> splitCsv(String text) {
+        List<String> fields = new ArrayList<>(2);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field.");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /*
+    * A record of the import: the request, or the reason why the line could not be read.
+    * */
+    public static final class ImportRecord {
+
+        private final long line;
+        private final CreateAccountRequest request;
+        private final String error;
+
+        private ImportRecord(long line, CreateAccountRequest request, String error) {
+            this.line = line;
+            this.request = request;
+            this.error = error;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public CreateAccountRequest getRequest() {
+            return request;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.revolut.transfer.response.AccountImportResponse;
+
+import java.io.IOException;
+
+public class AccountImportResponseTypeAdapter extends TypeAdapter<AccountImportResponse> {
+
+    private final CreateAccountResultTypeAdapter resultAdapter = new CreateAccountResultTypeAdapter();
+
+    @Override
+    public void write(JsonWriter out, AccountImportResponse value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("created").value(value.getCreated());
+        out.name("failed").value(value.getFailed());
+        resultAdapter.writeAll(out, "failures", value.getFailures());
+        out.endObject();
+    }
+
+    @Override
+    public AccountImportResponse read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        AccountImportResponse.AccountImportResponseBuilder builder = AccountImportResponse.builder();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "created":
+                    builder.created(in.nextLong());
+                    break;
+                case "failed":
+                    builder.failed(in.nextLong());
+                    break;
+                case "failures":
+                    builder.failures(resultAdapter.readAll(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder.build();
+    }
+}
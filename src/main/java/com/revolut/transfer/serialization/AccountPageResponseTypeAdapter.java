@@ -0,0 +1,73 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.revolut.transfer.response.AccountPageResponse;
+import com.revolut.transfer.response.AccountResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AccountPageResponseTypeAdapter extends TypeAdapter<AccountPageResponse> {
+
+    private final AccountResponseTypeAdapter accountAdapter = new AccountResponseTypeAdapter();
+
+    @Override
+    public void write(JsonWriter out, AccountPageResponse value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (value.getAccounts() != null) {
+            out.name("accounts").beginArray();
+            for (AccountResponse account : value.getAccounts()) {
+                accountAdapter.write(out, account);
+            }
+            out.endArray();
+        }
+        JsonValues.writeUuid(out, "nextCursor", value.getNextCursor());
+        out.endObject();
+    }
+
+    @Override
+    public AccountPageResponse read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        AccountPageResponse.AccountPageResponseBuilder builder = AccountPageResponse.builder();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "accounts":
+                    builder.accounts(readAccounts(in));
+                    break;
+                case "nextCursor":
+                    builder.nextCursor(JsonValues.readUuid(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder.build();
+    }
+
+    private List<AccountResponse> readAccounts(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<AccountResponse> accounts = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            accounts.add(accountAdapter.read(in));
+        }
+        in.endArray();
+        return accounts;
+    }
+}
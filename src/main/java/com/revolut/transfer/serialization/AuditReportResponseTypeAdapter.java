@@ -0,0 +1,117 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.revolut.transfer.response.AuditReportResponse;
+import com.revolut.transfer.response.CurrencyAudit;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AuditReportResponseTypeAdapter extends TypeAdapter<AuditReportResponse> {
+
+    @Override
+    public void write(JsonWriter out, AuditReportResponse value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (value.getAuditedAt() != null) {
+            out.name("auditedAt").value(value.getAuditedAt().toString());
+        }
+        out.name("durationMillis").value(value.getDurationMillis());
+        out.name("accounts").value(value.getAccounts());
+        out.name("balanced").value(value.isBalanced());
+        if (value.getCurrencies() != null) {
+            out.name("currencies").beginArray();
+            for (CurrencyAudit currencyAudit : value.getCurrencies()) {
+                out.beginObject();
+                JsonValues.writeCurrency(out, "currency", currencyAudit.getCurrency());
+                JsonValues.writeDecimal(out, "balance", currencyAudit.getBalance());
+                JsonValues.writeDecimal(out, "inFlight", currencyAudit.getInFlight());
+                JsonValues.writeDecimal(out, "expected", currencyAudit.getExpected());
+                JsonValues.writeDecimal(out, "discrepancy", currencyAudit.getDiscrepancy());
+                out.endObject();
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public AuditReportResponse read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        AuditReportResponse.AuditReportResponseBuilder builder = AuditReportResponse.builder();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "auditedAt":
+                    String auditedAt = JsonValues.readString(in);
+                    builder.auditedAt(auditedAt == null ? null : Instant.parse(auditedAt));
+                    break;
+                case "durationMillis":
+                    builder.durationMillis(in.nextLong());
+                    break;
+                case "accounts":
+                    builder.accounts(in.nextLong());
+                    break;
+                case "balanced":
+                    builder.balanced(in.nextBoolean());
+                    break;
+                case "currencies":
+                    builder.currencies(readCurrencies(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder.build();
+    }
+
+    private List<CurrencyAudit> readCurrencies(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<CurrencyAudit> currencies = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            CurrencyAudit.CurrencyAuditBuilder builder = CurrencyAudit.builder();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "currency":
+                        builder.currency(JsonValues.readCurrency(in));
+                        break;
+                    case "balance":
+                        builder.balance(JsonValues.readDecimal(in));
+                        break;
+                    case "inFlight":
+                        builder.inFlight(JsonValues.readDecimal(in));
+                        break;
+                    case "expected":
+                        builder.expected(JsonValues.readDecimal(in));
+                        break;
+                    case "discrepancy":
+                        builder.discrepancy(JsonValues.readDecimal(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            currencies.add(builder.build());
+        }
+        in.endArray();
+        return currencies;
+    }
+}
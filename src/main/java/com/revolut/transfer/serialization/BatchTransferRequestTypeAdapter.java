@@ -0,0 +1,79 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.revolut.transfer.request.BatchTransferRequest;
+import com.revolut.transfer.request.TransferMoneyRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchTransferRequestTypeAdapter extends TypeAdapter<BatchTransferRequest> {
+
+    private final TransferMoneyRequestTypeAdapter transferAdapter = new TransferMoneyRequestTypeAdapter();
+
+    @Override
+    public void write(JsonWriter out, BatchTransferRequest value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (value.getAtomic() != null) {
+            out.name("atomic").value(value.getAtomic());
+        }
+        if (value.getTransfers() != null) {
+            out.name("transfers").beginArray();
+            for (TransferMoneyRequest transfer : value.getTransfers()) {
+                transferAdapter.write(out, transfer);
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public BatchTransferRequest read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        BatchTransferRequest.BatchTransferRequestBuilder builder = BatchTransferRequest.builder();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "atomic":
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                    } else {
+                        builder.atomic(in.nextBoolean());
+                    }
+                    break;
+                case "transfers":
+                    builder.transfers(readTransfers(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder.build();
+    }
+
+    private List<TransferMoneyRequest> readTransfers(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<TransferMoneyRequest> transfers = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            transfers.add(transferAdapter.read(in));
+        }
+        in.endArray();
+        return transfers;
+    }
+}
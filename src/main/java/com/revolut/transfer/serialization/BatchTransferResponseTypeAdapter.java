@@ -0,0 +1,97 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.revolut.transfer.response.BatchTransferResponse;
+import com.revolut.transfer.response.TransferResult;
+import com.revolut.transfer.response.TransferStatus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchTransferResponseTypeAdapter extends TypeAdapter<BatchTransferResponse> {
+
+    @Override
+    public void write(JsonWriter out, BatchTransferResponse value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("transferred").value(value.getTransferred());
+        out.name("failed").value(value.getFailed());
+        if (value.getResults() != null) {
+            out.name("results").beginArray();
+            for (TransferResult result : value.getResults()) {
+                out.beginObject();
+                out.name("index").value(result.getIndex());
+                if (result.getStatus() != null) {
+                    out.name("status").value(result.getStatus().name());
+                }
+                JsonValues.writeString(out, "message", result.getMessage());
+                out.endObject();
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public BatchTransferResponse read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        BatchTransferResponse.BatchTransferResponseBuilder builder = BatchTransferResponse.builder();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "transferred":
+                    builder.transferred(in.nextInt());
+                    break;
+                case "failed":
+                    builder.failed(in.nextInt());
+                    break;
+                case "results":
+                    builder.results(readResults(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder.build();
+    }
+
+    private List<TransferResult> readResults(JsonReader in) throws IOException {
+        List<TransferResult> results = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            TransferResult.TransferResultBuilder builder = TransferResult.builder();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "index":
+                        builder.index(in.nextInt());
+                        break;
+                    case "status":
+                        String status = JsonValues.readString(in);
+                        builder.status(status == null ? null : TransferStatus.valueOf(status));
+                        break;
+                    case "message":
+                        builder.message(JsonValues.readString(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            results.add(builder.build());
+        }
+        in.endArray();
+        return results;
+    }
+}
@@ -0,0 +1,67 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.revolut.transfer.request.BulkCreateAccountRequest;
+import com.revolut.transfer.request.CreateAccountRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BulkCreateAccountRequestTypeAdapter extends TypeAdapter<BulkCreateAccountRequest> {
+
+    private final CreateAccountRequestTypeAdapter accountAdapter = new CreateAccountRequestTypeAdapter();
+
+    @Override
+    public void write(JsonWriter out, BulkCreateAccountRequest value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (value.getAccounts() != null) {
+            out.name("accounts").beginArray();
+            for (CreateAccountRequest account : value.getAccounts()) {
+                accountAdapter.write(out, account);
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public BulkCreateAccountRequest read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        BulkCreateAccountRequest.BulkCreateAccountRequestBuilder builder = BulkCreateAccountRequest.builder();
+        in.beginObject();
+        while (in.hasNext()) {
+            if ("accounts".equals(in.nextName())) {
+                builder.accounts(readAccounts(in));
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder.build();
+    }
+
+    private List<CreateAccountRequest> readAccounts(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<CreateAccountRequest> accounts = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            accounts.add(accountAdapter.read(in));
+        }
+        in.endArray();
+        return accounts;
+    }
+}
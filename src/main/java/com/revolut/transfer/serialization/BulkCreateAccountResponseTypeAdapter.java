@@ -0,0 +1,54 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.revolut.transfer.response.BulkCreateAccountResponse;
+
+import java.io.IOException;
+
+public class BulkCreateAccountResponseTypeAdapter extends TypeAdapter<BulkCreateAccountResponse> {
+
+    private final CreateAccountResultTypeAdapter resultAdapter = new CreateAccountResultTypeAdapter();
+
+    @Override
+    public void write(JsonWriter out, BulkCreateAccountResponse value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("created").value(value.getCreated());
+        out.name("failed").value(value.getFailed());
+        resultAdapter.writeAll(out, "results", value.getResults());
+        out.endObject();
+    }
+
+    @Override
+    public BulkCreateAccountResponse read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        BulkCreateAccountResponse.BulkCreateAccountResponseBuilder builder = BulkCreateAccountResponse.builder();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "created":
+                    builder.created(in.nextInt());
+                    break;
+                case "failed":
+                    builder.failed(in.nextInt());
+                    break;
+                case "results":
+                    builder.results(resultAdapter.readAll(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder.build();
+    }
+}
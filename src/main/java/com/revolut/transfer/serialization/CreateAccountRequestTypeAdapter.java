@@ -0,0 +1,52 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.revolut.transfer.request.CreateAccountRequest;
+
+import java.io.IOException;
+
+public class CreateAccountRequestTypeAdapter extends TypeAdapter<CreateAccountRequest> {
+
+    @Override
+    public void write(JsonWriter out, CreateAccountRequest value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        JsonValues.writeString(out, "userId", value.getUserId());
+        JsonValues.writeDecimal(out, "balance", value.getBalance());
+        JsonValues.writeCurrency(out, "currency", value.getCurrency());
+        out.endObject();
+    }
+
+    @Override
+    public CreateAccountRequest read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        CreateAccountRequest.CreateAccountRequestBuilder builder = CreateAccountRequest.builder();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "userId":
+                    builder.userId(JsonValues.readString(in));
+                    break;
+                case "balance":
+                    builder.balance(JsonValues.readDecimal(in));
+                    break;
+                case "currency":
+                    builder.currency(JsonValues.readCurrency(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder.build();
+    }
+}
@@ -0,0 +1,89 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.revolut.transfer.response.CreateAccountResult;
+import com.revolut.transfer.response.CreateAccountStatus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Results of the bulk creation and import responses.
+ * */
+class CreateAccountResultTypeAdapter extends TypeAdapter<CreateAccountResult> {
+
+    @Override
+    public void write(JsonWriter out, CreateAccountResult value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("index").value(value.getIndex());
+        if (value.getStatus() != null) {
+            out.name("status").value(value.getStatus().name());
+        }
+        JsonValues.writeUuid(out, "accountId", value.getAccountId());
+        JsonValues.writeString(out, "message", value.getMessage());
+        out.endObject();
+    }
+
+    @Override
+    public CreateAccountResult read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        CreateAccountResult.CreateAccountResultBuilder builder = CreateAccountResult.builder();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "index":
+                    builder.index(in.nextLong());
+                    break;
+                case "status":
+                    String status = JsonValues.readString(in);
+                    builder.status(status == null ? null : CreateAccountStatus.valueOf(status));
+                    break;
+                case "accountId":
+                    builder.accountId(JsonValues.readUuid(in));
+                    break;
+                case "message":
+                    builder.message(JsonValues.readString(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder.build();
+    }
+
+    void writeAll(JsonWriter out, String name, List<CreateAccountResult> results) throws IOException {
+        if (results != null) {
+            out.name(name).beginArray();
+            for (CreateAccountResult result : results) {
+                write(out, result);
+            }
+            out.endArray();
+        }
+    }
+
+    List<CreateAccountResult> readAll(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<CreateAccountResult> results = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            results.add(read(in));
+        }
+        in.endArray();
+        return results;
+    }
+}
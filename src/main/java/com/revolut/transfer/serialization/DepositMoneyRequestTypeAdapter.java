@@ -0,0 +1,48 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.revolut.transfer.request.DepositMoneyRequest;
+
+import java.io.IOException;
+
+public class DepositMoneyRequestTypeAdapter extends TypeAdapter<DepositMoneyRequest> {
+
+    @Override
+    public void write(JsonWriter out, DepositMoneyRequest value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        JsonValues.writeUuid(out, "accountId", value.getAccountId());
+        JsonValues.writeDecimal(out, "amount", value.getAmount());
+        out.endObject();
+    }
+
+    @Override
+    public DepositMoneyRequest read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        DepositMoneyRequest.DepositMoneyRequestBuilder builder = DepositMoneyRequest.builder();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "accountId":
+                    builder.accountId(JsonValues.readUuid(in));
+                    break;
+                case "amount":
+                    builder.amount(JsonValues.readDecimal(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder.build();
+    }
+}
@@ -0,0 +1,55 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.revolut.transfer.response.FxRatesResponse;
+
+import java.io.IOException;
+import java.time.Instant;
+
+public class FxRatesResponseTypeAdapter extends TypeAdapter<FxRatesResponse> {
+
+    @Override
+    public void write(JsonWriter out, FxRatesResponse value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        JsonValues.writeCurrency(out, "base", value.getBase());
+        JsonValues.writeRates(out, "rates", value.getRates());
+        if (value.getUpdatedAt() != null) {
+            out.name("updatedAt").value(value.getUpdatedAt().toString());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public FxRatesResponse read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        FxRatesResponse.FxRatesResponseBuilder builder = FxRatesResponse.builder();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "base":
+                    builder.base(JsonValues.readCurrency(in));
+                    break;
+                case "rates":
+                    builder.rates(JsonValues.readRates(in));
+                    break;
+                case "updatedAt":
+                    builder.updatedAt(Instant.parse(in.nextString()));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder.build();
+    }
+}
@@ -0,0 +1,30 @@
+package com.revolut.transfer.serialization;
+
+import java.util.Locale;
+
+/*
+ * Formats of POST /accounts/import. NDJSON has one create account request per line, e.g. {"userId":"u1","balance":10},
+ * CSV has userId and an optional balance per line, with an optional header line.
+ * */
+public enum ImportFormat {
+    NDJSON,
+    CSV;
+
+    public static ImportFormat from(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown import format: " + value);
+        }
+    }
+
+    /*
+    * The format param wins over the content type. Anything but text/csv is read as NDJSON.
+    * */
+    public static ImportFormat of(String formatParam, String contentType) {
+        if (formatParam != null) {
+            return from(formatParam);
+        }
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith("text/csv") ? CSV : NDJSON;
+    }
+}
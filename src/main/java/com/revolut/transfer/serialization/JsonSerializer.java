@@ -0,0 +1,135 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.revolut.transfer.request.AccountBalancesRequest;
+import com.revolut.transfer.request.BatchTransferRequest;
+import com.revolut.transfer.request.BulkCreateAccountRequest;
+import com.revolut.transfer.request.CreateAccountRequest;
+import com.revolut.transfer.request.DepositMoneyRequest;
+import com.revolut.transfer.request.ScheduleTransferRequest;
+import com.revolut.transfer.request.TransferMoneyRequest;
+import com.revolut.transfer.request.UpdateFxRatesRequest;
+import com.revolut.transfer.request.WithdrawMoneyRequest;
+import com.revolut.transfer.response.AccountBalancesResponse;
+import com.revolut.transfer.response.AccountImportResponse;
+import com.revolut.transfer.response.AccountPageResponse;
+import com.revolut.transfer.response.AccountResponse;
+import com.revolut.transfer.response.AuditReportResponse;
+import com.revolut.transfer.response.BatchTransferResponse;
+import com.revolut.transfer.response.BulkCreateAccountResponse;
+import com.revolut.transfer.response.FxRatesResponse;
+import com.revolut.transfer.response.ScheduledTransferResponse;
+import com.revolut.transfer.response.ScheduledTransfersResponse;
+import com.revolut.transfer.response.TransactionPageResponse;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * == NOTE ==:
+ * One Gson instance, built once with hand written type adapters for the request and response classes,
+ * so that no reflection is used per request. Requests are parsed straight from the input stream
+ * and responses are written straight to the output stream, without building a String in between.
+ * Request and response bodies are small, so the stream readers and writers use a small byte buffer
+ * instead of the 8 KB one of InputStreamReader and OutputStreamWriter.
+ * */
+public class JsonSerializer {
+
+    private static final int BYTE_BUFFER_SIZE = 512;
+
+    private final Gson gson;
+
+    public JsonSerializer() {
+        this.gson = new GsonBuilder()
+                .registerTypeAdapter(TransferMoneyRequest.class, new TransferMoneyRequestTypeAdapter())
+                .registerTypeAdapter(DepositMoneyRequest.class, new DepositMoneyRequestTypeAdapter())
+                .registerTypeAdapter(WithdrawMoneyRequest.class, new WithdrawMoneyRequestTypeAdapter())
+                .registerTypeAdapter(CreateAccountRequest.class, new CreateAccountRequestTypeAdapter())
+                .registerTypeAdapter(AccountResponse.class, new AccountResponseTypeAdapter())
+                .registerTypeAdapter(BatchTransferRequest.class, new BatchTransferRequestTypeAdapter())
+                .registerTypeAdapter(BatchTransferResponse.class, new BatchTransferResponseTypeAdapter())
+                .registerTypeAdapter(TransactionPageResponse.class, new TransactionPageResponseTypeAdapter())
+                .registerTypeAdapter(BulkCreateAccountRequest.class, new BulkCreateAccountRequestTypeAdapter())
+                .registerTypeAdapter(BulkCreateAccountResponse.class, new BulkCreateAccountResponseTypeAdapter())
+                .registerTypeAdapter(AccountImportResponse.class, new AccountImportResponseTypeAdapter())
+                .registerTypeAdapter(AccountPageResponse.class, new AccountPageResponseTypeAdapter())
+                .registerTypeAdapter(AccountBalancesRequest.class, new AccountBalancesRequestTypeAdapter())
+                .registerTypeAdapter(AccountBalancesResponse.class, new AccountBalancesResponseTypeAdapter())
+                .registerTypeAdapter(UpdateFxRatesRequest.class, new UpdateFxRatesRequestTypeAdapter())
+                .registerTypeAdapter(FxRatesResponse.class, new FxRatesResponseTypeAdapter())
+                .registerTypeAdapter(AuditReportResponse.class, new AuditReportResponseTypeAdapter())
+                .registerTypeAdapter(ScheduleTransferRequest.class, new ScheduleTransferRequestTypeAdapter())
+                .registerTypeAdapter(ScheduledTransferResponse.class, new ScheduledTransferResponseTypeAdapter())
+                .registerTypeAdapter(ScheduledTransfersResponse.class, new ScheduledTransfersResponseTypeAdapter())
+                .create();
+    }
+
+    /**
+     * @throws IllegalArgumentException when the input is empty
+     */
+    public <T> T read(InputStream inputStream, Type type) {
+        Reader reader = Channels.newReader(Channels.newChannel(inputStream), StandardCharsets.UTF_8.newDecoder(), BYTE_BUFFER_SIZE);
+        T value = gson.fromJson(new JsonReader(reader), type);
+        if (value == null) {
+            throw new IllegalArgumentException("Request body can not be empty.");
+        }
+        return value;
+    }
+
+    /**
+     * @return null for the JSON literal null
+     */
+    public <T> T read(String json, Class<T> type) {
+        return gson.fromJson(json, type);
+    }
+
+    public void write(Object value, OutputStream outputStream) throws IOException {
+        Writer writer = Channels.newWriter(Channels.newChannel(outputStream), StandardCharsets.UTF_8.newEncoder(), BYTE_BUFFER_SIZE);
+        JsonWriter jsonWriter = gson.newJsonWriter(writer);
+        gson.toJson(value, value.getClass(), jsonWriter);
+        jsonWriter.flush();
+    }
+
+    /**
+     * Writer of one JSON value per line (NDJSON), for responses of any size. Values are buffered and written to the
+     * output stream in blocks, so the response is not built in memory first.
+     */
+    public LineWriter lineWriter(OutputStream outputStream) {
+        return new LineWriter(new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)));
+    }
+
+    public String toJson(Object value) {
+        return gson.toJson(value);
+    }
+
+    public final class LineWriter implements Flushable {
+
+        private final Writer writer;
+
+        private LineWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        public void write(Object value) throws IOException {
+            gson.toJson(value, value.getClass(), gson.newJsonWriter(writer));
+            writer.write('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Currency;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/*
+ * Reading and writing of the value types used by the type adapters.
+ * */
+final class JsonValues {
+
+    private JsonValues() {
+    }
+
+    static UUID readUuid(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return UUID.fromString(in.nextString());
+    }
+
+    /*
+    * Amounts are accepted both as JSON numbers and as strings, e.g. 100.50 or "100.50"
+    * */
+    static BigDecimal readDecimal(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String value = in.nextString();
+        try {
+            return new BigDecimal(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid amount provided: " + value);
+        }
+    }
+
+    /*
+    * ISO 4217 code, e.g. "EUR"
+    * */
+    static Currency readCurrency(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return currencyOf(in.nextString());
+    }
+
+    /*
+    * Object of currency codes to amounts, e.g. {"EUR": 1.17, "USD": 1.27}, in the order they are given.
+    * */
+    static Map<Currency, BigDecimal> readRates(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Map<Currency, BigDecimal> rates = new LinkedHashMap<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            Currency currency = currencyOf(in.nextName());
+            rates.put(currency, readDecimal(in));
+        }
+        in.endObject();
+        return rates;
+    }
+
+    private static Currency currencyOf(String code) {
+        try {
+            return Currency.getInstance(code);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Invalid currency provided: " + code);
+        }
+    }
+
+    /*
+    * ISO 8601 instant in UTC, e.g. "2026-10-18T10:15:30Z"
+    * */
+    static Instant readInstant(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String value = in.nextString();
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("Invalid time provided: " + value);
+        }
+    }
+
+    static String readString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    static void writeUuid(JsonWriter out, String name, UUID value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value.toString());
+        }
+    }
+
+    static void writeDecimal(JsonWriter out, String name, BigDecimal value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+
+    static void writeString(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+
+    static void writeInstant(JsonWriter out, String name, Instant value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value.toString());
+        }
+    }
+
+    static void writeCurrency(JsonWriter out, String name, Currency value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value.getCurrencyCode());
+        }
+    }
+
+    static void writeRates(JsonWriter out, String name, Map<Currency, BigDecimal> value) throws IOException {
+        if (value != null) {
+            out.name(name).beginObject();
+            for (Map.Entry<Currency, BigDecimal> rate : value.entrySet()) {
+                out.name(rate.getKey().getCurrencyCode()).value(rate.getValue());
+            }
+            out.endObject();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.revolut.transfer.request.ScheduleTransferRequest;
+
+import java.io.IOException;
+
+public class ScheduleTransferRequestTypeAdapter extends TypeAdapter<ScheduleTransferRequest> {
+
+    @Override
+    public void write(JsonWriter out, ScheduleTransferRequest value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        JsonValues.writeUuid(out, "fromAccount", value.getFromAccount());
+        JsonValues.writeUuid(out, "toAccount", value.getToAccount());
+        JsonValues.writeDecimal(out, "amount", value.getAmount());
+        JsonValues.writeCurrency(out, "currency", value.getCurrency());
+        JsonValues.writeInstant(out, "executeAt", value.getExecuteAt());
+        if (value.getIntervalSeconds() != null) {
+            out.name("intervalSeconds").value(value.getIntervalSeconds());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public ScheduleTransferRequest read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ScheduleTransferRequest.ScheduleTransferRequestBuilder builder = ScheduleTransferRequest.builder();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "fromAccount":
+                    builder.fromAccount(JsonValues.readUuid(in));
+                    break;
+                case "toAccount":
+                    builder.toAccount(JsonValues.readUuid(in));
+                    break;
+                case "amount":
+                    builder.amount(JsonValues.readDecimal(in));
+                    break;
+                case "currency":
+                    builder.currency(JsonValues.readCurrency(in));
+                    break;
+                case "executeAt":
+                    builder.executeAt(JsonValues.readInstant(in));
+                    break;
+                case "intervalSeconds":
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                    } else {
+                        builder.intervalSeconds(in.nextLong());
+                    }
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder.build();
+    }
+}
@@ -0,0 +1,94 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.revolut.transfer.response.ScheduledTransferResponse;
+import com.revolut.transfer.response.ScheduledTransferStatus;
+
+import java.io.IOException;
+
+public class ScheduledTransferResponseTypeAdapter extends TypeAdapter<ScheduledTransferResponse> {
+
+    @Override
+    public void write(JsonWriter out, ScheduledTransferResponse value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        JsonValues.writeUuid(out, "scheduledTransferId", value.getScheduledTransferId());
+        JsonValues.writeUuid(out, "fromAccount", value.getFromAccount());
+        JsonValues.writeUuid(out, "toAccount", value.getToAccount());
+        JsonValues.writeDecimal(out, "amount", value.getAmount());
+        JsonValues.writeCurrency(out, "currency", value.getCurrency());
+        JsonValues.writeInstant(out, "executeAt", value.getExecuteAt());
+        if (value.getIntervalSeconds() != null) {
+            out.name("intervalSeconds").value(value.getIntervalSeconds());
+        }
+        if (value.getStatus() != null) {
+            out.name("status").value(value.getStatus().name());
+        }
+        out.name("executions").value(value.getExecutions());
+        out.name("failures").value(value.getFailures());
+        JsonValues.writeString(out, "lastFailure", value.getLastFailure());
+        out.endObject();
+    }
+
+    @Override
+    public ScheduledTransferResponse read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ScheduledTransferResponse.ScheduledTransferResponseBuilder builder = ScheduledTransferResponse.builder();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "scheduledTransferId":
+                    builder.scheduledTransferId(JsonValues.readUuid(in));
+                    break;
+                case "fromAccount":
+                    builder.fromAccount(JsonValues.readUuid(in));
+                    break;
+                case "toAccount":
+                    builder.toAccount(JsonValues.readUuid(in));
+                    break;
+                case "amount":
+                    builder.amount(JsonValues.readDecimal(in));
+                    break;
+                case "currency":
+                    builder.currency(JsonValues.readCurrency(in));
+                    break;
+                case "executeAt":
+                    builder.executeAt(JsonValues.readInstant(in));
+                    break;
+                case "intervalSeconds":
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                    } else {
+                        builder.intervalSeconds(in.nextLong());
+                    }
+                    break;
+                case "status":
+                    String status = JsonValues.readString(in);
+                    builder.status(status == null ? null : ScheduledTransferStatus.valueOf(status));
+                    break;
+                case "executions":
+                    builder.executions(in.nextLong());
+                    break;
+                case "failures":
+                    builder.failures(in.nextLong());
+                    break;
+                case "lastFailure":
+                    builder.lastFailure(JsonValues.readString(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder.build();
+    }
+}
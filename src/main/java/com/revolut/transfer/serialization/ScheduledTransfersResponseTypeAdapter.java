@@ -0,0 +1,73 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.revolut.transfer.response.ScheduledTransferResponse;
+import com.revolut.transfer.response.ScheduledTransfersResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ScheduledTransfersResponseTypeAdapter extends TypeAdapter<ScheduledTransfersResponse> {
+
+    private final ScheduledTransferResponseTypeAdapter scheduledTransferAdapter = new ScheduledTransferResponseTypeAdapter();
+
+    @Override
+    public void write(JsonWriter out, ScheduledTransfersResponse value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        JsonValues.writeUuid(out, "accountId", value.getAccountId());
+        if (value.getScheduledTransfers() != null) {
+            out.name("scheduledTransfers").beginArray();
+            for (ScheduledTransferResponse scheduledTransfer : value.getScheduledTransfers()) {
+                scheduledTransferAdapter.write(out, scheduledTransfer);
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public ScheduledTransfersResponse read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ScheduledTransfersResponse.ScheduledTransfersResponseBuilder builder = ScheduledTransfersResponse.builder();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "accountId":
+                    builder.accountId(JsonValues.readUuid(in));
+                    break;
+                case "scheduledTransfers":
+                    builder.scheduledTransfers(readScheduledTransfers(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder.build();
+    }
+
+    private List<ScheduledTransferResponse> readScheduledTransfers(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<ScheduledTransferResponse> scheduledTransfers = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            scheduledTransfers.add(scheduledTransferAdapter.read(in));
+        }
+        in.endArray();
+        return scheduledTransfers;
+    }
+}
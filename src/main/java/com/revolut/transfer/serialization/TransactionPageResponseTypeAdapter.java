@@ -0,0 +1,115 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.revolut.transfer.ledger.PostingType;
+import com.revolut.transfer.response.TransactionPageResponse;
+import com.revolut.transfer.response.TransactionResponse;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TransactionPageResponseTypeAdapter extends TypeAdapter<TransactionPageResponse> {
+
+    @Override
+    public void write(JsonWriter out, TransactionPageResponse value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        JsonValues.writeUuid(out, "accountId", value.getAccountId());
+        if (value.getTransactions() != null) {
+            out.name("transactions").beginArray();
+            for (TransactionResponse transaction : value.getTransactions()) {
+                out.beginObject();
+                out.name("transactionId").value(transaction.getTransactionId());
+                if (transaction.getType() != null) {
+                    out.name("type").value(transaction.getType().name());
+                }
+                JsonValues.writeDecimal(out, "amount", transaction.getAmount());
+                JsonValues.writeDecimal(out, "balance", transaction.getBalance());
+                JsonValues.writeUuid(out, "counterpartyAccountId", transaction.getCounterpartyAccountId());
+                if (transaction.getTimestamp() != null) {
+                    out.name("timestamp").value(transaction.getTimestamp().toString());
+                }
+                out.endObject();
+            }
+            out.endArray();
+        }
+        if (value.getNextCursor() != null) {
+            out.name("nextCursor").value(value.getNextCursor());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public TransactionPageResponse read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        TransactionPageResponse.TransactionPageResponseBuilder builder = TransactionPageResponse.builder();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "accountId":
+                    builder.accountId(JsonValues.readUuid(in));
+                    break;
+                case "transactions":
+                    builder.transactions(readTransactions(in));
+                    break;
+                case "nextCursor":
+                    builder.nextCursor(in.nextLong());
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder.build();
+    }
+
+    private List<TransactionResponse> readTransactions(JsonReader in) throws IOException {
+        List<TransactionResponse> transactions = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            TransactionResponse.TransactionResponseBuilder builder = TransactionResponse.builder();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "transactionId":
+                        builder.transactionId(in.nextLong());
+                        break;
+                    case "type":
+                        String type = JsonValues.readString(in);
+                        builder.type(type == null ? null : PostingType.valueOf(type));
+                        break;
+                    case "amount":
+                        builder.amount(JsonValues.readDecimal(in));
+                        break;
+                    case "balance":
+                        builder.balance(JsonValues.readDecimal(in));
+                        break;
+                    case "counterpartyAccountId":
+                        builder.counterpartyAccountId(JsonValues.readUuid(in));
+                        break;
+                    case "timestamp":
+                        String timestamp = JsonValues.readString(in);
+                        builder.timestamp(timestamp == null ? null : Instant.parse(timestamp));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            transactions.add(builder.build());
+        }
+        in.endArray();
+        return transactions;
+    }
+}
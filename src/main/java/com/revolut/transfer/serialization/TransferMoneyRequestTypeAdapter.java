@@ -0,0 +1,56 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.revolut.transfer.request.TransferMoneyRequest;
+
+import java.io.IOException;
+
+public class TransferMoneyRequestTypeAdapter extends TypeAdapter<TransferMoneyRequest> {
+
+    @Override
+    public void write(JsonWriter out, TransferMoneyRequest value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        JsonValues.writeUuid(out, "fromAccount", value.getFromAccount());
+        JsonValues.writeUuid(out, "toAccount", value.getToAccount());
+        JsonValues.writeDecimal(out, "amount", value.getAmount());
+        JsonValues.writeCurrency(out, "currency", value.getCurrency());
+        out.endObject();
+    }
+
+    @Override
+    public TransferMoneyRequest read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        TransferMoneyRequest.TransferMoneyRequestBuilder builder = TransferMoneyRequest.builder();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "fromAccount":
+                    builder.fromAccount(JsonValues.readUuid(in));
+                    break;
+                case "toAccount":
+                    builder.toAccount(JsonValues.readUuid(in));
+                    break;
+                case "amount":
+                    builder.amount(JsonValues.readDecimal(in));
+                    break;
+                case "currency":
+                    builder.currency(JsonValues.readCurrency(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder.build();
+    }
+}
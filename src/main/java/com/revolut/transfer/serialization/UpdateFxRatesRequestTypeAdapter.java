@@ -0,0 +1,48 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.revolut.transfer.request.UpdateFxRatesRequest;
+
+import java.io.IOException;
+
+public class UpdateFxRatesRequestTypeAdapter extends TypeAdapter<UpdateFxRatesRequest> {
+
+    @Override
+    public void write(JsonWriter out, UpdateFxRatesRequest value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        JsonValues.writeCurrency(out, "base", value.getBase());
+        JsonValues.writeRates(out, "rates", value.getRates());
+        out.endObject();
+    }
+
+    @Override
+    public UpdateFxRatesRequest read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        UpdateFxRatesRequest.UpdateFxRatesRequestBuilder builder = UpdateFxRatesRequest.builder();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "base":
+                    builder.base(JsonValues.readCurrency(in));
+                    break;
+                case "rates":
+                    builder.rates(JsonValues.readRates(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder.build();
+    }
+}
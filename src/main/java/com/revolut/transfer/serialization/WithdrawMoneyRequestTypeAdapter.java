@@ -0,0 +1,48 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.revolut.transfer.request.WithdrawMoneyRequest;
+
+import java.io.IOException;
+
+public class WithdrawMoneyRequestTypeAdapter extends TypeAdapter<WithdrawMoneyRequest> {
+
+    @Override
+    public void write(JsonWriter out, WithdrawMoneyRequest value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        JsonValues.writeUuid(out, "accountId", value.getAccountId());
+        JsonValues.writeDecimal(out, "amount", value.getAmount());
+        out.endObject();
+    }
+
+    @Override
+    public WithdrawMoneyRequest read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        WithdrawMoneyRequest.WithdrawMoneyRequestBuilder builder = WithdrawMoneyRequest.builder();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "accountId":
+                    builder.accountId(JsonValues.readUuid(in));
+                    break;
+                case "amount":
+                    builder.amount(JsonValues.readDecimal(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder.build();
+    }
+}
@@ -0,0 +1,96 @@
+package com.revolut.transfer.server;
+
+import com.revolut.transfer.audit.ConservationAuditor;
+import com.revolut.transfer.controller.AccountRoutes;
+import com.revolut.transfer.controller.AsyncAccountServlet;
+import com.revolut.transfer.controller.AuditServlet;
+import com.revolut.transfer.controller.FxRatesServlet;
+import com.revolut.transfer.controller.PrometheusMetricsServlet;
+import com.revolut.transfer.converter.AuditReportResponseConverter;
+import com.revolut.transfer.converter.FxRatesResponseConverter;
+import com.revolut.transfer.fx.FxRates;
+import com.revolut.transfer.idempotency.IdempotencyCache;
+import com.revolut.transfer.metrics.MetricsRegistry;
+import com.revolut.transfer.metrics.PrometheusExporter;
+import com.revolut.transfer.schedule.TransferScheduler;
+import com.revolut.transfer.serialization.JsonSerializer;
+import com.revolut.transfer.service.AccountService;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * == NOTE ==:
+ * Jetty server of the ASYNC HTTP mode, serving the /accounts routes with AsyncAccountServlet on the port Spark uses,
+ * GET /metrics, GET and PUT /fx/rates, and GET and POST /admin/audit.
+ * Jetty threads only accept, select and parse, so their pool stays small whatever the number of open connections.
+ * The workers run the service calls which block, see AsyncAccountServlet.
+ * */
+public class AsyncHttpServer {
+
+    public static final int PORT = 4567;
+
+    private static final int ACCEPT_QUEUE_SIZE = 1024;
+    private static final long IDLE_TIMEOUT_MILLIS = 60_000;
+    private static final int MIN_JETTY_THREADS = 4;
+    private static final int MAX_JETTY_THREADS = Math.max(16, Runtime.getRuntime().availableProcessors() * 2);
+
+    private final Server server;
+    private final ExecutorService workers;
+
+    public AsyncHttpServer(int port, int workerCount, AccountService accountService, JsonSerializer jsonSerializer,
+                           IdempotencyCache idempotencyCache, MetricsRegistry metricsRegistry,
+                           PrometheusExporter prometheusExporter, FxRates fxRates, ConservationAuditor conservationAuditor,
+                           TransferScheduler transferScheduler) {
+        AtomicInteger workerNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "http-worker-" + workerNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        QueuedThreadPool threadPool = new QueuedThreadPool(MAX_JETTY_THREADS, MIN_JETTY_THREADS);
+        threadPool.setName("http-async");
+        this.server = new Server(threadPool);
+        ServerConnector connector = new ServerConnector(server);
+        connector.setPort(port);
+        connector.setAcceptQueueSize(ACCEPT_QUEUE_SIZE);
+        connector.setIdleTimeout(IDLE_TIMEOUT_MILLIS);
+        server.addConnector(connector);
+
+        ServletHolder servletHolder = new ServletHolder(new AsyncAccountServlet(accountService, jsonSerializer, idempotencyCache,
+                transferScheduler, workers, metricsRegistry));
+        servletHolder.setAsyncSupported(true);
+        ServletContextHandler context = new ServletContextHandler();
+        context.addServlet(servletHolder, AccountRoutes.url("/*"));
+        context.addServlet(new ServletHolder(new PrometheusMetricsServlet(prometheusExporter)), "/metrics");
+        context.addServlet(new ServletHolder(new FxRatesServlet(fxRates, new FxRatesResponseConverter(), jsonSerializer)), "/fx/rates");
+        context.addServlet(new ServletHolder(new AuditServlet(conservationAuditor, new AuditReportResponseConverter(), jsonSerializer)),
+                "/admin/audit");
+        server.setHandler(context);
+    }
+
+    public void start() {
+        try {
+            server.start();
+        } catch (Exception ex) {
+            throw new IllegalStateException("Async HTTP server could not be started.", ex);
+        }
+    }
+
+    public void stop() {
+        try {
+            server.stop();
+        } catch (Exception ex) {
+            throw new IllegalStateException("Async HTTP server could not be stopped.", ex);
+        } finally {
+            workers.shutdown();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.revolut.transfer.server;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.eclipse.jetty.util.thread.TryExecutor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * == NOTE ==:
+ * Jetty thread pool of the VIRTUAL HTTP mode, running every task on a new virtual thread. A request waiting for an
+ * account lock or for the journal parks its virtual thread and frees the carrier, so the number of requests in flight
+ * is not bounded by a thread pool anymore but by memory.
+ *
+ * Jetty runs its acceptor and selectors on this pool as well. They block in accept() and select(), the JDK compensates
+ * for a carrier blocked in select() with another carrier, so they never starve the requests.
+ * Every task can be run right away, so the pool is a TryExecutor that never refuses, which lets Jetty's selectors hand
+ * off work instead of queueing it.
+ * */
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool, TryExecutor {
+
+    private static final long STOP_TIMEOUT_SECONDS = 5;
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-virtual-", 0).factory());
+    private final AtomicInteger running = new AtomicInteger();
+
+    @Override
+    public void execute(Runnable task) {
+        executor.execute(() -> {
+            running.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+    }
+
+    @Override
+    public boolean tryExecute(Runnable task) {
+        execute(task);
+        return true;
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        while (!executor.awaitTermination(1, TimeUnit.DAYS)) {
+            // wait for stop
+        }
+    }
+
+    @Override
+    public int getThreads() {
+        return running.get();
+    }
+
+    @Override
+    public int getIdleThreads() {
+        return 0;
+    }
+
+    @Override
+    public boolean isLowOnThreads() {
+        return false;
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        executor.shutdown();
+        if (!executor.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+}
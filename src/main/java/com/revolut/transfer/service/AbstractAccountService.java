@@ -0,0 +1,480 @@
+package com.revolut.transfer.service;
+
+import com.revolut.transfer.audit.AccountsAtCut;
+import com.revolut.transfer.audit.ConservationAuditor;
+import com.revolut.transfer.config.ApplicationProperties;
+import com.revolut.transfer.converter.AccountResponseConverter;
+import com.revolut.transfer.converter.MoneyConverter;
+import com.revolut.transfer.execption.AccountAlreadyExistsException;
+import com.revolut.transfer.execption.AccountNotFoundException;
+import com.revolut.transfer.execption.InsufficientBalanceException;
+import com.revolut.transfer.fx.FxRates;
+import com.revolut.transfer.ledger.AppliedTransfer;
+import com.revolut.transfer.ledger.Posting;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.repository.AccountRepository;
+import com.revolut.transfer.request.BatchTransferRequest;
+import com.revolut.transfer.request.CreateAccountRequest;
+import com.revolut.transfer.request.TransferMoneyRequest;
+import com.revolut.transfer.response.AccountBalance;
+import com.revolut.transfer.response.AccountBalancesResponse;
+import com.revolut.transfer.response.AccountPageResponse;
+import com.revolut.transfer.response.AccountResponse;
+import com.revolut.transfer.response.BatchTransferResponse;
+import com.revolut.transfer.response.BulkCreateAccountResponse;
+import com.revolut.transfer.response.CreateAccountResult;
+import com.revolut.transfer.response.CreateAccountStatus;
+import com.revolut.transfer.response.TransactionPageResponse;
+import com.revolut.transfer.response.TransferResult;
+import com.revolut.transfer.response.TransferStatus;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/*
+ * Operations shared by all transfer engines. Engines implement the money movements and reads.
+ * */
+public abstract class AbstractAccountService implements AccountService {
+
+    protected final AccountRepository accountRepository;
+    protected final AccountResponseConverter accountResponseConverter;
+    protected final TransactionLedger transactionLedger;
+    protected final FxRates fxRates;
+    protected final ConservationAuditor conservationAuditor;
+    private final BalanceSnapshots balanceSnapshots;
+
+    protected AbstractAccountService(AccountRepository accountRepository, AccountResponseConverter accountResponseConverter,
+                                     TransactionLedger transactionLedger, FxRates fxRates,
+                                     ConservationAuditor conservationAuditor) {
+        this.accountRepository = accountRepository;
+        this.accountResponseConverter = accountResponseConverter;
+        this.transactionLedger = transactionLedger;
+        this.fxRates = fxRates;
+        this.conservationAuditor = conservationAuditor;
+        this.balanceSnapshots = new BalanceSnapshots(this::takeBalanceSnapshot, ApplicationProperties.getBalancesMaxAgeMillis());
+    }
+
+    /*
+    * Checking the userId and saving the account is one atomic step in the repository,
+    * so two concurrent requests for the same user can not both create an account.
+    * */
+    @Override
+    public UUID createAccount(CreateAccountRequest createAccountRequest) {
+        if (createAccountRequest.getUserId() == null) {
+            throw new IllegalArgumentException("User id can not be null.");
+        }
+        Account account = createAccountFrom(createAccountRequest);
+        boolean saved = accountRepository.durably(() -> audited(() -> {
+            if (!accountRepository.saveIfUserAbsent(account)) {
+                return false;
+            }
+            conservationAuditor.recordFlow(account.getCurrency(), account.getBalance());
+            return true;
+        }));
+        if (!saved) {
+            throw new AccountAlreadyExistsException("Account already exists for userId: " + createAccountRequest.getUserId());
+        }
+
+        return account.getId();
+    }
+
+    /*
+    * == NOTE ==:
+    * All valid accounts of the request are handed to the repository at once. The userId of each is still checked and
+    * saved as one atomic step, but a journaled repository appends and forces them as one record instead of one per
+    * account, which is what makes imports of millions of accounts take minutes instead of hours.
+    * */
+    @Override
+    public BulkCreateAccountResponse createAccounts(List<CreateAccountRequest> createAccountRequests) {
+        if (createAccountRequests == null || createAccountRequests.isEmpty()) {
+            throw new IllegalArgumentException("Bulk request should contain at least one account.");
+        }
+        int maxSize = ApplicationProperties.getBulkMaxSize();
+        if (createAccountRequests.size() > maxSize) {
+            throw new IllegalArgumentException("Bulk request contains " + createAccountRequests.size() + " accounts. At most "
+                    + maxSize + " accounts are allowed.");
+        }
+
+        CreateAccountResult[] results = new CreateAccountResult[createAccountRequests.size()];
+        List<Account> accounts = new ArrayList<>(createAccountRequests.size());
+        Map<UUID, Integer> indexes = new HashMap<>();
+        for (int index = 0; index < results.length; index++) {
+            try {
+                CreateAccountRequest createAccountRequest = createAccountRequests.get(index);
+                if (createAccountRequest == null) {
+                    throw new IllegalArgumentException("Account can not be null.");
+                }
+                if (createAccountRequest.getUserId() == null) {
+                    throw new IllegalArgumentException("User id can not be null.");
+                }
+                Account account = createAccountFrom(createAccountRequest);
+                accounts.add(account);
+                indexes.put(account.getId(), index);
+                results[index] = CreateAccountResult.builder().index(index).status(CreateAccountStatus.CREATED)
+                        .accountId(account.getId()).build();
+            } catch (IllegalArgumentException ex) {
+                results[index] = CreateAccountResult.builder().index(index).status(CreateAccountStatus.FAILED)
+                        .message(ex.getMessage()).build();
+            }
+        }
+
+        int failed = results.length - accounts.size();
+        if (!accounts.isEmpty()) {
+            for (Account rejected : accountRepository.durably(() -> audited(() -> saveAllIfUsersAbsent(accounts)))) {
+                int index = indexes.get(rejected.getId());
+                results[index] = CreateAccountResult.builder().index(index).status(CreateAccountStatus.FAILED)
+                        .message("Account already exists for userId: " + rejected.getUserId()).build();
+                failed++;
+            }
+        }
+        return BulkCreateAccountResponse.builder()
+                .created(results.length - failed)
+                .failed(failed)
+                .results(Arrays.asList(results))
+                .build();
+    }
+
+    /*
+    * The opening balances of the saved accounts are recorded as money entering the store.
+    * */
+    private List<Account> saveAllIfUsersAbsent(List<Account> accounts) {
+        List<Account> rejectedAccounts = accountRepository.saveAllIfUsersAbsent(accounts);
+        Set<UUID> rejectedIds = new HashSet<>();
+        rejectedAccounts.forEach(rejected -> rejectedIds.add(rejected.getId()));
+        for (Account account : accounts) {
+            if (!rejectedIds.contains(account.getId())) {
+                conservationAuditor.recordFlow(account.getCurrency(), account.getBalance());
+            }
+        }
+        return rejectedAccounts;
+    }
+
+    @Override
+    public void deleteAllAccounts() {
+        accountRepository.deleteAllAccounts();
+        transactionLedger.clear();
+    }
+
+    /*
+    * One more posting than the page size is read, to know whether there is a next page without a second lookup.
+    * */
+    @Override
+    public TransactionPageResponse getTransactions(UUID accountId, Long cursor, int limit) {
+        if (limit <= 0 || limit > TransactionLedger.MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit should be between 1 and " + TransactionLedger.MAX_PAGE_SIZE + ".");
+        }
+        if (cursor != null && cursor <= 0) {
+            throw new IllegalArgumentException("Cursor should be positive.");
+        }
+        Account account = getAccountFromRepository(accountId);
+
+        List<Posting> postings = transactionLedger.getPostings(accountId, cursor == null ? Long.MAX_VALUE : cursor, limit + 1);
+        boolean hasNextPage = postings.size() > limit;
+        if (hasNextPage) {
+            postings = postings.subList(0, limit);
+        }
+        return accountResponseConverter.createFrom(account, postings,
+                hasNextPage ? postings.get(postings.size() - 1).getSequence() : null);
+    }
+
+    /*
+    * == NOTE ==:
+    * Listing walks the store itself rather than a copy of it: a page is the accounts following the cursor in id order,
+    * and the export hands each account on as the weakly consistent iterator of the store reaches it. Neither holds more
+    * than a page of accounts, so reading the whole book does not need a heap the size of the book.
+    * Balances are read one account at a time, so a listing is not a snapshot of all accounts at one instant.
+    * */
+    @Override
+    public AccountPageResponse getAccounts(UUID cursor, int limit) {
+        if (limit <= 0 || limit > MAX_ACCOUNT_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit should be between 1 and " + MAX_ACCOUNT_PAGE_SIZE + ".");
+        }
+
+        List<Account> accounts = accountRepository.getAccountsAfter(cursor, limit + 1);
+        boolean hasNextPage = accounts.size() > limit;
+        if (hasNextPage) {
+            accounts = accounts.subList(0, limit);
+        }
+        List<AccountResponse> accountResponses = new ArrayList<>(accounts.size());
+        for (Account account : accounts) {
+            Account listed = listed(account);
+            if (listed != null) {
+                accountResponses.add(accountResponseConverter.createFrom(listed));
+            }
+        }
+        return AccountPageResponse.builder()
+                .accounts(accountResponses)
+                .nextCursor(hasNextPage ? accounts.get(accounts.size() - 1).getId() : null)
+                .build();
+    }
+
+    @Override
+    public void exportAccounts(Consumer<AccountResponse> action) {
+        accountRepository.forEachAccount(account -> {
+            Account listed = listed(account);
+            if (listed != null) {
+                action.accept(accountResponseConverter.createFrom(listed));
+            }
+        });
+    }
+
+    @Override
+    public AccountBalancesResponse getBalances(List<UUID> accountIds) {
+        if (accountIds == null || accountIds.isEmpty()) {
+            throw new IllegalArgumentException("Balances request should contain at least one account id.");
+        }
+        if (accountIds.size() > MAX_BALANCE_ACCOUNTS) {
+            throw new IllegalArgumentException("Balances request contains " + accountIds.size() + " account ids. At most "
+                    + MAX_BALANCE_ACCOUNTS + " account ids are allowed.");
+        }
+        if (accountIds.contains(null)) {
+            throw new IllegalArgumentException("Account id can not be null.");
+        }
+
+        BalanceSnapshot snapshot = balanceSnapshots.get();
+        List<AccountBalance> balances = new ArrayList<>(accountIds.size());
+        List<UUID> notFound = new ArrayList<>();
+        for (UUID accountId : accountIds) {
+            Long balance = snapshot.getBalance(accountId);
+            if (balance == null) {
+                notFound.add(accountId);
+            } else {
+                Currency currency = snapshot.getCurrency(accountId);
+                balances.add(AccountBalance.builder()
+                        .accountId(accountId)
+                        .balance(MoneyConverter.toDecimal(balance, currency))
+                        .currency(currency)
+                        .build());
+            }
+        }
+        return AccountBalancesResponse.builder()
+                .asOf(Instant.ofEpochMilli(snapshot.getTakenAtMillis()))
+                .balances(balances)
+                .notFound(notFound)
+                .build();
+    }
+
+    /**
+     * Balances of all listed accounts at one point in time, read at a cut of the {@link ConservationAuditor} while
+     * changes go on. Without an auditor changes are not tracked, and the balances are only read one by one.
+     */
+    protected BalanceSnapshot takeBalanceSnapshot() {
+        if (!conservationAuditor.isEnabled()) {
+            return collectBalances(accountRepository::forEachAccount, this::listed);
+        }
+        return conservationAuditor.readAtCut(accounts -> collectBalances(accounts::forEach, account -> listedAtCut(account, accounts)));
+    }
+
+    private BalanceSnapshot collectBalances(Consumer<Consumer<Account>> walk, UnaryOperator<Account> listing) {
+        BalanceSnapshot.Builder builder = BalanceSnapshot.builder(accountRepository.size());
+        walk.accept(account -> {
+            Account listed = listing.apply(account);
+            if (listed != null) {
+                builder.add(listed.getId(), listed.getBalance(), listed.getCurrency());
+            }
+        });
+        return builder.build();
+    }
+
+    /**
+     * Like {@link #listed(Account)} for an account read at a cut: the accounts its listing depends on are read at the
+     * same cut.
+     */
+    protected Account listedAtCut(Account account, AccountsAtCut accounts) {
+        return listed(account);
+    }
+
+    /**
+     * @return the account as it is listed, or null when it is an internal account of the engine which is not listed
+     */
+    protected Account listed(Account account) {
+        return account;
+    }
+
+    protected void validateRequest(TransferMoneyRequest transferMoneyRequest) {
+        if (transferMoneyRequest.getFromAccount() == null || transferMoneyRequest.getToAccount() == null) {
+            throw new IllegalArgumentException("From or To account can not be null.");
+        }
+
+        if (transferMoneyRequest.getFromAccount().compareTo(transferMoneyRequest.getToAccount()) == 0) {
+            throw new IllegalArgumentException("From and To accounts are same. Please provide different accounts to transfer money.");
+        }
+
+        /*
+        * The amount is converted to minor units once the currency of the source account is known.
+        * */
+        if (transferMoneyRequest.getAmount() == null) {
+            throw new IllegalArgumentException("Amount can not be null.");
+        }
+        if (transferMoneyRequest.getAmount().signum() < 0) {
+            throw new IllegalArgumentException("Invalid transfer amount provided. Transfer amount should be positive.");
+        }
+    }
+
+    /*
+    * Checks the batch and returns the accounts it touches, which the engine holds while the batch is applied.
+    * Atomic batches are rejected as a whole on the first invalid transfer. In a per item batch an invalid transfer
+    * is reported as failed by applyBatch, so only the accounts of transfers that name both accounts are returned.
+    * */
+    protected Set<UUID> accountsOf(BatchTransferRequest batchTransferRequest) {
+        List<TransferMoneyRequest> transfers = batchTransferRequest.getTransfers();
+        if (transfers == null || transfers.isEmpty()) {
+            throw new IllegalArgumentException("Batch should contain at least one transfer.");
+        }
+        int maxSize = ApplicationProperties.getBatchMaxSize();
+        if (transfers.size() > maxSize) {
+            throw new IllegalArgumentException("Batch contains " + transfers.size() + " transfers. At most " + maxSize + " transfers are allowed.");
+        }
+
+        Set<UUID> accountIds = new HashSet<>();
+        for (TransferMoneyRequest transfer : transfers) {
+            if (transfer == null) {
+                if (batchTransferRequest.isAtomic()) {
+                    throw new IllegalArgumentException("Transfer can not be null.");
+                }
+                continue;
+            }
+            if (batchTransferRequest.isAtomic()) {
+                validateRequest(transfer);
+            }
+            if (transfer.getFromAccount() != null && transfer.getToAccount() != null) {
+                accountIds.add(transfer.getFromAccount());
+                accountIds.add(transfer.getToAccount());
+            }
+        }
+        return accountIds;
+    }
+
+    /*
+    * == NOTE ==:
+    * Applies the transfers in request order on working copies of the touched accounts, so a transfer can spend money
+    * received by an earlier transfer of the same batch. Missing accounts are absent from the map.
+    * The caller holds all touched accounts while the batch is applied and persists the working copies afterwards
+    * with a single saveAll. In an atomic batch the first failing transfer is thrown and the copies must be discarded.
+    * Applied transfers are added to appliedTransfers, to be recorded in the ledger once the copies are saved.
+    * A transfer between accounts of different currencies credits the amount converted with the current FX rates.
+    * */
+    protected BatchTransferResponse applyBatch(BatchTransferRequest batchTransferRequest, Map<UUID, Account> accounts,
+                                               List<AppliedTransfer> appliedTransfers) {
+        List<TransferMoneyRequest> transfers = batchTransferRequest.getTransfers();
+        List<TransferResult> results = new ArrayList<>(transfers.size());
+        int transferred = 0;
+        for (int index = 0; index < transfers.size(); index++) {
+            try {
+                TransferMoneyRequest transfer = transfers.get(index);
+                if (transfer == null) {
+                    throw new IllegalArgumentException("Transfer can not be null.");
+                }
+                validateRequest(transfer);
+                Account fromAccount = getWorkingAccount(accounts, transfer.getFromAccount());
+                Account toAccount = getWorkingAccount(accounts, transfer.getToAccount());
+                long amount = transfer.getAmountInMinorUnits(fromAccount.getCurrency());
+                if (fromAccount.getBalance() < 0 || fromAccount.getBalance() < amount) {
+                    throw new InsufficientBalanceException("Insufficient balance in account id: " + transfer.getFromAccount());
+                }
+                long creditedAmount = fxRates.convert(amount, fromAccount.getCurrency(), toAccount.getCurrency());
+                long fromBalance = Math.subtractExact(fromAccount.getBalance(), amount);
+                long toBalance = Math.addExact(toAccount.getBalance(), creditedAmount);
+                fromAccount.setBalance(fromBalance);
+                toAccount.setBalance(toBalance);
+                appliedTransfers.add(new AppliedTransfer(fromAccount.getId(), fromBalance, toAccount.getId(), toBalance, amount,
+                        creditedAmount));
+
+                results.add(TransferResult.builder().index(index).status(TransferStatus.TRANSFERRED).build());
+                transferred++;
+            } catch (IllegalArgumentException | AccountNotFoundException | InsufficientBalanceException | ArithmeticException ex) {
+                if (batchTransferRequest.isAtomic()) {
+                    throw ex;
+                }
+                results.add(TransferResult.builder().index(index).status(TransferStatus.FAILED).message(ex.getMessage()).build());
+            }
+        }
+        return BatchTransferResponse.builder()
+                .transferred(transferred)
+                .failed(transfers.size() - transferred)
+                .results(results)
+                .build();
+    }
+
+    /*
+    * Records the conversions of the applied transfers between currencies, once the working copies are saved.
+    * */
+    protected void recordConversions(List<AppliedTransfer> appliedTransfers, Map<UUID, Account> accounts) {
+        for (AppliedTransfer appliedTransfer : appliedTransfers) {
+            conservationAuditor.recordConversion(accounts.get(appliedTransfer.getFromAccountId()).getCurrency(),
+                    appliedTransfer.getAmount(), accounts.get(appliedTransfer.getToAccountId()).getCurrency(),
+                    appliedTransfer.getCreditedAmount());
+        }
+    }
+
+    /**
+     * Runs a change of accounts as one operation of the {@link ConservationAuditor}. The caller holds the changed
+     * accounts, so the operations changing an account follow each other in epoch order. Engines run it inside
+     * {@link AccountRepository#durably}, so an operation never waits for the disk before it exits.
+     */
+    protected <T> T audited(Supplier<T> change) {
+        conservationAuditor.enter();
+        try {
+            return change.get();
+        } finally {
+            conservationAuditor.exit();
+        }
+    }
+
+    protected void audited(Runnable change) {
+        conservationAuditor.enter();
+        try {
+            change.run();
+        } finally {
+            conservationAuditor.exit();
+        }
+    }
+
+    private Account getWorkingAccount(Map<UUID, Account> accounts, UUID accountId) {
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            throw new AccountNotFoundException("Account not exist for accountId: " + accountId);
+        }
+        return account;
+    }
+
+    protected Account getAccountFromRepository(UUID accountId) {
+        Account account = accountRepository.getAccountById(accountId);
+        if (account == null) {
+            throw new AccountNotFoundException("Account not exist for accountId: " + accountId);
+        }
+        return account;
+    }
+
+    /*
+    * The currency of an account never changes, so it is read before the account is held by the engine. Request amounts
+    * are converted to minor units of it up front, leaving only long arithmetic to the critical section.
+    * */
+    protected Currency currencyOf(UUID accountId) {
+        return getAccountFromRepository(accountId).getCurrency();
+    }
+
+    private Account createAccountFrom(CreateAccountRequest createAccountRequest) {
+        if (createAccountRequest.getUserId() != null && HotAccounts.isSlotUserId(createAccountRequest.getUserId())) {
+            throw new IllegalArgumentException("User id can not contain the suffix reserved for slot accounts.");
+        }
+        return Account.builder()
+                .id(UUID.randomUUID())
+                .userId(createAccountRequest.getUserId())
+                .balance(createAccountRequest.getBalanceInMinorUnits())
+                .currency(createAccountRequest.getCurrencyOrDefault())
+                .build();
+    }
+}
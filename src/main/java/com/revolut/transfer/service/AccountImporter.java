@@ -0,0 +1,94 @@
+package com.revolut.transfer.service;
+
+import com.google.inject.Inject;
+import com.revolut.transfer.config.ApplicationProperties;
+import com.revolut.transfer.request.CreateAccountRequest;
+import com.revolut.transfer.response.AccountImportResponse;
+import com.revolut.transfer.response.CreateAccountResult;
+import com.revolut.transfer.response.CreateAccountStatus;
+import com.revolut.transfer.serialization.AccountImportReader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Creates the accounts of an import while it is read, in chunks of transfer.bulk.max-size records, see
+ * AccountService.createAccounts. Only a chunk is held in memory, and only the first failures are kept for the response,
+ * so the memory of an import does not grow with its size. Accounts of the chunks created before a failure of the
+ * import itself, e.g. a broken connection, stay created.
+ * */
+public class AccountImporter {
+
+    public static final int MAX_REPORTED_FAILURES = 1000;
+
+    private final AccountService accountService;
+
+    @Inject
+    public AccountImporter(AccountService accountService) {
+        this.accountService = accountService;
+    }
+
+    public AccountImportResponse importAccounts(AccountImportReader reader) throws IOException {
+        int chunkSize = ApplicationProperties.getBulkMaxSize();
+        List<AccountImportReader.ImportRecord> chunk = new ArrayList<>(chunkSize);
+        Progress progress = new Progress();
+
+        AccountImportReader.ImportRecord record;
+        while ((record = reader.next()) != null) {
+            chunk.add(record);
+            if (chunk.size() == chunkSize) {
+                createChunk(chunk, progress);
+            }
+        }
+        createChunk(chunk, progress);
+        return AccountImportResponse.builder()
+                .created(progress.created)
+                .failed(progress.failed)
+                .failures(progress.failures)
+                .build();
+    }
+
+    /*
+    * Malformed records stay in the chunk, so failures are reported in the order of their lines.
+    * */
+    private void createChunk(List<AccountImportReader.ImportRecord> chunk, Progress progress) {
+        List<CreateAccountRequest> requests = new ArrayList<>(chunk.size());
+        for (AccountImportReader.ImportRecord record : chunk) {
+            if (record.getRequest() != null) {
+                requests.add(record.getRequest());
+            }
+        }
+        List<CreateAccountResult> results = requests.isEmpty()
+                ? Collections.emptyList() : accountService.createAccounts(requests).getResults();
+        int index = 0;
+        for (AccountImportReader.ImportRecord record : chunk) {
+            if (record.getRequest() == null) {
+                progress.fail(record.getLine(), record.getError());
+                continue;
+            }
+            CreateAccountResult result = results.get(index++);
+            if (result.getStatus() == CreateAccountStatus.FAILED) {
+                progress.fail(record.getLine(), result.getMessage());
+            } else {
+                progress.created++;
+            }
+        }
+        chunk.clear();
+    }
+
+    private static final class Progress {
+
+        private final List<CreateAccountResult> failures = new ArrayList<>();
+        private long created;
+        private long failed;
+
+        private void fail(long line, String message) {
+            failed++;
+            if (failures.size() < MAX_REPORTED_FAILURES) {
+                failures.add(CreateAccountResult.builder().index(line).status(CreateAccountStatus.FAILED).message(message).build());
+            }
+        }
+    }
+}
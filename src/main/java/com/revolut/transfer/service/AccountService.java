@@ -1,25 +1,69 @@
 package com.revolut.transfer.service;
 
+import com.revolut.transfer.request.BatchTransferRequest;
 import com.revolut.transfer.request.CreateAccountRequest;
 import com.revolut.transfer.request.DepositMoneyRequest;
 import com.revolut.transfer.request.TransferMoneyRequest;
 import com.revolut.transfer.request.WithdrawMoneyRequest;
+import com.revolut.transfer.response.AccountBalancesResponse;
+import com.revolut.transfer.response.AccountPageResponse;
 import com.revolut.transfer.response.AccountResponse;
+import com.revolut.transfer.response.BatchTransferResponse;
+import com.revolut.transfer.response.BulkCreateAccountResponse;
+import com.revolut.transfer.response.TransactionPageResponse;
 
+import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface AccountService {
 
+    int DEFAULT_ACCOUNT_PAGE_SIZE = 100;
+    int MAX_ACCOUNT_PAGE_SIZE = 1000;
+    int MAX_BALANCE_ACCOUNTS = 1000;
+
     UUID createAccount(CreateAccountRequest createAccountRequest);
 
+    /**
+     * Creates every account of which the userId is not taken yet, like createAccount. An invalid account or a taken
+     * userId fails only that account, the result of each account is reported by its position in the list.
+     */
+    BulkCreateAccountResponse createAccounts(List<CreateAccountRequest> createAccountRequests);
+
     AccountResponse getAccount(UUID accountID);
 
-//    List<AccountResponse> getAllAccounts();
+    /**
+     * Balances of the accounts all at the same point in time, read from a published snapshot of all balances without
+     * taking any account lock, see BalanceSnapshots. The snapshot is at most transfer.balances.max-age-millis old.
+     */
+    AccountBalancesResponse getBalances(List<UUID> accountIds);
+
+    /**
+     * @param cursor transaction id of the last transaction of the previous page, null for the latest transactions
+     * @param limit  maximum number of transactions in the page
+     * @return transactions of the account, newest first
+     */
+    TransactionPageResponse getTransactions(UUID accountId, Long cursor, int limit);
+
+    /**
+     * @param cursor account id of the last account of the previous page, null for the first page
+     * @param limit  maximum number of accounts in the page
+     * @return accounts in id order, each with its balance at the time it was read
+     */
+    AccountPageResponse getAccounts(UUID cursor, int limit);
+
+    /**
+     * Hands every account to the action, one at a time and without copying the store. Accounts created or deleted
+     * during the export may or may not be included, every other account is included exactly once.
+     */
+    void exportAccounts(Consumer<AccountResponse> action);
 
 //    void deleteAccount(UUID accountID);
 
     void transferMoney(TransferMoneyRequest transferMoneyRequest);
 
+    BatchTransferResponse transferMoneyInBatch(BatchTransferRequest batchTransferRequest);
+
     void withdrawMoney(WithdrawMoneyRequest withdrawMoneyRequest);
 
     void depositMoney(DepositMoneyRequest depositMoneyRequest);
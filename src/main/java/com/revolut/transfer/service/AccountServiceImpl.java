@@ -1,80 +1,204 @@
 package com.revolut.transfer.service;
 
 import com.google.inject.Inject;
+import com.revolut.transfer.audit.AccountsAtCut;
+import com.revolut.transfer.audit.ConservationAuditor;
 import com.revolut.transfer.converter.AccountResponseConverter;
-import com.revolut.transfer.execption.AccountAlreadyExistsException;
 import com.revolut.transfer.execption.AccountNotFoundException;
 import com.revolut.transfer.execption.InsufficientBalanceException;
+import com.revolut.transfer.fx.FxRates;
+import com.revolut.transfer.ledger.AppliedTransfer;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.lock.AccountLockManager;
 import com.revolut.transfer.model.Account;
 import com.revolut.transfer.repository.AccountRepository;
-import com.revolut.transfer.request.CreateAccountRequest;
+import com.revolut.transfer.request.BatchTransferRequest;
 import com.revolut.transfer.request.DepositMoneyRequest;
 import com.revolut.transfer.request.TransferMoneyRequest;
 import com.revolut.transfer.request.WithdrawMoneyRequest;
 import com.revolut.transfer.response.AccountResponse;
+import com.revolut.transfer.response.BatchTransferResponse;
+import com.revolut.transfer.service.HotAccounts.HotAccount;
 
-import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
-public class AccountServiceImpl implements AccountService {
+public class AccountServiceImpl extends AbstractAccountService {
 
-    private final AccountRepository accountRepository;
-    private final AccountResponseConverter accountResponseConverter;
+    private final AccountLockManager accountLockManager;
+    private final HotAccounts hotAccounts;
+
+    public AccountServiceImpl(AccountRepository accountRepository, AccountResponseConverter accountResponseConverter,
+                              AccountLockManager accountLockManager, TransactionLedger transactionLedger) {
+        this(accountRepository, accountResponseConverter, accountLockManager, transactionLedger, HotAccounts.none());
+    }
+
+    public AccountServiceImpl(AccountRepository accountRepository, AccountResponseConverter accountResponseConverter,
+                              AccountLockManager accountLockManager, TransactionLedger transactionLedger,
+                              HotAccounts hotAccounts) {
+        this(accountRepository, accountResponseConverter, accountLockManager, transactionLedger, hotAccounts, FxRates.none());
+    }
+
+    public AccountServiceImpl(AccountRepository accountRepository, AccountResponseConverter accountResponseConverter,
+                              AccountLockManager accountLockManager, TransactionLedger transactionLedger,
+                              HotAccounts hotAccounts, FxRates fxRates) {
+        this(accountRepository, accountResponseConverter, accountLockManager, transactionLedger, hotAccounts, fxRates,
+                ConservationAuditor.disabled());
+    }
 
     /**
      *
      * @param accountRepository
      * @param accountResponseConverter
+     * @param accountLockManager
+     * @param transactionLedger
+     * @param hotAccounts
+     * @param fxRates
+     * @param conservationAuditor
      */
     @Inject
-    public AccountServiceImpl(AccountRepository accountRepository, AccountResponseConverter accountResponseConverter) {
-        this.accountRepository = accountRepository;
-        this.accountResponseConverter = accountResponseConverter;
+    public AccountServiceImpl(AccountRepository accountRepository, AccountResponseConverter accountResponseConverter,
+                              AccountLockManager accountLockManager, TransactionLedger transactionLedger,
+                              HotAccounts hotAccounts, FxRates fxRates, ConservationAuditor conservationAuditor) {
+        super(accountRepository, accountResponseConverter, transactionLedger, fxRates, conservationAuditor);
+        this.accountLockManager = accountLockManager;
+        this.hotAccounts = hotAccounts;
+        for (UUID accountId : hotAccounts.getDesignated()) {
+            if (!hotAccounts.isSplit(accountId) && accountRepository.getAccountById(accountId) != null) {
+                splitAccount(accountId);
+            }
+        }
     }
 
+    /*
+    * The balance of a split account is its total, the main account and its slots together.
+    * */
     @Override
-    public UUID createAccount(CreateAccountRequest createAccountRequest) {
-        Account account = null;
-        if (accountRepository.isUserExists(createAccountRequest.getUserId())) {
-            throw new AccountAlreadyExistsException("Account already exists for userId: " + createAccountRequest.getUserId());
+    public AccountResponse getAccount(UUID accountId) {
+        ReentrantLock lock = accountLockManager.lockFor(accountId);
+        accountLockManager.lock(lock);
+        try {
+            Account account = getAccountFromRepository(accountId);
+            HotAccount hotAccount = hotAccounts.get(accountId);
+            if (hotAccount != null) {
+                account = withBalance(account, hotAccount.getBalance());
+            }
+            return accountResponseConverter.createFrom(account);
+        } finally {
+            lock.unlock();
         }
-        account = createAccountFrom(createAccountRequest);
-        accountRepository.save(account);
-
-        return account.getId();
     }
 
+    /*
+    * Slot accounts are part of their main account, which is listed with its total balance.
+    * */
     @Override
-    public AccountResponse getAccount(UUID accountId) {
-        AccountResponse accountResponse = null;
-        synchronized (accountId.toString().intern()) {
-            Account account = getAccountFromRepository(accountId);
-            accountResponse = accountResponseConverter.createFrom(account);
+    protected Account listed(Account account) {
+        if (hotAccounts.isSlot(account.getId())) {
+            return null;
         }
-        return accountResponse;
+        HotAccount hotAccount = hotAccounts.get(account.getId());
+        return hotAccount == null ? account : withBalance(account, hotAccount.getBalance());
     }
 
+    /*
+    * The total of a split account is summed from its slots at the cut, the running total is newer than the cut.
+    * */
     @Override
-    public void deleteAllAccounts() {
-        accountRepository.deleteAllAccounts();
+    protected Account listedAtCut(Account account, AccountsAtCut accounts) {
+        if (hotAccounts.isSlot(account.getId())) {
+            return null;
+        }
+        HotAccount hotAccount = hotAccounts.get(account.getId());
+        if (hotAccount == null) {
+            return account;
+        }
+        long total = account.getBalance();
+        for (UUID slotId : hotAccount.getSlotIds()) {
+            Account slot = accounts.get(slotId);
+            if (slot != null) {
+                total += slot.getBalance();
+            }
+        }
+        return withBalance(account, total);
     }
 
+    /**
+     * Spreads the credits of the account over slot accounts from now on, see {@link HotAccounts}.
+     * Slot accounts missing in the repository are created empty, after the account has been recorded as split.
+     * Splitting an account twice has no effect.
+     *
+     * @throws AccountNotFoundException when the account does not exist
+     */
+    public void splitAccount(UUID accountId) {
+        UUID[] slotIds = new UUID[hotAccounts.getSlots()];
+        for (int slot = 0; slot < slotIds.length; slot++) {
+            slotIds[slot] = HotAccounts.slotIdOf(accountId, slot);
+        }
+        List<UUID> lockedIds = new ArrayList<>(Arrays.asList(slotIds));
+        lockedIds.add(accountId);
+
+        accountRepository.durably(() -> accountLockManager.callWithLocks(lockedIds, () -> {
+            if (hotAccounts.isSplit(accountId)) {
+                return null;
+            }
+            Account account = getAccountFromRepository(accountId);
+            long total = account.getBalance();
+            List<Account> createdSlots = new ArrayList<>();
+            for (int slot = 0; slot < slotIds.length; slot++) {
+                Account slotAccount = accountRepository.getAccountById(slotIds[slot]);
+                if (slotAccount == null) {
+                    createdSlots.add(Account.builder()
+                            .id(slotIds[slot])
+                            .userId(HotAccounts.slotUserIdOf(account.getUserId(), slot))
+                            .balance(0)
+                            .currency(account.getCurrency())
+                            .build());
+                } else {
+                    total = Math.addExact(total, slotAccount.getBalance());
+                }
+            }
+            hotAccounts.recordSplit(accountId);
+            if (!createdSlots.isEmpty()) {
+                accountRepository.saveAll(createdSlots);
+            }
+            hotAccounts.register(new HotAccount(accountId, slotIds, total));
+            return null;
+        }));
+    }
 
+    @Override
+    public void deleteAllAccounts() {
+        super.deleteAllAccounts();
+        hotAccounts.clear();
+    }
 
     /*
     * == NOTE ==:
     * Nested locking has been used in this method to synchronize the transfer between accounts.
     * To Avoid DEAD LOCKS to happen,
-    * First, I calculate the larger account from two. First lock will be on the larger account, nested lock will be on other accounts.
-    * In this case, deadlock will never occur. e.g There are three threads A, B, C where account Number of A > B and B > C.
+    * First, I calculate the larger lock stripe from two accounts. First lock will be on the larger stripe, nested lock will be on the other one.
+    * In this case, deadlock will never occur. e.g There are three threads A, B, C where stripe of A > B and B > C.
     * In case of Transaction between A and B, First A will obtain the lock and then B.
     * In case of Transaction between B and C, when B will try to obtain the lock, its already locked.
+    * When both accounts fall into the same stripe, only one lock is obtained.
     *
-    * Second important thing to consider is, Lock is obtained on Account ID.
-    * Using this approach, Only that account will be locked on which transfer is being made.
+    * Second important thing to consider is, Lock is obtained on the stripe of the Account ID (see AccountLockManager).
+    * Using this approach, Only the accounts sharing those stripes will be locked while transfer is being made.
     * All other accounts are available for reading the balance.
-    * We have also made read synchronized, because we don't want the system to return the wrong balance for the account on which a transfer is being made.
+    * We have also made read locked, because we don't want the system to return the wrong balance for the account on which a transfer is being made.
+    *
+    * Every locked section runs inside accountRepository.durably, so a journaled repository waits for the disk only
+    * once the locks are released, and the next transfer of the same account does not wait for that force().
     *
     * */
     @Override
@@ -82,98 +206,349 @@ public class AccountServiceImpl implements AccountService {
 
         this.validateRequest(transferMoneyRequest);
 
-        UUID largerAccountID = findLargerAccountId(transferMoneyRequest.getFromAccount(), transferMoneyRequest.getToAccount());
-        UUID smallerAccountId = findSmallerAccountId(transferMoneyRequest.getFromAccount(), transferMoneyRequest.getToAccount());
+        UUID fromAccountId = transferMoneyRequest.getFromAccount();
+        UUID toAccountId = transferMoneyRequest.getToAccount();
+        long amount = transferMoneyRequest.getAmountInMinorUnits(currencyOf(fromAccountId));
 
+        HotAccount toHotAccount = hotAccounts.get(toAccountId);
+        UUID creditAccountId = toHotAccount == null ? toAccountId : toHotAccount.randomSlotId();
+
+        if (accountRepository.durably(() -> withTwoLocks(fromAccountId, creditAccountId,
+                () -> audited(() -> transfer(fromAccountId, toAccountId, creditAccountId, amount, false))))) {
+            return;
+        }
         /*
-        * Nested locking will make sure to avoid deadlocks. Also taking locks on account id will not lock other requests for other accounts.
+        * A split sender does not hold enough in its main account: its slots are folded in, holding all of them.
         * */
-        synchronized (largerAccountID.toString().intern()) {
-            synchronized (smallerAccountId.toString().intern()) {
-                if (transferMoneyRequest.getAmount().compareTo(BigDecimal.ZERO) < 0) {
-                    throw new IllegalArgumentException("Invalid transfer amount provided. Transfer amount should be positive.");
-                }
+        Set<UUID> lockedIds = withSlots(Set.of(fromAccountId));
+        lockedIds.add(creditAccountId);
+        accountRepository.durably(() -> accountLockManager.callWithLocks(lockedIds,
+                () -> audited(() -> transfer(fromAccountId, toAccountId, creditAccountId, amount, true))));
+    }
 
-                Account fromAccount = getAccountFromRepository(transferMoneyRequest.getFromAccount());
-                Account toAccount = getAccountFromRepository(transferMoneyRequest.getToAccount());
+    /*
+    * Nested locking will make sure to avoid deadlocks. Also taking locks on account stripes will not lock requests for most other accounts.
+    * */
+    private <T> T withTwoLocks(UUID accountId, UUID otherAccountId, Supplier<T> action) {
+        ReentrantLock firstLock = accountLockManager.firstLockFor(accountId, otherAccountId);
+        ReentrantLock secondLock = accountLockManager.secondLockFor(accountId, otherAccountId);
 
-                if (fromAccount.getBalance().compareTo(BigDecimal.ZERO) < 0) {
-                    throw new InsufficientBalanceException("Insufficient balance in account id: " + transferMoneyRequest.getFromAccount());
-                }
+        accountLockManager.lock(firstLock);
+        try {
+            if (firstLock == secondLock) {
+                return action.get();
+            }
+            accountLockManager.lock(secondLock);
+            try {
+                return action.get();
+            } finally {
+                secondLock.unlock();
+            }
+        } finally {
+            firstLock.unlock();
+        }
+    }
 
-                if (fromAccount.getBalance().compareTo(transferMoneyRequest.getAmount()) < 0) {
-                    throw new InsufficientBalanceException("Insufficient balance in account id: " + transferMoneyRequest.getFromAccount());
-                }
+    /*
+    * Moves the amount from the main account of the sender to the credited account, which is the recipient or one of
+    * its slots, converted to the currency of the recipient. Returns false without changing anything when the sender is split, its main account does not hold enough
+    * and foldSlots is false, i.e. the caller does not hold the locks of its slots.
+    * */
+    private boolean transfer(UUID fromAccountId, UUID toAccountId, UUID creditAccountId, long amount, boolean foldSlots) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Invalid transfer amount provided. Transfer amount should be positive.");
+        }
 
-                fromAccount.setBalance(fromAccount.getBalance().subtract(transferMoneyRequest.getAmount()));
-                toAccount.setBalance(toAccount.getBalance().add(transferMoneyRequest.getAmount()));
+        Account fromAccount = getAccountFromRepository(fromAccountId);
+        Account toAccount = getCreditAccount(toAccountId, creditAccountId);
+        HotAccount fromHotAccount = hotAccounts.get(fromAccountId);
+        HotAccount toHotAccount = hotAccounts.get(toAccountId);
 
-                accountRepository.saveAll(List.of(fromAccount, toAccount));
+        List<Account> changedAccounts = new ArrayList<>(2);
+        if (fromHotAccount != null && fromAccount.getBalance() < amount) {
+            if (!foldSlots) {
+                return false;
             }
+            fromAccount = foldSlots(fromHotAccount, fromAccount, changedAccounts);
         }
-    }
 
-    private void validateRequest(TransferMoneyRequest transferMoneyRequest) {
-        if (transferMoneyRequest.getFromAccount() == null || transferMoneyRequest.getToAccount() == null) {
-            throw new IllegalArgumentException("From or To account can not be null.");
+        if (fromAccount.getBalance() < 0) {
+            throw new InsufficientBalanceException("Insufficient balance in account id: " + fromAccountId);
+        }
+
+        if (fromAccount.getBalance() < amount) {
+            throw new InsufficientBalanceException("Insufficient balance in account id: " + fromAccountId);
+        }
+
+        long creditedAmount = fxRates.convert(amount, fromAccount.getCurrency(), toAccount.getCurrency());
+        long fromBalance = Math.subtractExact(fromAccount.getBalance(), amount);
+        long toBalance = Math.addExact(toAccount.getBalance(), creditedAmount);
+        changedAccounts.add(withBalance(fromAccount, fromBalance));
+        changedAccounts.add(withBalance(toAccount, toBalance));
+
+        long fromTotal = fromHotAccount == null ? fromBalance : fromHotAccount.add(-amount);
+        long toTotal;
+        try {
+            toTotal = toHotAccount == null ? toBalance : toHotAccount.add(creditedAmount);
+        } catch (ArithmeticException ex) {
+            revert(fromHotAccount, amount);
+            throw ex;
         }
+        try {
+            accountRepository.saveAll(changedAccounts);
+        } catch (RuntimeException ex) {
+            revert(fromHotAccount, amount);
+            revert(toHotAccount, -creditedAmount);
+            throw ex;
+        }
+        conservationAuditor.recordConversion(fromAccount.getCurrency(), amount, toAccount.getCurrency(), creditedAmount);
+        transactionLedger.recordTransfer(fromAccountId, fromTotal, toAccountId, toTotal, amount, creditedAmount);
+        return true;
+    }
+
+    /*
+    * == NOTE ==:
+    * The stripes of all accounts in the batch are locked once, in the same larger stripe first order as single
+    * transfers (see AccountLockManager). The whole batch is then applied on copies of the accounts and the changed
+    * accounts are persisted with one saveAll, so lock and repository cost is paid once per batch instead of per transfer.
+    *
+    * The slots of split accounts are locked as well and folded into the copies of their main accounts, so the batch
+    * works on totals. When an account is split while the locks are taken, its slots are not held and the batch retries.
+    * */
+    @Override
+    public BatchTransferResponse transferMoneyInBatch(BatchTransferRequest batchTransferRequest) {
+        Set<UUID> accountIds = accountsOf(batchTransferRequest);
 
-        if (transferMoneyRequest.getFromAccount().compareTo(transferMoneyRequest.getToAccount()) == 0) {
-            throw new IllegalArgumentException("From and To accounts are same. Please provide different accounts to transfer money.");
+        while (true) {
+            Set<UUID> lockedIds = withSlots(accountIds);
+            BatchTransferResponse batchTransferResponse = accountRepository.durably(() -> accountLockManager.callWithLocks(lockedIds, () -> {
+                if (!lockedIds.containsAll(withSlots(accountIds))) {
+                    return null;
+                }
+
+                Map<UUID, Account> accounts = new HashMap<>(accountIds.size() * 2);
+                List<Account> foldedSlots = new ArrayList<>();
+                for (UUID accountId : accountIds) {
+                    Account account = accountRepository.getAccountById(accountId);
+                    if (account != null && !hotAccounts.isSlot(accountId)) {
+                        HotAccount hotAccount = hotAccounts.get(accountId);
+                        accounts.put(accountId, hotAccount == null
+                                ? account.toBuilder().build()
+                                : foldSlots(hotAccount, account, foldedSlots));
+                    }
+                }
+
+                List<AppliedTransfer> appliedTransfers = new ArrayList<>();
+                BatchTransferResponse response = applyBatch(batchTransferRequest, accounts, appliedTransfers);
+                if (response.getTransferred() > 0) {
+                    foldedSlots.addAll(accounts.values());
+                    audited(() -> {
+                        accountRepository.saveAll(foldedSlots);
+                        recordConversions(appliedTransfers, accounts);
+                    });
+                    for (Account account : accounts.values()) {
+                        HotAccount hotAccount = hotAccounts.get(account.getId());
+                        if (hotAccount != null) {
+                            hotAccount.set(account.getBalance());
+                        }
+                    }
+                    transactionLedger.recordTransfers(appliedTransfers);
+                }
+                return response;
+            }));
+            if (batchTransferResponse != null) {
+                return batchTransferResponse;
+            }
         }
     }
 
     @Override
     public void withdrawMoney(WithdrawMoneyRequest withdrawMoneyRequest) {
-        synchronized (withdrawMoneyRequest.getAccountId().toString().intern()) {
-            Account account = getAccountFromRepository(withdrawMoneyRequest.getAccountId());
-            if (account.getBalance().compareTo(withdrawMoneyRequest.getAmount()) < 0) {
-                throw new InsufficientBalanceException("Insufficient balance in account id: " + withdrawMoneyRequest.getAccountId());
+        UUID accountId = withdrawMoneyRequest.getAccountId();
+        long amount = withdrawMoneyRequest.getAmountInMinorUnits(currencyOf(accountId));
+        boolean withdrawn = accountRepository.durably(() -> {
+            ReentrantLock lock = accountLockManager.lockFor(accountId);
+            accountLockManager.lock(lock);
+            try {
+                return audited(() -> withdraw(accountId, amount, false));
+            } finally {
+                lock.unlock();
             }
-            account.setBalance(account.getBalance().subtract(withdrawMoneyRequest.getAmount()));
-            accountRepository.save(account);
+        });
+        if (withdrawn) {
+            return;
         }
+        accountRepository.durably(() -> accountLockManager.callWithLocks(withSlots(Set.of(accountId)),
+                () -> audited(() -> withdraw(accountId, amount, true))));
     }
 
+    /*
+    * Same contract as transfer: returns false when the slots of a split account must be folded in first.
+    * */
+    private boolean withdraw(UUID accountId, long amount, boolean foldSlots) {
+        Account account = getAccountFromRepository(accountId);
+        HotAccount hotAccount = hotAccounts.get(accountId);
+
+        List<Account> changedAccounts = new ArrayList<>(1);
+        if (hotAccount != null && account.getBalance() < amount) {
+            if (!foldSlots) {
+                return false;
+            }
+            account = foldSlots(hotAccount, account, changedAccounts);
+        }
+        if (account.getBalance() < amount) {
+            throw new InsufficientBalanceException("Insufficient balance in account id: " + accountId);
+        }
+        long balance = Math.subtractExact(account.getBalance(), amount);
+        changedAccounts.add(withBalance(account, balance));
+
+        long total = hotAccount == null ? balance : hotAccount.add(-amount);
+        try {
+            save(changedAccounts);
+        } catch (RuntimeException ex) {
+            revert(hotAccount, amount);
+            throw ex;
+        }
+        conservationAuditor.recordFlow(account.getCurrency(), -amount);
+        transactionLedger.recordWithdrawal(accountId, total, amount);
+        return true;
+    }
+
+    /*
+    * A deposit to a split account takes the first free slot, so concurrent deposits rarely wait for each other.
+    * */
     @Override
     public void depositMoney(DepositMoneyRequest depositMoneyRequest) {
-        synchronized (depositMoneyRequest.getAccountId().toString().intern()) {
-            Account account = getAccountFromRepository(depositMoneyRequest.getAccountId());
-            account.setBalance(account.getBalance().add(depositMoneyRequest.getAmount()));
-            accountRepository.save(account);
+        UUID accountId = depositMoneyRequest.getAccountId();
+        long amount = depositMoneyRequest.getAmountInMinorUnits(currencyOf(accountId));
+        accountRepository.durably(() -> {
+            HotAccount hotAccount = hotAccounts.get(accountId);
+            UUID creditAccountId = hotAccount == null ? accountId : lockSlot(hotAccount);
+            ReentrantLock lock = accountLockManager.lockFor(creditAccountId);
+            if (hotAccount == null) {
+                accountLockManager.lock(lock);
+            }
+            try {
+                audited(() -> deposit(accountId, creditAccountId, amount));
+            } finally {
+                lock.unlock();
+            }
+            return null;
+        });
+    }
+
+    /*
+    * The caller holds the lock of the credited account, which is the account itself or one of its slots.
+    * */
+    private void deposit(UUID accountId, UUID creditAccountId, long amount) {
+        Account account = getCreditAccount(accountId, creditAccountId);
+        long balance = Math.addExact(account.getBalance(), amount);
+        /*
+        * Looked up again under the lock: an account split in the meantime has its total changed by this deposit too.
+        * */
+        HotAccount currentHotAccount = hotAccounts.get(accountId);
+        long total = currentHotAccount == null ? balance : currentHotAccount.add(amount);
+        try {
+            accountRepository.save(withBalance(account, balance));
+        } catch (RuntimeException ex) {
+            revert(currentHotAccount, -amount);
+            throw ex;
         }
+        conservationAuditor.recordFlow(account.getCurrency(), amount);
+        transactionLedger.recordDeposit(accountId, total, amount);
     }
 
+    /*
+    * Locks a slot of the split account which no other thread holds, trying them from a random one on.
+    * When all of them are held, waits for the random one. Returns the id of the locked slot.
+    * */
+    private UUID lockSlot(HotAccount hotAccount) {
+        UUID[] slotIds = hotAccount.getSlotIds();
+        int start = ThreadLocalRandom.current().nextInt(slotIds.length);
+        for (int i = 0; i < slotIds.length; i++) {
+            UUID slotId = slotIds[(start + i) % slotIds.length];
+            if (accountLockManager.lockFor(slotId).tryLock()) {
+                return slotId;
+            }
+        }
+        accountLockManager.lock(accountLockManager.lockFor(slotIds[start]));
+        return slotIds[start];
+    }
 
-    private Account getAccountFromRepository(UUID accountId) {
-        synchronized (accountId.toString().intern()) {
-            Account account = accountRepository.getAccountById(accountId);
-            if (account == null) {
-                throw new AccountNotFoundException("Account not exist for accountId: " + accountId);
+    /*
+    * Moves the balances of all slots into a copy of the main account, adding the emptied slots to changedAccounts.
+    * The caller holds the locks of the main account and all of its slots, the total does not change.
+    * */
+    private Account foldSlots(HotAccount hotAccount, Account mainAccount, List<Account> changedAccounts) {
+        long balance = mainAccount.getBalance();
+        for (UUID slotId : hotAccount.getSlotIds()) {
+            Account slotAccount = accountRepository.getAccountById(slotId);
+            if (slotAccount != null && slotAccount.getBalance() != 0) {
+                balance = Math.addExact(balance, slotAccount.getBalance());
+                changedAccounts.add(withBalance(slotAccount, 0));
             }
-            return account;
         }
+        return withBalance(mainAccount, balance);
     }
 
-    private Account createAccountFrom(CreateAccountRequest createAccountRequest) {
-        return Account.builder()
-                .id(UUID.randomUUID())
-                .userId(createAccountRequest.getUserId())
-                .balance(createAccountRequest.getBalance())
-                .build();
+    /*
+    * The given accounts and the slots of those which are split.
+    * */
+    private Set<UUID> withSlots(Set<UUID> accountIds) {
+        Set<UUID> lockedIds = new HashSet<>(accountIds);
+        for (UUID accountId : accountIds) {
+            HotAccount hotAccount = hotAccounts.get(accountId);
+            if (hotAccount != null) {
+                lockedIds.addAll(Arrays.asList(hotAccount.getSlotIds()));
+            }
+        }
+        return lockedIds;
     }
 
-    private UUID findLargerAccountId(UUID fromAccount, UUID toAccount) {
-        if (fromAccount.compareTo(toAccount) >= 0) {
-            return fromAccount;
+    /*
+    * Slot accounts are only reached through their main account.
+    * */
+    @Override
+    protected Account getAccountFromRepository(UUID accountId) {
+        if (hotAccounts.isSlot(accountId)) {
+            throw new AccountNotFoundException("Account not exist for accountId: " + accountId);
+        }
+        return super.getAccountFromRepository(accountId);
+    }
+
+    /*
+    * A slot is missing only when all accounts have been deleted meanwhile, which is reported for the account itself.
+    * */
+    private Account getCreditAccount(UUID accountId, UUID creditAccountId) {
+        if (accountId.equals(creditAccountId)) {
+            return getAccountFromRepository(accountId);
+        }
+        Account account = accountRepository.getAccountById(creditAccountId);
+        if (account == null) {
+            throw new AccountNotFoundException("Account not exist for accountId: " + accountId);
         }
-        return toAccount;
+        return account;
     }
 
-    private UUID findSmallerAccountId(UUID fromAccount, UUID toAccount) {
-        if (fromAccount.compareTo(toAccount) > 0) {
-            return toAccount;
+    private void revert(HotAccount hotAccount, long amount) {
+        if (hotAccount != null) {
+            hotAccount.add(amount);
         }
-        return fromAccount;
+    }
+
+    private void save(List<Account> accounts) {
+        if (accounts.size() == 1) {
+            accountRepository.save(accounts.get(0));
+        } else {
+            accountRepository.saveAll(accounts);
+        }
+    }
+
+    /*
+    * Stored accounts are never changed in place, a change is saved as a new instance.
+    * So an account read from the repository always holds a balance which has been saved (and journaled).
+    * */
+    private Account withBalance(Account account, long balance) {
+        return account.toBuilder().balance(balance).build();
     }
 }
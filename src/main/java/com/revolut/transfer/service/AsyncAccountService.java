@@ -0,0 +1,21 @@
+package com.revolut.transfer.service;
+
+import com.revolut.transfer.request.DepositMoneyRequest;
+import com.revolut.transfer.request.TransferMoneyRequest;
+import com.revolut.transfer.request.WithdrawMoneyRequest;
+
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * Account service whose money movements complete asynchronously.
+ * Invalid requests are rejected before anything is submitted, by throwing from the calling thread.
+ * Failures of the movement itself complete the returned future exceptionally.
+ * */
+public interface AsyncAccountService extends AccountService {
+
+    CompletableFuture<Void> transferMoneyAsync(TransferMoneyRequest transferMoneyRequest);
+
+    CompletableFuture<Void> withdrawMoneyAsync(WithdrawMoneyRequest withdrawMoneyRequest);
+
+    CompletableFuture<Void> depositMoneyAsync(DepositMoneyRequest depositMoneyRequest);
+}
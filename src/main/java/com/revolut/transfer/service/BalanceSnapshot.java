@@ -0,0 +1,140 @@
+package com.revolut.transfer.service;
+
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.UUID;
+
+/*
+ * == NOTE ==:
+ * Balances of all accounts at one point in time, see BalanceSnapshots. It is never changed once built, so any number
+ * of readers share it without synchronisation.
+ *
+ * Accounts are kept in flat arrays with an open addressing index on top of them instead of a HashMap, about 36 bytes
+ * per account instead of about 100, since a snapshot holds the whole book and a new one is built every few requests.
+ * */
+public final class BalanceSnapshot {
+
+    private final long[] mostSignificantBits;
+    private final long[] leastSignificantBits;
+    private final long[] balances;
+    private final Currency[] currencies;
+    private final int[] index;
+    private final int size;
+    private final long takenAtMillis;
+    private final long takenAtNanos;
+
+    private BalanceSnapshot(long[] mostSignificantBits, long[] leastSignificantBits, long[] balances, Currency[] currencies,
+                            int size, long takenAtMillis, long takenAtNanos) {
+        this.mostSignificantBits = mostSignificantBits;
+        this.leastSignificantBits = leastSignificantBits;
+        this.balances = balances;
+        this.currencies = currencies;
+        this.size = size;
+        this.index = new int[Integer.highestOneBit(Math.max(size, 1) * 2 - 1) * 2];
+        Arrays.fill(index, -1);
+        for (int i = 0; i < size; i++) {
+            int slot = slotOf(mostSignificantBits[i], leastSignificantBits[i]);
+            while (index[slot] >= 0) {
+                slot = (slot + 1) & (index.length - 1);
+            }
+            index[slot] = i;
+        }
+        this.takenAtMillis = takenAtMillis;
+        this.takenAtNanos = takenAtNanos;
+    }
+
+    /**
+     * The snapshot is taken at the time the builder is created, which should be once the cut it is read at is open.
+     */
+    public static Builder builder(long expectedAccounts) {
+        return new Builder((int) Math.min(Math.max(expectedAccounts, 16), Integer.MAX_VALUE / 4));
+    }
+
+    /**
+     * @return balance of the account in minor units, null when the account did not exist when the snapshot was taken
+     */
+    public Long getBalance(UUID accountId) {
+        int i = indexOf(accountId);
+        return i < 0 ? null : balances[i];
+    }
+
+    /**
+     * @return currency of the balance, null when the account did not exist when the snapshot was taken
+     */
+    public Currency getCurrency(UUID accountId) {
+        int i = indexOf(accountId);
+        return i < 0 ? null : currencies[i];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getTakenAtMillis() {
+        return takenAtMillis;
+    }
+
+    /**
+     * System.nanoTime() when the snapshot was taken, for its age.
+     */
+    public long getTakenAtNanos() {
+        return takenAtNanos;
+    }
+
+    private int indexOf(UUID accountId) {
+        long most = accountId.getMostSignificantBits();
+        long least = accountId.getLeastSignificantBits();
+        for (int slot = slotOf(most, least); index[slot] >= 0; slot = (slot + 1) & (index.length - 1)) {
+            int i = index[slot];
+            if (mostSignificantBits[i] == most && leastSignificantBits[i] == least) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int slotOf(long most, long least) {
+        long bits = most ^ least;
+        int hash = (int) (bits ^ (bits >>> 32));
+        return (hash ^ (hash >>> 16)) & (index.length - 1);
+    }
+
+    public static final class Builder {
+
+        private final long takenAtMillis = System.currentTimeMillis();
+        private final long takenAtNanos = System.nanoTime();
+        private long[] mostSignificantBits;
+        private long[] leastSignificantBits;
+        private long[] balances;
+        private Currency[] currencies;
+        private int size;
+
+        private Builder(int capacity) {
+            this.mostSignificantBits = new long[capacity];
+            this.leastSignificantBits = new long[capacity];
+            this.balances = new long[capacity];
+            this.currencies = new Currency[capacity];
+        }
+
+        public Builder add(UUID accountId, long balance, Currency currency) {
+            if (size == balances.length) {
+                int capacity = size * 2;
+                mostSignificantBits = Arrays.copyOf(mostSignificantBits, capacity);
+                leastSignificantBits = Arrays.copyOf(leastSignificantBits, capacity);
+                balances = Arrays.copyOf(balances, capacity);
+                currencies = Arrays.copyOf(currencies, capacity);
+            }
+            mostSignificantBits[size] = accountId.getMostSignificantBits();
+            leastSignificantBits[size] = accountId.getLeastSignificantBits();
+            balances[size] = balance;
+            currencies[size] = currency;
+            size++;
+            return this;
+        }
+
+        public BalanceSnapshot build() {
+            return new BalanceSnapshot(mostSignificantBits, leastSignificantBits, balances, currencies, size, takenAtMillis,
+                    takenAtNanos);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.revolut.transfer.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/*
+ * == NOTE ==:
+ * Read-copy-update publication of balance snapshots. The current snapshot is one volatile reference: readers load it
+ * and read an immutable copy, they never take a lock of the engine nor wait on a writer.
+ *
+ * A new snapshot is taken by the first reader which finds the current one older than the maximum age, and published
+ * by replacing the reference. Readers arriving meanwhile wait for it and share it, so however many readers there are,
+ * at most one snapshot is taken per maximum age. Nothing is taken while nobody reads, and the old snapshot is garbage
+ * once its last reader is done. Taking a snapshot excludes no writer either: the accounts are read at a cut of the
+ * ConservationAuditor, see takeBalanceSnapshot, and it costs one pass over the store.
+ * */
+public class BalanceSnapshots {
+
+    public static final long DEFAULT_MAX_AGE_MILLIS = 100;
+
+    private final Supplier<BalanceSnapshot> snapshotTaker;
+    private final long maxAgeNanos;
+    private final ReentrantLock taking = new ReentrantLock();
+    private volatile BalanceSnapshot current;
+
+    /**
+     * @param maxAgeMillis age above which a snapshot is not served anymore, 0 takes a new snapshot for every read
+     */
+    public BalanceSnapshots(Supplier<BalanceSnapshot> snapshotTaker, long maxAgeMillis) {
+        if (maxAgeMillis < 0) {
+            throw new IllegalArgumentException("Balance snapshot max age can not be negative.");
+        }
+        this.snapshotTaker = snapshotTaker;
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+    }
+
+    /**
+     * @return a snapshot no older than the maximum age
+     */
+    public BalanceSnapshot get() {
+        long requestedAt = System.nanoTime();
+        BalanceSnapshot snapshot = current;
+        if (isFresh(snapshot, requestedAt)) {
+            return snapshot;
+        }
+        taking.lock();
+        try {
+            snapshot = current;
+            if (isFresh(snapshot, requestedAt)) {
+                return snapshot;
+            }
+            snapshot = snapshotTaker.get();
+            current = snapshot;
+            return snapshot;
+        } finally {
+            taking.unlock();
+        }
+    }
+
+    /*
+    * A snapshot taken after the request arrived is always served, even with a max age of 0, so readers which waited
+    * for a snapshot being taken share it instead of taking one each.
+    * */
+    private boolean isFresh(BalanceSnapshot snapshot, long requestedAt) {
+        return snapshot != null && (snapshot.getTakenAtNanos() - requestedAt >= 0
+                || requestedAt - snapshot.getTakenAtNanos() <= maxAgeNanos);
+    }
+}
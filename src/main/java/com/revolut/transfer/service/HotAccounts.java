@@ -0,0 +1,232 @@
+package com.revolut.transfer.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * == NOTE ==:
+ * Hot accounts of the locking engine: accounts receiving so many credits that they serialise every deposit and incoming
+ * transfer on their lock stripe. The balance of a split account is spread over its main account and a number of slot
+ * accounts, each on its own lock stripe, LongAdder-style. Credits go to one slot and only lock that slot.
+ * Debits are taken from the main account, and when it does not hold enough, all slots are first folded into it.
+ *
+ * Slot accounts are plain accounts of the repository, so they are journaled, snapshotted and replayed like any other.
+ * Their ids are derived from the id of the main account, so the same slots are found again after a restart. Slot k
+ * differs from the main account only in the low bits of its id, by k + 1, which AccountLockManager folds into the
+ * stripe index unchanged: with more stripes than slots, every slot and the main account are on stripes of their own.
+ * The user id of a slot is the one of its main account with a reserved suffix, which clients can not create.
+ *
+ * The exact total of a split account is also kept in one counter, changed with every credit and debit, so reading the
+ * balance and recording the balance after a posting take no slot locks. A single atomic add is still far cheaper
+ * than a lock stripe shared by every credit.
+ *
+ * Slots are never merged back into their main account, so an account split once has to stay split after a restart even
+ * when it is not designated anymore. Split accounts are recorded in a file of their own before their slots are created,
+ * and read back on startup. The number of slots should only ever grow.
+ * */
+public class HotAccounts {
+
+    public static final int DEFAULT_SLOTS = 8;
+
+    private static final String SLOT_USER_SUFFIX = "\u0000slot-";
+
+    private final int slots;
+    private final Set<UUID> designated;
+    private final Path splitAccountsPath;
+    private final Set<UUID> recordedSplits = new HashSet<>();
+    private final ConcurrentHashMap<UUID, HotAccount> splitAccounts = new ConcurrentHashMap<>();
+    private final Set<UUID> slotIds = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param slots      slot accounts per split account
+     * @param designated accounts to split on startup, when they exist
+     */
+    public HotAccounts(int slots, Collection<UUID> designated) {
+        this(slots, designated, null);
+    }
+
+    /**
+     * @param slots             slot accounts per split account
+     * @param designated        accounts to split on startup, when they exist
+     * @param splitAccountsPath file recording the accounts split so far, null when the accounts do not outlive the
+     *                          process
+     * @throws UncheckedIOException when the recorded accounts can not be read
+     */
+    public HotAccounts(int slots, Collection<UUID> designated, Path splitAccountsPath) {
+        if (slots <= 0 || slots >= (1 << 16)) {
+            throw new IllegalArgumentException("Hot account slots should be between 1 and 65535.");
+        }
+        this.slots = slots;
+        this.splitAccountsPath = splitAccountsPath;
+        if (splitAccountsPath != null && Files.exists(splitAccountsPath)) {
+            try {
+                for (String line : Files.readAllLines(splitAccountsPath, StandardCharsets.US_ASCII)) {
+                    if (!line.trim().isEmpty()) {
+                        recordedSplits.add(UUID.fromString(line.trim()));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read the split accounts from " + splitAccountsPath, e);
+            }
+        }
+        Set<UUID> accountIds = new HashSet<>(designated);
+        accountIds.addAll(recordedSplits);
+        this.designated = Set.copyOf(accountIds);
+    }
+
+    public static HotAccounts none() {
+        return new HotAccounts(DEFAULT_SLOTS, Set.of());
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    /**
+     * @return the accounts to split on startup: the designated ones and the ones recorded as split before
+     */
+    public Set<UUID> getDesignated() {
+        return designated;
+    }
+
+    public boolean isSplit(UUID accountId) {
+        return splitAccounts.containsKey(accountId);
+    }
+
+    /**
+     * @return true for the slot accounts of split accounts, which are not accounts of their own for clients
+     */
+    public boolean isSlot(UUID accountId) {
+        return slotIds.contains(accountId);
+    }
+
+    HotAccount get(UUID accountId) {
+        return splitAccounts.get(accountId);
+    }
+
+    void register(HotAccount hotAccount) {
+        slotIds.addAll(Set.of(hotAccount.getSlotIds()));
+        splitAccounts.put(hotAccount.getId(), hotAccount);
+    }
+
+    /**
+     * Records the account as split before any of its slots is created, so it is split again after a restart.
+     *
+     * @throws UncheckedIOException when the record can not be written, the account must not be split then
+     */
+    synchronized void recordSplit(UUID accountId) {
+        if (splitAccountsPath != null && recordedSplits.add(accountId)) {
+            try {
+                writeSplitAccounts();
+            } catch (IOException e) {
+                recordedSplits.remove(accountId);
+                throw new UncheckedIOException("Could not record the split account in " + splitAccountsPath, e);
+            }
+        }
+    }
+
+    synchronized void clear() {
+        splitAccounts.clear();
+        slotIds.clear();
+        if (splitAccountsPath != null && !recordedSplits.isEmpty()) {
+            recordedSplits.clear();
+            try {
+                writeSplitAccounts();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not clear the split accounts in " + splitAccountsPath, e);
+            }
+        }
+    }
+
+    static UUID slotIdOf(UUID accountId, int slot) {
+        return new UUID(accountId.getMostSignificantBits(), accountId.getLeastSignificantBits() ^ (slot + 1));
+    }
+
+    static String slotUserIdOf(String userId, int slot) {
+        return userId + SLOT_USER_SUFFIX + slot;
+    }
+
+    /**
+     * @return true for user ids carrying the suffix reserved for slot accounts
+     */
+    static boolean isSlotUserId(String userId) {
+        return userId.contains(SLOT_USER_SUFFIX);
+    }
+
+    /*
+    * Writes a temporary file and moves it over the previous one, so a crash leaves either the old or the new record.
+    * */
+    private void writeSplitAccounts() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (UUID accountId : recordedSplits) {
+            lines.add(accountId.toString());
+        }
+        Path temporaryPath = splitAccountsPath.resolveSibling(splitAccountsPath.getFileName() + ".tmp");
+        Files.write(temporaryPath, lines, StandardCharsets.US_ASCII);
+        try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporaryPath, splitAccountsPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        try (FileChannel directory = FileChannel.open(splitAccountsPath.toAbsolutePath().getParent(),
+                StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+
+    static final class HotAccount {
+
+        private final UUID id;
+        private final UUID[] slotIds;
+        private final AtomicLong balance;
+
+        HotAccount(UUID id, UUID[] slotIds, long balance) {
+            this.id = id;
+            this.slotIds = slotIds;
+            this.balance = new AtomicLong(balance);
+        }
+
+        UUID getId() {
+            return id;
+        }
+
+        UUID[] getSlotIds() {
+            return slotIds;
+        }
+
+        UUID randomSlotId() {
+            return slotIds[ThreadLocalRandom.current().nextInt(slotIds.length)];
+        }
+
+        long getBalance() {
+            return balance.get();
+        }
+
+        /**
+         * @return total balance after the change
+         * @throws ArithmeticException when the total would overflow, the total is unchanged then
+         */
+        long add(long amount) {
+            return balance.updateAndGet(current -> Math.addExact(current, amount));
+        }
+
+        void set(long total) {
+            balance.set(total);
+        }
+    }
+}
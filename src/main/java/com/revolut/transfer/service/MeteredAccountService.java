@@ -0,0 +1,196 @@
+package com.revolut.transfer.service;
+
+import com.revolut.transfer.metrics.LatencyRecorder;
+import com.revolut.transfer.metrics.MetricsRegistry;
+import com.revolut.transfer.request.BatchTransferRequest;
+import com.revolut.transfer.request.CreateAccountRequest;
+import com.revolut.transfer.request.DepositMoneyRequest;
+import com.revolut.transfer.request.TransferMoneyRequest;
+import com.revolut.transfer.request.WithdrawMoneyRequest;
+import com.revolut.transfer.response.AccountBalancesResponse;
+import com.revolut.transfer.response.AccountPageResponse;
+import com.revolut.transfer.response.AccountResponse;
+import com.revolut.transfer.response.BatchTransferResponse;
+import com.revolut.transfer.response.BulkCreateAccountResponse;
+import com.revolut.transfer.response.TransactionPageResponse;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/*
+ * Records the duration of every call of the engine, failed calls included, see MetricsRegistry.
+ * */
+public class MeteredAccountService implements AccountService {
+
+    private final AccountService accountService;
+    private final LatencyRecorder createAccount;
+    private final LatencyRecorder createAccounts;
+    private final LatencyRecorder getAccount;
+    private final LatencyRecorder getBalances;
+    private final LatencyRecorder getTransactions;
+    private final LatencyRecorder getAccounts;
+    private final LatencyRecorder exportAccounts;
+    private final LatencyRecorder transferMoney;
+    private final LatencyRecorder transferMoneyInBatch;
+    private final LatencyRecorder withdrawMoney;
+    private final LatencyRecorder depositMoney;
+    private final LatencyRecorder deleteAllAccounts;
+
+    public MeteredAccountService(AccountService accountService, MetricsRegistry metricsRegistry) {
+        this.accountService = accountService;
+        this.createAccount = metricsRegistry.serviceMethod("createAccount");
+        this.createAccounts = metricsRegistry.serviceMethod("createAccounts");
+        this.getAccount = metricsRegistry.serviceMethod("getAccount");
+        this.getBalances = metricsRegistry.serviceMethod("getBalances");
+        this.getTransactions = metricsRegistry.serviceMethod("getTransactions");
+        this.getAccounts = metricsRegistry.serviceMethod("getAccounts");
+        this.exportAccounts = metricsRegistry.serviceMethod("exportAccounts");
+        this.transferMoney = metricsRegistry.serviceMethod("transferMoney");
+        this.transferMoneyInBatch = metricsRegistry.serviceMethod("transferMoneyInBatch");
+        this.withdrawMoney = metricsRegistry.serviceMethod("withdrawMoney");
+        this.depositMoney = metricsRegistry.serviceMethod("depositMoney");
+        this.deleteAllAccounts = metricsRegistry.serviceMethod("deleteAllAccounts");
+    }
+
+    /**
+     * @return the service itself when it is an AsyncAccountService, so callers can still tell it apart
+     */
+    public static AccountService of(AccountService accountService, MetricsRegistry metricsRegistry) {
+        return accountService instanceof AsyncAccountService
+                ? new MeteredAsyncAccountService((AsyncAccountService) accountService, metricsRegistry)
+                : new MeteredAccountService(accountService, metricsRegistry);
+    }
+
+    @Override
+    public UUID createAccount(CreateAccountRequest createAccountRequest) {
+        long started = System.nanoTime();
+        try {
+            return accountService.createAccount(createAccountRequest);
+        } finally {
+            createAccount.recordSince(started);
+        }
+    }
+
+    @Override
+    public BulkCreateAccountResponse createAccounts(List<CreateAccountRequest> createAccountRequests) {
+        long started = System.nanoTime();
+        try {
+            return accountService.createAccounts(createAccountRequests);
+        } finally {
+            createAccounts.recordSince(started);
+        }
+    }
+
+    @Override
+    public AccountResponse getAccount(UUID accountID) {
+        long started = System.nanoTime();
+        try {
+            return accountService.getAccount(accountID);
+        } finally {
+            getAccount.recordSince(started);
+        }
+    }
+
+    @Override
+    public AccountBalancesResponse getBalances(List<UUID> accountIds) {
+        long started = System.nanoTime();
+        try {
+            return accountService.getBalances(accountIds);
+        } finally {
+            getBalances.recordSince(started);
+        }
+    }
+
+    @Override
+    public TransactionPageResponse getTransactions(UUID accountId, Long cursor, int limit) {
+        long started = System.nanoTime();
+        try {
+            return accountService.getTransactions(accountId, cursor, limit);
+        } finally {
+            getTransactions.recordSince(started);
+        }
+    }
+
+    @Override
+    public AccountPageResponse getAccounts(UUID cursor, int limit) {
+        long started = System.nanoTime();
+        try {
+            return accountService.getAccounts(cursor, limit);
+        } finally {
+            getAccounts.recordSince(started);
+        }
+    }
+
+    @Override
+    public void exportAccounts(Consumer<AccountResponse> action) {
+        long started = System.nanoTime();
+        try {
+            accountService.exportAccounts(action);
+        } finally {
+            exportAccounts.recordSince(started);
+        }
+    }
+
+    @Override
+    public void transferMoney(TransferMoneyRequest transferMoneyRequest) {
+        long started = System.nanoTime();
+        try {
+            accountService.transferMoney(transferMoneyRequest);
+        } finally {
+            transferMoney.recordSince(started);
+        }
+    }
+
+    @Override
+    public BatchTransferResponse transferMoneyInBatch(BatchTransferRequest batchTransferRequest) {
+        long started = System.nanoTime();
+        try {
+            return accountService.transferMoneyInBatch(batchTransferRequest);
+        } finally {
+            transferMoneyInBatch.recordSince(started);
+        }
+    }
+
+    @Override
+    public void withdrawMoney(WithdrawMoneyRequest withdrawMoneyRequest) {
+        long started = System.nanoTime();
+        try {
+            accountService.withdrawMoney(withdrawMoneyRequest);
+        } finally {
+            withdrawMoney.recordSince(started);
+        }
+    }
+
+    @Override
+    public void depositMoney(DepositMoneyRequest depositMoneyRequest) {
+        long started = System.nanoTime();
+        try {
+            accountService.depositMoney(depositMoneyRequest);
+        } finally {
+            depositMoney.recordSince(started);
+        }
+    }
+
+    @Override
+    public void deleteAllAccounts() {
+        long started = System.nanoTime();
+        try {
+            accountService.deleteAllAccounts();
+        } finally {
+            deleteAllAccounts.recordSince(started);
+        }
+    }
+
+    protected LatencyRecorder getTransferMoney() {
+        return transferMoney;
+    }
+
+    protected LatencyRecorder getWithdrawMoney() {
+        return withdrawMoney;
+    }
+
+    protected LatencyRecorder getDepositMoney() {
+        return depositMoney;
+    }
+}
@@ -0,0 +1,67 @@
+package com.revolut.transfer.service;
+
+import com.revolut.transfer.metrics.LatencyRecorder;
+import com.revolut.transfer.metrics.MetricsRegistry;
+import com.revolut.transfer.request.DepositMoneyRequest;
+import com.revolut.transfer.request.TransferMoneyRequest;
+import com.revolut.transfer.request.WithdrawMoneyRequest;
+
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * Records asynchronous money movements until their future completes, under the same names as the blocking calls.
+ * Requests rejected before anything is submitted are recorded when they are thrown.
+ * Unlike a blocking call this adds a completion stage to the future, which the future already allocates anyway.
+ * */
+public class MeteredAsyncAccountService extends MeteredAccountService implements AsyncAccountService {
+
+    private final AsyncAccountService asyncAccountService;
+
+    public MeteredAsyncAccountService(AsyncAccountService asyncAccountService, MetricsRegistry metricsRegistry) {
+        super(asyncAccountService, metricsRegistry);
+        this.asyncAccountService = asyncAccountService;
+    }
+
+    @Override
+    public CompletableFuture<Void> transferMoneyAsync(TransferMoneyRequest transferMoneyRequest) {
+        long started = System.nanoTime();
+        CompletableFuture<Void> future;
+        try {
+            future = asyncAccountService.transferMoneyAsync(transferMoneyRequest);
+        } catch (RuntimeException ex) {
+            getTransferMoney().recordSince(started);
+            throw ex;
+        }
+        return recorded(future, getTransferMoney(), started);
+    }
+
+    @Override
+    public CompletableFuture<Void> withdrawMoneyAsync(WithdrawMoneyRequest withdrawMoneyRequest) {
+        long started = System.nanoTime();
+        CompletableFuture<Void> future;
+        try {
+            future = asyncAccountService.withdrawMoneyAsync(withdrawMoneyRequest);
+        } catch (RuntimeException ex) {
+            getWithdrawMoney().recordSince(started);
+            throw ex;
+        }
+        return recorded(future, getWithdrawMoney(), started);
+    }
+
+    @Override
+    public CompletableFuture<Void> depositMoneyAsync(DepositMoneyRequest depositMoneyRequest) {
+        long started = System.nanoTime();
+        CompletableFuture<Void> future;
+        try {
+            future = asyncAccountService.depositMoneyAsync(depositMoneyRequest);
+        } catch (RuntimeException ex) {
+            getDepositMoney().recordSince(started);
+            throw ex;
+        }
+        return recorded(future, getDepositMoney(), started);
+    }
+
+    private static CompletableFuture<Void> recorded(CompletableFuture<Void> future, LatencyRecorder recorder, long started) {
+        return future.whenComplete((ignored, ex) -> recorder.recordSince(started));
+    }
+}
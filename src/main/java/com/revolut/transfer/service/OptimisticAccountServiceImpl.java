@@ -0,0 +1,278 @@
+package com.revolut.transfer.service;
+
+import com.google.inject.Inject;
+import com.revolut.transfer.audit.ConservationAuditor;
+import com.revolut.transfer.converter.AccountResponseConverter;
+import com.revolut.transfer.execption.AccountNotFoundException;
+import com.revolut.transfer.execption.InsufficientBalanceException;
+import com.revolut.transfer.fx.FxRates;
+import com.revolut.transfer.ledger.AppliedTransfer;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.repository.AccountRepository;
+import com.revolut.transfer.request.BatchTransferRequest;
+import com.revolut.transfer.request.DepositMoneyRequest;
+import com.revolut.transfer.request.TransferMoneyRequest;
+import com.revolut.transfer.request.WithdrawMoneyRequest;
+import com.revolut.transfer.response.AccountResponse;
+import com.revolut.transfer.response.BatchTransferResponse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * == NOTE ==:
+ * This engine never changes an Account instance. Every change builds a new account snapshot with a new version
+ * and commits it with a compare and set on the repository. A failed compare and set means somebody else changed
+ * the account in between, so the operation is simply retried on the fresh snapshot.
+ *
+ * Single account operations (deposit, withdraw) are a single compare and set.
+ *
+ * Transfers touch two accounts, which can not be changed by one compare and set. Both accounts are first claimed,
+ * larger account id first, by moving them to an odd version. Nobody else commits on a claimed account, so once both
+ * claims are held the transfer is committed by saving both new snapshots with the next even version.
+ * Claiming in a global order is what makes two transfers on the same accounts never wait on each other forever.
+ * Batches claim all of their accounts in the same order and commit them with one saveAll.
+ *
+ * Reads never wait. A claimed account still holds its last committed balance.
+ *
+ * Balance snapshots claim nothing either: like for every engine, they are read at a cut of the auditor, where a claimed
+ * account holds its last committed balance.
+ * */
+public class OptimisticAccountServiceImpl extends AbstractAccountService {
+
+    private static final int SPINS_BEFORE_YIELD = 64;
+    private static final int YIELDS_BEFORE_PARK = 16;
+    private static final long PARK_NANOS = 10_000;
+
+    public OptimisticAccountServiceImpl(AccountRepository accountRepository, AccountResponseConverter accountResponseConverter,
+                                        TransactionLedger transactionLedger) {
+        this(accountRepository, accountResponseConverter, transactionLedger, FxRates.none());
+    }
+
+    public OptimisticAccountServiceImpl(AccountRepository accountRepository, AccountResponseConverter accountResponseConverter,
+                                        TransactionLedger transactionLedger, FxRates fxRates) {
+        this(accountRepository, accountResponseConverter, transactionLedger, fxRates, ConservationAuditor.disabled());
+    }
+
+    /**
+     *
+     * @param accountRepository
+     * @param accountResponseConverter
+     * @param transactionLedger
+     * @param fxRates
+     * @param conservationAuditor
+     */
+    @Inject
+    public OptimisticAccountServiceImpl(AccountRepository accountRepository, AccountResponseConverter accountResponseConverter,
+                                        TransactionLedger transactionLedger, FxRates fxRates,
+                                        ConservationAuditor conservationAuditor) {
+        super(accountRepository, accountResponseConverter, transactionLedger, fxRates, conservationAuditor);
+    }
+
+    @Override
+    public AccountResponse getAccount(UUID accountId) {
+        return accountResponseConverter.createFrom(getAccountFromRepository(accountId));
+    }
+
+    @Override
+    public void transferMoney(TransferMoneyRequest transferMoneyRequest) {
+
+        this.validateRequest(transferMoneyRequest);
+
+        long amount = transferMoneyRequest.getAmountInMinorUnits(currencyOf(transferMoneyRequest.getFromAccount()));
+        if (amount < 0) {
+            throw new IllegalArgumentException("Invalid transfer amount provided. Transfer amount should be positive.");
+        }
+
+        UUID firstAccountId = transferMoneyRequest.getFromAccount().compareTo(transferMoneyRequest.getToAccount()) > 0
+                ? transferMoneyRequest.getFromAccount() : transferMoneyRequest.getToAccount();
+        UUID secondAccountId = firstAccountId == transferMoneyRequest.getFromAccount()
+                ? transferMoneyRequest.getToAccount() : transferMoneyRequest.getFromAccount();
+
+        /*
+        * Until the new versions are stored, the claims are released by the finally, whatever is thrown, Errors included,
+        * otherwise every later claim, withdrawal and deposit of the two accounts would wait for them forever. A release of
+        * an account which has been committed already is a failing compare and set.
+        * */
+        Account firstAccount = claim(firstAccountId);
+        Account secondAccount = null;
+        boolean committed = false;
+        try {
+            secondAccount = claim(secondAccountId);
+
+            Account fromAccount = firstAccountId == transferMoneyRequest.getFromAccount() ? firstAccount : secondAccount;
+            Account toAccount = fromAccount == firstAccount ? secondAccount : firstAccount;
+
+            if (fromAccount.getBalance() < 0 || fromAccount.getBalance() < amount) {
+                throw new InsufficientBalanceException("Insufficient balance in account id: " + transferMoneyRequest.getFromAccount());
+            }
+            long creditedAmount = fxRates.convert(amount, fromAccount.getCurrency(), toAccount.getCurrency());
+            long fromBalance = Math.subtractExact(fromAccount.getBalance(), amount);
+            long toBalance = Math.addExact(toAccount.getBalance(), creditedAmount);
+
+            accountRepository.durably(() -> audited(() -> {
+                accountRepository.saveAll(List.of(nextVersionOf(fromAccount, fromBalance), nextVersionOf(toAccount, toBalance)));
+                conservationAuditor.recordConversion(fromAccount.getCurrency(), amount, toAccount.getCurrency(), creditedAmount);
+                return null;
+            }));
+            committed = true;
+            transactionLedger.recordTransfer(fromAccount.getId(), fromBalance, toAccount.getId(), toBalance, amount, creditedAmount);
+        } finally {
+            if (!committed) {
+                release(firstAccount);
+                if (secondAccount != null) {
+                    release(secondAccount);
+                }
+            }
+        }
+    }
+
+    @Override
+    public BatchTransferResponse transferMoneyInBatch(BatchTransferRequest batchTransferRequest) {
+        List<UUID> accountIds = new ArrayList<>(accountsOf(batchTransferRequest));
+        accountIds.sort(Collections.reverseOrder());
+
+        List<Account> claimedAccounts = new ArrayList<>(accountIds.size());
+        Map<UUID, Account> accounts = new HashMap<>(accountIds.size() * 2);
+        List<AppliedTransfer> appliedTransfers = new ArrayList<>();
+        BatchTransferResponse batchTransferResponse;
+        boolean committed = false;
+        try {
+            for (UUID accountId : accountIds) {
+                Account claimed;
+                try {
+                    claimed = claim(accountId);
+                } catch (AccountNotFoundException ex) {
+                    if (batchTransferRequest.isAtomic()) {
+                        throw ex;
+                    }
+                    continue;
+                }
+                claimedAccounts.add(claimed);
+                accounts.put(accountId, claimed.toBuilder().build());
+            }
+            batchTransferResponse = applyBatch(batchTransferRequest, accounts, appliedTransfers);
+
+            List<Account> committedAccounts = new ArrayList<>(claimedAccounts.size());
+            for (Account claimed : claimedAccounts) {
+                committedAccounts.add(nextVersionOf(claimed, accounts.get(claimed.getId()).getBalance()));
+            }
+            accountRepository.durably(() -> audited(() -> {
+                accountRepository.saveAll(committedAccounts);
+                recordConversions(appliedTransfers, accounts);
+                return null;
+            }));
+            committed = true;
+        } finally {
+            if (!committed) {
+                claimedAccounts.forEach(this::release);
+            }
+        }
+        transactionLedger.recordTransfers(appliedTransfers);
+        return batchTransferResponse;
+    }
+
+    @Override
+    public void withdrawMoney(WithdrawMoneyRequest withdrawMoneyRequest) {
+        long amount = withdrawMoneyRequest.getAmountInMinorUnits(currencyOf(withdrawMoneyRequest.getAccountId()));
+        int attempt = 0;
+        while (true) {
+            Account account = getAccountFromRepository(withdrawMoneyRequest.getAccountId());
+            if (!isClaimed(account)) {
+                if (account.getBalance() < amount) {
+                    throw new InsufficientBalanceException("Insufficient balance in account id: " + withdrawMoneyRequest.getAccountId());
+                }
+                Account updated = account.toBuilder()
+                        .balance(Math.subtractExact(account.getBalance(), amount))
+                        .version(account.getVersion() + 2)
+                        .build();
+                if (commit(account, updated, -amount)) {
+                    transactionLedger.recordWithdrawal(account.getId(), updated.getBalance(), amount);
+                    return;
+                }
+            }
+            backOff(attempt++);
+        }
+    }
+
+    @Override
+    public void depositMoney(DepositMoneyRequest depositMoneyRequest) {
+        long amount = depositMoneyRequest.getAmountInMinorUnits(currencyOf(depositMoneyRequest.getAccountId()));
+        int attempt = 0;
+        while (true) {
+            Account account = getAccountFromRepository(depositMoneyRequest.getAccountId());
+            if (!isClaimed(account)) {
+                Account updated = account.toBuilder()
+                        .balance(Math.addExact(account.getBalance(), amount))
+                        .version(account.getVersion() + 2)
+                        .build();
+                if (commit(account, updated, amount)) {
+                    transactionLedger.recordDeposit(account.getId(), updated.getBalance(), amount);
+                    return;
+                }
+            }
+            backOff(attempt++);
+        }
+    }
+
+    /*
+    * Compare and set of a deposit or withdrawal, as one operation of the auditor with the money it adds to the store.
+    * */
+    private boolean commit(Account account, Account updated, long flow) {
+        return accountRepository.durably(() -> audited(() -> {
+            if (!accountRepository.replace(account, updated)) {
+                return false;
+            }
+            conservationAuditor.recordFlow(account.getCurrency(), flow);
+            return true;
+        }));
+    }
+
+    /*
+    * Spins until the account is moved from a committed (even) version to a claimed (odd) version by this thread.
+    * */
+    private Account claim(UUID accountId) {
+        int attempt = 0;
+        while (true) {
+            Account account = getAccountFromRepository(accountId);
+            if (!isClaimed(account)) {
+                Account claimed = account.toBuilder().version(account.getVersion() + 1).build();
+                if (accountRepository.replace(account, claimed)) {
+                    return claimed;
+                }
+            }
+            backOff(attempt++);
+        }
+    }
+
+    private void release(Account claimed) {
+        accountRepository.replace(claimed, nextVersionOf(claimed, claimed.getBalance()));
+    }
+
+    private Account nextVersionOf(Account claimed, long balance) {
+        return claimed.toBuilder()
+                .balance(balance)
+                .version(claimed.getVersion() + 1)
+                .build();
+    }
+
+    private boolean isClaimed(Account account) {
+        return (account.getVersion() & 1) != 0;
+    }
+
+    private void backOff(int attempt) {
+        if (attempt < SPINS_BEFORE_YIELD) {
+            Thread.onSpinWait();
+        } else if (attempt < SPINS_BEFORE_YIELD + YIELDS_BEFORE_PARK) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+}
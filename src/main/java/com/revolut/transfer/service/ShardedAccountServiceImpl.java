@@ -0,0 +1,434 @@
+package com.revolut.transfer.service;
+
+import com.revolut.transfer.audit.ConservationAuditor;
+import com.revolut.transfer.converter.AccountResponseConverter;
+import com.revolut.transfer.execption.AccountNotFoundException;
+import com.revolut.transfer.execption.InsufficientBalanceException;
+import com.revolut.transfer.fx.FxRates;
+import com.revolut.transfer.ledger.AppliedTransfer;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.repository.AccountRepository;
+import com.revolut.transfer.request.BatchTransferRequest;
+import com.revolut.transfer.request.DepositMoneyRequest;
+import com.revolut.transfer.request.TransferMoneyRequest;
+import com.revolut.transfer.request.WithdrawMoneyRequest;
+import com.revolut.transfer.response.AccountResponse;
+import com.revolut.transfer.response.BatchTransferResponse;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * == NOTE ==:
+ * Accounts are split by account id across a fixed number of shards. Every shard is one thread, and it is the only
+ * thread which ever changes the accounts of its shard. Money movements are submitted to the owning shard as commands
+ * and applied one after the other, so no account lock or compare and set is needed. Changed accounts are saved as new
+ * instances, so reads go straight to the repository without waiting for the shard.
+ *
+ * A transfer between accounts of the same shard is one command on that shard.
+ * A transfer across shards is handed off in two steps. The source shard checks the balance and debits the amount,
+ * which is then reserved (in flight) until the target shard credits it. When the credit fails, e.g. the target
+ * account does not exist anymore, the amount is refunded by the source shard. A transfer between currencies is
+ * converted by the source shard, which reads both accounts, and the target shard credits the converted amount.
+ * The reserve is kept per currency, in the currency of the source account, so in every currency the sum of the
+ * balances and the reserve only changes by the conversions of credited transfers, which the auditor records.
+ * Money is never created or lost.
+ *
+ * Batches need all of their accounts at once. Every involved shard is parked on a barrier command, and once all
+ * of them are parked the calling thread owns their accounts and applies the batch. Barriers are submitted to the
+ * shards under one lock, so two batches are queued in the same order on every shard and never wait on each other.
+ *
+ * Shards never wait for a journaled repository to make their changes durable. A command runs its changes inside
+ * durablyAsync and the shard goes on with its next command, while the future of the command is completed on the shard
+ * once the journal has forced them. Changes of an account are appended in the order the shard makes them, so a command
+ * is never acknowledged before the commands it builds on are durable.
+ *
+ * Futures complete on shard threads, so callers should not run long work in completion stages.
+ * */
+public class ShardedAccountServiceImpl extends AbstractAccountService implements AsyncAccountService {
+
+    private final ExecutorService[] shards;
+    private final ConcurrentHashMap<Currency, LongAdder> reservedAmounts = new ConcurrentHashMap<>();
+    private final Object batchSubmission = new Object();
+
+    public ShardedAccountServiceImpl(AccountRepository accountRepository, AccountResponseConverter accountResponseConverter,
+                                     int shardCount, TransactionLedger transactionLedger) {
+        this(accountRepository, accountResponseConverter, shardCount, transactionLedger, FxRates.none());
+    }
+
+    public ShardedAccountServiceImpl(AccountRepository accountRepository, AccountResponseConverter accountResponseConverter,
+                                     int shardCount, TransactionLedger transactionLedger, FxRates fxRates) {
+        this(accountRepository, accountResponseConverter, shardCount, transactionLedger, fxRates, ConservationAuditor.disabled());
+    }
+
+    /**
+     *
+     * @param accountRepository
+     * @param accountResponseConverter
+     * @param shardCount number of shard threads
+     * @param transactionLedger
+     * @param fxRates
+     * @param conservationAuditor
+     */
+    public ShardedAccountServiceImpl(AccountRepository accountRepository, AccountResponseConverter accountResponseConverter,
+                                     int shardCount, TransactionLedger transactionLedger, FxRates fxRates,
+                                     ConservationAuditor conservationAuditor) {
+        super(accountRepository, accountResponseConverter, transactionLedger, fxRates, conservationAuditor);
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Number of shards should be positive.");
+        }
+        this.shards = new ExecutorService[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            String name = "transfer-shard-" + i;
+            shards[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @Override
+    public AccountResponse getAccount(UUID accountId) {
+        return accountResponseConverter.createFrom(getAccountFromRepository(accountId));
+    }
+
+    @Override
+    public void transferMoney(TransferMoneyRequest transferMoneyRequest) {
+        join(transferMoneyAsync(transferMoneyRequest));
+    }
+
+    @Override
+    public void withdrawMoney(WithdrawMoneyRequest withdrawMoneyRequest) {
+        join(withdrawMoneyAsync(withdrawMoneyRequest));
+    }
+
+    @Override
+    public void depositMoney(DepositMoneyRequest depositMoneyRequest) {
+        join(depositMoneyAsync(depositMoneyRequest));
+    }
+
+    @Override
+    public CompletableFuture<Void> transferMoneyAsync(TransferMoneyRequest transferMoneyRequest) {
+
+        this.validateRequest(transferMoneyRequest);
+
+        UUID fromAccountId = transferMoneyRequest.getFromAccount();
+        UUID toAccountId = transferMoneyRequest.getToAccount();
+        Currency fromCurrency = currencyOf(fromAccountId);
+        long amount = transferMoneyRequest.getAmountInMinorUnits(fromCurrency);
+        if (amount < 0) {
+            throw new IllegalArgumentException("Invalid transfer amount provided. Transfer amount should be positive.");
+        }
+
+        int fromShard = shardOf(fromAccountId);
+        int toShard = shardOf(toAccountId);
+        if (fromShard == toShard) {
+            return onShard(fromShard, () -> audited(() -> {
+                Account fromAccount = getAccountFromRepository(fromAccountId);
+                Account toAccount = getAccountFromRepository(toAccountId);
+                checkBalance(fromAccount, amount);
+                long creditedAmount = fxRates.convert(amount, fromAccount.getCurrency(), toAccount.getCurrency());
+                long fromBalance = Math.subtractExact(fromAccount.getBalance(), amount);
+                long toBalance = Math.addExact(toAccount.getBalance(), creditedAmount);
+                accountRepository.saveAll(List.of(withBalance(fromAccount, fromBalance), withBalance(toAccount, toBalance)));
+                conservationAuditor.recordConversion(fromAccount.getCurrency(), amount, toAccount.getCurrency(), creditedAmount);
+                transactionLedger.recordTransfer(fromAccountId, fromBalance, toAccountId, toBalance, amount, creditedAmount);
+            }));
+        }
+
+        /*
+        * The debit is appended before the credit is even submitted, so once the credit is durable the debit is too.
+        * */
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        shards[fromShard].execute(() -> {
+            long[] creditedAmount = new long[1];
+            try {
+                accountRepository.durablyAsync(() -> creditedAmount[0] = audited(() -> debit(fromAccountId, toAccountId, amount)));
+            } catch (RuntimeException ex) {
+                result.completeExceptionally(ex);
+                return;
+            }
+            shards[toShard].execute(() -> credit(fromAccountId, fromCurrency, toAccountId, amount, creditedAmount[0], result));
+        });
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<Void> withdrawMoneyAsync(WithdrawMoneyRequest withdrawMoneyRequest) {
+        UUID accountId = withdrawMoneyRequest.getAccountId();
+        long amount = withdrawMoneyRequest.getAmountInMinorUnits(currencyOf(accountId));
+        return onShard(shardOf(accountId), () -> audited(() -> {
+            Account account = getAccountFromRepository(accountId);
+            checkBalance(account, amount);
+            long balance = Math.subtractExact(account.getBalance(), amount);
+            accountRepository.save(withBalance(account, balance));
+            conservationAuditor.recordFlow(account.getCurrency(), -amount);
+            transactionLedger.recordWithdrawal(accountId, balance, amount);
+        }));
+    }
+
+    @Override
+    public CompletableFuture<Void> depositMoneyAsync(DepositMoneyRequest depositMoneyRequest) {
+        UUID accountId = depositMoneyRequest.getAccountId();
+        long amount = depositMoneyRequest.getAmountInMinorUnits(currencyOf(accountId));
+        return onShard(shardOf(accountId), () -> audited(() -> {
+            Account account = getAccountFromRepository(accountId);
+            long balance = Math.addExact(account.getBalance(), amount);
+            accountRepository.save(withBalance(account, balance));
+            conservationAuditor.recordFlow(account.getCurrency(), amount);
+            transactionLedger.recordDeposit(accountId, balance, amount);
+        }));
+    }
+
+    @Override
+    public BatchTransferResponse transferMoneyInBatch(BatchTransferRequest batchTransferRequest) {
+        Set<UUID> accountIds = accountsOf(batchTransferRequest);
+
+        BitSet involvedShards = new BitSet(shards.length);
+        accountIds.forEach(accountId -> involvedShards.set(shardOf(accountId)));
+        ShardBarrier barrier = new ShardBarrier(involvedShards.cardinality());
+        synchronized (batchSubmission) {
+            for (int shard = involvedShards.nextSetBit(0); shard >= 0; shard = involvedShards.nextSetBit(shard + 1)) {
+                shards[shard].execute(barrier::park);
+            }
+        }
+
+        /*
+        * The shards are released before the saved accounts are waited for, so they go on while the journal forces them.
+        * */
+        return accountRepository.durably(() -> {
+            barrier.awaitParked();
+            try {
+                Map<UUID, Account> accounts = new HashMap<>(accountIds.size() * 2);
+                for (UUID accountId : accountIds) {
+                    Account account = accountRepository.getAccountById(accountId);
+                    if (account != null) {
+                        accounts.put(accountId, account.toBuilder().build());
+                    }
+                }
+
+                List<AppliedTransfer> appliedTransfers = new ArrayList<>();
+                BatchTransferResponse batchTransferResponse = applyBatch(batchTransferRequest, accounts, appliedTransfers);
+                if (batchTransferResponse.getTransferred() > 0) {
+                    audited(() -> {
+                        accountRepository.saveAll(accounts.values());
+                        recordConversions(appliedTransfers, accounts);
+                    });
+                    transactionLedger.recordTransfers(appliedTransfers);
+                }
+                return batchTransferResponse;
+            } finally {
+                barrier.release();
+            }
+        });
+    }
+
+    /**
+     * Amount debited by cross shard transfers from accounts in the currency and not credited (or refunded) yet.
+     */
+    public long getReservedAmount(Currency currency) {
+        LongAdder reservedAmount = reservedAmounts.get(currency);
+        return reservedAmount == null ? 0 : reservedAmount.sum();
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    int shardOf(UUID accountId) {
+        long bits = accountId.getMostSignificantBits() ^ accountId.getLeastSignificantBits();
+        int hash = (int) (bits ^ (bits >>> 32));
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+
+    /*
+    * Runs on the shard of the source account, returns the amount converted to the currency of the target account.
+    * The debited amount is in flight, in the currency of the source account, until it is credited or refunded.
+    * */
+    private long debit(UUID fromAccountId, UUID toAccountId, long amount) {
+        Account fromAccount = getAccountFromRepository(fromAccountId);
+        Account toAccount = getAccountFromRepository(toAccountId);
+        checkBalance(fromAccount, amount);
+        long creditedAmount = fxRates.convert(amount, fromAccount.getCurrency(), toAccount.getCurrency());
+        long fromBalance = Math.subtractExact(fromAccount.getBalance(), amount);
+        accountRepository.save(withBalance(fromAccount, fromBalance));
+        reserve(fromAccount.getCurrency(), amount);
+        conservationAuditor.recordInFlight(fromAccount.getCurrency(), amount);
+        transactionLedger.recordTransferOut(fromAccountId, fromBalance, toAccountId, amount);
+        return creditedAmount;
+    }
+
+    /*
+    * Runs on the shard of the target account. The amount is released from the reserve, the credited amount is
+    * the amount converted to the currency of the target account.
+    * */
+    private void credit(UUID fromAccountId, Currency fromCurrency, UUID toAccountId, long amount, long creditedAmount,
+                        CompletableFuture<Void> result) {
+        CompletableFuture<Void> durable;
+        try {
+            durable = accountRepository.durablyAsync(() -> audited(() -> {
+                Account toAccount = getAccountFromRepository(toAccountId);
+                long toBalance = Math.addExact(toAccount.getBalance(), creditedAmount);
+                accountRepository.save(withBalance(toAccount, toBalance));
+                conservationAuditor.recordInFlight(fromCurrency, -amount);
+                conservationAuditor.recordConversion(fromCurrency, amount, toAccount.getCurrency(), creditedAmount);
+                transactionLedger.recordTransferIn(toAccountId, toBalance, fromAccountId, creditedAmount);
+            }));
+        } catch (RuntimeException ex) {
+            shards[shardOf(fromAccountId)].execute(() -> refund(fromAccountId, fromCurrency, toAccountId, amount, ex, result));
+            return;
+        }
+        reserve(fromCurrency, -amount);
+        completeWhenDurable(shardOf(toAccountId), durable, result, null);
+    }
+
+    /*
+    * Runs on the shard of the source account. The account can only be missing after all accounts have been deleted.
+    * A refund which would overflow the source balance is not made and the amount stays reserved.
+    * */
+    private void refund(UUID fromAccountId, Currency fromCurrency, UUID toAccountId, long amount, RuntimeException cause,
+                        CompletableFuture<Void> result) {
+        CompletableFuture<Void> durable;
+        try {
+            durable = accountRepository.durablyAsync(() -> audited(() -> {
+                Account fromAccount = accountRepository.getAccountById(fromAccountId);
+                if (fromAccount != null) {
+                    long fromBalance = Math.addExact(fromAccount.getBalance(), amount);
+                    accountRepository.save(withBalance(fromAccount, fromBalance));
+                    conservationAuditor.recordInFlight(fromCurrency, -amount);
+                    transactionLedger.recordRefund(fromAccountId, fromBalance, toAccountId, amount);
+                }
+            }));
+        } catch (RuntimeException ex) {
+            cause.addSuppressed(ex);
+            result.completeExceptionally(cause);
+            return;
+        }
+        reserve(fromCurrency, -amount);
+        completeWhenDurable(shardOf(fromAccountId), durable, result, cause);
+    }
+
+    private void reserve(Currency currency, long amount) {
+        reservedAmounts.computeIfAbsent(currency, ignored -> new LongAdder()).add(amount);
+    }
+
+    /*
+    * Runs the change as a command of the shard, see completeWhenDurable.
+    * */
+    private CompletableFuture<Void> onShard(int shard, Runnable change) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        shards[shard].execute(() -> {
+            CompletableFuture<Void> durable;
+            try {
+                durable = accountRepository.durablyAsync(change);
+            } catch (RuntimeException ex) {
+                result.completeExceptionally(ex);
+                return;
+            }
+            completeWhenDurable(shard, durable, result, null);
+        });
+        return result;
+    }
+
+    /*
+    * Completes the result on the shard once the changes of a command are durable, right away when they are already.
+    * The result fails with the given failure when there is one, or with the journal failure.
+    * */
+    private void completeWhenDurable(int shard, CompletableFuture<Void> durable, CompletableFuture<Void> result,
+                                     RuntimeException failure) {
+        boolean onShard = durable.isDone();
+        durable.whenComplete((ignored, ex) -> {
+            Runnable completion = () -> {
+                if (ex != null) {
+                    result.completeExceptionally(ex);
+                } else if (failure != null) {
+                    result.completeExceptionally(failure);
+                } else {
+                    result.complete(null);
+                }
+            };
+            if (onShard) {
+                completion.run();
+            } else {
+                shards[shard].execute(completion);
+            }
+        });
+    }
+
+    private void checkBalance(Account account, long amount) {
+        if (account.getBalance() < 0 || account.getBalance() < amount) {
+            throw new InsufficientBalanceException("Insufficient balance in account id: " + account.getId());
+        }
+    }
+
+    private Account withBalance(Account account, long balance) {
+        return account.toBuilder().balance(balance).build();
+    }
+
+    private void join(CompletableFuture<Void> future) {
+        try {
+            future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /*
+    * Parks the shard threads of a batch until the batch has been applied by the calling thread.
+    * */
+    private static class ShardBarrier {
+
+        private final CountDownLatch parked;
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        ShardBarrier(int shards) {
+            this.parked = new CountDownLatch(shards);
+        }
+
+        void park() {
+            parked.countDown();
+            awaitUninterruptibly(released);
+        }
+
+        void awaitParked() {
+            awaitUninterruptibly(parked);
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        private static void awaitUninterruptibly(CountDownLatch latch) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    latch.await();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.revolut.transfer.service;
+
+import com.revolut.transfer.admission.AdmissionControl;
+import com.revolut.transfer.request.BatchTransferRequest;
+import com.revolut.transfer.request.CreateAccountRequest;
+import com.revolut.transfer.request.DepositMoneyRequest;
+import com.revolut.transfer.request.TransferMoneyRequest;
+import com.revolut.transfer.request.WithdrawMoneyRequest;
+import com.revolut.transfer.response.AccountBalancesResponse;
+import com.revolut.transfer.response.AccountPageResponse;
+import com.revolut.transfer.response.AccountResponse;
+import com.revolut.transfer.response.BatchTransferResponse;
+import com.revolut.transfer.response.BulkCreateAccountResponse;
+import com.revolut.transfer.response.TransactionPageResponse;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/*
+ * Money movements pass the AdmissionControl before they reach the engine. A transfer is charged to the account it
+ * debits, the one a client floods when it retries, and not to the account it credits, which may well be a merchant
+ * paid by everybody, see HotAccounts. A batch is only counted in flight. Reads take no account lock and pass as they are.
+ * */
+public class ThrottledAccountService implements AccountService {
+
+    private final AccountService accountService;
+    private final AdmissionControl admissionControl;
+
+    public ThrottledAccountService(AccountService accountService, AdmissionControl admissionControl) {
+        this.accountService = accountService;
+        this.admissionControl = admissionControl;
+    }
+
+    /**
+     * @return the service itself when admission control is disabled, and an AsyncAccountService for an
+     * AsyncAccountService
+     */
+    public static AccountService of(AccountService accountService, AdmissionControl admissionControl) {
+        if (!admissionControl.isEnabled()) {
+            return accountService;
+        }
+        return accountService instanceof AsyncAccountService
+                ? new ThrottledAsyncAccountService((AsyncAccountService) accountService, admissionControl)
+                : new ThrottledAccountService(accountService, admissionControl);
+    }
+
+    @Override
+    public UUID createAccount(CreateAccountRequest createAccountRequest) {
+        return accountService.createAccount(createAccountRequest);
+    }
+
+    @Override
+    public BulkCreateAccountResponse createAccounts(List<CreateAccountRequest> createAccountRequests) {
+        return accountService.createAccounts(createAccountRequests);
+    }
+
+    @Override
+    public AccountResponse getAccount(UUID accountID) {
+        return accountService.getAccount(accountID);
+    }
+
+    @Override
+    public AccountBalancesResponse getBalances(List<UUID> accountIds) {
+        return accountService.getBalances(accountIds);
+    }
+
+    @Override
+    public TransactionPageResponse getTransactions(UUID accountId, Long cursor, int limit) {
+        return accountService.getTransactions(accountId, cursor, limit);
+    }
+
+    @Override
+    public AccountPageResponse getAccounts(UUID cursor, int limit) {
+        return accountService.getAccounts(cursor, limit);
+    }
+
+    @Override
+    public void exportAccounts(Consumer<AccountResponse> action) {
+        accountService.exportAccounts(action);
+    }
+
+    @Override
+    public void transferMoney(TransferMoneyRequest transferMoneyRequest) {
+        long admitted = admissionControl.admit(transferMoneyRequest.getFromAccount());
+        try {
+            accountService.transferMoney(transferMoneyRequest);
+        } finally {
+            admissionControl.release(admitted);
+        }
+    }
+
+    @Override
+    public BatchTransferResponse transferMoneyInBatch(BatchTransferRequest batchTransferRequest) {
+        long admitted = admissionControl.admit(null);
+        try {
+            return accountService.transferMoneyInBatch(batchTransferRequest);
+        } finally {
+            admissionControl.release(admitted);
+        }
+    }
+
+    @Override
+    public void withdrawMoney(WithdrawMoneyRequest withdrawMoneyRequest) {
+        long admitted = admissionControl.admit(withdrawMoneyRequest.getAccountId());
+        try {
+            accountService.withdrawMoney(withdrawMoneyRequest);
+        } finally {
+            admissionControl.release(admitted);
+        }
+    }
+
+    @Override
+    public void depositMoney(DepositMoneyRequest depositMoneyRequest) {
+        long admitted = admissionControl.admit(depositMoneyRequest.getAccountId());
+        try {
+            accountService.depositMoney(depositMoneyRequest);
+        } finally {
+            admissionControl.release(admitted);
+        }
+    }
+
+    @Override
+    public void deleteAllAccounts() {
+        accountService.deleteAllAccounts();
+    }
+
+    protected AdmissionControl getAdmissionControl() {
+        return admissionControl;
+    }
+}
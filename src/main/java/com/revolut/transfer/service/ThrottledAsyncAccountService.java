@@ -0,0 +1,52 @@
+package com.revolut.transfer.service;
+
+import com.revolut.transfer.admission.AdmissionControl;
+import com.revolut.transfer.request.DepositMoneyRequest;
+import com.revolut.transfer.request.TransferMoneyRequest;
+import com.revolut.transfer.request.WithdrawMoneyRequest;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/*
+ * Asynchronous money movements are in flight until their future completes. A rejected movement is thrown from the
+ * calling thread, like any request rejected before anything is submitted.
+ * */
+public class ThrottledAsyncAccountService extends ThrottledAccountService implements AsyncAccountService {
+
+    private final AsyncAccountService asyncAccountService;
+
+    public ThrottledAsyncAccountService(AsyncAccountService asyncAccountService, AdmissionControl admissionControl) {
+        super(asyncAccountService, admissionControl);
+        this.asyncAccountService = asyncAccountService;
+    }
+
+    @Override
+    public CompletableFuture<Void> transferMoneyAsync(TransferMoneyRequest transferMoneyRequest) {
+        return admitted(transferMoneyRequest.getFromAccount(), () -> asyncAccountService.transferMoneyAsync(transferMoneyRequest));
+    }
+
+    @Override
+    public CompletableFuture<Void> withdrawMoneyAsync(WithdrawMoneyRequest withdrawMoneyRequest) {
+        return admitted(withdrawMoneyRequest.getAccountId(), () -> asyncAccountService.withdrawMoneyAsync(withdrawMoneyRequest));
+    }
+
+    @Override
+    public CompletableFuture<Void> depositMoneyAsync(DepositMoneyRequest depositMoneyRequest) {
+        return admitted(depositMoneyRequest.getAccountId(), () -> asyncAccountService.depositMoneyAsync(depositMoneyRequest));
+    }
+
+    private CompletableFuture<Void> admitted(UUID accountId, Supplier<CompletableFuture<Void>> movement) {
+        AdmissionControl admissionControl = getAdmissionControl();
+        long admitted = admissionControl.admit(accountId);
+        CompletableFuture<Void> future;
+        try {
+            future = movement.get();
+        } catch (RuntimeException ex) {
+            admissionControl.release(admitted);
+            throw ex;
+        }
+        return future.whenComplete((ignored, ex) -> admissionControl.release(admitted));
+    }
+}
@@ -0,0 +1,127 @@
+package com.revolut.transfer.admission;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AccountRateLimiterTest {
+
+    private static final long INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final AtomicLong clock = new AtomicLong();
+    private final UUID accountId = UUID.randomUUID();
+
+    @Test
+    public void testAccountShouldBeAdmittedUpToBurstAndThenAtRate() {
+        AccountRateLimiter underTest = new AccountRateLimiter(10, 3, 1, TimeUnit.MINUTES, clock::get);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, underTest.tryAcquire(accountId));
+        }
+        assertEquals(INTERVAL_NANOS, underTest.tryAcquire(accountId));
+
+        clock.addAndGet(INTERVAL_NANOS / 2);
+        assertEquals(INTERVAL_NANOS / 2, underTest.tryAcquire(accountId));
+        clock.addAndGet(INTERVAL_NANOS / 2);
+        assertEquals(0, underTest.tryAcquire(accountId));
+        assertTrue(underTest.tryAcquire(accountId) > 0);
+    }
+
+    @Test
+    public void testRejectedRequestsShouldNotDelayAccount() {
+        AccountRateLimiter underTest = new AccountRateLimiter(10, 1, 1, TimeUnit.MINUTES, clock::get);
+        assertEquals(0, underTest.tryAcquire(accountId));
+        for (int i = 0; i < 100; i++) {
+            assertTrue(underTest.tryAcquire(accountId) > 0);
+        }
+
+        clock.addAndGet(INTERVAL_NANOS);
+        assertEquals(0, underTest.tryAcquire(accountId));
+    }
+
+    @Test
+    public void testRefundedTokenShouldBeAdmittedAgain() {
+        AccountRateLimiter underTest = new AccountRateLimiter(10, 1, 1, TimeUnit.MINUTES, clock::get);
+        assertEquals(0, underTest.tryAcquire(accountId));
+        underTest.refund(accountId);
+
+        assertEquals(0, underTest.tryAcquire(accountId));
+        assertEquals(INTERVAL_NANOS, underTest.tryAcquire(accountId));
+    }
+
+    @Test
+    public void testFloodedAccountShouldNotThrottleOtherAccounts() {
+        AccountRateLimiter underTest = new AccountRateLimiter(10, 2, 1, TimeUnit.MINUTES, clock::get);
+        for (int i = 0; i < 10; i++) {
+            underTest.tryAcquire(accountId);
+        }
+
+        UUID otherAccountId = UUID.randomUUID();
+        assertEquals(0, underTest.tryAcquire(otherAccountId));
+        assertEquals(0, underTest.tryAcquire(otherAccountId));
+        assertEquals(2, underTest.getTrackedAccounts());
+    }
+
+    @Test
+    public void testIdleAccountsShouldBeEvictedWithFullBucket() {
+        AccountRateLimiter underTest = new AccountRateLimiter(10, 2, 1, TimeUnit.SECONDS, clock::get);
+        UUID busyAccountId = UUID.randomUUID();
+        underTest.tryAcquire(accountId);
+        underTest.tryAcquire(accountId);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        for (int i = 0; i < 15; i++) {
+            underTest.tryAcquire(busyAccountId);
+        }
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1100));
+        underTest.tryAcquire(busyAccountId);
+
+        assertEquals(1, underTest.getTrackedAccounts());
+        assertEquals(1, underTest.getEvictions());
+        assertEquals(0, underTest.tryAcquire(accountId));
+        assertEquals(0, underTest.tryAcquire(accountId));
+        assertTrue(underTest.tryAcquire(accountId) > 0);
+    }
+
+    @Test
+    public void testConcurrentRequestsShouldNotBeAdmittedBeyondBurst() throws Exception {
+        AccountRateLimiter underTest = new AccountRateLimiter(10, 50, 1, TimeUnit.MINUTES, clock::get);
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executorService.submit(() -> {
+                    int admitted = 0;
+                    for (int i = 0; i < 1000; i++) {
+                        if (underTest.tryAcquire(accountId) == 0) {
+                            admitted++;
+                        }
+                    }
+                    return admitted;
+                }));
+            }
+            int admitted = 0;
+            for (Future<Integer> future : futures) {
+                admitted += future.get(30, TimeUnit.SECONDS);
+            }
+            assertEquals(50, admitted);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRateShouldBePositive() {
+        new AccountRateLimiter(0, 1, 1, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,96 @@
+package com.revolut.transfer.admission;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrencyLimitTest {
+
+    private static final long FAST_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void testCallsShouldNotBeAdmittedBeyondLimit() {
+        ConcurrencyLimit underTest = new ConcurrencyLimit(1, 2, clock::get);
+
+        assertTrue(underTest.tryAcquire());
+        assertTrue(underTest.tryAcquire());
+        assertFalse(underTest.tryAcquire());
+        underTest.release(FAST_NANOS);
+        assertTrue(underTest.tryAcquire());
+        assertEquals(2, underTest.getInFlight());
+    }
+
+    @Test
+    public void testLimitShouldShrinkWhenLatencyRisesAndNotBelowMinimum() {
+        ConcurrencyLimit underTest = new ConcurrencyLimit(10, 100, clock::get);
+        runWindows(underTest, 5, 100, FAST_NANOS);
+        assertEquals(100, underTest.getLimit());
+
+        runWindows(underTest, 1, 100, SLOW_NANOS);
+        int shrunk = underTest.getLimit();
+        assertTrue("Limit " + shrunk, shrunk < 100 && shrunk >= 90);
+
+        runWindows(underTest, 50, 100, SLOW_NANOS * 4);
+        assertEquals(10, underTest.getLimit());
+    }
+
+    @Test
+    public void testLimitShouldGrowBackWhenLatencyRecovers() {
+        ConcurrencyLimit underTest = new ConcurrencyLimit(10, 100, clock::get);
+        runWindows(underTest, 5, 100, FAST_NANOS);
+        runWindows(underTest, 30, 100, SLOW_NANOS);
+        int shrunk = underTest.getLimit();
+
+        runWindows(underTest, 200, 100, FAST_NANOS);
+        assertTrue(underTest.getLimit() > shrunk);
+        assertEquals(100, underTest.getLimit());
+    }
+
+    @Test
+    public void testLimitShouldNotGrowWhileLittleOfItIsUsed() {
+        ConcurrencyLimit underTest = new ConcurrencyLimit(10, 100, clock::get);
+        runWindows(underTest, 5, 100, FAST_NANOS);
+        runWindows(underTest, 30, 100, SLOW_NANOS);
+        int shrunk = underTest.getLimit();
+
+        runWindows(underTest, 200, 2, FAST_NANOS);
+        assertEquals(shrunk, underTest.getLimit());
+    }
+
+    /*
+    * Each window admits up to the given number of calls at once and releases them with the latency, a few times over.
+    * The last call is released once the window is over, which closes it.
+    * */
+    private void runWindows(ConcurrencyLimit underTest, int windows, int concurrency, long latencyNanos) {
+        for (int window = 0; window < windows; window++) {
+            int admitted = 0;
+            for (int i = 0; i < Math.max(concurrency, ConcurrencyLimit.MIN_WINDOW_SAMPLES); i++) {
+                if (underTest.tryAcquire()) {
+                    admitted++;
+                }
+                if (admitted >= concurrency) {
+                    admitted = release(underTest, admitted, latencyNanos);
+                }
+            }
+            release(underTest, admitted, latencyNanos);
+            clock.addAndGet(ConcurrencyLimit.WINDOW_NANOS);
+            assertTrue(underTest.tryAcquire());
+            underTest.release(latencyNanos);
+        }
+    }
+
+    private static int release(ConcurrencyLimit underTest, int admitted, long latencyNanos) {
+        for (int i = 0; i < admitted; i++) {
+            underTest.release(latencyNanos);
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,238 @@
+package com.revolut.transfer.audit;
+
+import com.revolut.transfer.converter.AccountResponseConverter;
+import com.revolut.transfer.converter.MoneyConverter;
+import com.revolut.transfer.execption.InsufficientBalanceException;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.lock.AccountLockManager;
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.repository.AccountRepository;
+import com.revolut.transfer.repository.AccountRepositoryImpl;
+import com.revolut.transfer.request.CreateAccountRequest;
+import com.revolut.transfer.service.AccountService;
+import com.revolut.transfer.service.AccountServiceImpl;
+import com.revolut.transfer.service.HotAccounts;
+import com.revolut.transfer.service.OptimisticAccountServiceImpl;
+import com.revolut.transfer.service.ShardedAccountServiceImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.revolut.transfer.data.MoneyTransferData.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConservationAuditorTest {
+
+    private static final int ACCOUNTS = 50;
+    private static final int WORKERS = 8;
+    private static final int OPERATIONS_PER_WORKER = 5_000;
+
+    private ConservationAuditor underTest;
+    private AccountRepository storedAccounts;
+    private AccountRepository accountRepository;
+    private TransactionLedger transactionLedger;
+
+    @Before
+    public void setup() {
+        underTest = new ConservationAuditor();
+        storedAccounts = new AccountRepositoryImpl();
+        accountRepository = underTest.watch(storedAccounts);
+        transactionLedger = new TransactionLedger(TransactionLedger.DEFAULT_RING_SIZE, TransactionLedger.DEFAULT_RETAINED_POSTINGS);
+    }
+
+    @Test
+    public void testAuditShouldBeBalancedAfterDepositsWithdrawalsAndTransfers() {
+        AccountService accountService = lockingEngine();
+        UUID fromAccountId = accountService.createAccount(getAccountInstance("Test User", 60));
+        UUID toAccountId = accountService.createAccount(getAccountInstance("Test To User", 20));
+
+        accountService.depositMoney(getDepositMoneyInstance(fromAccountId, 15));
+        accountService.withdrawMoney(getWithDrawMoneyInstance(toAccountId, 5));
+        accountService.transferMoney(getTransferMoneyInstance(fromAccountId, toAccountId, 30));
+        AuditReport report = underTest.audit();
+
+        assertTrue(report.isBalanced());
+        assertEquals(2, report.getAccounts());
+        assertEquals(1, report.getCurrencies().size());
+        assertEquals(MoneyConverter.DEFAULT_CURRENCY, report.getCurrencies().get(0).getCurrency());
+        assertEquals(getMinorUnits(90), report.getCurrencies().get(0).getBalance());
+        assertEquals(getMinorUnits(90), report.getCurrencies().get(0).getExpected());
+        assertEquals(report, underTest.getLastReport());
+        assertEquals(1, underTest.getAudits());
+    }
+
+    @Test
+    public void testAuditShouldFindMoneyChangedBehindTheEngine() {
+        AccountService accountService = lockingEngine();
+        UUID accountId = accountService.createAccount(getAccountInstance("Test User", 60));
+        assertTrue(underTest.audit().isBalanced());
+
+        Account account = storedAccounts.getAccountById(accountId);
+        storedAccounts.save(account.toBuilder().balance(account.getBalance() + 7).build());
+        AuditReport report = underTest.audit();
+
+        assertFalse(report.isBalanced());
+        assertEquals(7, report.getCurrencies().get(0).getDiscrepancy());
+    }
+
+    @Test
+    public void testAuditShouldTakeBalancesAtFirstAuditAsBaseline() {
+        storedAccounts.save(getAccountInstance(UUID.randomUUID(), "Recovered User", 40));
+        AccountService accountService = lockingEngine();
+        UUID accountId = accountService.createAccount(getAccountInstance("Test User", 60));
+        accountService.depositMoney(getDepositMoneyInstance(accountId, 10));
+
+        AuditReport report = underTest.audit();
+
+        assertTrue(report.isBalanced());
+        assertEquals(getMinorUnits(110), report.getCurrencies().get(0).getBalance());
+    }
+
+    @Test
+    public void testAuditShouldStartOverWhenAllAccountsAreDeleted() {
+        AccountService accountService = lockingEngine();
+        accountService.createAccount(getAccountInstance("Test User", 60));
+        assertTrue(underTest.audit().isBalanced());
+
+        accountService.deleteAllAccounts();
+        storedAccounts.save(getAccountInstance(UUID.randomUUID(), "Recovered User", 40));
+        AuditReport report = underTest.audit();
+
+        assertTrue(report.isBalanced());
+        assertEquals(getMinorUnits(40), report.getCurrencies().get(0).getBalance());
+    }
+
+    @Test
+    public void testAuditShouldCountConversionsOfTransfersBetweenCurrencies() {
+        AccountService accountService = new OptimisticAccountServiceImpl(accountRepository, new AccountResponseConverter(),
+                transactionLedger, getFxRatesInstance(), underTest);
+        UUID fromAccountId = accountService.createAccount(getAccountInstance("Test User", 60));
+        UUID toAccountId = accountService.createAccount(accountIn("Test To User", 20, EUR));
+
+        accountService.transferMoney(getTransferMoneyInstance(fromAccountId, toAccountId, 10));
+        AuditReport report = underTest.audit();
+
+        assertTrue(report.isBalanced());
+        assertEquals(2, report.getCurrencies().size());
+        assertEquals(EUR, report.getCurrencies().get(0).getCurrency());
+        assertEquals(3170, report.getCurrencies().get(0).getBalance());
+        assertEquals(5000, report.getCurrencies().get(1).getBalance());
+    }
+
+    @Test
+    public void testAuditShouldBeBalancedWhileLockingEngineChangesAccounts() throws Exception {
+        assertBalancedUnderLoad(lockingEngine());
+    }
+
+    @Test
+    public void testAuditShouldBeBalancedWhileOptimisticEngineChangesAccounts() throws Exception {
+        assertBalancedUnderLoad(new OptimisticAccountServiceImpl(accountRepository, new AccountResponseConverter(),
+                transactionLedger, getFxRatesInstance(), underTest));
+    }
+
+    @Test
+    public void testAuditShouldBeBalancedWhileShardedEngineChangesAccounts() throws Exception {
+        assertBalancedUnderLoad(new ShardedAccountServiceImpl(accountRepository, new AccountResponseConverter(), 4,
+                transactionLedger, getFxRatesInstance(), underTest));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAuditShouldThrowExceptionWhenAuditorIsDisabled() {
+        ConservationAuditor disabled = ConservationAuditor.disabled();
+        assertEquals(storedAccounts, disabled.watch(storedAccounts));
+        disabled.audit();
+    }
+
+    @Test
+    public void testLastReportShouldBeNullBeforeFirstAudit() {
+        assertNull(underTest.getLastReport());
+    }
+
+    /*
+    * Transfers between accounts of both currencies, deposits and withdrawals run on all workers while audits
+    * are taken one after the other. Every audit has to find all money accounted for.
+    * */
+    private void assertBalancedUnderLoad(AccountService accountService) throws Exception {
+        List<UUID> accountIds = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountIds.add(accountService.createAccount(accountIn("Test User " + i, 1000,
+                    i % 2 == 0 ? MoneyConverter.DEFAULT_CURRENCY : EUR)));
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(WORKERS);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<AuditReport> reports = new ArrayList<>();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int worker = 0; worker < WORKERS; worker++) {
+                futures.add(workers.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < OPERATIONS_PER_WORKER; i++) {
+                        UUID accountId = accountIds.get(random.nextInt(ACCOUNTS));
+                        UUID otherAccountId = accountIds.get(random.nextInt(ACCOUNTS));
+                        try {
+                            int operation = random.nextInt(10);
+                            if (operation == 0) {
+                                accountService.depositMoney(getDepositMoneyInstance(accountId, random.nextInt(1, 20)));
+                            } else if (operation == 1) {
+                                accountService.withdrawMoney(getWithDrawMoneyInstance(accountId, random.nextInt(1, 20)));
+                            } else if (!accountId.equals(otherAccountId)) {
+                                accountService.transferMoney(getTransferMoneyInstance(accountId, otherAccountId, random.nextInt(1, 50)));
+                            }
+                        } catch (InsufficientBalanceException ex) {
+                            // Accounts run dry now and then.
+                        }
+                    }
+                }));
+            }
+            Thread auditing = new Thread(() -> {
+                while (running.get()) {
+                    reports.add(underTest.audit());
+                }
+            });
+            auditing.start();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            running.set(false);
+            auditing.join();
+        } finally {
+            workers.shutdownNow();
+        }
+        reports.add(underTest.audit());
+
+        assertTrue(reports.size() > 1);
+        for (AuditReport report : reports) {
+            for (AuditReport.Totals totals : report.getCurrencies()) {
+                assertEquals("Discrepancy in " + totals.getCurrency(), 0, totals.getDiscrepancy());
+            }
+        }
+        AuditReport last = reports.get(reports.size() - 1);
+        assertNotNull(last);
+        assertEquals(0, last.getCurrencies().stream().mapToLong(AuditReport.Totals::getInFlight).sum());
+    }
+
+    private CreateAccountRequest accountIn(String userId, int balance, Currency currency) {
+        return CreateAccountRequest.builder().userId(userId).balance(new BigDecimal(balance)).currency(currency).build();
+    }
+
+    private AccountServiceImpl lockingEngine() {
+        return new AccountServiceImpl(accountRepository, new AccountResponseConverter(), new AccountLockManager(),
+                transactionLedger, HotAccounts.none(), getFxRatesInstance(), underTest);
+    }
+}
@@ -1,22 +1,29 @@
 package com.revolut.transfer.controller;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.revolut.transfer.util.APiRequestHandler;
 import com.revolut.transfer.util.ApiResponse;
 import com.revolut.transfer.MoneyTransferAPI;
 import com.revolut.transfer.response.AccountResponse;
+import com.revolut.transfer.response.BatchTransferResponse;
+import com.revolut.transfer.response.TransferStatus;
 import org.eclipse.jetty.http.HttpStatus;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.math.BigDecimal;
+import java.util.Map;
 import java.util.UUID;
 
 import static com.revolut.transfer.data.MoneyTransferData.*;
 import static java.lang.Thread.sleep;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class AccountControllerTest {
 
@@ -169,6 +176,287 @@ public class AccountControllerTest {
         assertEquals(new BigDecimal(130), toAccountResponse.getBalance());
     }
 
+    @Test
+    public void testTransferMoneyAcrossCurrenciesShouldCreditConvertedAmount() {
+        ApiResponse fxRatesApiResponse = APiRequestHandler.send("PUT", "fx/rates", "{\"base\":\"GBP\",\"rates\":{\"EUR\":1.17}}");
+        assertEquals(HttpStatus.OK_200, fxRatesApiResponse.getStatus());
+        assertEquals(new BigDecimal("1.17"), fxRatesApiResponse.jsonElement().getAsJsonObject().getAsJsonObject("rates")
+                .get("EUR").getAsBigDecimal());
+
+        ApiResponse createAccountApiResponse_1 = mockAccountCreation(100);
+        assertEquals(HttpStatus.CREATED_201, createAccountApiResponse_1.getStatus());
+        ApiResponse createAccountApiResponse_2 = APiRequestHandler.send("POST", "accounts",
+                "{\"userId\":\"Test User 2\",\"balance\":20,\"currency\":\"EUR\"}");
+        assertEquals(HttpStatus.CREATED_201, createAccountApiResponse_2.getStatus());
+
+        String fromAccount = createAccountApiResponse_1.jsonElement().getAsString();
+        String toAccount = createAccountApiResponse_2.jsonElement().getAsString();
+
+        String transferMoneyRequest = gson.toJson(getTransferMoneyInstance(UUID.fromString(fromAccount), UUID.fromString(toAccount), 10));
+        ApiResponse transferMoneyApiResponse = APiRequestHandler.send("POST", "accounts/transfer", transferMoneyRequest);
+        assertEquals(HttpStatus.OK_200, transferMoneyApiResponse.getStatus());
+
+        AccountResponse toAccountResponse = gson.fromJson(APiRequestHandler.send("GET", "accounts/" + toAccount).jsonElement(),
+                AccountResponse.class);
+        assertEquals(EUR, toAccountResponse.getCurrency());
+        assertEquals(new BigDecimal("31.7"), toAccountResponse.getBalance());
+    }
+
+    @Test
+    public void testInvalidFxRatesShouldBeRejected() {
+        ApiResponse fxRatesApiResponse = APiRequestHandler.send("PUT", "fx/rates", "{\"base\":\"GBP\",\"rates\":{\"EUR\":-1}}");
+        assertEquals(HttpStatus.BAD_REQUEST_400, fxRatesApiResponse.getStatus());
+    }
+
+    @Test
+    public void testAuditShouldFindMoneyConserved() {
+        UUID fromAccount = UUID.fromString(mockAccountCreation(100).jsonElement().getAsString());
+        UUID toAccount = UUID.fromString(mockAccountSecondCreation(100).jsonElement().getAsString());
+        String transferMoneyRequest = gson.toJson(getTransferMoneyInstance(fromAccount, toAccount, 30));
+        assertEquals(HttpStatus.OK_200, APiRequestHandler.send("POST", "accounts/transfer", transferMoneyRequest).getStatus());
+
+        ApiResponse auditApiResponse = APiRequestHandler.send("POST", "admin/audit", "");
+        assertEquals(HttpStatus.OK_200, auditApiResponse.getStatus());
+        assertTrue(auditApiResponse.jsonElement().getAsJsonObject().get("balanced").getAsBoolean());
+
+        ApiResponse lastAuditApiResponse = APiRequestHandler.send("GET", "admin/audit");
+        assertEquals(HttpStatus.OK_200, lastAuditApiResponse.getStatus());
+        assertEquals(new BigDecimal(200), lastAuditApiResponse.jsonElement().getAsJsonObject().getAsJsonArray("currencies")
+                .get(0).getAsJsonObject().get("balance").getAsBigDecimal());
+    }
+
+    @Test
+    public void testRetriedTransferWithIdempotencyKeyShouldMoveMoneyOnce() {
+        UUID fromAccount = UUID.fromString(mockAccountCreation(100).jsonElement().getAsString());
+        UUID toAccount = UUID.fromString(mockAccountSecondCreation(100).jsonElement().getAsString());
+        Map<String, String> headers = Map.of("Idempotency-Key", UUID.randomUUID().toString());
+
+        String transferMoneyRequest = gson.toJson(getTransferMoneyInstance(fromAccount, toAccount, 30));
+        assertEquals(HttpStatus.OK_200, APiRequestHandler.send("POST", "accounts/transfer", transferMoneyRequest, headers).getStatus());
+        assertEquals(HttpStatus.OK_200, APiRequestHandler.send("POST", "accounts/transfer", transferMoneyRequest, headers).getStatus());
+
+        String otherTransferMoneyRequest = gson.toJson(getTransferMoneyInstance(fromAccount, toAccount, 40));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY_422,
+                APiRequestHandler.send("POST", "accounts/transfer", otherTransferMoneyRequest, headers).getStatus());
+
+        ApiResponse getFromAccountApiResponse = APiRequestHandler.send("GET", "accounts/" + fromAccount);
+        AccountResponse fromAccountResponse = gson.fromJson(getFromAccountApiResponse.jsonElement(), AccountResponse.class);
+        assertEquals(new BigDecimal(70), fromAccountResponse.getBalance());
+    }
+
+    @Test
+    public void testTransactionsShouldBePagedNewestFirst() {
+        UUID fromAccount = UUID.fromString(mockAccountCreation(100).jsonElement().getAsString());
+        UUID toAccount = UUID.fromString(mockAccountSecondCreation(100).jsonElement().getAsString());
+        APiRequestHandler.send("POST", "accounts/transfer", gson.toJson(getTransferMoneyInstance(fromAccount, toAccount, 30)));
+        APiRequestHandler.send("POST", "accounts/transfer", gson.toJson(getTransferMoneyInstance(toAccount, fromAccount, 10)));
+        APiRequestHandler.send("PUT", "accounts/deposit", gson.toJson(getDepositMoneyInstance(fromAccount, 5)));
+
+        ApiResponse firstPageApiResponse = APiRequestHandler.send("GET", "accounts/" + fromAccount + "/transactions?limit=2");
+        assertEquals(HttpStatus.OK_200, firstPageApiResponse.getStatus());
+        JsonObject firstPage = firstPageApiResponse.jsonElement().getAsJsonObject();
+        JsonArray transactions = firstPage.getAsJsonArray("transactions");
+        assertEquals(2, transactions.size());
+        assertEquals("DEPOSIT", transactions.get(0).getAsJsonObject().get("type").getAsString());
+        assertEquals(new BigDecimal(85), transactions.get(0).getAsJsonObject().get("balance").getAsBigDecimal());
+        assertEquals("TRANSFER_IN", transactions.get(1).getAsJsonObject().get("type").getAsString());
+        assertEquals(toAccount.toString(), transactions.get(1).getAsJsonObject().get("counterpartyAccountId").getAsString());
+
+        ApiResponse secondPageApiResponse = APiRequestHandler.send("GET", "accounts/" + fromAccount + "/transactions?limit=2&cursor="
+                + firstPage.get("nextCursor").getAsLong());
+        JsonObject secondPage = secondPageApiResponse.jsonElement().getAsJsonObject();
+        assertEquals(1, secondPage.getAsJsonArray("transactions").size());
+        JsonObject transferOut = secondPage.getAsJsonArray("transactions").get(0).getAsJsonObject();
+        assertEquals("TRANSFER_OUT", transferOut.get("type").getAsString());
+        assertEquals(new BigDecimal(-30), transferOut.get("amount").getAsBigDecimal());
+        assertFalse(secondPage.has("nextCursor"));
+
+        assertEquals(HttpStatus.BAD_REQUEST_400, APiRequestHandler.send("GET", "accounts/" + fromAccount + "/transactions?limit=0").getStatus());
+        assertEquals(HttpStatus.NOT_FOUND_404, APiRequestHandler.send("GET", "accounts/" + UUID.randomUUID() + "/transactions").getStatus());
+    }
+
+    @Test
+    public void testBatchTransferMoney() {
+        ApiResponse createAccountApiResponse_1 = mockAccountCreation(100);
+        assertEquals(HttpStatus.CREATED_201, createAccountApiResponse_1.getStatus());
+
+        ApiResponse createAccountApiResponse_2 = mockAccountSecondCreation(100);
+        assertEquals(HttpStatus.CREATED_201, createAccountApiResponse_2.getStatus());
+
+        UUID fromAccount = UUID.fromString(createAccountApiResponse_1.jsonElement().getAsString());
+        UUID toAccount = UUID.fromString(createAccountApiResponse_2.jsonElement().getAsString());
+
+        String batchTransferRequest = gson.toJson(getBatchTransferInstance(false,
+                getTransferMoneyInstance(fromAccount, toAccount, 30),
+                getTransferMoneyInstance(toAccount, fromAccount, 10),
+                getTransferMoneyInstance(fromAccount, toAccount, 500)));
+        ApiResponse batchTransferApiResponse = APiRequestHandler.send("POST", "accounts/transfers/batch", batchTransferRequest);
+        assertEquals(HttpStatus.OK_200, batchTransferApiResponse.getStatus());
+
+        BatchTransferResponse batchTransferResponse = gson.fromJson(batchTransferApiResponse.jsonElement(), BatchTransferResponse.class);
+        assertEquals(2, batchTransferResponse.getTransferred());
+        assertEquals(TransferStatus.FAILED, batchTransferResponse.getResults().get(2).getStatus());
+
+        ApiResponse getFromAccountApiResponse = APiRequestHandler.send("GET", "accounts/" + fromAccount);
+        AccountResponse fromAccountResponse = gson.fromJson(getFromAccountApiResponse.jsonElement(), AccountResponse.class);
+        assertEquals(new BigDecimal(80), fromAccountResponse.getBalance());
+    }
+
+    @Test
+    public void testScheduledTransfersShouldRunWhenDueAndBeCancellable() throws InterruptedException {
+        UUID fromAccount = UUID.fromString(mockAccountCreation(100).jsonElement().getAsString());
+        UUID toAccount = UUID.fromString(mockAccountSecondCreation(100).jsonElement().getAsString());
+
+        ApiResponse standingOrderApiResponse = APiRequestHandler.send("POST", "accounts/transfers/scheduled", "{\"fromAccount\":\""
+                + fromAccount + "\",\"toAccount\":\"" + toAccount + "\",\"amount\":5,\"executeAt\":\"2100-01-01T00:00:00Z\","
+                + "\"intervalSeconds\":86400}");
+        assertEquals(HttpStatus.CREATED_201, standingOrderApiResponse.getStatus());
+        JsonObject standingOrder = standingOrderApiResponse.jsonElement().getAsJsonObject();
+        assertEquals("SCHEDULED", standingOrder.get("status").getAsString());
+        String standingOrderId = standingOrder.get("scheduledTransferId").getAsString();
+
+        ApiResponse dueApiResponse = APiRequestHandler.send("POST", "accounts/transfers/scheduled", "{\"fromAccount\":\""
+                + fromAccount + "\",\"toAccount\":\"" + toAccount + "\",\"amount\":30}");
+        assertEquals(HttpStatus.CREATED_201, dueApiResponse.getStatus());
+
+        BigDecimal fromBalance = null;
+        for (int attempt = 0; attempt < 50 && !new BigDecimal(70).equals(fromBalance); attempt++) {
+            sleep(100);
+            fromBalance = gson.fromJson(APiRequestHandler.send("GET", "accounts/" + fromAccount).jsonElement(),
+                    AccountResponse.class).getBalance();
+        }
+        assertEquals(new BigDecimal(70), fromBalance);
+
+        ApiResponse listApiResponse = APiRequestHandler.send("GET", "accounts/transfers/scheduled?accountId=" + fromAccount);
+        assertEquals(HttpStatus.OK_200, listApiResponse.getStatus());
+        JsonArray scheduledTransfers = listApiResponse.jsonElement().getAsJsonObject().getAsJsonArray("scheduledTransfers");
+        assertEquals(1, scheduledTransfers.size());
+        assertEquals(standingOrderId, scheduledTransfers.get(0).getAsJsonObject().get("scheduledTransferId").getAsString());
+
+        ApiResponse cancelApiResponse = APiRequestHandler.send("DELETE", "accounts/transfers/scheduled/" + standingOrderId);
+        assertEquals(HttpStatus.OK_200, cancelApiResponse.getStatus());
+        assertEquals("CANCELLED", cancelApiResponse.jsonElement().getAsJsonObject().get("status").getAsString());
+        assertEquals(HttpStatus.NOT_FOUND_404, APiRequestHandler.send("GET", "accounts/transfers/scheduled/" + standingOrderId).getStatus());
+        assertEquals(HttpStatus.BAD_REQUEST_400, APiRequestHandler.send("POST", "accounts/transfers/scheduled", "{\"fromAccount\":\""
+                + fromAccount + "\",\"toAccount\":\"" + toAccount + "\",\"amount\":5,\"executeAt\":\"tomorrow\"}").getStatus());
+    }
+
+    @Test
+    public void testBulkAccountCreationShouldReportEveryAccount() {
+        assertEquals(HttpStatus.CREATED_201, mockAccountCreation(100).getStatus());
+
+        String bulkRequest = "{\"accounts\":[{\"userId\":\"Bulk User 1\",\"balance\":10},{\"userId\":\"Test User\"},"
+                + "{\"balance\":5},{\"userId\":\"Bulk User 2\"}]}";
+        ApiResponse bulkApiResponse = APiRequestHandler.send("POST", "accounts/bulk", bulkRequest);
+        assertEquals(HttpStatus.OK_200, bulkApiResponse.getStatus());
+
+        JsonObject bulkResponse = bulkApiResponse.jsonElement().getAsJsonObject();
+        assertEquals(2, bulkResponse.get("created").getAsInt());
+        assertEquals(2, bulkResponse.get("failed").getAsInt());
+        JsonArray results = bulkResponse.getAsJsonArray("results");
+        assertEquals("FAILED", results.get(1).getAsJsonObject().get("status").getAsString());
+        assertEquals("FAILED", results.get(2).getAsJsonObject().get("status").getAsString());
+
+        String accountId = results.get(0).getAsJsonObject().get("accountId").getAsString();
+        ApiResponse getAccountApiResponse = APiRequestHandler.send("GET", "accounts/" + accountId);
+        AccountResponse accountResponse = gson.fromJson(getAccountApiResponse.jsonElement(), AccountResponse.class);
+        assertEquals(new BigDecimal(10), accountResponse.getBalance());
+    }
+
+    @Test
+    public void testCsvImportShouldCreateAccountsAndReportFailedLines() {
+        String csv = "userId,balance\nImport User 1,10.50\n\"Import, User 2\",\nImport User 1,5\nImport User 3,ten\n";
+        ApiResponse importApiResponse = APiRequestHandler.send("POST", "accounts/import?format=csv", csv);
+        assertEquals(HttpStatus.OK_200, importApiResponse.getStatus());
+
+        JsonObject importResponse = importApiResponse.jsonElement().getAsJsonObject();
+        assertEquals(2, importResponse.get("created").getAsLong());
+        assertEquals(2, importResponse.get("failed").getAsLong());
+        JsonArray failures = importResponse.getAsJsonArray("failures");
+        assertEquals(4, failures.get(0).getAsJsonObject().get("index").getAsLong());
+        assertEquals(5, failures.get(1).getAsJsonObject().get("index").getAsLong());
+
+        assertEquals(HttpStatus.CONFLICT_409, APiRequestHandler.send("POST", "accounts",
+                gson.toJson(getAccountInstance("Import, User 2", 0))).getStatus());
+    }
+
+    @Test
+    public void testAccountsShouldBeListedPageByPageAndExported() {
+        String bulkRequest = "{\"accounts\":[{\"userId\":\"List User 1\",\"balance\":1},{\"userId\":\"List User 2\",\"balance\":2},"
+                + "{\"userId\":\"List User 3\",\"balance\":3}]}";
+        assertEquals(HttpStatus.OK_200, APiRequestHandler.send("POST", "accounts/bulk", bulkRequest).getStatus());
+
+        ApiResponse firstPage = APiRequestHandler.send("GET", "accounts?limit=2");
+        assertEquals(HttpStatus.OK_200, firstPage.getStatus());
+        JsonArray firstAccounts = firstPage.jsonElement().getAsJsonObject().getAsJsonArray("accounts");
+        assertEquals(2, firstAccounts.size());
+        String cursor = firstPage.jsonElement().getAsJsonObject().get("nextCursor").getAsString();
+        assertEquals(firstAccounts.get(1).getAsJsonObject().get("accountId").getAsString(), cursor);
+
+        ApiResponse secondPage = APiRequestHandler.send("GET", "accounts?limit=2&cursor=" + cursor);
+        JsonObject secondResponse = secondPage.jsonElement().getAsJsonObject();
+        assertEquals(1, secondResponse.getAsJsonArray("accounts").size());
+        assertFalse(secondResponse.has("nextCursor"));
+        String lastId = secondResponse.getAsJsonArray("accounts").get(0).getAsJsonObject().get("accountId").getAsString();
+        assertTrue(UUID.fromString(lastId).compareTo(UUID.fromString(cursor)) > 0);
+
+        assertEquals(HttpStatus.BAD_REQUEST_400, APiRequestHandler.send("GET", "accounts?limit=0").getStatus());
+
+        ApiResponse export = APiRequestHandler.send("GET", "accounts/export");
+        assertEquals(HttpStatus.OK_200, export.getStatus());
+        String[] lines = export.getBody().trim().split("\n");
+        assertEquals(3, lines.length);
+        BigDecimal total = BigDecimal.ZERO;
+        for (String line : lines) {
+            total = total.add(gson.fromJson(line, AccountResponse.class).getBalance());
+        }
+        assertEquals(0, new BigDecimal(6).compareTo(total));
+    }
+
+    @Test
+    public void testBalancesShouldBeReadFromOneSnapshot() {
+        String fromAccountId = mockAccountCreation(100).jsonElement().getAsString();
+        String toAccountId = mockAccountSecondCreation(50).jsonElement().getAsString();
+        String transferMoneyRequest = gson.toJson(getTransferMoneyInstance(UUID.fromString(fromAccountId),
+                UUID.fromString(toAccountId), 30));
+        assertEquals(HttpStatus.OK_200, APiRequestHandler.send("POST", "accounts/transfer", transferMoneyRequest).getStatus());
+
+        String unknownAccountId = UUID.randomUUID().toString();
+        ApiResponse balancesApiResponse = APiRequestHandler.send("POST", "accounts/balances",
+                "{\"accountIds\":[\"" + fromAccountId + "\",\"" + toAccountId + "\",\"" + unknownAccountId + "\"]}");
+        assertEquals(HttpStatus.OK_200, balancesApiResponse.getStatus());
+
+        JsonObject balancesResponse = balancesApiResponse.jsonElement().getAsJsonObject();
+        assertTrue(balancesResponse.has("asOf"));
+        JsonArray balances = balancesResponse.getAsJsonArray("balances");
+        assertEquals(2, balances.size());
+        assertEquals(fromAccountId, balances.get(0).getAsJsonObject().get("accountId").getAsString());
+        assertEquals(0, new BigDecimal(70).compareTo(balances.get(0).getAsJsonObject().get("balance").getAsBigDecimal()));
+        assertEquals(0, new BigDecimal(80).compareTo(balances.get(1).getAsJsonObject().get("balance").getAsBigDecimal()));
+        assertEquals(unknownAccountId, balancesResponse.getAsJsonArray("notFound").get(0).getAsString());
+
+        assertEquals(HttpStatus.BAD_REQUEST_400, APiRequestHandler.send("POST", "accounts/balances", "{\"accountIds\":[]}").getStatus());
+    }
+
+    @Test
+    public void testAtomicBatchTransferShouldThrow400WhenOneTransferHasInsufficientBalance() {
+        ApiResponse createAccountApiResponse_1 = mockAccountCreation(100);
+        ApiResponse createAccountApiResponse_2 = mockAccountSecondCreation(100);
+
+        UUID fromAccount = UUID.fromString(createAccountApiResponse_1.jsonElement().getAsString());
+        UUID toAccount = UUID.fromString(createAccountApiResponse_2.jsonElement().getAsString());
+
+        String batchTransferRequest = gson.toJson(getBatchTransferInstance(true,
+                getTransferMoneyInstance(fromAccount, toAccount, 30),
+                getTransferMoneyInstance(fromAccount, toAccount, 500)));
+        ApiResponse batchTransferApiResponse = APiRequestHandler.send("POST", "accounts/transfers/batch", batchTransferRequest);
+        assertEquals(HttpStatus.BAD_REQUEST_400, batchTransferApiResponse.getStatus());
+
+        ApiResponse getFromAccountApiResponse = APiRequestHandler.send("GET", "accounts/" + fromAccount);
+        AccountResponse fromAccountResponse = gson.fromJson(getFromAccountApiResponse.jsonElement(), AccountResponse.class);
+        assertEquals(new BigDecimal(100), fromAccountResponse.getBalance());
+    }
+
     @Test
     public void testTransferMoneyShouldThrow400WhenSameAccountsAreProvided() {
         ApiResponse createAccountApiResponse = mockAccountCreation(100);
@@ -254,6 +542,23 @@ public class AccountControllerTest {
         assertEquals(HttpStatus.NOT_FOUND_404, transferMoneyApiResponse.getStatus());
     }
 
+    @Test
+    public void testMetricsShouldBeExposedInPrometheusFormat() {
+        ApiResponse createAccountApiResponse = mockAccountCreation(100);
+        assertEquals(HttpStatus.CREATED_201, createAccountApiResponse.getStatus());
+        assertEquals(HttpStatus.NOT_FOUND_404, APiRequestHandler.send("GET", "accounts/" + UUID.randomUUID()).getStatus());
+
+        ApiResponse metricsApiResponse = APiRequestHandler.send("GET", "metrics");
+        assertEquals(HttpStatus.OK_200, metricsApiResponse.getStatus());
+        String metrics = metricsApiResponse.getBody();
+        assertTrue(metrics.contains("# TYPE transfer_http_request_duration_seconds summary"));
+        assertTrue(metrics.contains("transfer_http_request_duration_seconds_count{route=\"POST /accounts\"}"));
+        assertTrue(metrics.contains("transfer_service_call_duration_seconds_count{method=\"createAccount\"}"));
+        assertTrue(metrics.contains("transfer_http_rejections_total{exception=\"AccountNotFoundException\"}"));
+        assertTrue(metrics.contains("transfer_lock_wait_seconds_count "));
+        assertTrue(metrics.contains("transfer_accounts "));
+    }
+
     @After
     public void after() {
         APiRequestHandler.send("DELETE", "accounts");
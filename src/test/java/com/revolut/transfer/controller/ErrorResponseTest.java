@@ -0,0 +1,41 @@
+package com.revolut.transfer.controller;
+
+import com.revolut.transfer.execption.AccountThrottledException;
+import com.revolut.transfer.execption.JournalException;
+import com.revolut.transfer.execption.ServiceOverloadedException;
+import org.eclipse.jetty.http.HttpStatus;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ErrorResponseTest {
+
+    @Test
+    public void testSubtypesShouldBeMappedLikeTheirMappedType() {
+        ErrorResponse errorResponse = ErrorResponse.of(new NumberFormatException("For input string: \"ten\""));
+
+        assertEquals(HttpStatus.BAD_REQUEST_400, errorResponse.getStatus());
+        assertEquals("For input string: \"ten\"", errorResponse.getBody());
+        assertEquals(0, errorResponse.getRetryAfterSeconds());
+        assertTrue(ErrorResponse.getMappedTypes().contains(IllegalArgumentException.class));
+    }
+
+    @Test
+    public void testRejectionsShouldTellWhenToRetry() {
+        ErrorResponse throttled = ErrorResponse.of(new AccountThrottledException("Too many requests.", 3));
+        ErrorResponse overloaded = ErrorResponse.of(new ServiceOverloadedException("Service is overloaded."));
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS_429, throttled.getStatus());
+        assertEquals(3, throttled.getRetryAfterSeconds());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE_503, overloaded.getStatus());
+        assertEquals(1, overloaded.getRetryAfterSeconds());
+    }
+
+    @Test
+    public void testInternalFailuresShouldNotBeExposed() {
+        assertEquals("Change could not be made durable.", ErrorResponse.of(new JournalException("Journal is closed: x")).getBody());
+        assertNull(ErrorResponse.of(new IllegalStateException("Unknown user segment")));
+    }
+}
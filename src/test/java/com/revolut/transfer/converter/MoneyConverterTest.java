@@ -0,0 +1,42 @@
+package com.revolut.transfer.converter;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+import static org.junit.Assert.assertEquals;
+
+public class MoneyConverterTest {
+
+    @Test
+    public void testToMinorUnitsShouldUseScaleOfCurrency() {
+        assertEquals(12345, MoneyConverter.toMinorUnits(new BigDecimal("123.45")));
+        assertEquals(12300, MoneyConverter.toMinorUnits(new BigDecimal("123")));
+        assertEquals(123, MoneyConverter.toMinorUnits(new BigDecimal("123"), Currency.getInstance("JPY")));
+        assertEquals(-50, MoneyConverter.toMinorUnits(new BigDecimal("-0.5")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testToMinorUnitsShouldThrowIllegalArgumentWhenAmountHasTooManyDecimals() {
+        MoneyConverter.toMinorUnits(new BigDecimal("1.005"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testToMinorUnitsShouldThrowIllegalArgumentWhenAmountDoesNotFitInLong() {
+        MoneyConverter.toMinorUnits(new BigDecimal("1e30"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testToMinorUnitsShouldThrowIllegalArgumentWhenAmountIsNull() {
+        MoneyConverter.toMinorUnits(null);
+    }
+
+    @Test
+    public void testToDecimalShouldDropTrailingZeros() {
+        assertEquals(new BigDecimal("200"), MoneyConverter.toDecimal(20000));
+        assertEquals(new BigDecimal("12.5"), MoneyConverter.toDecimal(1250));
+        assertEquals(new BigDecimal("0.01"), MoneyConverter.toDecimal(1));
+        assertEquals(new BigDecimal("0"), MoneyConverter.toDecimal(0));
+    }
+}
@@ -1,6 +1,10 @@
 package com.revolut.transfer.data;
 
+import com.revolut.transfer.converter.MoneyConverter;
+import com.revolut.transfer.fx.FxRateTable;
+import com.revolut.transfer.fx.FxRates;
 import com.revolut.transfer.model.Account;
+import com.revolut.transfer.request.BatchTransferRequest;
 import com.revolut.transfer.request.CreateAccountRequest;
 import com.revolut.transfer.request.DepositMoneyRequest;
 import com.revolut.transfer.request.TransferMoneyRequest;
@@ -8,9 +12,15 @@ import com.revolut.transfer.request.WithdrawMoneyRequest;
 import com.revolut.transfer.response.AccountResponse;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.Map;
 import java.util.UUID;
 
 public class MoneyTransferData {
+
+    public static final Currency GBP = MoneyConverter.DEFAULT_CURRENCY;
+    public static final Currency EUR = Currency.getInstance("EUR");
     public static CreateAccountRequest getAccountInstance(String userId, double balance) {
         return CreateAccountRequest.builder().userId(userId)
                 .balance(new BigDecimal(balance))
@@ -39,11 +49,18 @@ public class MoneyTransferData {
                 .build();
     }
 
+    public static BatchTransferRequest getBatchTransferInstance(boolean atomic, TransferMoneyRequest... transfers) {
+        return BatchTransferRequest.builder()
+                .atomic(atomic)
+                .transfers(Arrays.asList(transfers))
+                .build();
+    }
+
     public static Account getAccountInstance(UUID accountId, String userId, double amount) {
         return Account.builder()
                 .id(accountId)
                 .userId(userId)
-                .balance(new BigDecimal(amount))
+                .balance(getMinorUnits(amount))
                 .build();
     }
 
@@ -54,4 +71,15 @@ public class MoneyTransferData {
                 .balance(new BigDecimal(amount))
                 .build();
     }
+
+    /*
+    * 1.17 EUR per GBP.
+    * */
+    public static FxRates getFxRatesInstance() {
+        return new FxRates(FxRateTable.of(MoneyConverter.DEFAULT_CURRENCY, Map.of(EUR, new BigDecimal("1.17"))));
+    }
+
+    public static long getMinorUnits(double amount) {
+        return MoneyConverter.toMinorUnits(new BigDecimal(amount));
+    }
 }
@@ -0,0 +1,66 @@
+package com.revolut.transfer.fx;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class FxRateTableTest {
+
+    private static final Currency GBP = Currency.getInstance("GBP");
+    private static final Currency EUR = Currency.getInstance("EUR");
+    private static final Currency JPY = Currency.getInstance("JPY");
+    private static final Currency USD = Currency.getInstance("USD");
+
+    private final FxRateTable underTest = FxRateTable.of(GBP, Map.of(EUR, new BigDecimal("1.17"), JPY, new BigDecimal("190")));
+
+    @Test
+    public void testConvertShouldApplyRateAndMinorUnitsOfBothCurrencies() {
+        assertEquals(11_700, underTest.convert(10_000, GBP, EUR));
+        assertEquals(19_000, underTest.convert(10_000, GBP, JPY));
+        assertEquals(10_000, underTest.convert(11_700, EUR, GBP));
+        assertEquals(10_000, underTest.convert(19_000, JPY, GBP));
+        assertEquals(123, underTest.convert(123, EUR, EUR));
+    }
+
+    @Test
+    public void testConvertShouldRoundToNearestMinorUnit() {
+        assertEquals(2, underTest.convert(2, GBP, EUR));
+        assertEquals(4, underTest.convert(3, GBP, EUR));
+        assertEquals(1, underTest.convert(1, JPY, GBP));
+        assertEquals(0, underTest.convert(0, JPY, GBP));
+    }
+
+    @Test
+    public void testConvertShouldNotOverflowHalfway() {
+        long amount = Long.MAX_VALUE / 2;
+        long expected = BigDecimal.valueOf(amount).multiply(new BigDecimal("1.17")).setScale(0, RoundingMode.HALF_UP).longValueExact();
+
+        assertEquals(expected, underTest.convert(amount, GBP, EUR));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testConvertShouldThrowExceptionWhenResultDoesNotFitInLong() {
+        underTest.convert(Long.MAX_VALUE, GBP, JPY);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConvertShouldThrowExceptionWhenRateIsMissing() {
+        underTest.convert(100, GBP, USD);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRatesShouldBePositive() {
+        FxRateTable.of(GBP, Map.of(EUR, BigDecimal.ZERO));
+    }
+
+    @Test
+    public void testRatesShouldIncludeBaseCurrency() {
+        assertEquals(BigDecimal.ONE, underTest.getRates().get(GBP));
+        assertEquals(3, underTest.getRates().size());
+    }
+}
@@ -0,0 +1,235 @@
+package com.revolut.transfer.idempotency;
+
+import com.revolut.transfer.execption.AccountThrottledException;
+import com.revolut.transfer.execption.IdempotencyKeyReusedException;
+import com.revolut.transfer.execption.InsufficientBalanceException;
+import com.revolut.transfer.execption.JournalException;
+import com.revolut.transfer.request.TransferMoneyRequest;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.revolut.transfer.data.MoneyTransferData.getTransferMoneyInstance;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IdempotencyCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger executions = new AtomicInteger();
+    private final TransferMoneyRequest transfer = getTransferMoneyInstance(UUID.randomUUID(), UUID.randomUUID(), 30);
+
+    @Test
+    public void testRetryShouldGetStoredResponseWithoutRunningAgain() {
+        IdempotencyCache underTest = new IdempotencyCache(16, 1, TimeUnit.HOURS, clock::get);
+
+        IdempotentResult first = underTest.execute("transfer", "key-1", transfer, this::transferred);
+        IdempotentResult retry = underTest.execute("transfer", "key-1", copyOf(transfer), this::transferred);
+
+        assertEquals("transferred", first.getBody());
+        assertFalse(first.isReplayed());
+        assertEquals("transferred", retry.getBody());
+        assertTrue(retry.isReplayed());
+        assertEquals(1, executions.get());
+        assertEquals(1, underTest.getHits());
+        assertEquals(1, underTest.getMisses());
+        assertEquals(0.5, underTest.getHitRate(), 0.0);
+        assertTrue(underTest.getEstimatedBytes() >= IdempotencyCache.ENTRY_OVERHEAD_BYTES);
+    }
+
+    @Test
+    public void testRetryShouldGetStoredFailure() {
+        IdempotencyCache underTest = new IdempotencyCache(16, 1, TimeUnit.HOURS, clock::get);
+        InsufficientBalanceException failure = new InsufficientBalanceException("Insufficient balance");
+
+        for (int i = 0; i < 2; i++) {
+            IdempotentResult result = underTest.execute("transfer", "key-1", transfer, () -> {
+                executions.incrementAndGet();
+                throw failure;
+            });
+            try {
+                result.getBody();
+                fail("Stored failure should be thrown");
+            } catch (InsufficientBalanceException ex) {
+                assertSame(failure, ex);
+            }
+        }
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    public void testJournalFailureShouldNotBeStored() {
+        IdempotencyCache underTest = new IdempotencyCache(16, 1, TimeUnit.HOURS, clock::get);
+        try {
+            underTest.execute("transfer", "key-1", transfer, () -> {
+                throw new JournalException("Journal can not be written");
+            });
+            fail("Journal failure should be thrown");
+        } catch (JournalException expected) {
+        }
+
+        assertEquals("transferred", underTest.execute("transfer", "key-1", transfer, this::transferred).getBody());
+        assertEquals(1, executions.get());
+        assertEquals(1, underTest.getEntries());
+    }
+
+    @Test
+    public void testThrottledRequestShouldNotBeStored() {
+        IdempotencyCache underTest = new IdempotencyCache(16, 1, TimeUnit.HOURS, clock::get);
+        try {
+            underTest.execute("transfer", "key-1", transfer, () -> {
+                throw new AccountThrottledException("Too many requests", 1);
+            });
+            fail("Throttled request should be thrown");
+        } catch (AccountThrottledException expected) {
+        }
+
+        assertEquals("transferred", underTest.execute("transfer", "key-1", transfer, this::transferred).getBody());
+        assertEquals(1, executions.get());
+    }
+
+    @Test(expected = IdempotencyKeyReusedException.class)
+    public void testKeyShouldNotBeReusedForAnotherRequest() {
+        IdempotencyCache underTest = new IdempotencyCache(16, 1, TimeUnit.HOURS, clock::get);
+        underTest.execute("transfer", "key-1", transfer, this::transferred);
+        underTest.execute("transfer", "key-1",
+                getTransferMoneyInstance(transfer.getFromAccount(), transfer.getToAccount(), 40), this::transferred);
+    }
+
+    @Test
+    public void testRetryWithAmountOfAnotherScaleShouldGetStoredResponse() {
+        IdempotencyCache underTest = new IdempotencyCache(16, 1, TimeUnit.HOURS, clock::get);
+        TransferMoneyRequest first = TransferMoneyRequest.builder().fromAccount(transfer.getFromAccount())
+                .toAccount(transfer.getToAccount()).amount(new BigDecimal("10.00")).build();
+        TransferMoneyRequest retry = TransferMoneyRequest.builder().fromAccount(transfer.getFromAccount())
+                .toAccount(transfer.getToAccount()).amount(new BigDecimal("10.0")).build();
+
+        underTest.execute("transfer", "key-1", first, this::transferred);
+        IdempotentResult result = underTest.execute("transfer", "key-1", retry, this::transferred);
+
+        assertTrue(result.isReplayed());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    public void testSameKeyOfAnotherOperationShouldRunAgain() {
+        IdempotencyCache underTest = new IdempotencyCache(16, 1, TimeUnit.HOURS, clock::get);
+        underTest.execute("transfer", "key-1", transfer, this::transferred);
+        underTest.execute("deposit", "key-1", transfer, this::transferred);
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    public void testExpiredEntryShouldRunAgain() {
+        IdempotencyCache underTest = new IdempotencyCache(16, 10, TimeUnit.SECONDS, clock::get);
+        underTest.execute("transfer", "key-1", transfer, this::transferred);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        assertTrue(underTest.execute("transfer", "key-1", transfer, this::transferred).isReplayed());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        assertFalse(underTest.execute("transfer", "key-1", transfer, this::transferred).isReplayed());
+        assertEquals(2, executions.get());
+        assertEquals(1, underTest.getEvictions());
+    }
+
+    @Test
+    public void testOldestEntryShouldBeEvictedAboveLimit() {
+        IdempotencyCache underTest = new IdempotencyCache(2, 1, TimeUnit.HOURS, clock::get);
+        underTest.execute("transfer", "key-1", transfer, this::transferred);
+        long bytesPerEntry = underTest.getEstimatedBytes();
+        underTest.execute("transfer", "key-2", transfer, this::transferred);
+        underTest.execute("transfer", "key-3", transfer, this::transferred);
+
+        assertEquals(2, underTest.getEntries());
+        assertEquals(1, underTest.getEvictions());
+        assertEquals(2 * bytesPerEntry, underTest.getEstimatedBytes());
+        assertTrue(underTest.execute("transfer", "key-3", transfer, this::transferred).isReplayed());
+        assertFalse(underTest.execute("transfer", "key-1", transfer, this::transferred).isReplayed());
+    }
+
+    @Test
+    public void testInFlightEntriesShouldNotEvictCompletedOnes() throws Exception {
+        IdempotencyCache underTest = new IdempotencyCache(2, 1, TimeUnit.HOURS, clock::get);
+        underTest.execute("transfer", "key-1", transfer, this::transferred);
+        underTest.execute("transfer", "key-2", transfer, this::transferred);
+        CountDownLatch running = new CountDownLatch(3);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(3);
+
+        for (int i = 0; i < 3; i++) {
+            String key = "in-flight-" + i;
+            executorService.submit(() -> underTest.execute("transfer", key, transfer, () -> {
+                running.countDown();
+                awaitQuietly(release);
+                return transferred();
+            }));
+        }
+        running.await();
+        underTest.execute("transfer", "key-3", transfer, this::transferred);
+
+        assertEquals(1, underTest.getEvictions());
+        assertTrue(underTest.execute("transfer", "key-2", transfer, this::transferred).isReplayed());
+        release.countDown();
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testConcurrentDuplicatesShouldWaitForFirstExecution() throws Exception {
+        IdempotencyCache underTest = new IdempotencyCache(16, 1, TimeUnit.HOURS, clock::get);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+        Future<IdempotentResult> first = executorService.submit(() -> underTest.execute("transfer", "key-1", transfer, () -> {
+            running.countDown();
+            awaitQuietly(release);
+            return transferred();
+        }));
+        running.await();
+        Future<IdempotentResult> duplicate = executorService.submit(() -> underTest.execute("transfer", "key-1", transfer, this::transferred));
+        while (underTest.getCoalesced() == 0) {
+            Thread.yield();
+        }
+        release.countDown();
+
+        assertFalse(first.get().isReplayed());
+        assertTrue(duplicate.get().isReplayed());
+        assertEquals("transferred", duplicate.get().getBody());
+        assertEquals(1, executions.get());
+        executorService.shutdown();
+    }
+
+    private String transferred() {
+        executions.incrementAndGet();
+        return "transferred";
+    }
+
+    private TransferMoneyRequest copyOf(TransferMoneyRequest request) {
+        return TransferMoneyRequest.builder()
+                .fromAccount(request.getFromAccount())
+                .toAccount(request.getToAccount())
+                .amount(request.getAmount())
+                .build();
+    }
+
+    private void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.revolut.transfer.journal;
+
+import com.revolut.transfer.execption.JournalException;
+import com.revolut.transfer.model.Account;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class AccountSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPublishedSnapshotShouldBeLoadedWithJournalPosition() {
+        Path path = folder.getRoot().toPath().resolve("accounts.snapshot");
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 40_000; i++) {
+            accounts.add(account("Test User \u00eb " + i, i, 2));
+        }
+        try (AccountSnapshot.Writer writer = AccountSnapshot.create(path, 1234)) {
+            accounts.forEach(writer::add);
+            writer.publish();
+        }
+
+        LoadingVisitor visitor = new LoadingVisitor();
+        AccountSnapshot snapshot = AccountSnapshot.load(path, visitor);
+
+        assertEquals(1234, snapshot.getJournalPosition());
+        assertEquals(accounts.size(), snapshot.getAccountCount());
+        assertEquals(accounts, visitor.accounts);
+        assertFalse(Files.exists(path.resolveSibling("accounts.snapshot.tmp")));
+    }
+
+    @Test
+    public void testClaimedAccountShouldBeWrittenWithCommittedVersion() {
+        Path path = folder.getRoot().toPath().resolve("accounts.snapshot");
+        Account claimed = account("Test User", 100, 5);
+        try (AccountSnapshot.Writer writer = AccountSnapshot.create(path, 8)) {
+            writer.add(claimed);
+            writer.publish();
+        }
+
+        LoadingVisitor visitor = new LoadingVisitor();
+        AccountSnapshot.load(path, visitor);
+
+        assertEquals(List.of(claimed.toBuilder().version(4).build()), visitor.accounts);
+    }
+
+    @Test
+    public void testAccountCurrencyShouldBeLoaded() {
+        Path path = folder.getRoot().toPath().resolve("accounts.snapshot");
+        Account euros = account("Test User", 100, 2).toBuilder().currency(Currency.getInstance("EUR")).build();
+        Account yen = account("Test To User", 20, 2).toBuilder().currency(Currency.getInstance("JPY")).build();
+        try (AccountSnapshot.Writer writer = AccountSnapshot.create(path, 8)) {
+            writer.add(euros);
+            writer.add(yen);
+            writer.publish();
+        }
+
+        LoadingVisitor visitor = new LoadingVisitor();
+        AccountSnapshot.load(path, visitor);
+
+        assertEquals(List.of(euros, yen), visitor.accounts);
+    }
+
+    @Test
+    public void testUnpublishedSnapshotShouldNotReplacePreviousOne() {
+        Path path = folder.getRoot().toPath().resolve("accounts.snapshot");
+        Account account = account("Test User", 100, 2);
+        try (AccountSnapshot.Writer writer = AccountSnapshot.create(path, 8)) {
+            writer.add(account);
+            writer.publish();
+        }
+        try (AccountSnapshot.Writer writer = AccountSnapshot.create(path, 64)) {
+            writer.add(account("Test To User", 20, 2));
+        }
+
+        LoadingVisitor visitor = new LoadingVisitor();
+        assertEquals(8, AccountSnapshot.load(path, visitor).getJournalPosition());
+        assertEquals(List.of(account), visitor.accounts);
+        assertFalse(Files.exists(path.resolveSibling("accounts.snapshot.tmp")));
+    }
+
+    @Test(expected = JournalException.class)
+    public void testCorruptedSnapshotShouldFailToLoad() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("accounts.snapshot");
+        try (AccountSnapshot.Writer writer = AccountSnapshot.create(path, 8)) {
+            writer.add(account("Test User", 100, 2));
+            writer.add(account("Test To User", 20, 2));
+            writer.publish();
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[AccountSnapshot.HEADER_BYTES + 20] ^= 0x1;
+        Files.write(path, bytes);
+
+        AccountSnapshot.load(path, new LoadingVisitor());
+    }
+
+    private Account account(String userId, long balance, long version) {
+        return Account.builder()
+                .id(UUID.randomUUID())
+                .userId(userId)
+                .balance(balance)
+                .version(version)
+                .build();
+    }
+
+    private static class LoadingVisitor implements JournalVisitor {
+
+        private final List<Account> accounts = new ArrayList<>();
+
+        @Override
+        public void onAccounts(List<Account> accounts) {
+            this.accounts.addAll(accounts);
+        }
+
+        @Override
+        public void onDelete(UUID accountId) {
+            throw new AssertionError("Snapshot should only contain accounts.");
+        }
+
+        @Override
+        public void onDeleteAll() {
+            throw new AssertionError("Snapshot should only contain accounts.");
+        }
+    }
+}
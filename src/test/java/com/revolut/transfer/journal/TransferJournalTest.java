@@ -0,0 +1,256 @@
+package com.revolut.transfer.journal;
+
+import com.revolut.transfer.execption.JournalException;
+import com.revolut.transfer.model.Account;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TransferJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRecordsShouldBeReplayedInOrderAfterReopen() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("transfer.journal");
+        Account first = account("Test User", 100);
+        Account second = account("Test To User \u00eb", 20);
+
+        try (TransferJournal journal = open(path, new RecordingVisitor())) {
+            journal.awaitDurable(journal.appendAccounts(List.of(first, second)));
+            journal.awaitDurable(journal.appendDelete(first.getId()));
+            journal.awaitDurable(journal.appendDeleteAll());
+            journal.awaitDurable(journal.appendAccounts(List.of(second)));
+        }
+
+        RecordingVisitor visitor = new RecordingVisitor();
+        open(path, visitor).close();
+
+        assertEquals(List.of("accounts " + first + " " + second, "delete " + first.getId(), "deleteAll", "accounts " + second),
+                visitor.records);
+    }
+
+    @Test
+    public void testTornTailShouldBeCutOffOnOpen() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("transfer.journal");
+        Account account = account("Test User", 100);
+        long durable;
+        try (TransferJournal journal = open(path, new RecordingVisitor())) {
+            durable = journal.appendAccounts(List.of(account));
+            journal.awaitDurable(durable);
+            journal.awaitDurable(journal.appendAccounts(List.of(account("Test To User", 20))));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(path) - 3);
+        }
+
+        RecordingVisitor visitor = new RecordingVisitor();
+        try (TransferJournal journal = open(path, visitor)) {
+            assertEquals(durable, journal.getDurablePosition());
+            journal.awaitDurable(journal.appendDeleteAll());
+        }
+        assertEquals(List.of("accounts " + account), visitor.records);
+
+        RecordingVisitor reopened = new RecordingVisitor();
+        open(path, reopened).close();
+        assertEquals(List.of("accounts " + account, "deleteAll"), reopened.records);
+    }
+
+    @Test
+    public void testCorruptedRecordShouldEndReplay() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("transfer.journal");
+        Account account = account("Test User", 100);
+        try (TransferJournal journal = open(path, new RecordingVisitor())) {
+            journal.awaitDurable(journal.appendAccounts(List.of(account)));
+            journal.awaitDurable(journal.appendAccounts(List.of(account("Test To User", 20))));
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length - 5] ^= 0x1;
+        Files.write(path, bytes);
+
+        RecordingVisitor visitor = new RecordingVisitor();
+        open(path, visitor).close();
+        assertEquals(List.of("accounts " + account), visitor.records);
+    }
+
+    @Test
+    public void testOpenFromPositionShouldReplayOnlyLaterRecords() {
+        Path path = folder.getRoot().toPath().resolve("transfer.journal");
+        Account first = account("Test User", 100);
+        Account second = account("Test To User", 20);
+        long position;
+        try (TransferJournal journal = open(path, new RecordingVisitor())) {
+            position = journal.appendAccounts(List.of(first));
+            assertEquals(position, journal.getAppendedPosition());
+            journal.awaitDurable(journal.appendAccounts(List.of(second)));
+        }
+
+        RecordingVisitor visitor = new RecordingVisitor();
+        TransferJournal.open(path, position, visitor, 0, TimeUnit.MICROSECONDS, 64 * 1024).close();
+        assertEquals(List.of("accounts " + second), visitor.records);
+    }
+
+    @Test(expected = JournalException.class)
+    public void testOpenFromPositionShouldFailWhenJournalEndsBeforeIt() {
+        Path path = folder.getRoot().toPath().resolve("transfer.journal");
+        TransferJournal.open(path, 1024, new RecordingVisitor(), 0, TimeUnit.MICROSECONDS, 64 * 1024);
+    }
+
+    @Test(expected = JournalException.class)
+    public void testOpenShouldFailWhenFileIsNotAJournal() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("transfer.journal");
+        Files.write(path, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+        open(path, new RecordingVisitor());
+    }
+
+    @Test
+    public void testRolledSegmentsShouldBeReplayedInOrder() {
+        Path path = folder.getRoot().toPath().resolve("transfer.journal");
+        Account first = account("Test User", 100);
+        Account second = account("Test To User", 20);
+        Account third = account("Test Third User", 5);
+        long rolled;
+        try (TransferJournal journal = open(path, new RecordingVisitor())) {
+            journal.appendAccounts(List.of(first));
+            rolled = journal.roll();
+            assertEquals(rolled, journal.roll());
+            journal.awaitDurable(journal.appendAccounts(List.of(second)));
+            assertEquals(2, journal.getSegmentCount());
+        }
+        try (TransferJournal journal = open(path, new RecordingVisitor())) {
+            journal.roll();
+            journal.awaitDurable(journal.appendAccounts(List.of(third)));
+            assertEquals(3, journal.getSegmentCount());
+        }
+
+        RecordingVisitor visitor = new RecordingVisitor();
+        open(path, visitor).close();
+        assertEquals(List.of("accounts " + first, "accounts " + second, "accounts " + third), visitor.records);
+
+        RecordingVisitor fromRoll = new RecordingVisitor();
+        TransferJournal.open(path, rolled, fromRoll, 0, TimeUnit.MICROSECONDS, 64 * 1024).close();
+        assertEquals(List.of("accounts " + second, "accounts " + third), fromRoll.records);
+    }
+
+    @Test
+    public void testDeletedSegmentsShouldNotBeReplayed() {
+        Path path = folder.getRoot().toPath().resolve("transfer.journal");
+        Account second = account("Test To User", 20);
+        long rolled;
+        try (TransferJournal journal = open(path, new RecordingVisitor())) {
+            journal.appendAccounts(List.of(account("Test User", 100)));
+            rolled = journal.roll();
+            journal.awaitDurable(journal.appendAccounts(List.of(second)));
+            assertEquals(0, journal.deleteSegmentsBefore(rolled - 1));
+            assertEquals(1, journal.deleteSegmentsBefore(rolled));
+            assertEquals(0, journal.deleteSegmentsBefore(journal.getAppendedPosition()));
+        }
+        assertFalse(Files.exists(path));
+
+        RecordingVisitor visitor = new RecordingVisitor();
+        TransferJournal.open(path, rolled, visitor, 0, TimeUnit.MICROSECONDS, 64 * 1024).close();
+        assertEquals(List.of("accounts " + second), visitor.records);
+        try {
+            open(path, new RecordingVisitor());
+            fail("Journal without its first segment should not be replayed from the start.");
+        } catch (JournalException expected) {
+        }
+    }
+
+    @Test
+    public void testWhenDurableShouldCompleteOnceRecordIsForced() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("transfer.journal");
+        try (TransferJournal journal = TransferJournal.open(path, new RecordingVisitor(), 200, TimeUnit.MILLISECONDS, 1024 * 1024)) {
+            long position = journal.appendAccounts(List.of(account("Test User", 100)));
+            CompletableFuture<Void> durable = journal.whenDurable(position);
+
+            assertFalse(durable.isDone());
+            durable.get(10, TimeUnit.SECONDS);
+            assertTrue(journal.getDurablePosition() >= position);
+            assertTrue(journal.whenDurable(position).isDone());
+        }
+    }
+
+    @Test
+    public void testConcurrentWritersShouldShareForce() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("transfer.journal");
+        int writers = 16;
+        int recordsPerWriter = 200;
+        try (TransferJournal journal = TransferJournal.open(path, new RecordingVisitor(), 1, TimeUnit.MILLISECONDS, 1024 * 1024)) {
+            ExecutorService executorService = Executors.newFixedThreadPool(writers);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                futures.add(executorService.submit(() -> {
+                    for (int j = 0; j < recordsPerWriter; j++) {
+                        journal.awaitDurable(journal.appendAccounts(List.of(account(UUID.randomUUID().toString(), j))));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            executorService.shutdown();
+
+            assertTrue(journal.getForceCount() < writers * recordsPerWriter);
+        }
+
+        RecordingVisitor visitor = new RecordingVisitor();
+        open(path, visitor).close();
+        assertEquals(writers * recordsPerWriter, visitor.records.size());
+    }
+
+    private TransferJournal open(Path path, JournalVisitor visitor) {
+        return TransferJournal.open(path, visitor, 0, TimeUnit.MICROSECONDS, 64 * 1024);
+    }
+
+    private Account account(String userId, long balance) {
+        return Account.builder()
+                .id(UUID.randomUUID())
+                .userId(userId)
+                .balance(balance)
+                .version(2)
+                .build();
+    }
+
+    private static class RecordingVisitor implements JournalVisitor {
+
+        private final List<String> records = new ArrayList<>();
+
+        @Override
+        public void onAccounts(List<Account> accounts) {
+            StringBuilder record = new StringBuilder("accounts");
+            accounts.forEach(account -> record.append(' ').append(account));
+            records.add(record.toString());
+        }
+
+        @Override
+        public void onDelete(UUID accountId) {
+            records.add("delete " + accountId);
+        }
+
+        @Override
+        public void onDeleteAll() {
+            records.add("deleteAll");
+        }
+    }
+}
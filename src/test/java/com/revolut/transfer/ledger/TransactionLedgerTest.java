@@ -0,0 +1,113 @@
+package com.revolut.transfer.ledger;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionLedgerTest {
+
+    private final AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+
+    @Test
+    public void testPagesShouldWalkTheWholeHistoryNewestFirstAcrossRingAndSegments() {
+        TransactionLedger underTest = new TransactionLedger(8, 1000, clock::incrementAndGet);
+        UUID accountId = UUID.randomUUID();
+        UUID otherAccountId = UUID.randomUUID();
+        long balance = 0;
+        for (int i = 1; i <= 100; i++) {
+            balance += i;
+            if (i % 2 == 0) {
+                underTest.recordDeposit(accountId, balance, i);
+            } else {
+                underTest.recordTransfer(otherAccountId, 0, accountId, balance, i);
+            }
+        }
+
+        List<Posting> postings = new ArrayList<>();
+        long cursor = Long.MAX_VALUE;
+        while (true) {
+            List<Posting> page = underTest.getPostings(accountId, cursor, 7);
+            postings.addAll(page);
+            if (page.size() < 7) {
+                break;
+            }
+            cursor = page.get(page.size() - 1).getSequence();
+        }
+
+        assertEquals(100, postings.size());
+        assertEquals(100, underTest.getPostingCount(accountId));
+        for (int i = 0; i < postings.size(); i++) {
+            Posting posting = postings.get(i);
+            int amount = 100 - i;
+            assertEquals(amount, posting.getAmount());
+            assertEquals((long) amount * (amount + 1) / 2, posting.getBalance());
+            if (amount % 2 == 0) {
+                assertEquals(PostingType.DEPOSIT, posting.getType());
+                assertNull(posting.getCounterpartyAccountId());
+            } else {
+                assertEquals(PostingType.TRANSFER_IN, posting.getType());
+                assertEquals(otherAccountId, posting.getCounterpartyAccountId());
+            }
+            if (i > 0) {
+                assertTrue(posting.getSequence() < postings.get(i - 1).getSequence());
+                assertTrue(posting.getTimestamp() < postings.get(i - 1).getTimestamp());
+            }
+        }
+    }
+
+    @Test
+    public void testCompactedPostingsShouldKeepEveryField() {
+        TransactionLedger underTest = new TransactionLedger(2, 100, () -> -5);
+        UUID accountId = UUID.randomUUID();
+        UUID counterparty = new UUID(-1L, Long.MIN_VALUE);
+        underTest.recordTransferOut(accountId, -7, counterparty, Long.MAX_VALUE);
+        underTest.recordWithdrawal(accountId, Long.MIN_VALUE, 0);
+        underTest.recordRefund(accountId, Long.MAX_VALUE, counterparty, 1);
+        underTest.recordDeposit(accountId, 0, 3);
+
+        List<Posting> postings = underTest.getPostings(accountId, Long.MAX_VALUE, 10);
+
+        assertEquals(4, postings.size());
+        assertEquals(new Posting(1, PostingType.TRANSFER_OUT, -Long.MAX_VALUE, -7, counterparty, -5), postings.get(3));
+        assertEquals(new Posting(2, PostingType.WITHDRAWAL, 0, Long.MIN_VALUE, null, -5), postings.get(2));
+        assertEquals(new Posting(3, PostingType.REFUND, 1, Long.MAX_VALUE, counterparty, -5), postings.get(1));
+        assertEquals(new Posting(4, PostingType.DEPOSIT, 3, 0, null, -5), postings.get(0));
+    }
+
+    @Test
+    public void testOldestPostingsShouldBeDroppedAboveRetainedPostings() {
+        TransactionLedger underTest = new TransactionLedger(16, 64, clock::get);
+        UUID accountId = UUID.randomUUID();
+        for (int i = 1; i <= 1000; i++) {
+            underTest.recordDeposit(accountId, i, 1);
+        }
+
+        List<Posting> postings = underTest.getPostings(accountId, Long.MAX_VALUE, TransactionLedger.MAX_PAGE_SIZE);
+
+        assertTrue(postings.size() <= 64);
+        assertTrue(postings.size() > 64 - 16);
+        assertEquals(postings.size(), underTest.getPostingCount(accountId));
+        assertEquals(1000, postings.get(0).getBalance());
+        assertEquals(1000 - postings.size() + 1, postings.get(postings.size() - 1).getBalance());
+    }
+
+    @Test
+    public void testDisabledLedgerShouldRecordNothing() {
+        TransactionLedger underTest = TransactionLedger.disabled();
+        UUID accountId = UUID.randomUUID();
+        underTest.recordDeposit(accountId, 10, 10);
+        underTest.recordTransfer(accountId, 0, UUID.randomUUID(), 10, 10);
+
+        assertFalse(underTest.isEnabled());
+        assertTrue(underTest.getPostings(accountId, Long.MAX_VALUE, 10).isEmpty());
+        assertEquals(0, underTest.getSequence());
+    }
+}
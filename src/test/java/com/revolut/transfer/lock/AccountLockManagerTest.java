@@ -0,0 +1,106 @@
+package com.revolut.transfer.lock;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AccountLockManagerTest {
+
+    @Test
+    public void testStripesShouldBeRoundedUpToPowerOfTwo() {
+        assertEquals(1, new AccountLockManager(1).getStripes());
+        assertEquals(8, new AccountLockManager(5).getStripes());
+        assertEquals(1024, new AccountLockManager().getStripes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testShouldThrowIllegalArgumentWhenStripesAreNotPositive() {
+        new AccountLockManager(0);
+    }
+
+    @Test
+    public void testSameAccountShouldAlwaysGetSameLock() {
+        AccountLockManager underTest = new AccountLockManager();
+        UUID accountId = UUID.randomUUID();
+        assertSame(underTest.lockFor(accountId), underTest.lockFor(UUID.fromString(accountId.toString())));
+    }
+
+    @Test
+    public void testTransferLocksShouldBeOrderedByStripeRegardlessOfDirection() {
+        AccountLockManager underTest = new AccountLockManager(64);
+        for (int i = 0; i < 1000; i++) {
+            UUID fromAccount = UUID.randomUUID();
+            UUID toAccount = UUID.randomUUID();
+
+            assertSame(underTest.firstLockFor(fromAccount, toAccount), underTest.firstLockFor(toAccount, fromAccount));
+            assertSame(underTest.secondLockFor(fromAccount, toAccount), underTest.secondLockFor(toAccount, fromAccount));
+            assertTrue(underTest.stripeOf(fromAccount) < 64);
+        }
+    }
+
+    @Test
+    public void testSingleStripeShouldShareLockBetweenAccounts() {
+        AccountLockManager underTest = new AccountLockManager(1);
+        UUID fromAccount = UUID.randomUUID();
+        UUID toAccount = UUID.randomUUID();
+        assertSame(underTest.firstLockFor(fromAccount, toAccount), underTest.secondLockFor(fromAccount, toAccount));
+    }
+
+    @Test
+    public void testCallWithLocksShouldHoldLocksOfAllAccounts() {
+        AccountLockManager underTest = new AccountLockManager(16);
+        List<UUID> accountIds = Arrays.asList(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+
+        boolean allHeld = underTest.callWithLocks(accountIds,
+                () -> accountIds.stream().allMatch(accountId -> underTest.lockFor(accountId).isHeldByCurrentThread()));
+
+        assertTrue(allHeld);
+        accountIds.forEach(accountId -> assertFalse(underTest.lockFor(accountId).isHeldByCurrentThread()));
+    }
+
+    @Test
+    public void testCallWithAllLocksShouldHoldEveryStripe() {
+        AccountLockManager underTest = new AccountLockManager(8);
+        List<UUID> accountIds = Arrays.asList(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+
+        boolean allHeld = underTest.callWithAllLocks(
+                () -> accountIds.stream().allMatch(accountId -> underTest.lockFor(accountId).isHeldByCurrentThread()));
+
+        assertTrue(allHeld);
+        accountIds.forEach(accountId -> assertFalse(underTest.lockFor(accountId).isHeldByCurrentThread()));
+    }
+
+    @Test
+    public void testLockShouldRecordWaitForContendedLock() throws InterruptedException {
+        AccountLockManager underTest = new AccountLockManager(1);
+        ReentrantLock lock = underTest.lockFor(UUID.randomUUID());
+
+        underTest.lock(lock);
+        lock.unlock();
+        lock.lock();
+        Thread waiter = new Thread(() -> {
+            underTest.lock(lock);
+            lock.unlock();
+        });
+        waiter.start();
+        while (!lock.hasQueuedThreads()) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(20);
+        lock.unlock();
+        waiter.join();
+
+        assertEquals(2, underTest.getLockWaits().snapshot().getCount());
+        assertEquals(0, underTest.getLockWaits().snapshot().valueAt(0.5));
+        assertTrue(underTest.getLockWaits().snapshot().getMaxNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+}
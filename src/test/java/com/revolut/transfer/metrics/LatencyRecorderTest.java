@@ -0,0 +1,61 @@
+package com.revolut.transfer.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyRecorderTest {
+
+    @Test
+    public void testEveryValueShouldBeInBucketWithinSixPercent() {
+        for (long value = 0; value < 1L << 40; value = value * 17 / 16 + 1) {
+            int index = LatencyRecorder.indexOf(value);
+            long highest = LatencyRecorder.highestValueOf(index);
+            assertTrue(value + " above " + highest, value <= highest);
+            assertTrue(value + " too far below " + highest, highest - value <= Math.max(0, value / 16));
+            assertTrue(index < LatencyRecorder.BUCKETS);
+        }
+    }
+
+    @Test
+    public void testQuantilesShouldBeNeverBelowRecordedValues() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (int value = 1; value <= 1000; value++) {
+            recorder.record(value * 1000L);
+        }
+
+        LatencyRecorder.Snapshot snapshot = recorder.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500_500_000L, snapshot.getSumNanos());
+        assertInRange(500_000, snapshot.valueAt(0.5));
+        assertInRange(990_000, snapshot.valueAt(0.99));
+        assertInRange(1_000_000, snapshot.valueAt(1));
+        assertInRange(1_000_000, snapshot.getMaxNanos());
+    }
+
+    @Test
+    public void testOutOfRangeValuesShouldBeClamped() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        recorder.record(-5);
+        recorder.record(Long.MAX_VALUE);
+
+        LatencyRecorder.Snapshot snapshot = recorder.snapshot();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(0, snapshot.valueAt(0.5));
+        assertEquals(LatencyRecorder.highestValueOf(LatencyRecorder.BUCKETS - 1), snapshot.getMaxNanos());
+    }
+
+    @Test
+    public void testEmptyRecorderShouldReportZero() {
+        LatencyRecorder.Snapshot snapshot = new LatencyRecorder().snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.valueAt(0.99));
+        assertEquals(0, snapshot.getMaxNanos());
+    }
+
+    private static void assertInRange(long expected, long actual) {
+        assertTrue(actual + " below " + expected, actual >= expected);
+        assertTrue(actual + " too far above " + expected, actual <= expected + expected / 16);
+    }
+}
@@ -0,0 +1,149 @@
+package com.revolut.transfer.repository;
+
+import com.revolut.transfer.execption.AccountAlreadyExistsException;
+import com.revolut.transfer.model.Account;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.revolut.transfer.data.MoneyTransferData.getAccountInstance;
+import static com.revolut.transfer.data.MoneyTransferData.getMinorUnits;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AccountRepositoryImplTest {
+
+    private static final String TEST_USER_ID = "Test User";
+
+    private AccountRepositoryImpl underTest;
+
+    @Before
+    public void setup() {
+        underTest = new AccountRepositoryImpl();
+    }
+
+    @Test
+    public void testSaveIfUserAbsentShouldRejectSecondAccountForSameUser() {
+        assertTrue(underTest.saveIfUserAbsent(getAccountInstance(UUID.randomUUID(), TEST_USER_ID, 10)));
+        assertFalse(underTest.saveIfUserAbsent(getAccountInstance(UUID.randomUUID(), TEST_USER_ID, 10)));
+        assertEquals(1, underTest.getAllAccounts().size());
+    }
+
+    @Test
+    public void testUserIndexShouldFollowSaveAndDelete() {
+        UUID accountId = UUID.randomUUID();
+        underTest.save(getAccountInstance(accountId, TEST_USER_ID, 10));
+        assertTrue(underTest.isUserExists(TEST_USER_ID));
+
+        underTest.deleteAccount(accountId);
+        assertFalse(underTest.isUserExists(TEST_USER_ID));
+        assertTrue(underTest.saveIfUserAbsent(getAccountInstance(UUID.randomUUID(), TEST_USER_ID, 10)));
+    }
+
+    @Test
+    public void testSaveShouldRejectUserIdOfAnotherAccount() {
+        UUID accountId = UUID.randomUUID();
+        UUID otherAccountId = UUID.randomUUID();
+        underTest.save(getAccountInstance(accountId, TEST_USER_ID, 10));
+        underTest.save(getAccountInstance(otherAccountId, "Test User 2", 20));
+
+        try {
+            underTest.save(getAccountInstance(otherAccountId, TEST_USER_ID, 30));
+            fail("Save should fail when another account has the userId.");
+        } catch (AccountAlreadyExistsException expected) {
+        }
+        try {
+            underTest.save(getAccountInstance(UUID.randomUUID(), TEST_USER_ID, 30));
+            fail("Save should fail when another account has the userId.");
+        } catch (AccountAlreadyExistsException expected) {
+        }
+
+        assertEquals(TEST_USER_ID, underTest.getAccountById(accountId).getUserId());
+        assertEquals("Test User 2", underTest.getAccountById(otherAccountId).getUserId());
+        assertEquals(getMinorUnits(20), underTest.getAccountById(otherAccountId).getBalance());
+        assertEquals(2, underTest.getAllAccounts().size());
+        underTest.deleteAccount(accountId);
+        assertFalse(underTest.isUserExists(TEST_USER_ID));
+        assertTrue(underTest.isUserExists("Test User 2"));
+    }
+
+    @Test
+    public void testUserIndexShouldFollowSaveAllAndDeleteAll() {
+        underTest.saveAll(List.of(getAccountInstance(UUID.randomUUID(), TEST_USER_ID, 10),
+                getAccountInstance(UUID.randomUUID(), "Test User 2", 10)));
+        assertTrue(underTest.isUserExists(TEST_USER_ID));
+        assertTrue(underTest.isUserExists("Test User 2"));
+
+        underTest.deleteAllAccounts();
+        assertFalse(underTest.isUserExists(TEST_USER_ID));
+        assertFalse(underTest.isUserExists("Test User 2"));
+    }
+
+    @Test
+    public void testAccountsAfterCursorShouldBeListedOnceInIdOrder() {
+        List<UUID> accountIds = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            UUID accountId = UUID.randomUUID();
+            accountIds.add(accountId);
+            underTest.save(getAccountInstance(accountId, TEST_USER_ID + i, i));
+        }
+        accountIds.sort(null);
+
+        List<UUID> listed = new ArrayList<>();
+        UUID cursor = null;
+        List<Account> page;
+        do {
+            page = underTest.getAccountsAfter(cursor, 10);
+            assertTrue(page.size() <= 10);
+            for (Account account : page) {
+                listed.add(account.getId());
+                cursor = account.getId();
+            }
+        } while (!page.isEmpty());
+        assertEquals(accountIds, listed);
+    }
+
+    @Test
+    public void testUserIndexShouldFollowChangedUserId() {
+        UUID accountId = UUID.randomUUID();
+        underTest.save(getAccountInstance(accountId, TEST_USER_ID, 10));
+        underTest.save(getAccountInstance(accountId, "Test User 2", 10));
+
+        assertFalse(underTest.isUserExists(TEST_USER_ID));
+        assertTrue(underTest.isUserExists("Test User 2"));
+    }
+
+    @Test
+    public void testConcurrentSaveIfUserAbsentShouldCreateOneAccount() throws Exception {
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Account account = getAccountInstance(UUID.randomUUID(), TEST_USER_ID, 10);
+            results.add(executorService.submit(() -> {
+                start.await();
+                return underTest.saveIfUserAbsent(account);
+            }));
+        }
+        start.countDown();
+
+        int created = 0;
+        for (Future<Boolean> result : results) {
+            created += result.get() ? 1 : 0;
+        }
+        executorService.shutdown();
+
+        assertEquals(1, created);
+        assertEquals(1, underTest.getAllAccounts().size());
+    }
+}
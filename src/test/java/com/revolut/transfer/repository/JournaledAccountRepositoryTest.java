@@ -0,0 +1,369 @@
+package com.revolut.transfer.repository;
+
+import com.revolut.transfer.converter.AccountResponseConverter;
+import com.revolut.transfer.execption.AccountAlreadyExistsException;
+import com.revolut.transfer.execption.InsufficientBalanceException;
+import com.revolut.transfer.execption.JournalException;
+import com.revolut.transfer.journal.TransferJournal;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.lock.AccountLockManager;
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.service.AccountService;
+import com.revolut.transfer.service.AccountServiceImpl;
+import com.revolut.transfer.service.OptimisticAccountServiceImpl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.revolut.transfer.data.MoneyTransferData.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JournaledAccountRepositoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testChangesShouldBeRecoveredAfterRestart() {
+        Path path = folder.getRoot().toPath().resolve("transfer.journal");
+        UUID firstAccountId = UUID.randomUUID();
+        UUID secondAccountId = UUID.randomUUID();
+        UUID deletedAccountId = UUID.randomUUID();
+
+        JournaledAccountRepository underTest = open(path, new AccountRepositoryImpl());
+        underTest.saveIfUserAbsent(getAccountInstance(firstAccountId, "Test User", 60));
+        assertFalse(underTest.saveIfUserAbsent(getAccountInstance(UUID.randomUUID(), "Test User", 60)));
+        underTest.save(getAccountInstance(secondAccountId, "Test To User", 20));
+        underTest.save(getAccountInstance(deletedAccountId, "Deleted User", 20));
+        underTest.saveAll(List.of(getAccountInstance(firstAccountId, "Test User", 30), getAccountInstance(secondAccountId, "Test To User", 50)));
+        underTest.deleteAccount(deletedAccountId);
+        underTest.getJournal().close();
+
+        AccountRepository recovered = new OffHeapAccountRepository(16);
+        open(path, recovered).getJournal().close();
+
+        assertEquals(getMinorUnits(30), recovered.getAccountById(firstAccountId).getBalance());
+        assertEquals(getMinorUnits(50), recovered.getAccountById(secondAccountId).getBalance());
+        assertNull(recovered.getAccountById(deletedAccountId));
+        assertEquals(2, recovered.getAllAccounts().size());
+    }
+
+    @Test
+    public void testAccountsSavedInBulkShouldBeRecoveredExceptTakenUsers() {
+        Path path = folder.getRoot().toPath().resolve("transfer.journal");
+        UUID firstAccountId = UUID.randomUUID();
+        UUID secondAccountId = UUID.randomUUID();
+        Account taken = getAccountInstance(UUID.randomUUID(), "Test User", 10);
+        Account duplicate = getAccountInstance(UUID.randomUUID(), "Test To User", 10);
+
+        JournaledAccountRepository underTest = open(path, new AccountRepositoryImpl());
+        underTest.saveIfUserAbsent(getAccountInstance(firstAccountId, "Test User", 60));
+        List<Account> rejected = underTest.saveAllIfUsersAbsent(List.of(taken, getAccountInstance(secondAccountId, "Test To User", 20),
+                duplicate));
+        underTest.getJournal().close();
+
+        assertEquals(List.of(taken, duplicate), rejected);
+        AccountRepository recovered = new AccountRepositoryImpl();
+        open(path, recovered).getJournal().close();
+        assertEquals(getMinorUnits(60), recovered.getAccountById(firstAccountId).getBalance());
+        assertEquals(getMinorUnits(20), recovered.getAccountById(secondAccountId).getBalance());
+        assertEquals(2, recovered.getAllAccounts().size());
+    }
+
+    @Test
+    public void testOptimisticTransfersShouldBeRecoveredWithoutClaims() {
+        Path path = folder.getRoot().toPath().resolve("transfer.journal");
+        UUID fromAccountId = UUID.randomUUID();
+        UUID toAccountId = UUID.randomUUID();
+
+        JournaledAccountRepository underTest = open(path, new AccountRepositoryImpl());
+        OptimisticAccountServiceImpl accountService = new OptimisticAccountServiceImpl(underTest, new AccountResponseConverter(),
+                TransactionLedger.disabled());
+        underTest.save(getAccountInstance(fromAccountId, "Test User", 60));
+        underTest.save(getAccountInstance(toAccountId, "Test To User", 20));
+        accountService.transferMoney(getTransferMoneyInstance(fromAccountId, toAccountId, 30));
+        accountService.depositMoney(getDepositMoneyInstance(toAccountId, 5));
+        underTest.getJournal().close();
+
+        AccountRepository recovered = new AccountRepositoryImpl();
+        open(path, recovered).getJournal().close();
+
+        Account fromAccount = recovered.getAccountById(fromAccountId);
+        Account toAccount = recovered.getAccountById(toAccountId);
+        assertEquals(getMinorUnits(30), fromAccount.getBalance());
+        assertEquals(getMinorUnits(55), toAccount.getBalance());
+        assertEquals(2, fromAccount.getVersion());
+        assertEquals(4, toAccount.getVersion());
+    }
+
+    @Test
+    public void testReleasedClaimsShouldNotBeJournaled() {
+        Path path = folder.getRoot().toPath().resolve("transfer.journal");
+        UUID accountId = UUID.randomUUID();
+
+        JournaledAccountRepository underTest = open(path, new AccountRepositoryImpl());
+        Account committed = getAccountInstance(accountId, "Test User", 60);
+        underTest.save(committed);
+        long appended = underTest.getJournal().getAppendedPosition();
+        Account claimed = committed.toBuilder().version(committed.getVersion() + 1).build();
+        Account released = committed.toBuilder().version(committed.getVersion() + 2).build();
+
+        assertTrue(underTest.replace(committed, claimed));
+        assertTrue(underTest.replace(claimed, released));
+        assertEquals(appended, underTest.getJournal().getAppendedPosition());
+        assertTrue(underTest.replace(released, released.toBuilder().balance(getMinorUnits(50)).build()));
+        assertTrue(underTest.getJournal().getAppendedPosition() > appended);
+        underTest.getJournal().close();
+    }
+
+    @Test
+    public void testChangesShouldNotBeAppliedWhenJournalIsBroken() {
+        Path path = folder.getRoot().toPath().resolve("transfer.journal");
+        UUID fromAccountId = UUID.randomUUID();
+        UUID toAccountId = UUID.randomUUID();
+        UUID newAccountId = UUID.randomUUID();
+
+        JournaledAccountRepository underTest = open(path, new AccountRepositoryImpl());
+        AccountService accountService = new AccountServiceImpl(underTest, new AccountResponseConverter(), new AccountLockManager(),
+                TransactionLedger.disabled());
+        OptimisticAccountServiceImpl optimisticAccountService = new OptimisticAccountServiceImpl(underTest,
+                new AccountResponseConverter(), TransactionLedger.disabled());
+        underTest.save(getAccountInstance(fromAccountId, "Test User", 60));
+        underTest.save(getAccountInstance(toAccountId, "Test To User", 20));
+        Account stored = underTest.getAccountById(fromAccountId);
+        underTest.getJournal().close();
+
+        assertJournalException(() -> underTest.replace(stored, stored.toBuilder().balance(getMinorUnits(90)).build()));
+        assertJournalException(() -> accountService.transferMoney(getTransferMoneyInstance(fromAccountId, toAccountId, 30)));
+        assertJournalException(() -> accountService.depositMoney(getDepositMoneyInstance(toAccountId, 5)));
+        assertJournalException(() -> optimisticAccountService.transferMoney(getTransferMoneyInstance(fromAccountId, toAccountId, 30)));
+        assertJournalException(() -> underTest.save(getAccountInstance(fromAccountId, "Test User", 90)));
+        assertJournalException(() -> underTest.saveAll(List.of(getAccountInstance(toAccountId, "Test To User", 90),
+                getAccountInstance(newAccountId, "New User", 90))));
+        assertJournalException(() -> underTest.saveIfUserAbsent(getAccountInstance(newAccountId, "New User", 90)));
+        assertJournalException(() -> underTest.deleteAccount(toAccountId));
+        assertJournalException(underTest::deleteAllAccounts);
+
+        assertEquals(getMinorUnits(60), underTest.getAccountById(fromAccountId).getBalance());
+        assertEquals(getMinorUnits(20), underTest.getAccountById(toAccountId).getBalance());
+        assertEquals(0, underTest.getAccountById(fromAccountId).getVersion() & 1);
+        assertNull(underTest.getAccountById(newAccountId));
+        assertFalse(underTest.isUserExists("New User"));
+        assertEquals(2, underTest.size());
+    }
+
+    @Test
+    public void testChangesInsideDurablyShouldBeWaitedForOnlyAtTheEnd() {
+        Path path = folder.getRoot().toPath().resolve("transfer.journal");
+        JournaledAccountRepository underTest = JournaledAccountRepository.open(new AccountRepositoryImpl(), path, 200_000, 1024 * 1024);
+        TransferJournal journal = underTest.getJournal();
+
+        long appended = underTest.durably(() -> {
+            underTest.save(getAccountInstance(UUID.randomUUID(), "Test User", 60));
+            underTest.durably(() -> {
+                underTest.save(getAccountInstance(UUID.randomUUID(), "Test To User", 20));
+                return null;
+            });
+            assertTrue(journal.getDurablePosition() < journal.getAppendedPosition());
+            return journal.getAppendedPosition();
+        });
+
+        assertTrue(journal.getDurablePosition() >= appended);
+        underTest.save(getAccountInstance(UUID.randomUUID(), "Other User", 10));
+        assertEquals(journal.getAppendedPosition(), journal.getDurablePosition());
+        journal.close();
+    }
+
+    @Test
+    public void testDeleteAllAccountsShouldBeRecovered() {
+        Path path = folder.getRoot().toPath().resolve("transfer.journal");
+
+        JournaledAccountRepository underTest = open(path, new AccountRepositoryImpl());
+        underTest.save(getAccountInstance(UUID.randomUUID(), "Test User", 60));
+        underTest.deleteAllAccounts();
+        underTest.getJournal().close();
+
+        AccountRepository recovered = new AccountRepositoryImpl();
+        open(path, recovered).getJournal().close();
+        assertEquals(0, recovered.getAllAccounts().size());
+        assertFalse(recovered.isUserExists("Test User"));
+    }
+
+    @Test
+    public void testSnapshotShouldBeLoadedBeforeJournalTail() {
+        Path path = folder.getRoot().toPath().resolve("transfer.journal");
+        Path snapshotPath = folder.getRoot().toPath().resolve("accounts.snapshot");
+        UUID firstAccountId = UUID.randomUUID();
+        UUID secondAccountId = UUID.randomUUID();
+        UUID deletedAccountId = UUID.randomUUID();
+
+        JournaledAccountRepository underTest = open(path, new AccountRepositoryImpl());
+        underTest.save(getAccountInstance(firstAccountId, "Test User", 60));
+        underTest.save(getAccountInstance(deletedAccountId, "Deleted User", 20));
+        assertEquals(2, underTest.writeSnapshot(snapshotPath));
+        underTest.save(getAccountInstance(secondAccountId, "Test To User", 20));
+        underTest.saveAll(List.of(getAccountInstance(firstAccountId, "Test User", 30), getAccountInstance(secondAccountId, "Test To User", 50)));
+        underTest.deleteAccount(deletedAccountId);
+        underTest.getJournal().close();
+
+        AccountRepository recovered = new OffHeapAccountRepository(16);
+        JournaledAccountRepository reopened = JournaledAccountRepository.open(recovered, path, snapshotPath, 0, 64 * 1024);
+        reopened.getJournal().close();
+
+        assertEquals(getMinorUnits(30), recovered.getAccountById(firstAccountId).getBalance());
+        assertEquals(getMinorUnits(50), recovered.getAccountById(secondAccountId).getBalance());
+        assertNull(recovered.getAccountById(deletedAccountId));
+        assertEquals(2, recovered.getAllAccounts().size());
+    }
+
+    @Test
+    public void testSnapshotTakenDuringTransfersShouldRecoverLatestBalances() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("transfer.journal");
+        Path snapshotPath = folder.getRoot().toPath().resolve("accounts.snapshot");
+        int accounts = 16;
+
+        JournaledAccountRepository underTest = JournaledAccountRepository.open(new AccountRepositoryImpl(), path, 100, 64 * 1024);
+        AccountService accountService = new AccountServiceImpl(underTest, new AccountResponseConverter(), new AccountLockManager(),
+                TransactionLedger.disabled());
+        List<UUID> accountIds = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            UUID accountId = UUID.randomUUID();
+            accountIds.add(accountId);
+            underTest.save(getAccountInstance(accountId, "Test User " + i, 1000));
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(executorService.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int j = 0; j < 500; j++) {
+                    int from = random.nextInt(accounts);
+                    int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+                    try {
+                        accountService.transferMoney(getTransferMoneyInstance(accountIds.get(from), accountIds.get(to), random.nextInt(50)));
+                    } catch (InsufficientBalanceException ignored) {
+                    }
+                }
+            }));
+        }
+        while (!futures.stream().allMatch(Future::isDone)) {
+            underTest.writeSnapshot(snapshotPath);
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+        underTest.getJournal().close();
+
+        AccountRepository recovered = new AccountRepositoryImpl();
+        JournaledAccountRepository.open(recovered, path, snapshotPath, 0, 64 * 1024).getJournal().close();
+
+        long total = 0;
+        for (UUID accountId : accountIds) {
+            assertEquals(underTest.getAccountById(accountId), recovered.getAccountById(accountId));
+            total += recovered.getAccountById(accountId).getBalance();
+        }
+        assertEquals(getMinorUnits(1000 * accounts), total);
+    }
+
+    @Test
+    public void testSnapshotsShouldDeleteJournalSegmentsNoSnapshotNeeds() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("transfer.journal");
+        Path snapshotPath = folder.getRoot().toPath().resolve("accounts.snapshot");
+        UUID accountId = UUID.randomUUID();
+
+        JournaledAccountRepository underTest = open(path, new AccountRepositoryImpl());
+        for (int i = 1; i <= 4; i++) {
+            underTest.save(getAccountInstance(accountId, "Test User", 10 * i));
+            underTest.writeSnapshot(snapshotPath);
+        }
+        underTest.save(getAccountInstance(accountId, "Test User", 50));
+        assertEquals(2, underTest.getJournal().getSegmentCount());
+        underTest.getJournal().close();
+        assertFalse(Files.exists(path));
+        byte[] bytes = Files.readAllBytes(snapshotPath);
+        bytes[bytes.length - 1] ^= 0x1;
+        Files.write(snapshotPath, bytes);
+
+        AccountRepository recovered = new AccountRepositoryImpl();
+        JournaledAccountRepository.open(recovered, path, snapshotPath, 0, 64 * 1024).getJournal().close();
+
+        assertEquals(getMinorUnits(50), recovered.getAccountById(accountId).getBalance());
+    }
+
+    @Test
+    public void testCorruptedSnapshotShouldFallBackToWholeJournal() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("transfer.journal");
+        Path snapshotPath = folder.getRoot().toPath().resolve("accounts.snapshot");
+        UUID accountId = UUID.randomUUID();
+
+        JournaledAccountRepository underTest = open(path, new AccountRepositoryImpl());
+        underTest.save(getAccountInstance(accountId, "Test User", 60));
+        underTest.writeSnapshot(snapshotPath);
+        underTest.save(getAccountInstance(UUID.randomUUID(), "Test To User", 20));
+        underTest.getJournal().close();
+        byte[] bytes = Files.readAllBytes(snapshotPath);
+        bytes[bytes.length - 1] ^= 0x1;
+        Files.write(snapshotPath, bytes);
+
+        AccountRepository recovered = new AccountRepositoryImpl();
+        JournaledAccountRepository.open(recovered, path, snapshotPath, 0, 64 * 1024).getJournal().close();
+
+        assertEquals(getMinorUnits(60), recovered.getAccountById(accountId).getBalance());
+        assertEquals(2, recovered.getAllAccounts().size());
+    }
+
+    @Test
+    public void testBulkSaveShouldBeUndoneWhenUserIdOfAnotherAccountIsGiven() {
+        Path path = folder.getRoot().toPath().resolve("transfer.journal");
+        UUID firstAccountId = UUID.randomUUID();
+        UUID secondAccountId = UUID.randomUUID();
+
+        JournaledAccountRepository underTest = open(path, new AccountRepositoryImpl());
+        underTest.save(getAccountInstance(firstAccountId, "Test User", 60));
+        underTest.save(getAccountInstance(secondAccountId, "Test To User", 20));
+        try {
+            underTest.saveAll(List.of(getAccountInstance(firstAccountId, "Test User", 30),
+                    getAccountInstance(UUID.randomUUID(), "Test To User", 50)));
+            fail("Bulk save should fail when another account has the userId.");
+        } catch (AccountAlreadyExistsException expected) {
+        }
+        assertEquals(getMinorUnits(60), underTest.getAccountById(firstAccountId).getBalance());
+        assertEquals(2, underTest.getAllAccounts().size());
+        underTest.getJournal().close();
+
+        AccountRepository recovered = new AccountRepositoryImpl();
+        open(path, recovered).getJournal().close();
+
+        assertEquals(getMinorUnits(60), recovered.getAccountById(firstAccountId).getBalance());
+        assertEquals(2, recovered.getAllAccounts().size());
+    }
+
+    private static void assertJournalException(Runnable change) {
+        try {
+            change.run();
+            fail("Change should fail when the journal can not append it.");
+        } catch (JournalException expected) {
+        }
+    }
+
+    private JournaledAccountRepository open(Path path, AccountRepository accountRepository) {
+        return JournaledAccountRepository.open(accountRepository, path, 0, 64 * 1024);
+    }
+}
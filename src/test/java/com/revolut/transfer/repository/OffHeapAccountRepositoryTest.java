@@ -0,0 +1,263 @@
+package com.revolut.transfer.repository;
+
+import com.revolut.transfer.converter.AccountResponseConverter;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.lock.AccountLockManager;
+import com.revolut.transfer.execption.AccountAlreadyExistsException;
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.service.AccountServiceImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.revolut.transfer.data.MoneyTransferData.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OffHeapAccountRepositoryTest {
+
+    private static final String TEST_USER_ID = "Test User";
+
+    private OffHeapAccountRepository underTest;
+
+    @Before
+    public void setup() {
+        underTest = new OffHeapAccountRepository(16);
+    }
+
+    @Test
+    public void testSavedAccountShouldBeReadBack() {
+        UUID accountId = UUID.randomUUID();
+        Account account = getAccountInstance(accountId, "Zo\u00eb \u0141ukasz", 25.5);
+        account.setVersion(4);
+        underTest.save(account);
+
+        assertEquals(account, underTest.getAccountById(accountId));
+        assertTrue(underTest.isUserExists("Zo\u00eb \u0141ukasz"));
+        assertNull(underTest.getAccountById(UUID.randomUUID()));
+    }
+
+    @Test
+    public void testSaveShouldUpdateExistingAccount() {
+        UUID accountId = UUID.randomUUID();
+        underTest.save(getAccountInstance(accountId, TEST_USER_ID, 10));
+        underTest.save(getAccountInstance(accountId, TEST_USER_ID, 20));
+
+        assertEquals(getMinorUnits(20), underTest.getAccountById(accountId).getBalance());
+        assertEquals(1, underTest.getAllAccounts().size());
+    }
+
+    @Test
+    public void testForEachAccountShouldVisitEveryAccountOnce() {
+        for (int i = 0; i < 1000; i++) {
+            underTest.save(getAccountInstance(UUID.randomUUID(), TEST_USER_ID + i, i));
+        }
+        List<Account> visited = new ArrayList<>();
+        underTest.forEachAccount(visited::add);
+
+        assertEquals(1000, visited.size());
+        assertTrue(visited.containsAll(underTest.getAllAccounts()));
+    }
+
+    @Test
+    public void testUserIndexShouldFollowChangedUserId() {
+        UUID accountId = UUID.randomUUID();
+        underTest.save(getAccountInstance(accountId, TEST_USER_ID, 10));
+        underTest.save(getAccountInstance(accountId, "Test User 2", 10));
+
+        assertFalse(underTest.isUserExists(TEST_USER_ID));
+        assertTrue(underTest.isUserExists("Test User 2"));
+        assertEquals("Test User 2", underTest.getAccountById(accountId).getUserId());
+    }
+
+    @Test
+    public void testSaveIfUserAbsentShouldRejectSecondAccountForSameUser() {
+        assertTrue(underTest.saveIfUserAbsent(getAccountInstance(UUID.randomUUID(), TEST_USER_ID, 10)));
+        assertFalse(underTest.saveIfUserAbsent(getAccountInstance(UUID.randomUUID(), TEST_USER_ID, 10)));
+        assertEquals(1, underTest.getAllAccounts().size());
+    }
+
+    @Test
+    public void testSaveShouldRejectUserIdOfAnotherAccount() {
+        UUID accountId = UUID.randomUUID();
+        UUID otherAccountId = UUID.randomUUID();
+        underTest.save(getAccountInstance(accountId, TEST_USER_ID, 10));
+        underTest.save(getAccountInstance(otherAccountId, "Test User 2", 20));
+
+        try {
+            underTest.save(getAccountInstance(otherAccountId, TEST_USER_ID, 30));
+            fail("Save should fail when another account has the userId.");
+        } catch (AccountAlreadyExistsException expected) {
+        }
+        try {
+            underTest.save(getAccountInstance(UUID.randomUUID(), TEST_USER_ID, 30));
+            fail("Save should fail when another account has the userId.");
+        } catch (AccountAlreadyExistsException expected) {
+        }
+
+        assertEquals(TEST_USER_ID, underTest.getAccountById(accountId).getUserId());
+        assertEquals("Test User 2", underTest.getAccountById(otherAccountId).getUserId());
+        assertEquals(getMinorUnits(20), underTest.getAccountById(otherAccountId).getBalance());
+        assertEquals(2, underTest.getAllAccounts().size());
+        underTest.deleteAccount(accountId);
+        assertFalse(underTest.isUserExists(TEST_USER_ID));
+        assertTrue(underTest.isUserExists("Test User 2"));
+    }
+
+    @Test
+    public void testReplaceShouldOnlySucceedOnExpectedVersion() {
+        UUID accountId = UUID.randomUUID();
+        Account account = getAccountInstance(accountId, TEST_USER_ID, 10);
+        underTest.save(account);
+
+        Account updated = account.toBuilder().balance(getMinorUnits(30)).version(2).build();
+        assertTrue(underTest.replace(account, updated));
+        assertFalse(underTest.replace(account, updated));
+        assertEquals(updated, underTest.getAccountById(accountId));
+    }
+
+    @Test
+    public void testDeleteShouldRemoveAccountAndUser() {
+        UUID accountId = UUID.randomUUID();
+        underTest.save(getAccountInstance(accountId, TEST_USER_ID, 10));
+        underTest.deleteAccount(accountId);
+
+        assertNull(underTest.getAccountById(accountId));
+        assertFalse(underTest.isUserExists(TEST_USER_ID));
+        assertTrue(underTest.saveIfUserAbsent(getAccountInstance(UUID.randomUUID(), TEST_USER_ID, 10)));
+
+        underTest.deleteAllAccounts();
+        assertFalse(underTest.isUserExists(TEST_USER_ID));
+        assertTrue(underTest.getAllAccounts().isEmpty());
+    }
+
+    @Test
+    public void testAccountsAfterCursorShouldSkipDeletedAccountsInIdOrder() {
+        List<UUID> accountIds = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            UUID accountId = UUID.randomUUID();
+            underTest.save(getAccountInstance(accountId, TEST_USER_ID + i, i));
+            if (i % 3 == 0) {
+                underTest.deleteAccount(accountId);
+            } else {
+                accountIds.add(accountId);
+            }
+        }
+        accountIds.sort(null);
+
+        List<UUID> listed = new ArrayList<>();
+        UUID cursor = null;
+        List<Account> page;
+        do {
+            page = underTest.getAccountsAfter(cursor, 100);
+            assertTrue(page.size() <= 100);
+            for (Account account : page) {
+                listed.add(account.getId());
+                cursor = account.getId();
+            }
+        } while (!page.isEmpty());
+        assertEquals(accountIds, listed);
+    }
+
+    @Test
+    public void testUserIdsOfChangedAccountsShouldBeReclaimed() {
+        List<UUID> accountIds = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            accountIds.add(UUID.randomUUID());
+        }
+        String padding = "-".repeat(64);
+        for (int round = 0; round < 50; round++) {
+            for (int i = 0; i < accountIds.size(); i++) {
+                underTest.save(getAccountInstance(accountIds.get(i), TEST_USER_ID + round + padding + i, i));
+            }
+        }
+        OffHeapAccountRepository rebuilt = new OffHeapAccountRepository(16);
+        for (int i = 0; i < accountIds.size(); i++) {
+            rebuilt.save(getAccountInstance(accountIds.get(i), TEST_USER_ID + 49 + padding + i, i));
+        }
+
+        assertEquals(rebuilt.getAccountById(accountIds.get(7)), underTest.getAccountById(accountIds.get(7)));
+        assertTrue(underTest.getOffHeapBytes() <= 2 * rebuilt.getOffHeapBytes());
+    }
+
+    @Test
+    public void testTablesShouldGrowBeyondExpectedAccounts() {
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            accounts.add(getAccountInstance(UUID.randomUUID(), TEST_USER_ID + i, i));
+        }
+        underTest.saveAll(accounts);
+        for (int i = 0; i < accounts.size(); i += 2) {
+            underTest.deleteAccount(accounts.get(i).getId());
+        }
+
+        assertEquals(10_000, underTest.getAllAccounts().size());
+        for (int i = 1; i < accounts.size(); i += 2) {
+            assertEquals(accounts.get(i), underTest.getAccountById(accounts.get(i).getId()));
+            assertTrue(underTest.isUserExists(TEST_USER_ID + i));
+            assertFalse(underTest.isUserExists(TEST_USER_ID + (i - 1)));
+        }
+    }
+
+    @Test
+    public void testCurrencyShouldBeKeptWhenTablesGrow() {
+        Currency[] currencies = {Currency.getInstance("GBP"), Currency.getInstance("EUR"), Currency.getInstance("JPY")};
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            accounts.add(getAccountInstance(UUID.randomUUID(), TEST_USER_ID + i, i).toBuilder()
+                    .currency(currencies[i % currencies.length])
+                    .build());
+        }
+        underTest.saveAll(accounts);
+
+        for (Account account : accounts) {
+            assertEquals(account, underTest.getAccountById(account.getId()));
+        }
+    }
+
+    @Test
+    public void testConcurrentTransfersShouldConserveMoney() throws Exception {
+        AccountServiceImpl accountService = new AccountServiceImpl(underTest, new AccountResponseConverter(), new AccountLockManager(),
+                TransactionLedger.disabled());
+        int accounts = 16;
+        List<UUID> accountIds = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            UUID accountId = UUID.randomUUID();
+            accountIds.add(accountId);
+            underTest.save(getAccountInstance(accountId, TEST_USER_ID + i, 1000));
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executorService.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int j = 0; j < 2000; j++) {
+                    int from = random.nextInt(accounts);
+                    int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+                    try {
+                        accountService.transferMoney(getTransferMoneyInstance(accountIds.get(from), accountIds.get(to), random.nextInt(50)));
+                    } catch (RuntimeException ignored) {
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+
+        assertEquals(getMinorUnits(1000 * accounts), underTest.getAllAccounts().stream().mapToLong(Account::getBalance).sum());
+    }
+}
@@ -0,0 +1,55 @@
+package com.revolut.transfer.repository;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SortedIdIndexTest {
+
+    private final SortedIdIndex underTest = new SortedIdIndex();
+
+    @Test
+    public void testIdsAfterShouldFollowAddsAndRemovesInIdOrder() {
+        Random random = new Random(42);
+        TreeSet<UUID> expected = new TreeSet<>();
+        List<UUID> added = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            if (added.isEmpty() || random.nextInt(3) > 0) {
+                UUID accountId = new UUID(random.nextLong(), random.nextLong());
+                assertTrue(underTest.add(accountId));
+                expected.add(accountId);
+                added.add(accountId);
+            } else {
+                UUID accountId = added.remove(random.nextInt(added.size()));
+                assertTrue(underTest.remove(accountId));
+                expected.remove(accountId);
+            }
+        }
+
+        assertEquals(new ArrayList<>(expected), underTest.idsAfter(null, Integer.MAX_VALUE));
+        for (int i = 0; i < 100; i++) {
+            UUID cursor = new UUID(random.nextLong(), random.nextLong());
+            List<UUID> page = new ArrayList<>(expected.tailSet(cursor, false));
+            assertEquals(page.subList(0, Math.min(10, page.size())), underTest.idsAfter(cursor, 10));
+        }
+    }
+
+    @Test
+    public void testAddingAndRemovingTwiceShouldBeRejected() {
+        UUID accountId = UUID.randomUUID();
+
+        assertTrue(underTest.add(accountId));
+        assertFalse(underTest.add(accountId));
+        assertTrue(underTest.remove(accountId));
+        assertFalse(underTest.remove(accountId));
+        assertTrue(underTest.idsAfter(null, 10).isEmpty());
+    }
+}
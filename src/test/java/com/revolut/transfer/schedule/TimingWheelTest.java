@@ -0,0 +1,101 @@
+package com.revolut.transfer.schedule;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelTest {
+
+    @Test
+    public void testTimeoutsShouldExpireAtTheirTick() {
+        TimingWheel<String> timingWheel = new TimingWheel<>(1000);
+        timingWheel.schedule("late", 1010);
+        timingWheel.schedule("early", 1003);
+        timingWheel.schedule("overdue", 900);
+
+        assertEquals(Collections.singletonList("overdue"), timingWheel.advance(1002));
+        assertEquals(Collections.singletonList("early"), timingWheel.advance(1003));
+        assertEquals(Collections.emptyList(), timingWheel.advance(1009));
+        assertEquals(Collections.singletonList("late"), timingWheel.advance(1010));
+        assertEquals(0, timingWheel.size());
+    }
+
+    @Test
+    public void testTimeoutsOfHigherLevelsShouldBeCascadedToTheirTick() {
+        long start = 255;
+        TimingWheel<Long> timingWheel = new TimingWheel<>(start);
+        List<Long> deadlines = Arrays.asList(start + 1, start + 256, start + 257, start + 65_535, start + 65_536,
+                start + 70_000, start + 16_777_216, start + 20_000_000);
+        for (long deadline : deadlines) {
+            timingWheel.schedule(deadline, deadline);
+        }
+
+        List<Long> expired = new ArrayList<>();
+        for (long tick = start; tick <= start + 20_000_000; tick++) {
+            for (long deadline : timingWheel.advance(tick)) {
+                assertEquals(tick, deadline);
+                expired.add(deadline);
+            }
+        }
+        assertEquals(deadlines, expired);
+    }
+
+    @Test
+    public void testRandomDeadlinesShouldNeverExpireEarlyOrLate() {
+        Random random = new Random(42);
+        TimingWheel<Long> timingWheel = new TimingWheel<>(0);
+        long tick = 0;
+        int expired = 0;
+        for (int i = 0; i < 10_000; i++) {
+            long deadline = tick + (random.nextBoolean() ? random.nextInt(300) : random.nextInt(200_000));
+            timingWheel.schedule(deadline, deadline);
+            tick += random.nextInt(50);
+            for (long due : timingWheel.advance(tick)) {
+                assertTrue(due <= tick);
+                assertTrue(due > tick - 50);
+                expired++;
+            }
+        }
+        while (timingWheel.size() > 0) {
+            tick += 1 + random.nextInt(1000);
+            for (long due : timingWheel.advance(tick)) {
+                assertTrue(due <= tick);
+                assertTrue(due > tick - 1001);
+                expired++;
+            }
+        }
+        assertEquals(10_000, expired);
+    }
+
+    @Test
+    public void testCancelledTimeoutShouldNotExpire() {
+        TimingWheel<String> timingWheel = new TimingWheel<>(0);
+        TimingWheel.Timeout<String> cancelled = timingWheel.schedule("cancelled", 300);
+        TimingWheel.Timeout<String> kept = timingWheel.schedule("kept", 300);
+
+        assertTrue(timingWheel.cancel(cancelled));
+        assertFalse(timingWheel.cancel(cancelled));
+        assertEquals(1, timingWheel.size());
+        assertEquals(Collections.singletonList("kept"), timingWheel.advance(300));
+        assertFalse(timingWheel.cancel(kept));
+    }
+
+    @Test
+    public void testDeadlineBeyondTheTopLevelShouldNotExpireEarly() {
+        TimingWheel<String> timingWheel = new TimingWheel<>(0);
+        timingWheel.schedule("far", (1L << 40) + 5);
+        timingWheel.schedule("near", 10);
+
+        assertEquals(Collections.singletonList("near"), timingWheel.advance(10));
+        assertEquals(Collections.emptyList(), timingWheel.advance(1L << 25));
+        assertEquals(1, timingWheel.size());
+    }
+}
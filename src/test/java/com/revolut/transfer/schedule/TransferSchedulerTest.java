@@ -0,0 +1,285 @@
+package com.revolut.transfer.schedule;
+
+import com.revolut.transfer.admission.AdmissionControl;
+import com.revolut.transfer.admission.ConcurrencyLimit;
+import com.revolut.transfer.converter.AccountResponseConverter;
+import com.revolut.transfer.execption.AccountNotFoundException;
+import com.revolut.transfer.execption.ScheduledTransferNotFoundException;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.lock.AccountLockManager;
+import com.revolut.transfer.repository.AccountRepository;
+import com.revolut.transfer.repository.AccountRepositoryImpl;
+import com.revolut.transfer.request.ScheduleTransferRequest;
+import com.revolut.transfer.response.ScheduledTransferResponse;
+import com.revolut.transfer.response.ScheduledTransferStatus;
+import com.revolut.transfer.service.AccountService;
+import com.revolut.transfer.service.AccountServiceImpl;
+import com.revolut.transfer.service.ThrottledAccountService;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.revolut.transfer.data.MoneyTransferData.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TransferSchedulerTest {
+
+    private static final long TICK_MILLIS = 100;
+    private static final long START_MILLIS = 1_000_000;
+    private static final long RETENTION_MILLIS = 60_000;
+
+    private final AtomicLong millisClock = new AtomicLong(START_MILLIS);
+    private AccountRepository accountRepository;
+    private AccountService accountService;
+
+    @Before
+    public void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        accountService = new AccountServiceImpl(accountRepository, new AccountResponseConverter(), new AccountLockManager(),
+                TransactionLedger.disabled());
+    }
+
+    @Test
+    public void testFutureDatedTransferShouldRunOnceAtItsTime() {
+        TransferScheduler underTest = newScheduler(accountService, 10);
+        UUID fromAccountId = createAccount("From User", 100);
+        UUID toAccountId = createAccount("To User", 100);
+
+        ScheduledTransferResponse scheduled = underTest.schedule(getScheduleTransferInstance(fromAccountId, toAccountId, 30,
+                START_MILLIS + 1050, null));
+        advanceTo(underTest, START_MILLIS + 1000);
+        assertEquals(getMinorUnits(100), accountRepository.getAccountById(fromAccountId).getBalance());
+        assertEquals(1, underTest.getScheduledTransfers(fromAccountId).getScheduledTransfers().size());
+
+        advanceTo(underTest, START_MILLIS + 1100);
+        advanceTo(underTest, START_MILLIS + 5000);
+        assertEquals(getMinorUnits(70), accountRepository.getAccountById(fromAccountId).getBalance());
+        assertEquals(getMinorUnits(130), accountRepository.getAccountById(toAccountId).getBalance());
+        assertEquals(0, underTest.getPending());
+        assertEquals(1, underTest.getExecuted());
+        assertEquals(0, underTest.getScheduledTransfers(fromAccountId).getScheduledTransfers().size());
+
+        ScheduledTransferResponse finished = underTest.getScheduledTransfer(scheduled.getScheduledTransferId());
+        assertEquals(ScheduledTransferStatus.COMPLETED, finished.getStatus());
+        assertEquals(1, finished.getExecutions());
+        assertNull(finished.getLastFailure());
+        assertEquals(ScheduledTransferStatus.COMPLETED, underTest.cancel(scheduled.getScheduledTransferId()).getStatus());
+
+        advanceTo(underTest, START_MILLIS + 1100 + RETENTION_MILLIS);
+        try {
+            underTest.getScheduledTransfer(scheduled.getScheduledTransferId());
+            fail("One-off transfer should be dropped once it has been kept for the retention time");
+        } catch (ScheduledTransferNotFoundException expected) {
+        }
+    }
+
+    @Test
+    public void testFailedOneOffTransferShouldKeepItsFailure() {
+        TransferScheduler underTest = newScheduler(accountService, 10);
+        UUID fromAccountId = createAccount("From User", 20);
+        UUID toAccountId = createAccount("To User", 0);
+
+        ScheduledTransferResponse scheduled = underTest.schedule(getScheduleTransferInstance(fromAccountId, toAccountId, 30,
+                START_MILLIS, null));
+        advanceTo(underTest, START_MILLIS);
+
+        ScheduledTransferResponse finished = underTest.getScheduledTransfer(scheduled.getScheduledTransferId());
+        assertEquals(ScheduledTransferStatus.FAILED, finished.getStatus());
+        assertEquals(1, finished.getFailures());
+        assertEquals("Insufficient balance in account id: " + fromAccountId, finished.getLastFailure());
+        assertEquals(0, underTest.getPending());
+        assertEquals(1, underTest.getFailed());
+        assertEquals(getMinorUnits(20), accountRepository.getAccountById(fromAccountId).getBalance());
+    }
+
+    @Test
+    public void testStandingOrderShouldRunEveryIntervalAndRecordFailures() {
+        TransferScheduler underTest = newScheduler(accountService, 10);
+        UUID fromAccountId = createAccount("From User", 25);
+        UUID toAccountId = createAccount("To User", 0);
+
+        ScheduledTransferResponse scheduled = underTest.schedule(getScheduleTransferInstance(fromAccountId, toAccountId, 10,
+                START_MILLIS, 60L));
+        for (int minute = 0; minute < 3; minute++) {
+            advanceTo(underTest, START_MILLIS + minute * 60_000L);
+        }
+
+        ScheduledTransferResponse standingOrder = underTest.getScheduledTransfer(scheduled.getScheduledTransferId());
+        assertEquals(3, standingOrder.getExecutions());
+        assertEquals(1, standingOrder.getFailures());
+        assertEquals("Insufficient balance in account id: " + fromAccountId, standingOrder.getLastFailure());
+        assertEquals(Instant.ofEpochMilli(START_MILLIS + 180_000), standingOrder.getExecuteAt());
+        assertEquals(ScheduledTransferStatus.SCHEDULED, standingOrder.getStatus());
+        assertEquals(getMinorUnits(20), accountRepository.getAccountById(toAccountId).getBalance());
+
+        accountService.depositMoney(getDepositMoneyInstance(fromAccountId, 5));
+        advanceTo(underTest, START_MILLIS + 180_000);
+        assertNull(underTest.getScheduledTransfer(scheduled.getScheduledTransferId()).getLastFailure());
+    }
+
+    @Test
+    public void testCancelledTransferShouldNotRun() {
+        TransferScheduler underTest = newScheduler(accountService, 10);
+        UUID fromAccountId = createAccount("From User", 100);
+        UUID toAccountId = createAccount("To User", 100);
+
+        ScheduledTransferResponse scheduled = underTest.schedule(getScheduleTransferInstance(fromAccountId, toAccountId, 30,
+                START_MILLIS + 500, 60L));
+        assertEquals(ScheduledTransferStatus.CANCELLED, underTest.cancel(scheduled.getScheduledTransferId()).getStatus());
+        advanceTo(underTest, START_MILLIS + 120_000);
+
+        assertEquals(getMinorUnits(100), accountRepository.getAccountById(fromAccountId).getBalance());
+        assertEquals(0, underTest.getScheduledTransfers(fromAccountId).getScheduledTransfers().size());
+        try {
+            underTest.cancel(scheduled.getScheduledTransferId());
+            fail("Transfer should be cancelled only once");
+        } catch (ScheduledTransferNotFoundException expected) {
+        }
+    }
+
+    @Test
+    public void testOneOffTransferCancelledWhileRunningShouldBeKeptWithItsOutcome() {
+        List<Runnable> batches = new ArrayList<>();
+        TransferScheduler underTest = new TransferScheduler(accountService, TICK_MILLIS, 10, RETENTION_MILLIS, batches::add,
+                millisClock::get);
+        UUID fromAccountId = createAccount("From User", 100);
+        UUID toAccountId = createAccount("To User", 0);
+
+        ScheduledTransferResponse scheduled = underTest.schedule(getScheduleTransferInstance(fromAccountId, toAccountId, 30,
+                START_MILLIS + 100, null));
+        advanceTo(underTest, START_MILLIS + 100);
+        ScheduledTransferResponse cancelled = underTest.cancel(scheduled.getScheduledTransferId());
+        assertEquals(ScheduledTransferStatus.RUNNING, cancelled.getStatus());
+        assertTrue(cancelled.isCancelled());
+
+        batches.forEach(Runnable::run);
+        ScheduledTransferResponse finished = underTest.getScheduledTransfer(scheduled.getScheduledTransferId());
+        assertEquals(ScheduledTransferStatus.COMPLETED, finished.getStatus());
+        assertTrue(finished.isCancelled());
+        assertEquals(1, finished.getExecutions());
+        assertEquals(getMinorUnits(30), accountRepository.getAccountById(toAccountId).getBalance());
+        assertEquals(0, underTest.getPending());
+    }
+
+    @Test
+    public void testDueTransfersShouldBeMadeInBatches() {
+        TransferScheduler underTest = newScheduler(accountService, 3);
+        UUID fromAccountId = createAccount("From User", 100);
+        UUID toAccountId = createAccount("To User", 0);
+        for (int i = 0; i < 10; i++) {
+            underTest.schedule(getScheduleTransferInstance(fromAccountId, toAccountId, 1, START_MILLIS + 200, null));
+        }
+
+        advanceTo(underTest, START_MILLIS + 200);
+
+        assertEquals(10, underTest.getExecuted());
+        assertEquals(getMinorUnits(10), accountRepository.getAccountById(toAccountId).getBalance());
+    }
+
+    @Test
+    public void testBatchTurnedAwayByAdmissionControlShouldRunOnTheNextTick() {
+        ConcurrencyLimit concurrencyLimit = new ConcurrencyLimit(1, 1);
+        TransferScheduler underTest = newScheduler(ThrottledAccountService.of(accountService,
+                new AdmissionControl(null, concurrencyLimit)), 10);
+        UUID fromAccountId = createAccount("From User", 100);
+        UUID toAccountId = createAccount("To User", 0);
+        underTest.schedule(getScheduleTransferInstance(fromAccountId, toAccountId, 5, START_MILLIS + 100, null));
+
+        concurrencyLimit.tryAcquire();
+        advanceTo(underTest, START_MILLIS + 100);
+        assertEquals(1, underTest.getDeferred());
+        assertEquals(1, underTest.getPending());
+
+        concurrencyLimit.release(0);
+        advanceTo(underTest, START_MILLIS + 200);
+        assertEquals(getMinorUnits(5), accountRepository.getAccountById(toAccountId).getBalance());
+        assertEquals(0, underTest.getPending());
+    }
+
+    @Test
+    public void testInvalidTransfersShouldNotBeScheduled() {
+        TransferScheduler underTest = newScheduler(accountService, 10);
+        UUID fromAccountId = createAccount("From User", 100);
+        try {
+            underTest.schedule(getScheduleTransferInstance(fromAccountId, UUID.randomUUID(), 10, START_MILLIS, null));
+            fail("Transfer to a missing account should not be scheduled");
+        } catch (AccountNotFoundException expected) {
+        }
+        try {
+            underTest.schedule(getScheduleTransferInstance(fromAccountId, createAccount("To User", 0), 10, START_MILLIS, 0L));
+            fail("Standing order without a positive interval should not be scheduled");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(0, underTest.getPending());
+    }
+
+    @Test
+    public void testScheduleOutOfRangeShouldBeRejected() {
+        TransferScheduler underTest = newScheduler(accountService, 10);
+        UUID fromAccountId = createAccount("From User", 100);
+        UUID toAccountId = createAccount("To User", 0);
+        long maxScheduleMillis = TimeUnit.SECONDS.toMillis(TransferScheduler.MAX_SCHEDULE_SECONDS);
+        try {
+            underTest.schedule(getScheduleTransferInstance(fromAccountId, toAccountId, 10, START_MILLIS, Long.MAX_VALUE));
+            fail("Standing order with an interval beyond the bound should not be scheduled");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            underTest.schedule(getScheduleTransferInstance(fromAccountId, toAccountId, 10, Long.MAX_VALUE, null));
+            fail("Transfer beyond the bound should not be scheduled");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            underTest.schedule(getScheduleTransferInstance(fromAccountId, toAccountId, 10,
+                    START_MILLIS + maxScheduleMillis + 1000, null));
+            fail("Transfer beyond the bound should not be scheduled");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(0, underTest.getPending());
+
+        ScheduledTransferResponse scheduled = underTest.schedule(getScheduleTransferInstance(fromAccountId, toAccountId, 10,
+                START_MILLIS + 100, TransferScheduler.MAX_SCHEDULE_SECONDS));
+        for (long millis = START_MILLIS + 100; millis <= START_MILLIS + 1000; millis += TICK_MILLIS) {
+            advanceTo(underTest, millis);
+        }
+
+        assertEquals(getMinorUnits(10), accountRepository.getAccountById(toAccountId).getBalance());
+        ScheduledTransferResponse pending = underTest.getScheduledTransfer(scheduled.getScheduledTransferId());
+        assertEquals(1, pending.getExecutions());
+        assertEquals(Instant.ofEpochMilli(START_MILLIS + 100 + maxScheduleMillis), pending.getExecuteAt());
+    }
+
+    private TransferScheduler newScheduler(AccountService service, int batchSize) {
+        return new TransferScheduler(service, TICK_MILLIS, batchSize, RETENTION_MILLIS, Runnable::run, millisClock::get);
+    }
+
+    private void advanceTo(TransferScheduler transferScheduler, long millis) {
+        millisClock.set(millis);
+        transferScheduler.tick();
+    }
+
+    private static ScheduleTransferRequest getScheduleTransferInstance(UUID fromAccount, UUID toAccount, double amount,
+                                                                       long executeAtMillis, Long intervalSeconds) {
+        return ScheduleTransferRequest.builder()
+                .fromAccount(fromAccount)
+                .toAccount(toAccount)
+                .amount(BigDecimal.valueOf(amount))
+                .executeAt(Instant.ofEpochMilli(executeAtMillis))
+                .intervalSeconds(intervalSeconds)
+                .build();
+    }
+
+    private UUID createAccount(String userId, double balance) {
+        return accountService.createAccount(getAccountInstance(userId, balance));
+    }
+}
@@ -0,0 +1,57 @@
+package com.revolut.transfer.serialization;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class AccountImportReaderTest {
+
+    private final JsonSerializer jsonSerializer = new JsonSerializer();
+
+    @Test
+    public void testNdjsonShouldBeReadPerLineAndMalformedLinesReported() throws IOException {
+        AccountImportReader underTest = readerOf("{\"userId\":\"u1\",\"balance\":10.5}\n\n{\"userId\":\n{\"userId\":\"u2\"}\n",
+                ImportFormat.NDJSON);
+
+        AccountImportReader.ImportRecord first = underTest.next();
+        assertEquals(1, first.getLine());
+        assertEquals("u1", first.getRequest().getUserId());
+        assertEquals(new BigDecimal("10.5"), first.getRequest().getBalance());
+
+        AccountImportReader.ImportRecord malformed = underTest.next();
+        assertEquals(3, malformed.getLine());
+        assertNull(malformed.getRequest());
+        assertEquals("Malformed record.", malformed.getError());
+
+        AccountImportReader.ImportRecord last = underTest.next();
+        assertEquals(4, last.getLine());
+        assertEquals("u2", last.getRequest().getUserId());
+        assertNull(last.getRequest().getBalance());
+        assertNull(underTest.next());
+    }
+
+    @Test
+    public void testCsvShouldSkipHeaderAndUnquoteFields() throws IOException {
+        AccountImportReader underTest = readerOf("userId,balance\r\n\"Smith, \"\"J\"\"\",12\r\nu2\r\nu3,abc\r\nu4,1,2\r\n", ImportFormat.CSV);
+
+        AccountImportReader.ImportRecord quoted = underTest.next();
+        assertEquals(2, quoted.getLine());
+        assertEquals("Smith, \"J\"", quoted.getRequest().getUserId());
+        assertEquals(new BigDecimal("12"), quoted.getRequest().getBalance());
+
+        assertNull(underTest.next().getRequest().getBalance());
+        assertEquals("Invalid amount provided: abc", underTest.next().getError());
+        assertEquals("Expected userId and balance but found 3 fields.", underTest.next().getError());
+        assertNull(underTest.next());
+    }
+
+    private AccountImportReader readerOf(String input, ImportFormat format) {
+        return new AccountImportReader(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), format, jsonSerializer);
+    }
+}
@@ -0,0 +1,105 @@
+package com.revolut.transfer.serialization;
+
+import com.google.gson.JsonParseException;
+import com.revolut.transfer.ledger.PostingType;
+import com.revolut.transfer.request.CreateAccountRequest;
+import com.revolut.transfer.request.TransferMoneyRequest;
+import com.revolut.transfer.response.AccountResponse;
+import com.revolut.transfer.response.TransactionPageResponse;
+import com.revolut.transfer.response.TransactionResponse;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class JsonSerializerTest {
+
+    private final JsonSerializer underTest = new JsonSerializer();
+
+    @Test
+    public void testReadTransferMoneyRequest() {
+        UUID fromAccount = UUID.randomUUID();
+        UUID toAccount = UUID.randomUUID();
+        String json = "{\"fromAccount\":\"" + fromAccount + "\",\"unknown\":{\"a\":[1,2]},\"toAccount\":\"" + toAccount + "\",\"amount\":10.25}";
+
+        TransferMoneyRequest request = underTest.read(inputOf(json), TransferMoneyRequest.class);
+
+        assertEquals(fromAccount, request.getFromAccount());
+        assertEquals(toAccount, request.getToAccount());
+        assertEquals(new BigDecimal("10.25"), request.getAmount());
+    }
+
+    @Test
+    public void testReadCreateAccountRequestWithNullBalance() {
+        CreateAccountRequest request = underTest.read(inputOf("{\"userId\":\"Test User\",\"balance\":null}"), CreateAccountRequest.class);
+
+        assertEquals("Test User", request.getUserId());
+        assertNull(request.getBalance());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadEmptyBodyShouldThrowException() {
+        underTest.read(inputOf(""), TransferMoneyRequest.class);
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testReadMalformedBodyShouldThrowException() {
+        underTest.read(inputOf("{\"fromAccount\":"), TransferMoneyRequest.class);
+    }
+
+    @Test
+    public void testWriteAccountResponse() throws Exception {
+        UUID accountId = UUID.randomUUID();
+        AccountResponse response = AccountResponse.builder()
+                .accountId(accountId)
+                .userId("Test User")
+                .balance(new BigDecimal("100.5"))
+                .build();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        underTest.write(response, outputStream);
+
+        String json = new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+        assertEquals("{\"accountId\":\"" + accountId + "\",\"userId\":\"Test User\",\"balance\":100.5}", json);
+        assertEquals(response, underTest.read(inputOf(json), AccountResponse.class));
+    }
+
+    @Test
+    public void testWriteTransactionPageResponse() throws Exception {
+        UUID accountId = UUID.randomUUID();
+        UUID counterpartyAccountId = UUID.randomUUID();
+        TransactionPageResponse response = TransactionPageResponse.builder()
+                .accountId(accountId)
+                .transactions(List.of(TransactionResponse.builder()
+                        .transactionId(7)
+                        .type(PostingType.TRANSFER_OUT)
+                        .amount(new BigDecimal("-30"))
+                        .balance(new BigDecimal("70.5"))
+                        .counterpartyAccountId(counterpartyAccountId)
+                        .timestamp(Instant.parse("2026-10-18T10:15:30.120Z"))
+                        .build()))
+                .nextCursor(7L)
+                .build();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        underTest.write(response, outputStream);
+
+        String json = new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+        assertEquals("{\"accountId\":\"" + accountId + "\",\"transactions\":[{\"transactionId\":7,\"type\":\"TRANSFER_OUT\","
+                + "\"amount\":-30,\"balance\":70.5,\"counterpartyAccountId\":\"" + counterpartyAccountId + "\","
+                + "\"timestamp\":\"2026-10-18T10:15:30.120Z\"}],\"nextCursor\":7}", json);
+        assertEquals(response, underTest.read(inputOf(json), TransactionPageResponse.class));
+    }
+
+    private ByteArrayInputStream inputOf(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
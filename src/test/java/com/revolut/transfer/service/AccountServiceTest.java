@@ -5,25 +5,35 @@ import com.revolut.transfer.converter.AccountResponseConverter;
 import com.revolut.transfer.execption.AccountAlreadyExistsException;
 import com.revolut.transfer.execption.AccountNotFoundException;
 import com.revolut.transfer.execption.InsufficientBalanceException;
+import com.revolut.transfer.ledger.Posting;
+import com.revolut.transfer.ledger.PostingType;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.lock.AccountLockManager;
 import com.revolut.transfer.model.Account;
 import com.revolut.transfer.repository.AccountRepository;
+import com.revolut.transfer.repository.AccountRepositoryImpl;
 import com.revolut.transfer.response.AccountResponse;
+import com.revolut.transfer.response.BatchTransferResponse;
+import com.revolut.transfer.response.BulkCreateAccountResponse;
+import com.revolut.transfer.response.CreateAccountStatus;
+import com.revolut.transfer.response.TransferStatus;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatcher;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.runners.MockitoJUnitRunner;
 
-import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 import static com.revolut.transfer.data.MoneyTransferData.*;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Matchers.any;
-import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -38,29 +48,60 @@ public class AccountServiceTest {
     @Mock
     private AccountResponseConverter accountResponseConverter;
 
+    private TransactionLedger transactionLedger;
+
     private AccountServiceImpl underTest;
 
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        underTest = new AccountServiceImpl(accountRepository, accountResponseConverter);
+        transactionLedger = new TransactionLedger(TransactionLedger.DEFAULT_RING_SIZE, TransactionLedger.DEFAULT_RETAINED_POSTINGS);
+        when(accountRepository.durably(any(Supplier.class))).thenAnswer(invocation -> ((Supplier<?>) invocation.getArguments()[0]).get());
+        underTest = new AccountServiceImpl(accountRepository, accountResponseConverter, new AccountLockManager(), transactionLedger);
     }
 
     @Test
     public void testNewAccountCreationShouldReturnNewlyCreatedAccountIdWhenUserDoesnotExists() {
-        when(accountRepository.isUserExists(anyString())).thenReturn(false);
+        when(accountRepository.saveIfUserAbsent(any(Account.class))).thenReturn(true);
         UUID result = underTest.createAccount(getAccountInstance(TEST_USER_ID, 20));
-        verify(accountRepository, times(1)).save(any(Account.class));
+        verify(accountRepository, times(1)).saveIfUserAbsent(any(Account.class));
 
         assertNotNull(result);
     }
 
     @Test(expected = AccountAlreadyExistsException.class)
     public void testDuplicateAccountCreationShouldThrowExceptionWhenUserAlreadyExistsISystem() {
-        when(accountRepository.isUserExists(anyString())).thenReturn(true);
+        when(accountRepository.saveIfUserAbsent(any(Account.class))).thenReturn(false);
         underTest.createAccount(getAccountInstance(TEST_USER_ID, 120));
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void testAccountCreationShouldThrowIllegalArgumentWhenUserIdIsNull() {
+        underTest.createAccount(getAccountInstance(null, 120));
+    }
+
+    @Test
+    public void testBulkAccountCreationShouldFailOnlyInvalidAccountsAndTakenUsers() {
+        AccountRepositoryImpl repository = new AccountRepositoryImpl();
+        AccountServiceImpl accountService = new AccountServiceImpl(repository, accountResponseConverter, new AccountLockManager(),
+                transactionLedger);
+        accountService.createAccount(getAccountInstance(TEST_USER_ID, 20));
+
+        BulkCreateAccountResponse response = accountService.createAccounts(Arrays.asList(
+                getAccountInstance(TEST_TO_USER, 10), getAccountInstance(TEST_USER_ID, 10), null,
+                getAccountInstance(null, 10), getAccountInstance(TEST_TO_USER, 30)));
+
+        assertEquals(1, response.getCreated());
+        assertEquals(4, response.getFailed());
+        assertEquals(CreateAccountStatus.CREATED, response.getResults().get(0).getStatus());
+        assertEquals(getMinorUnits(10), repository.getAccountById(response.getResults().get(0).getAccountId()).getBalance());
+        for (int index = 1; index < 5; index++) {
+            assertEquals(index, response.getResults().get(index).getIndex());
+            assertEquals(CreateAccountStatus.FAILED, response.getResults().get(index).getStatus());
+        }
+        assertEquals(2, repository.size());
+    }
+
     @Test
     public void testGetAccountShouldReturnAccountResponseWhenValidAccountIdProvided() {
         UUID accountId = UUID.randomUUID();
@@ -132,24 +173,35 @@ public class AccountServiceTest {
         UUID toAccountId = UUID.randomUUID();
 
         Account fromAccount = getAccountInstance(fromAccountId, TEST_USER_ID, 60);
-        fromAccount.setBalance(new BigDecimal(30));
+        fromAccount.setBalance(getMinorUnits(30));
 
         Account toAccount = getAccountInstance(toAccountId, TEST_USER_ID, 20);
-        toAccount.setBalance(new BigDecimal(50));
+        toAccount.setBalance(getMinorUnits(50));
 
         when(accountRepository.getAccountById(fromAccountId)).thenReturn(fromAccount);
         when(accountRepository.getAccountById(toAccountId)).thenReturn(toAccount);
 
         underTest.transferMoney(getTransferMoneyInstance(fromAccountId, toAccountId, 30));
 
-        verify(accountRepository, times(1)).saveAll(Arrays.asList(fromAccount, toAccount));
+        verify(accountRepository, times(1)).saveAll(Arrays.asList(
+                getAccountInstance(fromAccountId, TEST_USER_ID, 0), getAccountInstance(toAccountId, TEST_USER_ID, 80)));
+        assertEquals(getMinorUnits(30), fromAccount.getBalance());
+
+        Posting debit = transactionLedger.getPostings(fromAccountId, Long.MAX_VALUE, 10).get(0);
+        Posting credit = transactionLedger.getPostings(toAccountId, Long.MAX_VALUE, 10).get(0);
+        assertEquals(PostingType.TRANSFER_OUT, debit.getType());
+        assertEquals(-getMinorUnits(30), debit.getAmount());
+        assertEquals(0, debit.getBalance());
+        assertEquals(PostingType.TRANSFER_IN, credit.getType());
+        assertEquals(getMinorUnits(80), credit.getBalance());
+        assertEquals(debit.getSequence() + 1, credit.getSequence());
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void testTransferMoneyShouldThrowIllegalArgumentWhenSameFromAndToAccountsProvided() {
         UUID accountId = UUID.randomUUID();
         Account account = getAccountInstance(accountId, TEST_USER_ID, 60);
-        account.setBalance(new BigDecimal(30));
+        account.setBalance(getMinorUnits(30));
         underTest.transferMoney(getTransferMoneyInstance(accountId, accountId, 30));
     }
 
@@ -207,4 +259,85 @@ public class AccountServiceTest {
 
         underTest.transferMoney(getTransferMoneyInstance(fromAccountId, toAccountId, 80));
     }
+
+    @Test
+    public void testAtomicBatchTransferShouldSaveAllAccountsOnce() {
+        UUID firstAccountId = UUID.randomUUID();
+        UUID secondAccountId = UUID.randomUUID();
+        UUID thirdAccountId = UUID.randomUUID();
+
+        when(accountRepository.getAccountById(firstAccountId)).thenReturn(getAccountInstance(firstAccountId, TEST_USER_ID, 60));
+        when(accountRepository.getAccountById(secondAccountId)).thenReturn(getAccountInstance(secondAccountId, TEST_TO_USER, 0));
+        when(accountRepository.getAccountById(thirdAccountId)).thenReturn(getAccountInstance(thirdAccountId, "Third User", 10));
+
+        BatchTransferResponse response = underTest.transferMoneyInBatch(getBatchTransferInstance(true,
+                getTransferMoneyInstance(firstAccountId, secondAccountId, 50),
+                getTransferMoneyInstance(secondAccountId, thirdAccountId, 40)));
+
+        assertEquals(2, response.getTransferred());
+        assertEquals(0, response.getFailed());
+        verify(accountRepository, times(1)).saveAll(argThat(new ArgumentMatcher<Collection<Account>>() {
+            @Override
+            public boolean matches(Object argument) {
+                Collection<Account> accounts = (Collection<Account>) argument;
+                return accounts.size() == 3
+                        && balanceOf(accounts, firstAccountId) == getMinorUnits(10)
+                        && balanceOf(accounts, secondAccountId) == getMinorUnits(10)
+                        && balanceOf(accounts, thirdAccountId) == getMinorUnits(50);
+            }
+        }));
+    }
+
+    @Test(expected = InsufficientBalanceException.class)
+    public void testAtomicBatchTransferShouldNotSaveWhenOneTransferFails() {
+        UUID fromAccountId = UUID.randomUUID();
+        UUID toAccountId = UUID.randomUUID();
+
+        when(accountRepository.getAccountById(fromAccountId)).thenReturn(getAccountInstance(fromAccountId, TEST_USER_ID, 60));
+        when(accountRepository.getAccountById(toAccountId)).thenReturn(getAccountInstance(toAccountId, TEST_TO_USER, 20));
+
+        try {
+            underTest.transferMoneyInBatch(getBatchTransferInstance(true,
+                    getTransferMoneyInstance(fromAccountId, toAccountId, 30),
+                    getTransferMoneyInstance(fromAccountId, toAccountId, 40)));
+        } finally {
+            verify(accountRepository, never()).saveAll(any(Collection.class));
+        }
+    }
+
+    @Test
+    public void testPerItemBatchTransferShouldReportFailedTransfers() {
+        UUID fromAccountId = UUID.randomUUID();
+        UUID toAccountId = UUID.randomUUID();
+
+        when(accountRepository.getAccountById(fromAccountId)).thenReturn(getAccountInstance(fromAccountId, TEST_USER_ID, 60));
+        when(accountRepository.getAccountById(toAccountId)).thenReturn(getAccountInstance(toAccountId, TEST_TO_USER, 20));
+
+        BatchTransferResponse response = underTest.transferMoneyInBatch(getBatchTransferInstance(false,
+                getTransferMoneyInstance(fromAccountId, toAccountId, 30),
+                getTransferMoneyInstance(fromAccountId, UUID.randomUUID(), 10),
+                getTransferMoneyInstance(null, toAccountId, 10),
+                getTransferMoneyInstance(fromAccountId, toAccountId, 40)));
+
+        assertEquals(1, response.getTransferred());
+        assertEquals(3, response.getFailed());
+        assertEquals(TransferStatus.TRANSFERRED, response.getResults().get(0).getStatus());
+        assertEquals(TransferStatus.FAILED, response.getResults().get(1).getStatus());
+        assertEquals(TransferStatus.FAILED, response.getResults().get(2).getStatus());
+        assertEquals(TransferStatus.FAILED, response.getResults().get(3).getStatus());
+        verify(accountRepository, times(1)).saveAll(any(Collection.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBatchTransferShouldThrowIllegalArgumentWhenBatchIsEmpty() {
+        underTest.transferMoneyInBatch(getBatchTransferInstance(true));
+    }
+
+    private long balanceOf(Collection<Account> accounts, UUID accountId) {
+        return accounts.stream()
+                .filter(account -> account.getId().equals(accountId))
+                .findFirst()
+                .map(Account::getBalance)
+                .orElse(-1L);
+    }
 }
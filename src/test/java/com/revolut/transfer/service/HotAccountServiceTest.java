@@ -0,0 +1,294 @@
+package com.revolut.transfer.service;
+
+import com.revolut.transfer.audit.ConservationAuditor;
+import com.revolut.transfer.converter.AccountResponseConverter;
+import com.revolut.transfer.execption.AccountNotFoundException;
+import com.revolut.transfer.execption.InsufficientBalanceException;
+import com.revolut.transfer.fx.FxRates;
+import com.revolut.transfer.ledger.Posting;
+import com.revolut.transfer.ledger.PostingType;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.lock.AccountLockManager;
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.repository.AccountRepository;
+import com.revolut.transfer.repository.AccountRepositoryImpl;
+import com.revolut.transfer.response.AccountPageResponse;
+import com.revolut.transfer.response.AccountResponse;
+import com.revolut.transfer.response.BatchTransferResponse;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.revolut.transfer.data.MoneyTransferData.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HotAccountServiceTest {
+
+    private static final String HOT_USER_ID = "Hot User";
+    private static final String TEST_USER_ID = "Test User";
+    private static final int SLOTS = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AccountRepository accountRepository;
+    private TransactionLedger transactionLedger;
+    private HotAccounts hotAccounts;
+    private UUID hotAccountId;
+    private AccountServiceImpl underTest;
+
+    @Before
+    public void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        transactionLedger = new TransactionLedger(TransactionLedger.DEFAULT_RING_SIZE, TransactionLedger.DEFAULT_RETAINED_POSTINGS);
+        hotAccountId = UUID.randomUUID();
+        accountRepository.save(getAccountInstance(hotAccountId, HOT_USER_ID, 100));
+        hotAccounts = new HotAccounts(SLOTS, Set.of(hotAccountId));
+        underTest = new AccountServiceImpl(accountRepository, new AccountResponseConverter(), new AccountLockManager(),
+                transactionLedger, hotAccounts);
+    }
+
+    @Test
+    public void testDesignatedAccountShouldBeSplitIntoSlots() {
+        assertTrue(hotAccounts.isSplit(hotAccountId));
+        assertEquals(SLOTS + 1, accountRepository.getAllAccounts().size());
+        for (int slot = 0; slot < SLOTS; slot++) {
+            UUID slotId = HotAccounts.slotIdOf(hotAccountId, slot);
+            assertTrue(hotAccounts.isSlot(slotId));
+            assertEquals(0, accountRepository.getAccountById(slotId).getBalance());
+        }
+    }
+
+    @Test
+    public void testDepositShouldCreditSlotAndCountInBalance() {
+        underTest.depositMoney(getDepositMoneyInstance(hotAccountId, 20));
+        underTest.depositMoney(getDepositMoneyInstance(hotAccountId, 30));
+
+        assertEquals(getMinorUnits(100), accountRepository.getAccountById(hotAccountId).getBalance());
+        assertEquals(getMinorUnits(150), storedTotal(hotAccountId));
+        assertEquals(new BigDecimal(150), underTest.getAccount(hotAccountId).getBalance());
+
+        Posting posting = transactionLedger.getPostings(hotAccountId, Long.MAX_VALUE, 10).get(0);
+        assertEquals(PostingType.DEPOSIT, posting.getType());
+        assertEquals(getMinorUnits(150), posting.getBalance());
+    }
+
+    @Test
+    public void testWithdrawShouldFoldSlotsWhenMainAccountDoesNotHoldEnough() {
+        underTest.depositMoney(getDepositMoneyInstance(hotAccountId, 50));
+        underTest.withdrawMoney(getWithDrawMoneyInstance(hotAccountId, 120));
+
+        assertEquals(getMinorUnits(30), accountRepository.getAccountById(hotAccountId).getBalance());
+        assertEquals(getMinorUnits(30), storedTotal(hotAccountId));
+        assertEquals(new BigDecimal(30), underTest.getAccount(hotAccountId).getBalance());
+        assertEquals(getMinorUnits(30), transactionLedger.getPostings(hotAccountId, Long.MAX_VALUE, 10).get(0).getBalance());
+    }
+
+    @Test(expected = InsufficientBalanceException.class)
+    public void testWithdrawMoreThanTotalShouldThrowException() {
+        underTest.depositMoney(getDepositMoneyInstance(hotAccountId, 50));
+        underTest.withdrawMoney(getWithDrawMoneyInstance(hotAccountId, 160));
+    }
+
+    @Test
+    public void testTransferToAndFromSplitAccount() {
+        UUID accountId = UUID.randomUUID();
+        accountRepository.save(getAccountInstance(accountId, TEST_USER_ID, 100));
+
+        underTest.transferMoney(getTransferMoneyInstance(accountId, hotAccountId, 60));
+        assertEquals(getMinorUnits(100), accountRepository.getAccountById(hotAccountId).getBalance());
+        assertEquals(getMinorUnits(160), storedTotal(hotAccountId));
+
+        underTest.transferMoney(getTransferMoneyInstance(hotAccountId, accountId, 150));
+        assertEquals(getMinorUnits(10), storedTotal(hotAccountId));
+        assertEquals(new BigDecimal(10), underTest.getAccount(hotAccountId).getBalance());
+        assertEquals(getMinorUnits(190), accountRepository.getAccountById(accountId).getBalance());
+
+        Posting debit = transactionLedger.getPostings(hotAccountId, Long.MAX_VALUE, 10).get(0);
+        assertEquals(PostingType.TRANSFER_OUT, debit.getType());
+        assertEquals(getMinorUnits(10), debit.getBalance());
+    }
+
+    @Test
+    public void testBatchShouldWorkOnTotalOfSplitAccount() {
+        UUID accountId = UUID.randomUUID();
+        accountRepository.save(getAccountInstance(accountId, TEST_USER_ID, 0));
+        underTest.depositMoney(getDepositMoneyInstance(hotAccountId, 50));
+
+        BatchTransferResponse response = underTest.transferMoneyInBatch(getBatchTransferInstance(true,
+                getTransferMoneyInstance(hotAccountId, accountId, 140),
+                getTransferMoneyInstance(accountId, hotAccountId, 40)));
+
+        assertEquals(2, response.getTransferred());
+        assertEquals(getMinorUnits(50), storedTotal(hotAccountId));
+        assertEquals(new BigDecimal(50), underTest.getAccount(hotAccountId).getBalance());
+        assertEquals(getMinorUnits(100), accountRepository.getAccountById(accountId).getBalance());
+    }
+
+    @Test(expected = AccountNotFoundException.class)
+    public void testSlotShouldNotBeReachableAsAccount() {
+        underTest.getAccount(HotAccounts.slotIdOf(hotAccountId, 0));
+    }
+
+    @Test
+    public void testSplitAccountShouldBeListedWithTotalAndWithoutSlots() {
+        underTest.depositMoney(getDepositMoneyInstance(hotAccountId, 50));
+
+        AccountPageResponse page = underTest.getAccounts(null, AccountService.MAX_ACCOUNT_PAGE_SIZE);
+        assertEquals(1, page.getAccounts().size());
+        assertEquals(new BigDecimal(150), page.getAccounts().get(0).getBalance());
+
+        List<AccountResponse> exported = new ArrayList<>();
+        underTest.exportAccounts(exported::add);
+        assertEquals(1, exported.size());
+        assertEquals(hotAccountId, exported.get(0).getAccountId());
+        assertEquals(new BigDecimal(150), exported.get(0).getBalance());
+    }
+
+    @Test
+    public void testBalanceSnapshotsShouldConserveMoneyDuringTransfers() throws Exception {
+        ConservationAuditor conservationAuditor = new ConservationAuditor();
+        underTest = new AccountServiceImpl(conservationAuditor.watch(accountRepository), new AccountResponseConverter(),
+                new AccountLockManager(), transactionLedger, hotAccounts, FxRates.none(), conservationAuditor);
+        int accounts = 4;
+        List<UUID> accountIds = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            UUID accountId = UUID.randomUUID();
+            accountIds.add(accountId);
+            accountRepository.save(getAccountInstance(accountId, TEST_USER_ID + i, 1000));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 4; thread++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 5000; i++) {
+                    UUID accountId = accountIds.get(random.nextInt(accounts));
+                    try {
+                        if (random.nextBoolean()) {
+                            underTest.transferMoney(getTransferMoneyInstance(hotAccountId, accountId, random.nextInt(50)));
+                        } else {
+                            underTest.transferMoney(getTransferMoneyInstance(accountId, hotAccountId, random.nextInt(50)));
+                        }
+                    } catch (InsufficientBalanceException expected) {
+                    }
+                }
+            }));
+        }
+        int snapshots = 0;
+        while (snapshots < 50 || !futures.stream().allMatch(Future::isDone)) {
+            BalanceSnapshot snapshot = underTest.takeBalanceSnapshot();
+            assertEquals(accounts + 1, snapshot.size());
+            long total = snapshot.getBalance(hotAccountId);
+            for (UUID accountId : accountIds) {
+                total += snapshot.getBalance(accountId);
+            }
+            assertEquals(getMinorUnits(100 + 1000 * accounts), total);
+            snapshots++;
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void testSplitAccountsShouldBeSplitAgainAfterRestart() throws Exception {
+        Path splitAccountsPath = folder.getRoot().toPath().resolve("journal.split-accounts");
+        UUID accountId = UUID.randomUUID();
+        accountRepository.save(getAccountInstance(accountId, TEST_USER_ID, 10));
+        HotAccounts recordedHotAccounts = new HotAccounts(SLOTS, Set.of(), splitAccountsPath);
+        new AccountServiceImpl(accountRepository, new AccountResponseConverter(), new AccountLockManager(),
+                transactionLedger, recordedHotAccounts).splitAccount(accountId);
+
+        assertEquals(Set.of(accountId, hotAccountId),
+                new HotAccounts(SLOTS, Set.of(hotAccountId), splitAccountsPath).getDesignated());
+    }
+
+    @Test
+    public void testSlotsShouldNotShareLockStripes() {
+        AccountLockManager accountLockManager = new AccountLockManager();
+        Set<ReentrantLock> locks = new HashSet<>();
+        locks.add(accountLockManager.lockFor(hotAccountId));
+        for (int slot = 0; slot < SLOTS; slot++) {
+            locks.add(accountLockManager.lockFor(HotAccounts.slotIdOf(hotAccountId, slot)));
+        }
+        assertEquals(SLOTS + 1, locks.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateAccountWithSlotUserIdShouldFail() {
+        underTest.createAccount(getAccountInstance(HotAccounts.slotUserIdOf(HOT_USER_ID, 0), 10));
+    }
+
+    @Test
+    public void testConcurrentCreditsAndDebitsShouldConserveMoney() throws Exception {
+        int accounts = 4;
+        List<UUID> accountIds = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            UUID accountId = UUID.randomUUID();
+            accountIds.add(accountId);
+            accountRepository.save(getAccountInstance(accountId, TEST_USER_ID + i, 1000));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 2000; i++) {
+                    UUID accountId = accountIds.get(random.nextInt(accounts));
+                    try {
+                        switch (random.nextInt(4)) {
+                            case 0:
+                                underTest.transferMoney(getTransferMoneyInstance(hotAccountId, accountId, random.nextInt(50)));
+                                break;
+                            case 1:
+                                underTest.transferMoneyInBatch(getBatchTransferInstance(false,
+                                        getTransferMoneyInstance(accountId, hotAccountId, 10),
+                                        getTransferMoneyInstance(hotAccountId, accountId, 5)));
+                                break;
+                            default:
+                                underTest.transferMoney(getTransferMoneyInstance(accountId, hotAccountId, random.nextInt(50)));
+                        }
+                    } catch (InsufficientBalanceException expected) {
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        long total = accountRepository.getAllAccounts().stream()
+                .mapToLong(Account::getBalance)
+                .sum();
+        assertEquals(getMinorUnits(1000 * accounts + 100), total);
+        assertEquals(storedTotal(hotAccountId), underTest.getAccount(hotAccountId).getBalance().movePointRight(2).longValueExact());
+    }
+
+    private long storedTotal(UUID accountId) {
+        long total = accountRepository.getAccountById(accountId).getBalance();
+        for (int slot = 0; slot < SLOTS; slot++) {
+            total += accountRepository.getAccountById(HotAccounts.slotIdOf(accountId, slot)).getBalance();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,355 @@
+package com.revolut.transfer.service;
+
+import com.revolut.transfer.audit.ConservationAuditor;
+import com.revolut.transfer.converter.AccountResponseConverter;
+import com.revolut.transfer.execption.AccountNotFoundException;
+import com.revolut.transfer.execption.InsufficientBalanceException;
+import com.revolut.transfer.execption.JournalException;
+import com.revolut.transfer.fx.FxRates;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.repository.AccountRepository;
+import com.revolut.transfer.repository.AccountRepositoryImpl;
+import com.revolut.transfer.response.BatchTransferResponse;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.revolut.transfer.data.MoneyTransferData.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class OptimisticAccountServiceTest {
+
+    private static final String TEST_USER_ID = "Test User";
+    private static final String TEST_TO_USER = "Test To User";
+
+    private AccountRepository accountRepository;
+    private OptimisticAccountServiceImpl underTest;
+
+    @Before
+    public void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        underTest = new OptimisticAccountServiceImpl(accountRepository, new AccountResponseConverter(),
+                new TransactionLedger(TransactionLedger.DEFAULT_RING_SIZE, TransactionLedger.DEFAULT_RETAINED_POSTINGS));
+    }
+
+    @Test
+    public void testTransferMoneyShouldCreditConvertedAmountAcrossCurrencies() {
+        underTest = new OptimisticAccountServiceImpl(accountRepository, new AccountResponseConverter(),
+                TransactionLedger.disabled(), getFxRatesInstance());
+        UUID fromAccountId = UUID.randomUUID();
+        UUID toAccountId = UUID.randomUUID();
+        accountRepository.save(getAccountInstance(fromAccountId, TEST_USER_ID, 60));
+        accountRepository.save(getAccountInstance(toAccountId, TEST_TO_USER, 20).toBuilder().currency(EUR).build());
+
+        underTest.transferMoney(getTransferMoneyInstance(fromAccountId, toAccountId, 10));
+
+        assertEquals(getMinorUnits(50), accountRepository.getAccountById(fromAccountId).getBalance());
+        assertEquals(3170, accountRepository.getAccountById(toAccountId).getBalance());
+    }
+
+    @Test
+    public void testDepositMoneyShouldCommitNewVersion() {
+        UUID accountId = UUID.randomUUID();
+        accountRepository.save(getAccountInstance(accountId, TEST_USER_ID, 60));
+
+        underTest.depositMoney(getDepositMoneyInstance(accountId, 20));
+
+        Account account = accountRepository.getAccountById(accountId);
+        assertEquals(getMinorUnits(80), account.getBalance());
+        assertEquals(2, account.getVersion());
+    }
+
+    @Test
+    public void testWithdrawMoney() {
+        UUID accountId = UUID.randomUUID();
+        accountRepository.save(getAccountInstance(accountId, TEST_USER_ID, 60));
+
+        underTest.withdrawMoney(getWithDrawMoneyInstance(accountId, 20));
+
+        assertEquals(new BigDecimal(40), underTest.getAccount(accountId).getBalance());
+    }
+
+    @Test(expected = InsufficientBalanceException.class)
+    public void testWithdrawMoneyShouldThrowExceptionWhenAccountHasInsufficientBalance() {
+        UUID accountId = UUID.randomUUID();
+        accountRepository.save(getAccountInstance(accountId, TEST_USER_ID, 60));
+        underTest.withdrawMoney(getWithDrawMoneyInstance(accountId, 90));
+    }
+
+    @Test
+    public void testTransferMoney() {
+        UUID fromAccountId = UUID.randomUUID();
+        UUID toAccountId = UUID.randomUUID();
+        accountRepository.save(getAccountInstance(fromAccountId, TEST_USER_ID, 60));
+        accountRepository.save(getAccountInstance(toAccountId, TEST_TO_USER, 20));
+
+        underTest.transferMoney(getTransferMoneyInstance(fromAccountId, toAccountId, 30));
+
+        assertEquals(getMinorUnits(30), accountRepository.getAccountById(fromAccountId).getBalance());
+        assertEquals(getMinorUnits(50), accountRepository.getAccountById(toAccountId).getBalance());
+        assertEquals(2, accountRepository.getAccountById(fromAccountId).getVersion());
+        assertEquals(2, accountRepository.getAccountById(toAccountId).getVersion());
+    }
+
+    @Test
+    public void testTransferInsufficientMoneyShouldReleaseBothAccounts() {
+        UUID fromAccountId = UUID.randomUUID();
+        UUID toAccountId = UUID.randomUUID();
+        accountRepository.save(getAccountInstance(fromAccountId, TEST_USER_ID, 60));
+        accountRepository.save(getAccountInstance(toAccountId, TEST_TO_USER, 20));
+
+        try {
+            underTest.transferMoney(getTransferMoneyInstance(fromAccountId, toAccountId, 80));
+            fail("Transfer should fail with insufficient balance");
+        } catch (InsufficientBalanceException ex) {
+            assertEquals(0, accountRepository.getAccountById(fromAccountId).getVersion() % 2);
+            assertEquals(0, accountRepository.getAccountById(toAccountId).getVersion() % 2);
+        }
+
+        underTest.depositMoney(getDepositMoneyInstance(fromAccountId, 20));
+        assertEquals(getMinorUnits(80), accountRepository.getAccountById(fromAccountId).getBalance());
+    }
+
+    @Test
+    public void testFailedCommitOfTransferShouldReleaseBothAccounts() {
+        AtomicBoolean failSave = new AtomicBoolean(true);
+        accountRepository = new AccountRepositoryImpl() {
+            @Override
+            public void saveAll(Collection<Account> accounts) {
+                if (failSave.getAndSet(false)) {
+                    throw new JournalException("Journal is not writable");
+                }
+                super.saveAll(accounts);
+            }
+        };
+        underTest = new OptimisticAccountServiceImpl(accountRepository, new AccountResponseConverter(),
+                TransactionLedger.disabled());
+        UUID fromAccountId = UUID.randomUUID();
+        UUID toAccountId = UUID.randomUUID();
+        accountRepository.save(getAccountInstance(fromAccountId, TEST_USER_ID, 60));
+        accountRepository.save(getAccountInstance(toAccountId, TEST_TO_USER, 20));
+
+        try {
+            underTest.transferMoney(getTransferMoneyInstance(fromAccountId, toAccountId, 10));
+            fail("Transfer should fail when its commit fails");
+        } catch (JournalException ex) {
+            assertEquals(0, accountRepository.getAccountById(fromAccountId).getVersion() % 2);
+            assertEquals(0, accountRepository.getAccountById(toAccountId).getVersion() % 2);
+        }
+
+        underTest.transferMoney(getTransferMoneyInstance(fromAccountId, toAccountId, 10));
+        assertEquals(getMinorUnits(50), accountRepository.getAccountById(fromAccountId).getBalance());
+        assertEquals(getMinorUnits(30), accountRepository.getAccountById(toAccountId).getBalance());
+    }
+
+    @Test
+    public void testErrorInCommitShouldReleaseClaimedAccounts() {
+        AtomicInteger failedSaves = new AtomicInteger(2);
+        accountRepository = new AccountRepositoryImpl() {
+            @Override
+            public void saveAll(Collection<Account> accounts) {
+                if (failedSaves.getAndDecrement() > 0) {
+                    throw new StackOverflowError();
+                }
+                super.saveAll(accounts);
+            }
+        };
+        underTest = new OptimisticAccountServiceImpl(accountRepository, new AccountResponseConverter(),
+                TransactionLedger.disabled());
+        UUID fromAccountId = UUID.randomUUID();
+        UUID toAccountId = UUID.randomUUID();
+        accountRepository.save(getAccountInstance(fromAccountId, TEST_USER_ID, 60));
+        accountRepository.save(getAccountInstance(toAccountId, TEST_TO_USER, 20));
+
+        try {
+            underTest.transferMoney(getTransferMoneyInstance(fromAccountId, toAccountId, 10));
+            fail("Transfer should fail when its commit throws an error");
+        } catch (StackOverflowError expected) {
+        }
+        try {
+            underTest.transferMoneyInBatch(getBatchTransferInstance(true, getTransferMoneyInstance(fromAccountId, toAccountId, 10)));
+            fail("Batch should fail when its commit throws an error");
+        } catch (StackOverflowError expected) {
+        }
+        assertEquals(0, accountRepository.getAccountById(fromAccountId).getVersion() % 2);
+        assertEquals(0, accountRepository.getAccountById(toAccountId).getVersion() % 2);
+
+        underTest.transferMoney(getTransferMoneyInstance(fromAccountId, toAccountId, 10));
+        assertEquals(getMinorUnits(50), accountRepository.getAccountById(fromAccountId).getBalance());
+        assertEquals(getMinorUnits(30), accountRepository.getAccountById(toAccountId).getBalance());
+    }
+
+    @Test
+    public void testTransferMoneyInNonExistingAccountShouldReleaseExistingAccount() {
+        UUID fromAccountId = UUID.randomUUID();
+        accountRepository.save(getAccountInstance(fromAccountId, TEST_USER_ID, 60));
+
+        try {
+            underTest.transferMoney(getTransferMoneyInstance(fromAccountId, UUID.randomUUID(), 30));
+            fail("Transfer should fail with account not found");
+        } catch (AccountNotFoundException ex) {
+            assertEquals(0, accountRepository.getAccountById(fromAccountId).getVersion() % 2);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTransferMoneyWhenNegativeAmountIsInRequest() {
+        underTest.transferMoney(getTransferMoneyInstance(UUID.randomUUID(), UUID.randomUUID(), -80));
+    }
+
+    @Test
+    public void testAtomicBatchTransferShouldCommitAllAccounts() {
+        UUID firstAccountId = UUID.randomUUID();
+        UUID secondAccountId = UUID.randomUUID();
+        UUID thirdAccountId = UUID.randomUUID();
+        accountRepository.save(getAccountInstance(firstAccountId, TEST_USER_ID, 60));
+        accountRepository.save(getAccountInstance(secondAccountId, TEST_TO_USER, 0));
+        accountRepository.save(getAccountInstance(thirdAccountId, "Third User", 10));
+
+        underTest.transferMoneyInBatch(getBatchTransferInstance(true,
+                getTransferMoneyInstance(firstAccountId, secondAccountId, 50),
+                getTransferMoneyInstance(secondAccountId, thirdAccountId, 40)));
+
+        assertEquals(getMinorUnits(10), accountRepository.getAccountById(firstAccountId).getBalance());
+        assertEquals(getMinorUnits(10), accountRepository.getAccountById(secondAccountId).getBalance());
+        assertEquals(getMinorUnits(50), accountRepository.getAccountById(thirdAccountId).getBalance());
+        assertEquals(2, accountRepository.getAccountById(secondAccountId).getVersion());
+    }
+
+    @Test
+    public void testAtomicBatchTransferShouldReleaseAccountsWhenOneTransferFails() {
+        UUID fromAccountId = UUID.randomUUID();
+        UUID toAccountId = UUID.randomUUID();
+        accountRepository.save(getAccountInstance(fromAccountId, TEST_USER_ID, 60));
+        accountRepository.save(getAccountInstance(toAccountId, TEST_TO_USER, 20));
+
+        try {
+            underTest.transferMoneyInBatch(getBatchTransferInstance(true,
+                    getTransferMoneyInstance(fromAccountId, toAccountId, 30),
+                    getTransferMoneyInstance(fromAccountId, UUID.randomUUID(), 10)));
+            fail("Batch should fail with account not found");
+        } catch (AccountNotFoundException ex) {
+            assertEquals(getMinorUnits(60), accountRepository.getAccountById(fromAccountId).getBalance());
+            assertEquals(0, accountRepository.getAccountById(fromAccountId).getVersion() % 2);
+            assertEquals(0, accountRepository.getAccountById(toAccountId).getVersion() % 2);
+        }
+    }
+
+    @Test
+    public void testPerItemBatchTransferShouldApplySucceededTransfers() {
+        UUID fromAccountId = UUID.randomUUID();
+        UUID toAccountId = UUID.randomUUID();
+        accountRepository.save(getAccountInstance(fromAccountId, TEST_USER_ID, 60));
+        accountRepository.save(getAccountInstance(toAccountId, TEST_TO_USER, 20));
+
+        BatchTransferResponse response = underTest.transferMoneyInBatch(getBatchTransferInstance(false,
+                getTransferMoneyInstance(fromAccountId, toAccountId, 30),
+                getTransferMoneyInstance(fromAccountId, UUID.randomUUID(), 10),
+                getTransferMoneyInstance(fromAccountId, toAccountId, 40)));
+
+        assertEquals(1, response.getTransferred());
+        assertEquals(2, response.getFailed());
+        assertEquals(getMinorUnits(30), accountRepository.getAccountById(fromAccountId).getBalance());
+        assertEquals(getMinorUnits(50), accountRepository.getAccountById(toAccountId).getBalance());
+        assertEquals(0, accountRepository.getAccountById(fromAccountId).getVersion() % 2);
+    }
+
+    @Test
+    public void testConcurrentTransfersShouldConserveMoney() throws Exception {
+        int accounts = 8;
+        List<UUID> accountIds = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            UUID accountId = UUID.randomUUID();
+            accountIds.add(accountId);
+            accountRepository.save(getAccountInstance(accountId, TEST_USER_ID + i, 1000));
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executorService.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int j = 0; j < 2000; j++) {
+                    int from = random.nextInt(accounts);
+                    int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+                    try {
+                        underTest.transferMoney(getTransferMoneyInstance(accountIds.get(from), accountIds.get(to), random.nextInt(50)));
+                    } catch (InsufficientBalanceException ignored) {
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+
+        long total = accountRepository.getAllAccounts().stream()
+                .mapToLong(Account::getBalance)
+                .sum();
+        assertEquals(getMinorUnits(1000 * accounts), total);
+    }
+
+    @Test
+    public void testBalanceSnapshotsShouldConserveMoneyDuringTransfers() throws Exception {
+        ConservationAuditor conservationAuditor = new ConservationAuditor();
+        underTest = new OptimisticAccountServiceImpl(conservationAuditor.watch(accountRepository), new AccountResponseConverter(),
+                TransactionLedger.disabled(), FxRates.none(), conservationAuditor);
+        int accounts = 8;
+        List<UUID> accountIds = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            UUID accountId = UUID.randomUUID();
+            accountIds.add(accountId);
+            accountRepository.save(getAccountInstance(accountId, TEST_USER_ID + i, 1000));
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(executorService.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int j = 0; j < 5000; j++) {
+                    int from = random.nextInt(accounts);
+                    int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+                    try {
+                        if (j % 10 == 0) {
+                            underTest.transferMoneyInBatch(getBatchTransferInstance(false,
+                                    getTransferMoneyInstance(accountIds.get(from), accountIds.get(to), 10),
+                                    getTransferMoneyInstance(accountIds.get(to), accountIds.get(from), 5)));
+                        } else {
+                            underTest.transferMoney(getTransferMoneyInstance(accountIds.get(from), accountIds.get(to), random.nextInt(50)));
+                        }
+                    } catch (InsufficientBalanceException ignored) {
+                    }
+                }
+            }));
+        }
+        int snapshots = 0;
+        while (snapshots < 50 || !futures.stream().allMatch(Future::isDone)) {
+            BalanceSnapshot snapshot = underTest.takeBalanceSnapshot();
+            long total = 0;
+            for (UUID accountId : accountIds) {
+                total += snapshot.getBalance(accountId);
+            }
+            assertEquals(getMinorUnits(1000 * accounts), total);
+            snapshots++;
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+    }
+}
@@ -0,0 +1,242 @@
+package com.revolut.transfer.service;
+
+import com.revolut.transfer.converter.AccountResponseConverter;
+import com.revolut.transfer.execption.AccountNotFoundException;
+import com.revolut.transfer.execption.InsufficientBalanceException;
+import com.revolut.transfer.ledger.Posting;
+import com.revolut.transfer.ledger.PostingType;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.model.Account;
+import com.revolut.transfer.repository.AccountRepository;
+import com.revolut.transfer.repository.AccountRepositoryImpl;
+import com.revolut.transfer.request.TransferMoneyRequest;
+import com.revolut.transfer.response.BatchTransferResponse;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.revolut.transfer.data.MoneyTransferData.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class ShardedAccountServiceTest {
+
+    private static final String TEST_USER_ID = "Test User";
+    private static final String TEST_TO_USER = "Test To User";
+
+    private AccountRepository accountRepository;
+    private TransactionLedger transactionLedger;
+    private ShardedAccountServiceImpl underTest;
+
+    @Before
+    public void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        transactionLedger = new TransactionLedger(TransactionLedger.DEFAULT_RING_SIZE, TransactionLedger.DEFAULT_RETAINED_POSTINGS);
+        underTest = new ShardedAccountServiceImpl(accountRepository, new AccountResponseConverter(), 4, transactionLedger);
+    }
+
+    @Test
+    public void testDepositAndWithdrawMoney() {
+        UUID accountId = UUID.randomUUID();
+        accountRepository.save(getAccountInstance(accountId, TEST_USER_ID, 60));
+
+        underTest.depositMoney(getDepositMoneyInstance(accountId, 20));
+        underTest.withdrawMoney(getWithDrawMoneyInstance(accountId, 50));
+
+        assertEquals(new BigDecimal(30), underTest.getAccount(accountId).getBalance());
+    }
+
+    @Test(expected = InsufficientBalanceException.class)
+    public void testWithdrawMoneyShouldThrowExceptionWhenAccountHasInsufficientBalance() {
+        UUID accountId = UUID.randomUUID();
+        accountRepository.save(getAccountInstance(accountId, TEST_USER_ID, 60));
+        underTest.withdrawMoney(getWithDrawMoneyInstance(accountId, 90));
+    }
+
+    @Test
+    public void testTransferMoneyWithinShard() {
+        UUID fromAccountId = UUID.randomUUID();
+        UUID toAccountId = accountOnShard(underTest.shardOf(fromAccountId));
+        accountRepository.save(getAccountInstance(fromAccountId, TEST_USER_ID, 60));
+        accountRepository.save(getAccountInstance(toAccountId, TEST_TO_USER, 20));
+
+        underTest.transferMoney(getTransferMoneyInstance(fromAccountId, toAccountId, 30));
+
+        assertEquals(getMinorUnits(30), accountRepository.getAccountById(fromAccountId).getBalance());
+        assertEquals(getMinorUnits(50), accountRepository.getAccountById(toAccountId).getBalance());
+    }
+
+    @Test
+    public void testTransferMoneyAcrossShards() {
+        UUID fromAccountId = UUID.randomUUID();
+        UUID toAccountId = accountOnOtherShard(fromAccountId);
+        accountRepository.save(getAccountInstance(fromAccountId, TEST_USER_ID, 60));
+        accountRepository.save(getAccountInstance(toAccountId, TEST_TO_USER, 20));
+
+        underTest.transferMoneyAsync(getTransferMoneyInstance(fromAccountId, toAccountId, 30)).join();
+
+        assertEquals(getMinorUnits(30), accountRepository.getAccountById(fromAccountId).getBalance());
+        assertEquals(getMinorUnits(50), accountRepository.getAccountById(toAccountId).getBalance());
+        assertEquals(0, underTest.getReservedAmount(GBP));
+
+        Posting debit = transactionLedger.getPostings(fromAccountId, Long.MAX_VALUE, 10).get(0);
+        Posting credit = transactionLedger.getPostings(toAccountId, Long.MAX_VALUE, 10).get(0);
+        assertEquals(PostingType.TRANSFER_OUT, debit.getType());
+        assertEquals(-getMinorUnits(30), debit.getAmount());
+        assertEquals(toAccountId, debit.getCounterpartyAccountId());
+        assertEquals(PostingType.TRANSFER_IN, credit.getType());
+        assertEquals(getMinorUnits(50), credit.getBalance());
+    }
+
+    @Test
+    public void testTransferMoneyAcrossShardsShouldCreditConvertedAmount() {
+        underTest = new ShardedAccountServiceImpl(accountRepository, new AccountResponseConverter(), 4, transactionLedger,
+                getFxRatesInstance());
+        UUID fromAccountId = UUID.randomUUID();
+        UUID toAccountId = accountOnOtherShard(fromAccountId);
+        accountRepository.save(getAccountInstance(fromAccountId, TEST_USER_ID, 60));
+        accountRepository.save(getAccountInstance(toAccountId, TEST_TO_USER, 20).toBuilder().currency(EUR).build());
+
+        underTest.transferMoney(getTransferMoneyInstance(fromAccountId, toAccountId, 10));
+
+        assertEquals(getMinorUnits(50), accountRepository.getAccountById(fromAccountId).getBalance());
+        assertEquals(3170, accountRepository.getAccountById(toAccountId).getBalance());
+        assertEquals(0, underTest.getReservedAmount(GBP));
+        assertEquals(0, underTest.getReservedAmount(EUR));
+        assertEquals(-getMinorUnits(10), transactionLedger.getPostings(fromAccountId, Long.MAX_VALUE, 10).get(0).getAmount());
+        assertEquals(1170, transactionLedger.getPostings(toAccountId, Long.MAX_VALUE, 10).get(0).getAmount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTransferMoneyShouldThrowExceptionWhenAmountIsNotInSourceCurrency() {
+        UUID fromAccountId = UUID.randomUUID();
+        UUID toAccountId = accountOnOtherShard(fromAccountId);
+        accountRepository.save(getAccountInstance(fromAccountId, TEST_USER_ID, 60));
+        accountRepository.save(getAccountInstance(toAccountId, TEST_TO_USER, 20));
+
+        underTest.transferMoney(TransferMoneyRequest.builder()
+                .fromAccount(fromAccountId)
+                .toAccount(toAccountId)
+                .amount(BigDecimal.TEN)
+                .currency(EUR)
+                .build());
+    }
+
+    @Test(expected = InsufficientBalanceException.class)
+    public void testTransferInsufficientMoneyAcrossShards() {
+        UUID fromAccountId = UUID.randomUUID();
+        UUID toAccountId = accountOnOtherShard(fromAccountId);
+        accountRepository.save(getAccountInstance(fromAccountId, TEST_USER_ID, 60));
+        accountRepository.save(getAccountInstance(toAccountId, TEST_TO_USER, 20));
+
+        underTest.transferMoney(getTransferMoneyInstance(fromAccountId, toAccountId, 80));
+    }
+
+    @Test(expected = AccountNotFoundException.class)
+    public void testTransferMoneyInNonExistingAccount() {
+        UUID fromAccountId = UUID.randomUUID();
+        accountRepository.save(getAccountInstance(fromAccountId, TEST_USER_ID, 60));
+
+        underTest.transferMoney(getTransferMoneyInstance(fromAccountId, accountOnOtherShard(fromAccountId), 30));
+    }
+
+    @Test
+    public void testCrossShardTransferShouldBeRefundedWhenCreditFails() {
+        UUID fromAccountId = UUID.randomUUID();
+        UUID toAccountId = accountOnOtherShard(fromAccountId);
+        accountRepository.save(getAccountInstance(fromAccountId, TEST_USER_ID, 60));
+        accountRepository.save(Account.builder().id(toAccountId).userId(TEST_TO_USER).balance(Long.MAX_VALUE).build());
+
+        try {
+            underTest.transferMoney(getTransferMoneyInstance(fromAccountId, toAccountId, 30));
+        } catch (ArithmeticException expected) {
+        }
+
+        assertEquals(getMinorUnits(60), accountRepository.getAccountById(fromAccountId).getBalance());
+        assertEquals(Long.MAX_VALUE, accountRepository.getAccountById(toAccountId).getBalance());
+        assertEquals(0, underTest.getReservedAmount(GBP));
+
+        List<Posting> postings = transactionLedger.getPostings(fromAccountId, Long.MAX_VALUE, 10);
+        assertEquals(2, postings.size());
+        assertEquals(PostingType.REFUND, postings.get(0).getType());
+        assertEquals(getMinorUnits(60), postings.get(0).getBalance());
+        assertEquals(PostingType.TRANSFER_OUT, postings.get(1).getType());
+        assertEquals(0, transactionLedger.getPostingCount(toAccountId));
+    }
+
+    @Test
+    public void testAtomicBatchTransferAcrossShards() {
+        UUID firstAccountId = UUID.randomUUID();
+        UUID secondAccountId = accountOnOtherShard(firstAccountId);
+        UUID thirdAccountId = UUID.randomUUID();
+        accountRepository.save(getAccountInstance(firstAccountId, TEST_USER_ID, 60));
+        accountRepository.save(getAccountInstance(secondAccountId, TEST_TO_USER, 0));
+        accountRepository.save(getAccountInstance(thirdAccountId, "Third User", 10));
+
+        BatchTransferResponse response = underTest.transferMoneyInBatch(getBatchTransferInstance(true,
+                getTransferMoneyInstance(firstAccountId, secondAccountId, 50),
+                getTransferMoneyInstance(secondAccountId, thirdAccountId, 40)));
+
+        assertEquals(2, response.getTransferred());
+        assertEquals(getMinorUnits(10), accountRepository.getAccountById(firstAccountId).getBalance());
+        assertEquals(getMinorUnits(10), accountRepository.getAccountById(secondAccountId).getBalance());
+        assertEquals(getMinorUnits(50), accountRepository.getAccountById(thirdAccountId).getBalance());
+    }
+
+    @Test
+    public void testConcurrentTransfersShouldConserveMoney() {
+        int accounts = 8;
+        List<UUID> accountIds = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            UUID accountId = UUID.randomUUID();
+            accountIds.add(accountId);
+            accountRepository.save(getAccountInstance(accountId, TEST_USER_ID + i, 1000));
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            int from = random.nextInt(accounts);
+            int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+            futures.add(underTest.transferMoneyAsync(getTransferMoneyInstance(accountIds.get(from), accountIds.get(to), random.nextInt(50)))
+                    .exceptionally(ex -> null));
+            if (i % 1000 == 0) {
+                underTest.transferMoneyInBatch(getBatchTransferInstance(false,
+                        getTransferMoneyInstance(accountIds.get(from), accountIds.get(to), 10),
+                        getTransferMoneyInstance(accountIds.get(to), accountIds.get(from), 5)));
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        long total = accountRepository.getAllAccounts().stream()
+                .mapToLong(Account::getBalance)
+                .sum();
+        assertEquals(getMinorUnits(1000 * accounts), total);
+        assertEquals(0, underTest.getReservedAmount(GBP));
+    }
+
+    private UUID accountOnShard(int shard) {
+        while (true) {
+            UUID accountId = UUID.randomUUID();
+            if (underTest.shardOf(accountId) == shard) {
+                return accountId;
+            }
+        }
+    }
+
+    private UUID accountOnOtherShard(UUID accountId) {
+        while (true) {
+            UUID otherAccountId = UUID.randomUUID();
+            if (underTest.shardOf(otherAccountId) != underTest.shardOf(accountId)) {
+                assertNotEquals(accountId, otherAccountId);
+                return otherAccountId;
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.revolut.transfer.service;
+
+import com.revolut.transfer.admission.AccountRateLimiter;
+import com.revolut.transfer.admission.AdmissionControl;
+import com.revolut.transfer.admission.ConcurrencyLimit;
+import com.revolut.transfer.converter.AccountResponseConverter;
+import com.revolut.transfer.execption.AccountThrottledException;
+import com.revolut.transfer.execption.InsufficientBalanceException;
+import com.revolut.transfer.execption.ServiceOverloadedException;
+import com.revolut.transfer.ledger.TransactionLedger;
+import com.revolut.transfer.lock.AccountLockManager;
+import com.revolut.transfer.repository.AccountRepository;
+import com.revolut.transfer.repository.AccountRepositoryImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.revolut.transfer.data.MoneyTransferData.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ThrottledAccountServiceTest {
+
+    private AccountRepository accountRepository;
+    private AccountService accountService;
+
+    @Before
+    public void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        accountService = new AccountServiceImpl(accountRepository, new AccountResponseConverter(), new AccountLockManager(),
+                TransactionLedger.disabled());
+    }
+
+    @Test
+    public void testFloodedAccountShouldBeThrottledWithoutThrottlingOtherAccounts() {
+        AccountService underTest = ThrottledAccountService.of(accountService, new AdmissionControl(
+                new AccountRateLimiter(1, 2, 1, TimeUnit.MINUTES), null));
+        UUID floodedAccountId = createAccount("Flooded User", 100);
+        UUID otherAccountId = createAccount("Other User", 100);
+
+        underTest.depositMoney(getDepositMoneyInstance(floodedAccountId, 1));
+        underTest.transferMoney(getTransferMoneyInstance(floodedAccountId, otherAccountId, 1));
+        try {
+            underTest.withdrawMoney(getWithDrawMoneyInstance(floodedAccountId, 1));
+            fail("Flooded account should be throttled");
+        } catch (AccountThrottledException ex) {
+            assertTrue(ex.getRetryAfterSeconds() >= 1);
+        }
+        underTest.transferMoney(getTransferMoneyInstance(otherAccountId, floodedAccountId, 5));
+
+        assertEquals(getMinorUnits(105), accountRepository.getAccountById(floodedAccountId).getBalance());
+        assertEquals(getMinorUnits(96), accountRepository.getAccountById(otherAccountId).getBalance());
+    }
+
+    @Test
+    public void testFailedCallShouldLeaveNothingInFlight() {
+        AdmissionControl admissionControl = new AdmissionControl(null, new ConcurrencyLimit(1, 1));
+        AccountService underTest = ThrottledAccountService.of(accountService, admissionControl);
+        UUID accountId = createAccount("Test User", 10);
+
+        try {
+            underTest.withdrawMoney(getWithDrawMoneyInstance(accountId, 20));
+            fail("Withdrawal should fail");
+        } catch (InsufficientBalanceException expected) {
+        }
+        underTest.withdrawMoney(getWithDrawMoneyInstance(accountId, 5));
+
+        assertEquals(0, admissionControl.getInFlight());
+    }
+
+    @Test
+    public void testCallsBeyondConcurrencyLimitShouldBeRejected() {
+        AdmissionControl admissionControl = new AdmissionControl(null, new ConcurrencyLimit(1, 1));
+        AccountService underTest = ThrottledAccountService.of(accountService, admissionControl);
+        UUID accountId = createAccount("Test User", 10);
+
+        long admitted = admissionControl.admit(null);
+        try {
+            underTest.depositMoney(getDepositMoneyInstance(accountId, 5));
+            fail("Deposit should be rejected");
+        } catch (ServiceOverloadedException expected) {
+        } finally {
+            admissionControl.release(admitted);
+        }
+
+        assertEquals(getMinorUnits(10), accountRepository.getAccountById(accountId).getBalance());
+    }
+
+    @Test
+    public void testCallRejectedAsOverloadShouldNotUseTheTokenOfItsAccount() {
+        AdmissionControl admissionControl = new AdmissionControl(new AccountRateLimiter(1, 1, 1, TimeUnit.MINUTES),
+                new ConcurrencyLimit(1, 1));
+        AccountService underTest = ThrottledAccountService.of(accountService, admissionControl);
+        UUID accountId = createAccount("Test User", 10);
+
+        long admitted = admissionControl.admit(null);
+        try {
+            underTest.depositMoney(getDepositMoneyInstance(accountId, 5));
+            fail("Deposit should be rejected");
+        } catch (ServiceOverloadedException expected) {
+        } finally {
+            admissionControl.release(admitted);
+        }
+        underTest.depositMoney(getDepositMoneyInstance(accountId, 5));
+
+        assertEquals(getMinorUnits(15), accountRepository.getAccountById(accountId).getBalance());
+    }
+
+    @Test
+    public void testAsyncMovementShouldBeInFlightUntilCompleted() throws Exception {
+        AdmissionControl admissionControl = new AdmissionControl(null, new ConcurrencyLimit(4, 4));
+        AccountService underTest = ThrottledAccountService.of(new ShardedAccountServiceImpl(accountRepository,
+                new AccountResponseConverter(), 2, TransactionLedger.disabled()), admissionControl);
+        UUID accountId = createAccount("Test User", 10);
+
+        ((AsyncAccountService) underTest).depositMoneyAsync(getDepositMoneyInstance(accountId, 5)).get(10, TimeUnit.SECONDS);
+
+        assertEquals(0, admissionControl.getInFlight());
+        assertEquals(getMinorUnits(15), accountRepository.getAccountById(accountId).getBalance());
+    }
+
+    @Test
+    public void testDisabledAdmissionControlShouldReturnServiceItself() {
+        assertSame(accountService, ThrottledAccountService.of(accountService, AdmissionControl.disabled()));
+    }
+
+    private UUID createAccount(String userId, int balance) {
+        UUID accountId = UUID.randomUUID();
+        accountRepository.save(getAccountInstance(accountId, userId, balance));
+        return accountId;
+    }
+}
@@ -6,6 +6,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
 
 import static org.junit.Assert.fail;
 
@@ -18,11 +20,16 @@ public class APiRequestHandler {
     }
 
     public ApiResponse send(final String method, final String path, final String jsonBody) {
+        return send(method, path, jsonBody, Collections.emptyMap());
+    }
+
+    public ApiResponse send(final String method, final String path, final String jsonBody, final Map<String, String> headers) {
         HttpURLConnection httpURLConnection = null;
         try {
             URL url = new URL(BASE_URL + path);
             httpURLConnection = (HttpURLConnection) url.openConnection();
             httpURLConnection.setRequestMethod(method);
+            headers.forEach(httpURLConnection::setRequestProperty);
             if (jsonBody != null) {
                 httpURLConnection.setDoOutput(true);
                 httpURLConnection.setRequestProperty("Content-Type", "application/json");